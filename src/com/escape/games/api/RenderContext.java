@@ -15,6 +15,7 @@
  */
 package com.escape.games.api;
 
+import com.escape.games.model.MatrixCache;
 import com.escape.games.resource.Shader;
 
 /**
@@ -39,6 +40,13 @@ public interface RenderContext {
 	 * @param matrixM (M) matrix.
 	 */
 	void usingModel(float[] matrixM);
+	/**
+	 * Notify we are using this model transform on current shader.
+	 * Should call after activateShader() is successful.
+	 * Context will set any matrix uniforms in effect, recomputing the cached products only if M, V, or P changed.
+	 * @param mc (M) matrix and its cached products.
+	 */
+	void usingModel(MatrixCache mc);
 	/**
 	 * Get the current View (V) matrix.
 	 * @return (V) matrix.
@@ -49,4 +57,14 @@ public interface RenderContext {
 	 * @return (VP) matrix.
 	 */
 	float[] matrixVP();
+	/**
+	 * Get the current Projection (P) matrix.
+	 * @return (P) matrix.
+	 */
+	float[] matrixP();
+	/**
+	 * Get the current camera position in World space.
+	 * @return x,y,z position.
+	 */
+	float[] cameraPosition();
 }
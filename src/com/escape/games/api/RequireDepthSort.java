@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.api;
+
+/**
+ * Ability to participate in per-frame depth ordering within a drawing layer (getDepth).
+ * Opaque items are drawn front-to-back, then transparent items back-to-front with blending enabled.
+ * @author escape-llc
+ *
+ */
+public interface RequireDepthSort extends RequireRender {
+	/**
+	 * Return whether this item requires alpha blending.
+	 * @return true: transparent; false: opaque.
+	 */
+	boolean isTransparent();
+	/**
+	 * Return the distance in front of the camera.
+	 * @param matrixV (V) matrix.
+	 * @return view-space depth; larger is farther.
+	 */
+	float viewDepth(float[] matrixV);
+}
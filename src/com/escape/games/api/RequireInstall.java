@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.api;
+
+/**
+ * Ability to take part in the Install/Uninstall pipelines on the Game Cycle.
+ * Pairs with RequireResourceLoader: uninstalled() releases what load() and installed() acquired.
+ * Both are executed on the Game Cycle, holding the update lock.
+ * @author escape-llc
+ *
+ */
+public interface RequireInstall {
+	/**
+	 * The object was loaded successfully.
+	 * @param svc Source of services.
+	 */
+	void installed(Services svc);
+	/**
+	 * The object was uninstalled, or its load failed.
+	 * Release resources; the object may be loaded again afterwards.
+	 */
+	void uninstalled();
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.api;
+
+import com.escape.games.model.MeshBVH;
+
+/**
+ * Ability to be hit by the picking service.
+ * Game objects implementing this are registered with the PICKING service when loaded.
+ * @author escape-llc
+ *
+ */
+public interface RequirePicking {
+	/**
+	 * Return whether the object can be picked now, e.g. it is visible.
+	 * @return true: test it.
+	 */
+	boolean isPickable();
+	/**
+	 * Return the triangles in model space.
+	 * @return hierarchy or NULL if not pickable.
+	 */
+	MeshBVH getPickMesh();
+	/**
+	 * Return the model-to-world matrix; must be affine.
+	 * @return column-major 4x4 matrix.
+	 */
+	float[] getPickMatrix();
+}
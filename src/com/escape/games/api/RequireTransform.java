@@ -0,0 +1,31 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.api;
+
+/**
+ * Ability to recompute a deferred model transform.
+ * Objects queue themselves with the TransformBatch service instead of recomputing on every change;
+ * the batch calls updateTransform() once per object, possibly on a worker thread.
+ * Implementations must only touch their own state.
+ * @author escape-llc
+ *
+ */
+public interface RequireTransform {
+	/**
+	 * Recompute the model matrix from current properties.
+	 */
+	void updateTransform();
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.api;
+
+import com.escape.games.model.TransformNode;
+
+/**
+ * Ability to take part in a transform hierarchy.
+ * The scene adds the node when the object is loaded, and removes it when unloaded.
+ * @author escape-llc
+ *
+ */
+public interface RequireTransformNode {
+	/**
+	 * Return the node holding local and world matrices.
+	 * @return node.
+	 */
+	TransformNode getTransformNode();
+}
@@ -15,9 +15,13 @@
  */
 package com.escape.games.api;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
 
 import com.escape.games.model.Geometry;
+import com.escape.games.resource.IndexBufferObject;
 import com.escape.games.resource.Shader;
 import com.escape.games.resource.Texture;
 import com.escape.games.resource.VertexBufferObject;
@@ -58,10 +62,46 @@ public interface ResourceLoader {
 	void preloadShaders(String... keys);
 	/**
 	 * Create a VBO for the given geometry.
-	 * @param geom Source geometry.
-	 * @return New VBO.
+	 * Geometries with the same source buffer share one VBO; each call adds a reference.
+	 * @param geom InterleavedVertexGeometry, or InterleavedVBOGeometry with an encoded layout.
+	 * @return Shared VBO; balance with releaseBuffer().
 	 */
 	VertexBufferObject createBuffer(Geometry geom);
+	/**
+	 * Create an IBO for the given geometry.
+	 * Geometries with the same index buffer share one IBO; each call adds a reference.
+	 * @param geom Source geometry; must be IndexedVBOGeometry.
+	 * @return Shared IBO; balance with releaseIndexBuffer().
+	 */
+	IndexBufferObject createIndexBuffer(Geometry geom);
+	/**
+	 * Drop a reference from createBuffer(); the last one deletes the VBO on the GL thread.
+	 * Does not wait for the GL thread.
+	 * @param vbo Buffer; NULL is ignored.
+	 */
+	void releaseBuffer(VertexBufferObject vbo);
+	/**
+	 * Drop a reference from createIndexBuffer(); the last one deletes the IBO on the GL thread.
+	 * Does not wait for the GL thread.
+	 * @param ibo Buffer; NULL is ignored.
+	 */
+	void releaseIndexBuffer(IndexBufferObject ibo);
+	/**
+	 * Return a shared geometry, creating and loading it on first use.
+	 * Each call adds a reference; balance with releaseGeometry().
+	 * @param key Content key, e.g. resource ID plus parse options.
+	 * @param factory Creates the (unloaded) geometry on a cache miss.
+	 * @param svc Source of services for Geometry.load().
+	 * @return Loaded geometry or NULL if the factory returned NULL.
+	 * @throws Exception from the factory.
+	 */
+	Geometry acquireGeometry(String key, Callable<Geometry> factory, Services svc) throws Exception;
+	/**
+	 * Drop a reference from acquireGeometry(); the last one unloads the geometry.
+	 * @param key Content key.
+	 * @return true: geometry was unloaded.
+	 */
+	boolean releaseGeometry(String key);
 	/**
 	 * Return the screen dimensions.
 	 * @return instance containing dimensions.
@@ -78,6 +118,14 @@ public interface ResourceLoader {
 	 * @return New stream.
 	 */
 	InputStream open(int resid);
+	/**
+	 * Map a raw resource read-only.
+	 * The resource must be stored uncompressed in the APK to be mapped; otherwise it is read into a direct buffer.
+	 * @param resid Resource id.
+	 * @return New buffer or NULL.
+	 * @throws IOException
+	 */
+	ByteBuffer map(int resid) throws IOException;
 	/**
 	 * Flush and reload cached resources.
 	 */
@@ -15,49 +15,82 @@
  */
 package com.escape.games.core;
 
-import android.opengl.Matrix;
-
 import com.escape.games.api.LoadedCallback;
 import com.escape.games.api.Locator;
 import com.escape.games.api.Pipelines;
 import com.escape.games.api.Properties;
 import com.escape.games.api.RenderContext;
+import com.escape.games.api.RequireDepthSort;
+import com.escape.games.api.RequireInstall;
+import com.escape.games.api.RequirePicking;
 import com.escape.games.api.RequireRender;
 import com.escape.games.api.RequireResourceLoader;
+import com.escape.games.api.RequireTransform;
+import com.escape.games.api.RequireTransformNode;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
 import com.escape.games.api.UnloadedCallback;
+import com.escape.games.math.Mat4;
 import com.escape.games.message.Constants;
 import com.escape.games.model.Effect;
 import com.escape.games.model.Geometry;
 import com.escape.games.model.Material;
+import com.escape.games.model.MatrixCache;
+import com.escape.games.model.MeshBVH;
 import com.escape.games.model.PerVertexMaterial;
 import com.escape.games.model.Transform;
+import com.escape.games.model.TransformNode;
 import com.escape.games.resource.Shader;
+import com.escape.games.service.TransformBatch;
+import com.escape.games.service.TransformStore;
 
 /**
  * Base implementation for game object with visual representation.
  * Uses properties TRANSFORM and MATERIAL.
- * Delegates RequireResourceLoader, LoadedCallback, UnloadedCallback.
+ * TRANSFORM is relative to the parent node, if any; see getTransformNode().
+ * Delegates RequireResourceLoader, RequireInstall, LoadedCallback, UnloadedCallback.
  * @author escape-llc
  *
  */
-public class DrawableGameObject extends GameObjectWithProperties implements RequireResourceLoader, LoadedCallback, UnloadedCallback, RequireRender {
+public class DrawableGameObject extends GameObjectWithProperties implements RequireResourceLoader, RequireInstall, LoadedCallback, UnloadedCallback, RequireRender, RequireDepthSort, RequireTransform, RequireTransformNode, RequirePicking {
+	static final Transform IDENTITY = new Transform();
 	final int depth;
 	protected final Geometry model;
 	protected Shader sx;
+	/* model holds a user for this object */
+	boolean modelLoaded;
 	protected Effect efx;
 	boolean visible;
-	/* current model matrix with Transform applied */
-	final float[] modelMatrix = new float[16];
+	/* model matrix plus cached MV/MVP */
+	final MatrixCache matrices = new MatrixCache();
+	/* world matrix; local matrix is node.local */
+	final float[] modelMatrix = matrices.matrixM;
+	/* hierarchy link; world matrix is matrices.matrixM */
+	final TransformNode node = new TransformNode(matrices);
+	/* Transform values last applied to modelMatrix */
+	final Transform applied = new Transform();
+	/* set by transform() when modelMatrix already reflects the Transform */
+	boolean unchanged;
+	/* deferred updates; NULL: update on change */
+	TransformBatch batch;
+	/* queued in batch */
+	boolean dirty;
+	/* opt in to TRANSFORM_STORE */
+	boolean useStore;
+	/* SoA storage; NULL: per-object path */
+	TransformStore store;
+	int handle = -1;
 	/**
 	 * Override to hook into RequireResourceLoader chain.
-	 * Default implementation initializes model, material, and shader.
+	 * Default implementation initializes model, material, and shader,
+	 * and defers TRANSFORM updates to the TRANSFORMS service if there is one.
 	 * @param rl source of resources.
 	 * @param svc source of services.
 	 */
 	protected void internalLoad(ResourceLoader rl, Services svc) {
-		// initialize model
+		batch = svc.get(Constants.Service.TRANSFORMS);
+		// initialize model; counts as a user even if it fails
+		modelLoaded = true;
 		model.load(rl, svc);
 		// initialize material
 		final Material mx = this.getAs(Constants.Property.MATERIAL);
@@ -74,6 +107,39 @@ public class DrawableGameObject extends GameObjectWithProperties implements Requ
 		if(sx == null)
 			throw new IllegalArgumentException(name + ": could not locate shader: " + mx.getShaderKey());
 	}
+	/**
+	 * Override to hook into RequireInstall.
+	 * Default implementation allocates a handle in the TRANSFORM_STORE service with setUseStore(true),
+	 * if there is one and it has room.
+	 * Must hold update lock.
+	 * @param svc source of services.
+	 */
+	protected void internalInstalled(Services svc) {
+		if(useStore && store == null) {
+			final TransformStore ts = svc.get(Constants.Service.TRANSFORM_STORE);
+			if(ts != null) {
+				final int hx = ts.allocate(node);
+				if(hx >= 0) {
+					store = ts;
+					handle = hx;
+					ts.set(hx, this.<Transform>getAs(Constants.Property.TRANSFORM, null));
+				}
+			}
+		}
+	}
+	/**
+	 * Override to hook into RequireInstall.
+	 * Default implementation gives the store handle back and unloads the model.
+	 * Must hold update lock.
+	 */
+	protected void internalUninstalled() {
+		releaseStore();
+		if(modelLoaded) {
+			modelLoaded = false;
+			// shared geometry is freed by its last user
+			model.unload();
+		}
+	}
 	/**
 	 * Hook into LoadedCallback.
 	 * Must be called by subclasses implementing LoadedCallback.
@@ -98,31 +164,90 @@ public class DrawableGameObject extends GameObjectWithProperties implements Requ
 			efx = null;
 		}
 	}
+	/**
+	 * Opt in to the TRANSFORM_STORE service.
+	 * Takes effect at load; the object keeps the per-object path if there is no store or it is full.
+	 * @param use true: use the store.
+	 */
+	public void setUseStore(boolean use) { useStore = use; }
+	/**
+	 * Return the store holding this object's transform.
+	 * Bulk updates may write the store arrays at getTransformHandle() directly, then invalidate the handle.
+	 * @return store or NULL if not using one.
+	 */
+	public TransformStore getTransformStore() { return store; }
+	/**
+	 * Return the handle in getTransformStore().
+	 * @return handle or -1.
+	 */
+	public int getTransformHandle() { return handle; }
+	/**
+	 * Give the store handle back; TRANSFORM changes revert to the per-object path.
+	 * Must hold update lock.
+	 */
+	public void releaseStore() {
+		if(store == null) return;
+		store.release(handle);
+		store = null;
+		handle = -1;
+		// next change recomposes
+		applied.tx = Float.NaN;
+	}
 	/**
 	 * Recompute model transform (Translate/Scale/RotateXYZ).
-	 * @param modelMatrix Target model transform matrix.
+	 * Skips the work if the Transform values are the same as last applied.
+	 * @param modelMatrix Target local transform matrix.
 	 * @param px Source of values.
 	 */
 	protected void transform(float[] modelMatrix, Properties px) {
-		Matrix.setIdentityM(modelMatrix, 0);
 		final Transform tf = px.getAs(Constants.Property.TRANSFORM, null);
-		if(tf == null) return;
-		Matrix.translateM(modelMatrix, 0, tf.tx, tf.ty, tf.tz);
-		Matrix.scaleM(modelMatrix, 0, tf.sx, tf.sy, tf.sz);
-		if(tf.rx != 0f)
-			Matrix.rotateM(modelMatrix, 0, tf.rx, 1f, 0f, 0f);
-		if(tf.ry != 0f)
-			Matrix.rotateM(modelMatrix, 0, tf.ry, 0f, 1f, 0f);
-		if(tf.rz != 0f)
-			Matrix.rotateM(modelMatrix, 0, tf.rz, 0f, 0f, 1f);
+		if(tf == null) {
+			Mat4.setIdentity(modelMatrix, 0);
+			applied.set(IDENTITY);
+			return;
+		}
+		if(applied.sameAs(tf)) {
+			unchanged = true;
+			return;
+		}
+		tf.compose(modelMatrix, 0);
+		applied.set(tf);
+	}
+	/**
+	 * Recompute local matrix from TRANSFORM.
+	 * Invalidates the node unless transform() reports no change;
+	 * outside a hierarchy the world matrix is updated immediately, otherwise on the next TransformHierarchy.update().
+	 * Runs on a TransformBatch worker when deferred.
+	 * Clears the queued state first, so the next change queues the object again even if this update fails.
+	 */
+	public void updateTransform() {
+		dirty = false;
+		unchanged = false;
+		transform(node.local, this);
+		if(!unchanged) {
+			node.invalidate();
+		}
 	}
+	public TransformNode getTransformNode() { return node; }
 	/**
 	 * Recompute model matrix when TRANSFORM is changed.
+	 * Once loaded with a TRANSFORMS service, the object is queued instead and updated when the batch is flushed.
+	 * With a store handle, the values are copied into the store.
 	 */
 	@Override
 	protected void notifyPropertyChanged(int propertyId) {
 		if(propertyId == Constants.Property.TRANSFORM) {
-			transform(modelMatrix, this);
+			final TransformBatch tb = batch;
+			if(store != null) {
+				store.set(handle, this.<Transform>getAs(Constants.Property.TRANSFORM, null));
+			}
+			else if(tb == null) {
+				updateTransform();
+			}
+			else if(!dirty) {
+				dirty = true;
+				tb.add(this);
+			}
 		}
 		else {
 			super.notifyPropertyChanged(propertyId);
@@ -141,17 +266,31 @@ public class DrawableGameObject extends GameObjectWithProperties implements Requ
 			throw new IllegalArgumentException("model");
 		this.model = model;
 		this.depth = depth;
-		Matrix.setIdentityM(modelMatrix, 0);
 	}
 	public int getDepth() { return depth; }
 	public boolean getVisible() { return visible; }
 	public void setVisible(boolean vis) { visible = vis; }
+	/**
+	 * Transparent if the MATERIAL or the model (e.g. a submesh material) is transparent.
+	 */
+	public boolean isTransparent() {
+		final Material mx = this.getAs(Constants.Property.MATERIAL);
+		return (mx != null && mx.isTransparent()) || model.isTransparent();
+	}
+	/**
+	 * Depth of the model origin in View space.
+	 */
+	public float viewDepth(float[] matrixV) {
+		// camera looks down -Z in View space
+		return -(matrixV[2]*modelMatrix[12] + matrixV[6]*modelMatrix[13] + matrixV[10]*modelMatrix[14] + matrixV[14]);
+	}
 	public void render(RenderContext rc) {
 		if(!visible) return;
 		final Shader sfx = efx != null ? efx.getShader() : sx;
 		if(sfx == null) return;
+		model.prepare(rc, modelMatrix);
 		rc.activateShader(sfx);
-		rc.usingModel(modelMatrix);
+		rc.usingModel(matrices);
 		if (efx == null) {
 			// material
 			final Material mx = this.getAs(Constants.Property.MATERIAL);
@@ -165,7 +304,15 @@ public class DrawableGameObject extends GameObjectWithProperties implements Requ
 		// draw
 		model.render(sfx, this);
 	}
+	/**
+	 * Pickable while visible.
+	 */
+	public boolean isPickable() { return visible; }
+	public MeshBVH getPickMesh() { return model.getBVH(); }
+	public float[] getPickMatrix() { return modelMatrix; }
 	public void load(ResourceLoader rl, Services svc) { internalLoad(rl, svc); }
+	public void installed(Services svc) { internalInstalled(svc); }
+	public void uninstalled() { internalUninstalled(); }
 	public void unloaded(GameObject go, Exception ex, Locator lc, Pipelines pps) { internalUnloaded(go, ex, lc, pps); }
 	public void loaded(GameObject go, Exception ex, Locator lc, Pipelines pps) { internalLoaded(go, ex, lc, pps); }
 }
@@ -19,20 +19,32 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 
+import android.opengl.GLES20;
+
 import com.escape.games.api.LoadedCallback;
 import com.escape.games.api.Locator;
 import com.escape.games.api.Pipelines;
 import com.escape.games.api.RenderContext;
+import com.escape.games.api.RequireDepthSort;
 import com.escape.games.api.RequireRender;
+import com.escape.games.api.RequireTransformNode;
 import com.escape.games.api.SceneRender;
 import com.escape.games.api.UnloadedCallback;
 import com.escape.games.message.Constants;
 import com.escape.games.model.Material;
+import com.escape.games.model.TransformHierarchy;
+import com.escape.games.model.TransformNode;
+import com.escape.games.resource.GLState;
 import com.escape.games.resource.Shader;
 
 /**
  * Core implementation for rendering a collection of game objects.
  * Uses property MATERIAL for scene-level shader uniforms.
+ * Items are kept sorted by drawing layer (getDepth).
+ * Each frame, within a layer, RequireDepthSort items are ordered by View-space depth:
+ * opaque items front-to-back (early depth rejection), then transparent items back-to-front with blending.
+ * Ordering uses a radix sort over preallocated key arrays; nothing is allocated per frame.
+ * RequireTransformNode items join the scene's TransformHierarchy; world matrices are propagated before each frame.
  * Install pipeline: add accepted component to the scene.
  * Uninstall pipeline: remove accepted component from the scene.
  * @author escape-llc
@@ -62,6 +74,18 @@ public class Scene extends GameObjectWithProperties implements SceneRender, Load
 	protected final ArrayList<RequireRender> rrs;
 	// sort by layer
 	protected static final Comparator<RequireRender> cmp = new CompareRender();
+	/* sort key layout: layer rank (bits 33+), transparent (bit 32), depth (bits 0-31) */
+	static final int LAYER_SHIFT = 33;
+	static final long KEY_TRANSPARENT = 1L << 32;
+	static final long KEY_DEPTH = 0xffffffffL;
+	/* sort keys and item indices; double-buffered for radix passes */
+	long[] keys = new long[0];
+	long[] keys2 = new long[0];
+	int[] order = new int[0];
+	int[] order2 = new int[0];
+	final int[] counts = new int[256];
+	/* parent/child transforms of RequireTransformNode items */
+	protected final TransformHierarchy hierarchy = new TransformHierarchy();
 	/**
 	 * Ctor.
 	 * @param name GO name.
@@ -72,6 +96,13 @@ public class Scene extends GameObjectWithProperties implements SceneRender, Load
 		dobjs = new ArrayList<GameObject>(cap);
 		rrs = new ArrayList<RequireRender>(cap);
 	}
+	/**
+	 * Return the transform hierarchy.
+	 * Use TransformNode.setParent() to attach loaded items to each other.
+	 * Must hold update lock.
+	 * @return hierarchy.
+	 */
+	public TransformHierarchy getHierarchy() { return hierarchy; }
 
 	public void loaded(GameObject go, Exception ex, Locator lc, Pipelines pps) {
 		if(ex == null && go != this) {
@@ -81,6 +112,12 @@ public class Scene extends GameObjectWithProperties implements SceneRender, Load
 					rrs.add((RequireRender) go);
 					Collections.sort(rrs, cmp);
 				}
+				if (go instanceof RequireTransformNode) {
+					final TransformNode tn = ((RequireTransformNode) go).getTransformNode();
+					if (tn.getHierarchy() == null) {
+						hierarchy.add(tn);
+					}
+				}
 			}
 		}
 	}
@@ -91,17 +128,127 @@ public class Scene extends GameObjectWithProperties implements SceneRender, Load
 					rrs.remove((RequireRender) go);
 					Collections.sort(rrs, cmp);
 				}
+				if (go instanceof RequireTransformNode) {
+					final TransformNode tn = ((RequireTransformNode) go).getTransformNode();
+					if (tn.getHierarchy() == hierarchy) {
+						hierarchy.remove(tn);
+					}
+				}
 				dobjs.remove(go);
 			}
 		}
 	}
+	/**
+	 * Map a float to an int whose unsigned order matches the float order.
+	 * @param fx Source value.
+	 * @return sortable key.
+	 */
+	static int depthKey(float fx) {
+		final int bits = Float.floatToRawIntBits(fx);
+		return bits < 0 ? ~bits : bits ^ 0x80000000;
+	}
+	/**
+	 * Grow sort arrays to hold the given count.
+	 * Only allocates when the scene grows past its previous size.
+	 * @param count Number of items.
+	 */
+	void ensureCapacity(int count) {
+		if(keys.length >= count) return;
+		keys = new long[count];
+		keys2 = new long[count];
+		order = new int[count];
+		order2 = new int[count];
+	}
+	/**
+	 * LSD radix sort of keys[0..count) carrying order[].
+	 * Stable, so equal keys keep layer order.
+	 * Passes over bytes that are identical for every key are skipped.
+	 * @param count Number of items.
+	 */
+	void sort(int count) {
+		long all = 0;
+		for(int ix = 0; ix < count; ix++) {
+			all |= keys[ix];
+		}
+		long[] src = keys, dst = keys2;
+		int[] osrc = order, odst = order2;
+		for(int shift = 0; shift < 64 && (all >>> shift) != 0; shift += 8) {
+			final int[] cx = counts;
+			for(int ix = 0; ix < cx.length; ix++) {
+				cx[ix] = 0;
+			}
+			for(int ix = 0; ix < count; ix++) {
+				cx[(int)(src[ix] >>> shift) & 0xff]++;
+			}
+			if(cx[(int)(src[0] >>> shift) & 0xff] == count) continue;
+			int sum = 0;
+			for(int ix = 0; ix < cx.length; ix++) {
+				final int cc = cx[ix];
+				cx[ix] = sum;
+				sum += cc;
+			}
+			for(int ix = 0; ix < count; ix++) {
+				final int pos = cx[(int)(src[ix] >>> shift) & 0xff]++;
+				dst[pos] = src[ix];
+				odst[pos] = osrc[ix];
+			}
+			final long[] tk = src; src = dst; dst = tk;
+			final int[] to = osrc; osrc = odst; odst = to;
+		}
+		keys = src;
+		keys2 = dst;
+		order = osrc;
+		order2 = odst;
+	}
 	/**
 	 * Render the scene.
+	 * Propagates world matrices, orders items within each layer, then renders them.
+	 * Blending is enabled only for transparent items, with SRC_ALPHA/ONE_MINUS_SRC_ALPHA and depth writes off.
 	 */
 	public void render(RenderContext rc) {
-		for(int ix = 0; ix < rrs.size(); ix++) {
+		hierarchy.update();
+		final int count = rrs.size();
+		if(count == 0) return;
+		ensureCapacity(count);
+		final float[] mv = rc.matrixV();
+		long layer = 0;
+		for(int ix = 0; ix < count; ix++) {
 			final RequireRender rr = rrs.get(ix);
-			rr.render(rc);
+			if(ix > 0 && rr.getDepth() != rrs.get(ix - 1).getDepth()) {
+				layer++;
+			}
+			long key = layer << LAYER_SHIFT;
+			if(rr instanceof RequireDepthSort) {
+				final RequireDepthSort rds = (RequireDepthSort)rr;
+				final long dk = depthKey(rds.viewDepth(mv)) & KEY_DEPTH;
+				if(rds.isTransparent()) {
+					// farthest first
+					key |= KEY_TRANSPARENT | (~dk & KEY_DEPTH);
+				}
+				else {
+					key |= dk;
+				}
+			}
+			keys[ix] = key;
+			order[ix] = ix;
+		}
+		sort(count);
+		boolean blend = false;
+		for(int ix = 0; ix < count; ix++) {
+			final boolean tx = (keys[ix] & KEY_TRANSPARENT) != 0;
+			if(tx != blend) {
+				GLState.blend(tx);
+				if(tx) {
+					GLState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+				}
+				GLState.depthMask(!tx);
+				blend = tx;
+			}
+			rrs.get(order[ix]).render(rc);
+		}
+		if(blend) {
+			GLState.blend(false);
+			GLState.depthMask(true);
 		}
 	}
 	/**
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+import java.nio.Buffer;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+/**
+ * Device backend; forwards every call to GLES20.
+ * @author escape-llc
+ *
+ */
+public final class AndroidGLES implements GLES {
+	public void glActiveTexture(int texture) { GLES20.glActiveTexture(texture); }
+	public void glAttachShader(int program, int shader) { GLES20.glAttachShader(program, shader); }
+	public void glBindBuffer(int target, int buffer) { GLES20.glBindBuffer(target, buffer); }
+	public void glBindFramebuffer(int target, int framebuffer) { GLES20.glBindFramebuffer(target, framebuffer); }
+	public void glBindRenderbuffer(int target, int renderbuffer) { GLES20.glBindRenderbuffer(target, renderbuffer); }
+	public void glBindTexture(int target, int texture) { GLES20.glBindTexture(target, texture); }
+	public void glBlendFunc(int sfactor, int dfactor) { GLES20.glBlendFunc(sfactor, dfactor); }
+	public void glBufferData(int target, int size, Buffer data, int usage) { GLES20.glBufferData(target, size, data, usage); }
+	public int glCheckFramebufferStatus(int target) { return GLES20.glCheckFramebufferStatus(target); }
+	public void glClear(int mask) { GLES20.glClear(mask); }
+	public void glClearColor(float red, float green, float blue, float alpha) { GLES20.glClearColor(red, green, blue, alpha); }
+	public void glCompileShader(int shader) { GLES20.glCompileShader(shader); }
+	public int glCreateProgram() { return GLES20.glCreateProgram(); }
+	public int glCreateShader(int type) { return GLES20.glCreateShader(type); }
+	public void glDeleteBuffers(int n, int[] buffers, int offset) { GLES20.glDeleteBuffers(n, buffers, offset); }
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) { GLES20.glDeleteFramebuffers(n, framebuffers, offset); }
+	public void glDeleteProgram(int program) { GLES20.glDeleteProgram(program); }
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) { GLES20.glDeleteRenderbuffers(n, renderbuffers, offset); }
+	public void glDeleteShader(int shader) { GLES20.glDeleteShader(shader); }
+	public void glDeleteTextures(int n, int[] textures, int offset) { GLES20.glDeleteTextures(n, textures, offset); }
+	public void glDepthMask(boolean flag) { GLES20.glDepthMask(flag); }
+	public void glDisable(int cap) { GLES20.glDisable(cap); }
+	public void glDisableVertexAttribArray(int index) { GLES20.glDisableVertexAttribArray(index); }
+	public void glDrawArrays(int mode, int first, int count) { GLES20.glDrawArrays(mode, first, count); }
+	public void glDrawElements(int mode, int count, int type, Buffer indices) { GLES20.glDrawElements(mode, count, type, indices); }
+	public void glDrawElements(int mode, int count, int type, int offset) { GLES20.glDrawElements(mode, count, type, offset); }
+	public void glEnable(int cap) { GLES20.glEnable(cap); }
+	public void glEnableVertexAttribArray(int index) { GLES20.glEnableVertexAttribArray(index); }
+	public void glFinish() { GLES20.glFinish(); }
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) { GLES20.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer); }
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) { GLES20.glFramebufferTexture2D(target, attachment, textarget, texture, level); }
+	public void glGenBuffers(int n, int[] buffers, int offset) { GLES20.glGenBuffers(n, buffers, offset); }
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) { GLES20.glGenFramebuffers(n, framebuffers, offset); }
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) { GLES20.glGenRenderbuffers(n, renderbuffers, offset); }
+	public void glGenTextures(int n, int[] textures, int offset) { GLES20.glGenTextures(n, textures, offset); }
+	public int glGetAttribLocation(int program, String name) { return GLES20.glGetAttribLocation(program, name); }
+	public int glGetError() { return GLES20.glGetError(); }
+	public String glGetString(int name) { return GLES20.glGetString(name); }
+	public void glGetIntegerv(int pname, int[] params, int offset) { GLES20.glGetIntegerv(pname, params, offset); }
+	public String glGetProgramInfoLog(int program) { return GLES20.glGetProgramInfoLog(program); }
+	public void glGetProgramiv(int program, int pname, int[] params, int offset) { GLES20.glGetProgramiv(program, pname, params, offset); }
+	public String glGetShaderInfoLog(int shader) { return GLES20.glGetShaderInfoLog(shader); }
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset) { GLES20.glGetShaderiv(shader, pname, params, offset); }
+	public int glGetUniformLocation(int program, String name) { return GLES20.glGetUniformLocation(program, name); }
+	public void glLinkProgram(int program) { GLES20.glLinkProgram(program); }
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) { GLES20.glRenderbufferStorage(target, internalformat, width, height); }
+	public void glShaderSource(int shader, String string) { GLES20.glShaderSource(shader, string); }
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) { GLES20.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels); }
+	public void texImage2D(int target, int level, Bitmap bitmap, int border) { GLUtils.texImage2D(target, level, bitmap, border); }
+	public void glTexParameteri(int target, int pname, int param) { GLES20.glTexParameteri(target, pname, param); }
+	public void glUniform1f(int location, float x) { GLES20.glUniform1f(location, x); }
+	public void glUniform1i(int location, int x) { GLES20.glUniform1i(location, x); }
+	public void glUniform2fv(int location, int count, float[] v, int offset) { GLES20.glUniform2fv(location, count, v, offset); }
+	public void glUniform3fv(int location, int count, float[] v, int offset) { GLES20.glUniform3fv(location, count, v, offset); }
+	public void glUniform4fv(int location, int count, float[] v, int offset) { GLES20.glUniform4fv(location, count, v, offset); }
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) { GLES20.glUniformMatrix4fv(location, count, transpose, value, offset); }
+	public void glUseProgram(int program) { GLES20.glUseProgram(program); }
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) { GLES20.glVertexAttribPointer(indx, size, type, normalized, stride, ptr); }
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) { GLES20.glVertexAttribPointer(indx, size, type, normalized, stride, offset); }
+	public void glViewport(int x, int y, int width, int height) { GLES20.glViewport(x, y, width, height); }
+}
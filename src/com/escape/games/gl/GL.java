@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+import java.nio.Buffer;
+
+import android.graphics.Bitmap;
+
+/**
+ * Static entry point for all GL calls.
+ * Call sites use GL.glXxx() where they would use GLES20.glXxx(); each call forwards to the current backend.
+ * The default backend is AndroidGLES; GLES20 is not loaded until the first call reaches it,
+ * so a plain JVM can select NullGLES or RecordingGLES with setBackend() and run the render path headless.
+ * Select the backend before rendering starts; it is not meant to change mid-frame.
+ * @author escape-llc
+ *
+ */
+public final class GL {
+	static GLES backend = new AndroidGLES();
+	private GL() { }
+	/**
+	 * Replace the backend.
+	 * @param gles New backend.
+	 * @return previous backend.
+	 */
+	public static GLES setBackend(GLES gles) {
+		if(gles == null) throw new IllegalArgumentException("gles");
+		final GLES prev = backend;
+		backend = gles;
+		return prev;
+	}
+	/**
+	 * Return the current backend.
+	 * @return backend.
+	 */
+	public static GLES getBackend() { return backend; }
+	public static void glActiveTexture(int texture) { backend.glActiveTexture(texture); }
+	public static void glAttachShader(int program, int shader) { backend.glAttachShader(program, shader); }
+	public static void glBindBuffer(int target, int buffer) { backend.glBindBuffer(target, buffer); }
+	public static void glBindFramebuffer(int target, int framebuffer) { backend.glBindFramebuffer(target, framebuffer); }
+	public static void glBindRenderbuffer(int target, int renderbuffer) { backend.glBindRenderbuffer(target, renderbuffer); }
+	public static void glBindTexture(int target, int texture) { backend.glBindTexture(target, texture); }
+	public static void glBlendFunc(int sfactor, int dfactor) { backend.glBlendFunc(sfactor, dfactor); }
+	public static void glBufferData(int target, int size, Buffer data, int usage) { backend.glBufferData(target, size, data, usage); }
+	public static int glCheckFramebufferStatus(int target) { return backend.glCheckFramebufferStatus(target); }
+	public static void glClear(int mask) { backend.glClear(mask); }
+	public static void glClearColor(float red, float green, float blue, float alpha) { backend.glClearColor(red, green, blue, alpha); }
+	public static void glCompileShader(int shader) { backend.glCompileShader(shader); }
+	public static int glCreateProgram() { return backend.glCreateProgram(); }
+	public static int glCreateShader(int type) { return backend.glCreateShader(type); }
+	public static void glDeleteBuffers(int n, int[] buffers, int offset) { backend.glDeleteBuffers(n, buffers, offset); }
+	public static void glDeleteFramebuffers(int n, int[] framebuffers, int offset) { backend.glDeleteFramebuffers(n, framebuffers, offset); }
+	public static void glDeleteProgram(int program) { backend.glDeleteProgram(program); }
+	public static void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) { backend.glDeleteRenderbuffers(n, renderbuffers, offset); }
+	public static void glDeleteShader(int shader) { backend.glDeleteShader(shader); }
+	public static void glDeleteTextures(int n, int[] textures, int offset) { backend.glDeleteTextures(n, textures, offset); }
+	public static void glDepthMask(boolean flag) { backend.glDepthMask(flag); }
+	public static void glDisable(int cap) { backend.glDisable(cap); }
+	public static void glDisableVertexAttribArray(int index) { backend.glDisableVertexAttribArray(index); }
+	public static void glDrawArrays(int mode, int first, int count) { backend.glDrawArrays(mode, first, count); }
+	public static void glDrawElements(int mode, int count, int type, Buffer indices) { backend.glDrawElements(mode, count, type, indices); }
+	public static void glDrawElements(int mode, int count, int type, int offset) { backend.glDrawElements(mode, count, type, offset); }
+	public static void glEnable(int cap) { backend.glEnable(cap); }
+	public static void glEnableVertexAttribArray(int index) { backend.glEnableVertexAttribArray(index); }
+	public static void glFinish() { backend.glFinish(); }
+	public static void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) { backend.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer); }
+	public static void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) { backend.glFramebufferTexture2D(target, attachment, textarget, texture, level); }
+	public static void glGenBuffers(int n, int[] buffers, int offset) { backend.glGenBuffers(n, buffers, offset); }
+	public static void glGenFramebuffers(int n, int[] framebuffers, int offset) { backend.glGenFramebuffers(n, framebuffers, offset); }
+	public static void glGenRenderbuffers(int n, int[] renderbuffers, int offset) { backend.glGenRenderbuffers(n, renderbuffers, offset); }
+	public static void glGenTextures(int n, int[] textures, int offset) { backend.glGenTextures(n, textures, offset); }
+	public static int glGetAttribLocation(int program, String name) { return backend.glGetAttribLocation(program, name); }
+	public static int glGetError() { return backend.glGetError(); }
+	public static String glGetString(int name) { return backend.glGetString(name); }
+	public static void glGetIntegerv(int pname, int[] params, int offset) { backend.glGetIntegerv(pname, params, offset); }
+	public static String glGetProgramInfoLog(int program) { return backend.glGetProgramInfoLog(program); }
+	public static void glGetProgramiv(int program, int pname, int[] params, int offset) { backend.glGetProgramiv(program, pname, params, offset); }
+	public static String glGetShaderInfoLog(int shader) { return backend.glGetShaderInfoLog(shader); }
+	public static void glGetShaderiv(int shader, int pname, int[] params, int offset) { backend.glGetShaderiv(shader, pname, params, offset); }
+	public static int glGetUniformLocation(int program, String name) { return backend.glGetUniformLocation(program, name); }
+	public static void glLinkProgram(int program) { backend.glLinkProgram(program); }
+	public static void glRenderbufferStorage(int target, int internalformat, int width, int height) { backend.glRenderbufferStorage(target, internalformat, width, height); }
+	public static void glShaderSource(int shader, String string) { backend.glShaderSource(shader, string); }
+	public static void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) { backend.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels); }
+	public static void texImage2D(int target, int level, Bitmap bitmap, int border) { backend.texImage2D(target, level, bitmap, border); }
+	public static void glTexParameteri(int target, int pname, int param) { backend.glTexParameteri(target, pname, param); }
+	public static void glUniform1f(int location, float x) { backend.glUniform1f(location, x); }
+	public static void glUniform1i(int location, int x) { backend.glUniform1i(location, x); }
+	public static void glUniform2fv(int location, int count, float[] v, int offset) { backend.glUniform2fv(location, count, v, offset); }
+	public static void glUniform3fv(int location, int count, float[] v, int offset) { backend.glUniform3fv(location, count, v, offset); }
+	public static void glUniform4fv(int location, int count, float[] v, int offset) { backend.glUniform4fv(location, count, v, offset); }
+	public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) { backend.glUniformMatrix4fv(location, count, transpose, value, offset); }
+	public static void glUseProgram(int program) { backend.glUseProgram(program); }
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) { backend.glVertexAttribPointer(indx, size, type, normalized, stride, ptr); }
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) { backend.glVertexAttribPointer(indx, size, type, normalized, stride, offset); }
+	public static void glViewport(int x, int y, int width, int height) { backend.glViewport(x, y, width, height); }
+}
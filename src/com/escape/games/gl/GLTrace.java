@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+/**
+ * Binary GL trace format shared by TracingGLES and TraceAnalyzer.
+ * All values are big-endian (DataOutputStream).
+ * <p>Header: int MAGIC, int VERSION, int opcode count, then per opcode: UTF name, UTF signature.</p>
+ * <p>Record: unsigned byte opcode.
+ * OP_FRAME and OP_END are followed by a long System.nanoTime().
+ * Any other opcode is followed by an int call duration in nanoseconds, then its arguments per signature:</p>
+ * <ul>
+ * <li>i: int; f: float; z: boolean as byte; s: UTF string.</li>
+ * <li>b: Buffer, recorded as int size in bytes; contents are not captured.</li>
+ * <li>B: Bitmap, recorded as int width, int height.</li>
+ * <li>I: int array, recorded as int length then values (handles created or deleted).</li>
+ * <li>F: float array, recorded as int length then values (uniform values).</li>
+ * <li>R: int written by the call into its params array.</li>
+ * <li>r: int return value.</li>
+ * </ul>
+ * Array offsets are not recorded; arrays are always written from the offset the caller passed.
+ * @author escape-llc
+ *
+ */
+public final class GLTrace {
+	/** "GLTR" */
+	public static final int MAGIC = 0x474c5452;
+	public static final int VERSION = 1;
+	/** frame start marker */
+	public static final int OP_FRAME = 0;
+	public static final int OP_ACTIVE_TEXTURE = 1;
+	public static final int OP_ATTACH_SHADER = 2;
+	public static final int OP_BIND_BUFFER = 3;
+	public static final int OP_BIND_FRAMEBUFFER = 4;
+	public static final int OP_BIND_RENDERBUFFER = 5;
+	public static final int OP_BIND_TEXTURE = 6;
+	public static final int OP_BLEND_FUNC = 7;
+	public static final int OP_BUFFER_DATA = 8;
+	public static final int OP_CHECK_FRAMEBUFFER_STATUS = 9;
+	public static final int OP_CLEAR = 10;
+	public static final int OP_CLEAR_COLOR = 11;
+	public static final int OP_COMPILE_SHADER = 12;
+	public static final int OP_CREATE_PROGRAM = 13;
+	public static final int OP_CREATE_SHADER = 14;
+	public static final int OP_DELETE_BUFFERS = 15;
+	public static final int OP_DELETE_FRAMEBUFFERS = 16;
+	public static final int OP_DELETE_PROGRAM = 17;
+	public static final int OP_DELETE_RENDERBUFFERS = 18;
+	public static final int OP_DELETE_SHADER = 19;
+	public static final int OP_DELETE_TEXTURES = 20;
+	public static final int OP_DISABLE = 21;
+	public static final int OP_DISABLE_VERTEX_ATTRIB_ARRAY = 22;
+	public static final int OP_DRAW_ARRAYS = 23;
+	public static final int OP_DRAW_ELEMENTS = 24;
+	public static final int OP_DRAW_ELEMENTS_OFFSET = 25;
+	public static final int OP_ENABLE = 26;
+	public static final int OP_ENABLE_VERTEX_ATTRIB_ARRAY = 27;
+	public static final int OP_FINISH = 28;
+	public static final int OP_FRAMEBUFFER_RENDERBUFFER = 29;
+	public static final int OP_FRAMEBUFFER_TEXTURE_2D = 30;
+	public static final int OP_GEN_BUFFERS = 31;
+	public static final int OP_GEN_FRAMEBUFFERS = 32;
+	public static final int OP_GEN_RENDERBUFFERS = 33;
+	public static final int OP_GEN_TEXTURES = 34;
+	public static final int OP_GET_ATTRIB_LOCATION = 35;
+	public static final int OP_GET_ERROR = 36;
+	public static final int OP_GET_PROGRAM_INFO_LOG = 37;
+	public static final int OP_GET_PROGRAMIV = 38;
+	public static final int OP_GET_SHADER_INFO_LOG = 39;
+	public static final int OP_GET_SHADERIV = 40;
+	public static final int OP_GET_UNIFORM_LOCATION = 41;
+	public static final int OP_LINK_PROGRAM = 42;
+	public static final int OP_RENDERBUFFER_STORAGE = 43;
+	public static final int OP_SHADER_SOURCE = 44;
+	public static final int OP_TEX_IMAGE_2D = 45;
+	public static final int OP_TEX_IMAGE_2D_BITMAP = 46;
+	public static final int OP_TEX_PARAMETERI = 47;
+	public static final int OP_UNIFORM1F = 48;
+	public static final int OP_UNIFORM1I = 49;
+	public static final int OP_UNIFORM2FV = 50;
+	public static final int OP_UNIFORM3FV = 51;
+	public static final int OP_UNIFORM4FV = 52;
+	public static final int OP_UNIFORM_MATRIX4FV = 53;
+	public static final int OP_USE_PROGRAM = 54;
+	public static final int OP_VERTEX_ATTRIB_POINTER = 55;
+	public static final int OP_VERTEX_ATTRIB_POINTER_OFFSET = 56;
+	public static final int OP_VIEWPORT = 57;
+	public static final int OP_GET_INTEGERV = 58;
+	public static final int OP_DEPTH_MASK = 59;
+	public static final int OP_GET_STRING = 60;
+	/** end of trace marker */
+	public static final int OP_END = 255;
+	/** GL function name per opcode */
+	static final String[] NAMES = {
+		"frame",
+		"glActiveTexture",
+		"glAttachShader",
+		"glBindBuffer",
+		"glBindFramebuffer",
+		"glBindRenderbuffer",
+		"glBindTexture",
+		"glBlendFunc",
+		"glBufferData",
+		"glCheckFramebufferStatus",
+		"glClear",
+		"glClearColor",
+		"glCompileShader",
+		"glCreateProgram",
+		"glCreateShader",
+		"glDeleteBuffers",
+		"glDeleteFramebuffers",
+		"glDeleteProgram",
+		"glDeleteRenderbuffers",
+		"glDeleteShader",
+		"glDeleteTextures",
+		"glDisable",
+		"glDisableVertexAttribArray",
+		"glDrawArrays",
+		"glDrawElements",
+		"glDrawElements",
+		"glEnable",
+		"glEnableVertexAttribArray",
+		"glFinish",
+		"glFramebufferRenderbuffer",
+		"glFramebufferTexture2D",
+		"glGenBuffers",
+		"glGenFramebuffers",
+		"glGenRenderbuffers",
+		"glGenTextures",
+		"glGetAttribLocation",
+		"glGetError",
+		"glGetProgramInfoLog",
+		"glGetProgramiv",
+		"glGetShaderInfoLog",
+		"glGetShaderiv",
+		"glGetUniformLocation",
+		"glLinkProgram",
+		"glRenderbufferStorage",
+		"glShaderSource",
+		"glTexImage2D",
+		"texImage2D",
+		"glTexParameteri",
+		"glUniform1f",
+		"glUniform1i",
+		"glUniform2fv",
+		"glUniform3fv",
+		"glUniform4fv",
+		"glUniformMatrix4fv",
+		"glUseProgram",
+		"glVertexAttribPointer",
+		"glVertexAttribPointer",
+		"glViewport",
+		"glGetIntegerv",
+		"glDepthMask",
+		"glGetString",
+	};
+	/** argument signature per opcode */
+	static final String[] SIGNATURES = {
+		"",
+		"i",
+		"ii",
+		"ii",
+		"ii",
+		"ii",
+		"ii",
+		"ii",
+		"iibi",
+		"ir",
+		"i",
+		"ffff",
+		"i",
+		"r",
+		"ir",
+		"iI",
+		"iI",
+		"i",
+		"iI",
+		"i",
+		"iI",
+		"i",
+		"i",
+		"iii",
+		"iiib",
+		"iiii",
+		"i",
+		"i",
+		"",
+		"iiii",
+		"iiiii",
+		"iI",
+		"iI",
+		"iI",
+		"iI",
+		"isr",
+		"r",
+		"i",
+		"iiR",
+		"i",
+		"iiR",
+		"isr",
+		"i",
+		"iiii",
+		"is",
+		"iiiiiiiib",
+		"iiBi",
+		"iii",
+		"if",
+		"ii",
+		"iiF",
+		"iiF",
+		"iiF",
+		"iizF",
+		"i",
+		"iiizib",
+		"iiizii",
+		"iiii",
+		"iR",
+		"z",
+		"i",
+	};
+	private GLTrace() { }
+	/**
+	 * Return the GL function name of an opcode.
+	 * @param op Opcode.
+	 * @return name or NULL if not an opcode.
+	 */
+	public static String name(int op) {
+		if(op == OP_END) return "end";
+		return op >= 0 && op < NAMES.length ? NAMES[op] : null;
+	}
+	/**
+	 * Return the argument signature of an opcode.
+	 * @param op Opcode.
+	 * @return signature or NULL if not an opcode.
+	 */
+	public static String signature(int op) {
+		if(op == OP_END) return "";
+		return op >= 0 && op < SIGNATURES.length ? SIGNATURES[op] : null;
+	}
+	/**
+	 * Return the number of opcodes, excluding OP_END.
+	 * @return count.
+	 */
+	public static int count() { return NAMES.length; }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+import java.nio.Buffer;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+/**
+ * Backend that does nothing, for measuring the CPU cost of the render path.
+ * Object creation returns fresh handles, compile/link/framebuffer status report success,
+ * and locations cycle through 0-15 so uniform and attribute code paths still run.
+ * @author escape-llc
+ *
+ */
+public final class NullGLES implements GLES {
+	int handles;
+	int locations;
+	void generate(int n, int[] out, int offset) {
+		for(int ix = 0; ix < n; ix++) {
+			out[offset + ix] = ++handles;
+		}
+	}
+	public void glActiveTexture(int texture) { }
+	public void glAttachShader(int program, int shader) { }
+	public void glBindBuffer(int target, int buffer) { }
+	public void glBindFramebuffer(int target, int framebuffer) { }
+	public void glBindRenderbuffer(int target, int renderbuffer) { }
+	public void glBindTexture(int target, int texture) { }
+	public void glBlendFunc(int sfactor, int dfactor) { }
+	public void glBufferData(int target, int size, Buffer data, int usage) { }
+	public int glCheckFramebufferStatus(int target) { return GLES20.GL_FRAMEBUFFER_COMPLETE; }
+	public void glClear(int mask) { }
+	public void glClearColor(float red, float green, float blue, float alpha) { }
+	public void glCompileShader(int shader) { }
+	public int glCreateProgram() { return ++handles; }
+	public int glCreateShader(int type) { return ++handles; }
+	public void glDeleteBuffers(int n, int[] buffers, int offset) { }
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) { }
+	public void glDeleteProgram(int program) { }
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) { }
+	public void glDeleteShader(int shader) { }
+	public void glDeleteTextures(int n, int[] textures, int offset) { }
+	public void glDepthMask(boolean flag) { }
+	public void glDisable(int cap) { }
+	public void glDisableVertexAttribArray(int index) { }
+	public void glDrawArrays(int mode, int first, int count) { }
+	public void glDrawElements(int mode, int count, int type, Buffer indices) { }
+	public void glDrawElements(int mode, int count, int type, int offset) { }
+	public void glEnable(int cap) { }
+	public void glEnableVertexAttribArray(int index) { }
+	public void glFinish() { }
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) { }
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) { }
+	public void glGenBuffers(int n, int[] buffers, int offset) { generate(n, buffers, offset); }
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) { generate(n, framebuffers, offset); }
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) { generate(n, renderbuffers, offset); }
+	public void glGenTextures(int n, int[] textures, int offset) { generate(n, textures, offset); }
+	public int glGetAttribLocation(int program, String name) { return (++locations) & 0xf; }
+	public int glGetError() { return GLES20.GL_NO_ERROR; }
+	public String glGetString(int name) { return ""; }
+	public void glGetIntegerv(int pname, int[] params, int offset) { params[offset] = 0; }
+	public String glGetProgramInfoLog(int program) { return ""; }
+	public void glGetProgramiv(int program, int pname, int[] params, int offset) { params[offset] = GLES20.GL_TRUE; }
+	public String glGetShaderInfoLog(int shader) { return ""; }
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset) { params[offset] = GLES20.GL_TRUE; }
+	public int glGetUniformLocation(int program, String name) { return (++locations) & 0xf; }
+	public void glLinkProgram(int program) { }
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) { }
+	public void glShaderSource(int shader, String string) { }
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) { }
+	public void texImage2D(int target, int level, Bitmap bitmap, int border) { }
+	public void glTexParameteri(int target, int pname, int param) { }
+	public void glUniform1f(int location, float x) { }
+	public void glUniform1i(int location, int x) { }
+	public void glUniform2fv(int location, int count, float[] v, int offset) { }
+	public void glUniform3fv(int location, int count, float[] v, int offset) { }
+	public void glUniform4fv(int location, int count, float[] v, int offset) { }
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) { }
+	public void glUseProgram(int program) { }
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) { }
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) { }
+	public void glViewport(int x, int y, int width, int height) { }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+/**
+ * Backend that records the call stream, for assertions and call-count analysis.
+ * Handles are assigned sequentially per object kind starting at 1 and never reused,
+ * so the same sequence of calls always produces the same handles.
+ * Locations are assigned per program in order of first query, and only for names that
+ * appear as a word in the program's shader sources; other names return -1 like a real driver.
+ * Compile, link and framebuffer status report success; glGetError() reports no error and is not recorded.
+ * glGetString() returns an empty string, i.e. no extensions.
+ * Array arguments are copied; Buffer arguments are recorded by reference.
+ * GL thread only.
+ * @author escape-llc
+ *
+ */
+public final class RecordingGLES implements GLES {
+	/**
+	 * One recorded call.
+	 */
+	public static final class Call {
+		public final String name;
+		public final Object[] args;
+		Call(String name, Object[] args) {
+			this.name = name;
+			this.args = args;
+		}
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(name).append('(');
+			for(int ix = 0; ix < args.length; ix++) {
+				if(ix > 0) sb.append(", ");
+				final Object ox = args[ix];
+				if(ox instanceof int[]) sb.append(Arrays.toString((int[])ox));
+				else if(ox instanceof float[]) sb.append(Arrays.toString((float[])ox));
+				else sb.append(ox);
+			}
+			return sb.append(')').toString();
+		}
+	}
+	static final class Program {
+		final ArrayList<Integer> shaders = new ArrayList<Integer>();
+		final HashMap<String, Integer> attributes = new HashMap<String, Integer>();
+		final HashMap<String, Integer> uniforms = new HashMap<String, Integer>();
+	}
+	final ArrayList<Call> calls = new ArrayList<Call>();
+	final HashMap<Integer, String> sources = new HashMap<Integer, String>();
+	final HashMap<Integer, Program> programs = new HashMap<Integer, Program>();
+	int bufferCount;
+	int textureCount;
+	int framebufferCount;
+	int renderbufferCount;
+	int shaderCount;
+	int programCount;
+	/**
+	 * Return the recorded calls, oldest first.
+	 * @return read-only list.
+	 */
+	public List<Call> calls() { return Collections.unmodifiableList(calls); }
+	/**
+	 * Return the number of recorded calls with the given name.
+	 * @param name GL function name, e.g. "glDrawArrays".
+	 * @return count.
+	 */
+	public int count(String name) {
+		int count = 0;
+		for(int ix = 0; ix < calls.size(); ix++) {
+			if(calls.get(ix).name.equals(name)) count++;
+		}
+		return count;
+	}
+	/**
+	 * Discard recorded calls.
+	 * Handles, sources and locations are kept, so recording can restart between frames.
+	 */
+	public void clear() { calls.clear(); }
+	void record(String name, Object... args) {
+		calls.add(new Call(name, args));
+	}
+	static int generate(int counter, int n, int[] out, int offset) {
+		for(int ix = 0; ix < n; ix++) {
+			out[offset + ix] = ++counter;
+		}
+		return counter;
+	}
+	static int[] slice(int[] src, int offset, int length) {
+		final int[] dst = new int[length];
+		System.arraycopy(src, offset, dst, 0, length);
+		return dst;
+	}
+	static float[] slice(float[] src, int offset, int length) {
+		final float[] dst = new float[length];
+		System.arraycopy(src, offset, dst, 0, length);
+		return dst;
+	}
+	/**
+	 * Look up or assign a location.
+	 * @param px Program.
+	 * @param map Attributes or uniforms of px.
+	 * @param name Variable name.
+	 * @return location or -1 if not in any attached source.
+	 */
+	int locate(Program px, HashMap<String, Integer> map, String name) {
+		final Integer loc = map.get(name);
+		if(loc != null) return loc;
+		final Pattern word = Pattern.compile("\\b" + Pattern.quote(name) + "\\b");
+		for(int ix = 0; ix < px.shaders.size(); ix++) {
+			final String src = sources.get(px.shaders.get(ix));
+			if(src != null && word.matcher(src).find()) {
+				final int next = map.size();
+				map.put(name, next);
+				return next;
+			}
+		}
+		return -1;
+	}
+	public void glActiveTexture(int texture) { record("glActiveTexture", texture); }
+	public void glAttachShader(int program, int shader) {
+		record("glAttachShader", program, shader);
+		final Program px = programs.get(program);
+		if(px != null) px.shaders.add(shader);
+	}
+	public void glBindBuffer(int target, int buffer) { record("glBindBuffer", target, buffer); }
+	public void glBindFramebuffer(int target, int framebuffer) { record("glBindFramebuffer", target, framebuffer); }
+	public void glBindRenderbuffer(int target, int renderbuffer) { record("glBindRenderbuffer", target, renderbuffer); }
+	public void glBindTexture(int target, int texture) { record("glBindTexture", target, texture); }
+	public void glBlendFunc(int sfactor, int dfactor) { record("glBlendFunc", sfactor, dfactor); }
+	public void glBufferData(int target, int size, Buffer data, int usage) { record("glBufferData", target, size, data, usage); }
+	public int glCheckFramebufferStatus(int target) {
+		record("glCheckFramebufferStatus", target);
+		return GLES20.GL_FRAMEBUFFER_COMPLETE;
+	}
+	public void glClear(int mask) { record("glClear", mask); }
+	public void glClearColor(float red, float green, float blue, float alpha) { record("glClearColor", red, green, blue, alpha); }
+	public void glCompileShader(int shader) { record("glCompileShader", shader); }
+	public int glCreateProgram() {
+		final int id = ++programCount;
+		programs.put(id, new Program());
+		record("glCreateProgram", id);
+		return id;
+	}
+	public int glCreateShader(int type) {
+		final int id = ++shaderCount;
+		record("glCreateShader", type, id);
+		return id;
+	}
+	public void glDeleteBuffers(int n, int[] buffers, int offset) { record("glDeleteBuffers", slice(buffers, offset, n)); }
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) { record("glDeleteFramebuffers", slice(framebuffers, offset, n)); }
+	public void glDeleteProgram(int program) {
+		record("glDeleteProgram", program);
+		programs.remove(program);
+	}
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) { record("glDeleteRenderbuffers", slice(renderbuffers, offset, n)); }
+	public void glDeleteShader(int shader) {
+		record("glDeleteShader", shader);
+		sources.remove(shader);
+	}
+	public void glDeleteTextures(int n, int[] textures, int offset) { record("glDeleteTextures", slice(textures, offset, n)); }
+	public void glDepthMask(boolean flag) { record("glDepthMask", flag); }
+	public void glDisable(int cap) { record("glDisable", cap); }
+	public void glDisableVertexAttribArray(int index) { record("glDisableVertexAttribArray", index); }
+	public void glDrawArrays(int mode, int first, int count) { record("glDrawArrays", mode, first, count); }
+	public void glDrawElements(int mode, int count, int type, Buffer indices) { record("glDrawElements", mode, count, type, indices); }
+	public void glDrawElements(int mode, int count, int type, int offset) { record("glDrawElements", mode, count, type, offset); }
+	public void glEnable(int cap) { record("glEnable", cap); }
+	public void glEnableVertexAttribArray(int index) { record("glEnableVertexAttribArray", index); }
+	public void glFinish() { record("glFinish"); }
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) { record("glFramebufferRenderbuffer", target, attachment, renderbuffertarget, renderbuffer); }
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) { record("glFramebufferTexture2D", target, attachment, textarget, texture, level); }
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		bufferCount = generate(bufferCount, n, buffers, offset);
+		record("glGenBuffers", slice(buffers, offset, n));
+	}
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+		framebufferCount = generate(framebufferCount, n, framebuffers, offset);
+		record("glGenFramebuffers", slice(framebuffers, offset, n));
+	}
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+		renderbufferCount = generate(renderbufferCount, n, renderbuffers, offset);
+		record("glGenRenderbuffers", slice(renderbuffers, offset, n));
+	}
+	public void glGenTextures(int n, int[] textures, int offset) {
+		textureCount = generate(textureCount, n, textures, offset);
+		record("glGenTextures", slice(textures, offset, n));
+	}
+	public int glGetAttribLocation(int program, String name) {
+		final Program px = programs.get(program);
+		final int loc = px != null ? locate(px, px.attributes, name) : -1;
+		record("glGetAttribLocation", program, name, loc);
+		return loc;
+	}
+	public int glGetError() { return GLES20.GL_NO_ERROR; }
+	public String glGetString(int name) {
+		record("glGetString", name);
+		return "";
+	}
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		record("glGetIntegerv", pname);
+		params[offset] = 0;
+	}
+	public String glGetProgramInfoLog(int program) { return ""; }
+	public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+		record("glGetProgramiv", program, pname);
+		params[offset] = GLES20.GL_TRUE;
+	}
+	public String glGetShaderInfoLog(int shader) { return ""; }
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+		record("glGetShaderiv", shader, pname);
+		params[offset] = GLES20.GL_TRUE;
+	}
+	public int glGetUniformLocation(int program, String name) {
+		final Program px = programs.get(program);
+		final int loc = px != null ? locate(px, px.uniforms, name) : -1;
+		record("glGetUniformLocation", program, name, loc);
+		return loc;
+	}
+	public void glLinkProgram(int program) { record("glLinkProgram", program); }
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) { record("glRenderbufferStorage", target, internalformat, width, height); }
+	public void glShaderSource(int shader, String string) {
+		record("glShaderSource", shader, string);
+		sources.put(shader, string);
+	}
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) { record("glTexImage2D", target, level, internalformat, width, height, border, format, type, pixels); }
+	public void texImage2D(int target, int level, Bitmap bitmap, int border) { record("texImage2D", target, level, bitmap, border); }
+	public void glTexParameteri(int target, int pname, int param) { record("glTexParameteri", target, pname, param); }
+	public void glUniform1f(int location, float x) { record("glUniform1f", location, x); }
+	public void glUniform1i(int location, int x) { record("glUniform1i", location, x); }
+	public void glUniform2fv(int location, int count, float[] v, int offset) { record("glUniform2fv", location, count, slice(v, offset, 2*count)); }
+	public void glUniform3fv(int location, int count, float[] v, int offset) { record("glUniform3fv", location, count, slice(v, offset, 3*count)); }
+	public void glUniform4fv(int location, int count, float[] v, int offset) { record("glUniform4fv", location, count, slice(v, offset, 4*count)); }
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) { record("glUniformMatrix4fv", location, count, transpose, slice(value, offset, 16*count)); }
+	public void glUseProgram(int program) { record("glUseProgram", program); }
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) { record("glVertexAttribPointer", indx, size, type, normalized, stride, ptr); }
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) { record("glVertexAttribPointer", indx, size, type, normalized, stride, offset); }
+	public void glViewport(int x, int y, int width, int height) { record("glViewport", x, y, width, height); }
+}
@@ -0,0 +1,689 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import android.opengl.GLES20;
+
+/**
+ * Offline reader for traces written by TracingGLES.
+ * Runs on a plain JVM; see main() for command line use.
+ * Reports:
+ * <ul>
+ * <li>Per frame: calls, draws, vertices, submission time and frame interval.</li>
+ * <li>Per call: count, per-frame min/avg/max and time.</li>
+ * <li>Redundant calls: binds, enables and uniform uploads that did not change the state left by the previous call.</li>
+ * <li>Most expensive objects: programs, buffers and textures by the time of the draw batches that used them.
+ * A batch is a draw plus every call since the previous draw; each bound object is charged the whole batch.</li>
+ * </ul>
+ * replay() reissues the calls against any backend, e.g. NullGLES to measure dispatch cost.
+ * Handles and locations are passed as recorded, Buffers are zero-filled and Bitmaps are NULL,
+ * so replay suits NullGLES or RecordingGLES rather than a live context.
+ * @author escape-llc
+ *
+ */
+public class TraceAnalyzer {
+	static final int UNKNOWN = Integer.MIN_VALUE;
+	/**
+	 * One decoded call.
+	 */
+	public static final class Record {
+		public final int op;
+		public final int nanos;
+		/** arguments in signature order */
+		public final Object[] args;
+		Record(int op, int nanos, Object[] args) {
+			this.op = op;
+			this.nanos = nanos;
+			this.args = args;
+		}
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(GLTrace.name(op)).append('(');
+			for(int ix = 0; ix < args.length; ix++) {
+				if(ix > 0) sb.append(", ");
+				final Object ox = args[ix];
+				if(ox instanceof int[]) sb.append(Arrays.toString((int[])ox));
+				else if(ox instanceof float[]) sb.append(Arrays.toString((float[])ox));
+				else if(ox instanceof Buffer) sb.append(((Buffer)ox).capacity()).append(" bytes");
+				else sb.append(ox);
+			}
+			return sb.append(')').toString();
+		}
+	}
+	/**
+	 * Cost of one GL object.
+	 */
+	static final class ObjectCost {
+		final String name;
+		int draws;
+		long vertices;
+		long nanos;
+		long uploaded;
+		ObjectCost(String name) {
+			this.name = name;
+		}
+	}
+	final ArrayList<Record> records = new ArrayList<Record>();
+	/* index of first record per frame */
+	final ArrayList<Integer> frameStarts = new ArrayList<Integer>();
+	/* OP_FRAME timestamps */
+	final ArrayList<Long> frameTimes = new ArrayList<Long>();
+	/* zero-filled replay buffers by size */
+	final HashMap<Integer, Buffer> buffers = new HashMap<Integer, Buffer>();
+	long endTime;
+	boolean truncated;
+	/* analysis results */
+	int[][] histogram;
+	final int[] redundant = new int[GLTrace.count()];
+	final HashMap<String, ObjectCost> objects = new HashMap<String, ObjectCost>();
+	/**
+	 * Ctor.
+	 * Reads the whole trace and analyzes it.
+	 * A trace cut short (e.g. device died mid-capture) is kept up to the last whole record; see isTruncated().
+	 * @param is Source; not closed.
+	 * @throws IOException on read failure or bad format.
+	 */
+	public TraceAnalyzer(InputStream is) throws IOException {
+		if(is == null) throw new IllegalArgumentException("is");
+		read(new DataInputStream(new BufferedInputStream(is, 65536)));
+		analyze();
+	}
+	public int getFrameCount() { return frameStarts.size(); }
+	public int getCallCount() { return records.size(); }
+	public boolean isTruncated() { return truncated; }
+	/**
+	 * Return the decoded calls.
+	 * @return read-only list.
+	 */
+	public List<Record> getRecords() { return Collections.unmodifiableList(records); }
+	/**
+	 * Return the number of redundant calls of an opcode.
+	 * @param op Opcode.
+	 * @return count.
+	 */
+	public int getRedundantCount(int op) { return redundant[op]; }
+	void read(DataInputStream dis) throws IOException {
+		if(dis.readInt() != GLTrace.MAGIC) throw new IOException("not a GL trace");
+		final int version = dis.readInt();
+		if(version > GLTrace.VERSION) throw new IOException("unsupported trace version " + version);
+		final int count = dis.readInt();
+		if(count > GLTrace.count()) throw new IOException("trace has unknown opcodes");
+		for(int ix = 0; ix < count; ix++) {
+			final String name = dis.readUTF();
+			final String sig = dis.readUTF();
+			if(!name.equals(GLTrace.NAMES[ix]) || !sig.equals(GLTrace.SIGNATURES[ix]))
+				throw new IOException("opcode " + ix + " differs: " + name + " " + sig);
+		}
+		try {
+			for(;;) {
+				final int op = dis.readUnsignedByte();
+				if(op == GLTrace.OP_END) {
+					endTime = dis.readLong();
+					return;
+				}
+				if(op == GLTrace.OP_FRAME) {
+					frameTimes.add(dis.readLong());
+					frameStarts.add(records.size());
+					continue;
+				}
+				if(op >= count) throw new IOException("bad opcode " + op + " at record " + records.size());
+				final int nanos = dis.readInt();
+				final String sig = GLTrace.SIGNATURES[op];
+				final Object[] args = new Object[sig.length()];
+				for(int ix = 0; ix < sig.length(); ix++) {
+					args[ix] = readArg(dis, sig.charAt(ix));
+				}
+				records.add(new Record(op, nanos, args));
+			}
+		}
+		catch(EOFException ex) {
+			truncated = true;
+		}
+	}
+	Object readArg(DataInputStream dis, char type) throws IOException {
+		switch(type) {
+		case 'i':
+		case 'R':
+		case 'r':
+			return dis.readInt();
+		case 'f':
+			return dis.readFloat();
+		case 'z':
+			return dis.readByte() != 0;
+		case 's':
+			return dis.readUTF();
+		case 'b': {
+			final int size = dis.readInt();
+			Buffer bx = buffers.get(size);
+			if(bx == null) {
+				bx = ByteBuffer.allocate(size);
+				buffers.put(size, bx);
+			}
+			return bx;
+		}
+		case 'B':
+			return new int[] { dis.readInt(), dis.readInt() };
+		case 'I': {
+			final int[] values = new int[dis.readInt()];
+			for(int ix = 0; ix < values.length; ix++) {
+				values[ix] = dis.readInt();
+			}
+			return values;
+		}
+		case 'F': {
+			final float[] values = new float[dis.readInt()];
+			for(int ix = 0; ix < values.length; ix++) {
+				values[ix] = dis.readFloat();
+			}
+			return values;
+		}
+		default:
+			throw new IOException("bad signature type " + type);
+		}
+	}
+	static int asInt(Object ox) { return ((Integer)ox).intValue(); }
+	static float asFloat(Object ox) { return ((Float)ox).floatValue(); }
+	static boolean asBoolean(Object ox) { return ((Boolean)ox).booleanValue(); }
+	/**
+	 * Return the frame a record belongs to.
+	 * @param rx Record index.
+	 * @return frame index or -1 if before the first frame.
+	 */
+	int frameOf(int rx) {
+		int lo = 0, hi = frameStarts.size() - 1, found = -1;
+		while(lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(frameStarts.get(mid) <= rx) {
+				found = mid;
+				lo = mid + 1;
+			}
+			else hi = mid - 1;
+		}
+		return found;
+	}
+	/**
+	 * Vertex count of a draw call.
+	 * @param rx Call.
+	 * @return count or -1 if not a draw.
+	 */
+	static int drawCount(Record rx) {
+		switch(rx.op) {
+		case GLTrace.OP_DRAW_ARRAYS:
+			return asInt(rx.args[2]);
+		case GLTrace.OP_DRAW_ELEMENTS:
+		case GLTrace.OP_DRAW_ELEMENTS_OFFSET:
+			return asInt(rx.args[1]);
+		default:
+			return -1;
+		}
+	}
+	ObjectCost cost(String kind, int id) {
+		final String key = kind + " " + id;
+		ObjectCost oc = objects.get(key);
+		if(oc == null) {
+			oc = new ObjectCost(key);
+			objects.put(key, oc);
+		}
+		return oc;
+	}
+	void charge(String kind, int id, int vertices, long nanos) {
+		if(id == UNKNOWN || id == 0) return;
+		final ObjectCost oc = cost(kind, id);
+		oc.draws++;
+		oc.vertices += vertices;
+		oc.nanos += nanos;
+	}
+	/**
+	 * One pass over the records, tracking bound state.
+	 */
+	void analyze() {
+		histogram = new int[frameStarts.size()][GLTrace.count()];
+		final StateTracker st = new StateTracker();
+		long batch = 0;
+		for(int ix = 0; ix < records.size(); ix++) {
+			final Record rx = records.get(ix);
+			final int fx = frameOf(ix);
+			if(fx >= 0) {
+				histogram[fx][rx.op]++;
+			}
+			if(st.redundant(rx)) {
+				redundant[rx.op]++;
+			}
+			batch += rx.nanos;
+			switch(rx.op) {
+			case GLTrace.OP_BUFFER_DATA: {
+				final int id = st.buffer(asInt(rx.args[0]));
+				if(id != UNKNOWN && id != 0) cost("buffer", id).uploaded += asInt(rx.args[1]);
+				break;
+			}
+			case GLTrace.OP_TEX_IMAGE_2D:
+			case GLTrace.OP_TEX_IMAGE_2D_BITMAP: {
+				final int id = st.texture();
+				final long size = rx.op == GLTrace.OP_TEX_IMAGE_2D
+					? ((Buffer)rx.args[8]).capacity()
+					: 4L*((int[])rx.args[2])[0]*((int[])rx.args[2])[1];
+				if(id != UNKNOWN && id != 0) cost("texture", id).uploaded += size;
+				break;
+			}
+			default:
+				break;
+			}
+			final int count = drawCount(rx);
+			if(count >= 0) {
+				charge("program", st.program, count, batch);
+				charge("buffer", st.buffer(GLES20.GL_ARRAY_BUFFER), count, batch);
+				if(rx.op == GLTrace.OP_DRAW_ELEMENTS_OFFSET) {
+					charge("buffer", st.buffer(GLES20.GL_ELEMENT_ARRAY_BUFFER), count, batch);
+				}
+				for(int ux = 0; ux < st.textures.length; ux++) {
+					charge("texture", st.textures[ux], count, batch);
+				}
+				batch = 0;
+			}
+		}
+	}
+	/**
+	 * Shadow of the GL state, for spotting calls that change nothing.
+	 * Starts unknown, so the first call of each kind is never redundant.
+	 */
+	static final class StateTracker {
+		int program = UNKNOWN;
+		int unit = 0;
+		int framebuffer = UNKNOWN;
+		int renderbuffer = UNKNOWN;
+		final int[] textures = new int[32];
+		final HashMap<Integer, Integer> buffers = new HashMap<Integer, Integer>();
+		final HashMap<Integer, Boolean> caps = new HashMap<Integer, Boolean>();
+		final HashMap<Integer, Boolean> attributes = new HashMap<Integer, Boolean>();
+		/* program << 32 | location */
+		final HashMap<Long, Object> uniforms = new HashMap<Long, Object>();
+		/* last arguments of simple state setters */
+		final HashMap<Integer, Object[]> last = new HashMap<Integer, Object[]>();
+		StateTracker() {
+			Arrays.fill(textures, UNKNOWN);
+		}
+		int buffer(int target) {
+			final Integer id = buffers.get(target);
+			return id == null ? UNKNOWN : id;
+		}
+		int texture() { return textures[unit]; }
+		boolean flag(HashMap<Integer, Boolean> map, int key, boolean value) {
+			final Boolean prev = map.put(key, value);
+			return prev != null && prev == value;
+		}
+		boolean uniform(Object[] args, Object value) {
+			if(program == UNKNOWN) return false;
+			final long key = ((long)program << 32) | (asInt(args[0]) & 0xffffffffL);
+			final Object prev = uniforms.put(key, value);
+			if(prev == null) return false;
+			if(prev instanceof float[] && value instanceof float[]) return Arrays.equals((float[])prev, (float[])value);
+			return prev.equals(value);
+		}
+		void forget(int pgm) {
+			final Long lo = (long)pgm << 32;
+			final Iterator<Long> it = uniforms.keySet().iterator();
+			while(it.hasNext()) {
+				if((it.next() & 0xffffffff00000000L) == lo) it.remove();
+			}
+		}
+		/**
+		 * Apply a call.
+		 * @param rx Call.
+		 * @return true: call did not change the state.
+		 */
+		boolean redundant(Record rx) {
+			final Object[] args = rx.args;
+			switch(rx.op) {
+			case GLTrace.OP_USE_PROGRAM: {
+				final int next = asInt(args[0]);
+				final boolean same = program == next;
+				program = next;
+				return same;
+			}
+			case GLTrace.OP_LINK_PROGRAM:
+				forget(asInt(args[0]));
+				return false;
+			case GLTrace.OP_DELETE_PROGRAM:
+				forget(asInt(args[0]));
+				if(program == asInt(args[0])) program = UNKNOWN;
+				return false;
+			case GLTrace.OP_BIND_BUFFER: {
+				final Integer prev = buffers.put(asInt(args[0]), asInt(args[1]));
+				return prev != null && prev.intValue() == asInt(args[1]);
+			}
+			case GLTrace.OP_DELETE_BUFFERS: {
+				final int[] ids = (int[])args[1];
+				for(Map.Entry<Integer, Integer> me : buffers.entrySet()) {
+					for(int ix = 0; ix < ids.length; ix++) {
+						if(me.getValue().intValue() == ids[ix]) me.setValue(0);
+					}
+				}
+				return false;
+			}
+			case GLTrace.OP_ACTIVE_TEXTURE: {
+				final int next = asInt(args[0]) - GLES20.GL_TEXTURE0;
+				final boolean same = unit == next;
+				unit = next >= 0 && next < textures.length ? next : 0;
+				return same;
+			}
+			case GLTrace.OP_BIND_TEXTURE: {
+				final int next = asInt(args[1]);
+				final boolean same = textures[unit] == next;
+				textures[unit] = next;
+				return same;
+			}
+			case GLTrace.OP_DELETE_TEXTURES: {
+				final int[] ids = (int[])args[1];
+				for(int ux = 0; ux < textures.length; ux++) {
+					for(int ix = 0; ix < ids.length; ix++) {
+						if(textures[ux] == ids[ix]) textures[ux] = 0;
+					}
+				}
+				return false;
+			}
+			case GLTrace.OP_BIND_FRAMEBUFFER: {
+				final int next = asInt(args[1]);
+				final boolean same = framebuffer == next;
+				framebuffer = next;
+				return same;
+			}
+			case GLTrace.OP_BIND_RENDERBUFFER: {
+				final int next = asInt(args[1]);
+				final boolean same = renderbuffer == next;
+				renderbuffer = next;
+				return same;
+			}
+			case GLTrace.OP_ENABLE:
+				return flag(caps, asInt(args[0]), true);
+			case GLTrace.OP_DISABLE:
+				return flag(caps, asInt(args[0]), false);
+			case GLTrace.OP_ENABLE_VERTEX_ATTRIB_ARRAY:
+				return flag(attributes, asInt(args[0]), true);
+			case GLTrace.OP_DISABLE_VERTEX_ATTRIB_ARRAY:
+				return flag(attributes, asInt(args[0]), false);
+			case GLTrace.OP_UNIFORM1F:
+			case GLTrace.OP_UNIFORM1I:
+				return uniform(args, args[1]);
+			case GLTrace.OP_UNIFORM2FV:
+			case GLTrace.OP_UNIFORM3FV:
+			case GLTrace.OP_UNIFORM4FV:
+				return uniform(args, args[2]);
+			case GLTrace.OP_UNIFORM_MATRIX4FV:
+				return uniform(args, args[3]);
+			case GLTrace.OP_VIEWPORT:
+			case GLTrace.OP_CLEAR_COLOR:
+			case GLTrace.OP_BLEND_FUNC:
+			case GLTrace.OP_DEPTH_MASK: {
+				final Object[] prev = last.put(rx.op, args);
+				return prev != null && Arrays.equals(prev, args);
+			}
+			default:
+				return false;
+			}
+		}
+	}
+	/**
+	 * Print all reports.
+	 * @param ps Target.
+	 * @param top Number of objects to list.
+	 */
+	public void report(PrintStream ps, int top) {
+		ps.printf("%d frames, %d calls%s%n", frameStarts.size(), records.size(), truncated ? " (truncated)" : "");
+		reportFrames(ps);
+		reportCalls(ps);
+		reportRedundant(ps);
+		reportObjects(ps, top);
+	}
+	public void reportFrames(PrintStream ps) {
+		ps.println();
+		ps.println("frame     calls  draws   vertices  submit-us interval-us");
+		for(int fx = 0; fx < frameStarts.size(); fx++) {
+			final int start = frameStarts.get(fx);
+			final int stop = fx + 1 < frameStarts.size() ? frameStarts.get(fx + 1) : records.size();
+			int draws = 0;
+			long vertices = 0, nanos = 0;
+			for(int ix = start; ix < stop; ix++) {
+				final Record rx = records.get(ix);
+				nanos += rx.nanos;
+				final int count = drawCount(rx);
+				if(count >= 0) {
+					draws++;
+					vertices += count;
+				}
+			}
+			final long next = fx + 1 < frameTimes.size() ? frameTimes.get(fx + 1) : endTime;
+			final long interval = next != 0 ? next - frameTimes.get(fx) : 0;
+			ps.printf("%5d %9d %6d %10d %10.1f %11.1f%n", fx, stop - start, draws, vertices, nanos/1000.0, interval/1000.0);
+		}
+	}
+	public void reportCalls(PrintStream ps) {
+		final int frames = histogram.length;
+		final long[] totals = new long[GLTrace.count()];
+		final long[] nanos = new long[GLTrace.count()];
+		for(int ix = 0; ix < records.size(); ix++) {
+			final Record rx = records.get(ix);
+			totals[rx.op]++;
+			nanos[rx.op] += rx.nanos;
+		}
+		final Integer[] order = sorted(totals);
+		ps.println();
+		ps.println("call                            total   min/frame   avg/frame   max/frame    total-us  avg-ns");
+		for(int ix = 0; ix < order.length; ix++) {
+			final int op = order[ix];
+			if(totals[op] == 0) break;
+			int min = Integer.MAX_VALUE, max = 0;
+			long sum = 0;
+			for(int fx = 0; fx < frames; fx++) {
+				final int cx = histogram[fx][op];
+				min = Math.min(min, cx);
+				max = Math.max(max, cx);
+				sum += cx;
+			}
+			if(frames == 0) min = 0;
+			ps.printf("%-28s %9d %11d %11.1f %11d %11.1f %7d%n", GLTrace.name(op), totals[op], min,
+					frames == 0 ? 0.0 : (double)sum/frames, max, nanos[op]/1000.0, nanos[op]/totals[op]);
+		}
+	}
+	public void reportRedundant(PrintStream ps) {
+		final long[] totals = new long[GLTrace.count()];
+		for(int ix = 0; ix < records.size(); ix++) {
+			totals[records.get(ix).op]++;
+		}
+		final long[] counts = new long[redundant.length];
+		for(int ix = 0; ix < redundant.length; ix++) {
+			counts[ix] = redundant[ix];
+		}
+		final Integer[] order = sorted(counts);
+		ps.println();
+		ps.println("redundant call                  count  of-total");
+		for(int ix = 0; ix < order.length; ix++) {
+			final int op = order[ix];
+			if(counts[op] == 0) break;
+			ps.printf("%-28s %9d %8.1f%%%n", GLTrace.name(op), counts[op], 100.0*counts[op]/totals[op]);
+		}
+	}
+	public void reportObjects(PrintStream ps, int top) {
+		final ArrayList<ObjectCost> list = new ArrayList<ObjectCost>(objects.values());
+		Collections.sort(list, new Comparator<ObjectCost>() {
+			public int compare(ObjectCost lhs, ObjectCost rhs) {
+				return lhs.nanos < rhs.nanos ? 1 : (lhs.nanos > rhs.nanos ? -1 : lhs.name.compareTo(rhs.name));
+			}
+		});
+		ps.println();
+		ps.println("object             draws   vertices  batch-us  uploaded-bytes");
+		for(int ix = 0; ix < Math.min(top, list.size()); ix++) {
+			final ObjectCost oc = list.get(ix);
+			ps.printf("%-16s %7d %10d %9.1f %15d%n", oc.name, oc.draws, oc.vertices, oc.nanos/1000.0, oc.uploaded);
+		}
+	}
+	/**
+	 * Opcodes ordered by descending value.
+	 * @param values Value per opcode.
+	 * @return opcodes.
+	 */
+	static Integer[] sorted(final long[] values) {
+		final Integer[] order = new Integer[values.length];
+		for(int ix = 0; ix < order.length; ix++) {
+			order[ix] = ix;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer lhs, Integer rhs) {
+				final long lv = values[lhs], rv = values[rhs];
+				return lv < rv ? 1 : (lv > rv ? -1 : lhs.compareTo(rhs));
+			}
+		});
+		return order;
+	}
+	/**
+	 * Reissue every call against a backend.
+	 * @param gl Target backend.
+	 * @return elapsed nanoseconds.
+	 */
+	public long replay(GLES gl) {
+		if(gl == null) throw new IllegalArgumentException("gl");
+		final int[] scratch = new int[1];
+		final long start = System.nanoTime();
+		for(int ix = 0; ix < records.size(); ix++) {
+			final Record rx = records.get(ix);
+			final Object[] a = rx.args;
+			switch(rx.op) {
+			case GLTrace.OP_ACTIVE_TEXTURE: gl.glActiveTexture(asInt(a[0])); break;
+			case GLTrace.OP_ATTACH_SHADER: gl.glAttachShader(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_BIND_BUFFER: gl.glBindBuffer(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_BIND_FRAMEBUFFER: gl.glBindFramebuffer(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_BIND_RENDERBUFFER: gl.glBindRenderbuffer(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_BIND_TEXTURE: gl.glBindTexture(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_BLEND_FUNC: gl.glBlendFunc(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_BUFFER_DATA: gl.glBufferData(asInt(a[0]), asInt(a[1]), (Buffer)a[2], asInt(a[3])); break;
+			case GLTrace.OP_CHECK_FRAMEBUFFER_STATUS: gl.glCheckFramebufferStatus(asInt(a[0])); break;
+			case GLTrace.OP_CLEAR: gl.glClear(asInt(a[0])); break;
+			case GLTrace.OP_CLEAR_COLOR: gl.glClearColor(asFloat(a[0]), asFloat(a[1]), asFloat(a[2]), asFloat(a[3])); break;
+			case GLTrace.OP_COMPILE_SHADER: gl.glCompileShader(asInt(a[0])); break;
+			case GLTrace.OP_CREATE_PROGRAM: gl.glCreateProgram(); break;
+			case GLTrace.OP_CREATE_SHADER: gl.glCreateShader(asInt(a[0])); break;
+			case GLTrace.OP_DELETE_BUFFERS: gl.glDeleteBuffers(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_DELETE_FRAMEBUFFERS: gl.glDeleteFramebuffers(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_DELETE_PROGRAM: gl.glDeleteProgram(asInt(a[0])); break;
+			case GLTrace.OP_DELETE_RENDERBUFFERS: gl.glDeleteRenderbuffers(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_DELETE_SHADER: gl.glDeleteShader(asInt(a[0])); break;
+			case GLTrace.OP_DELETE_TEXTURES: gl.glDeleteTextures(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_DISABLE: gl.glDisable(asInt(a[0])); break;
+			case GLTrace.OP_DISABLE_VERTEX_ATTRIB_ARRAY: gl.glDisableVertexAttribArray(asInt(a[0])); break;
+			case GLTrace.OP_DRAW_ARRAYS: gl.glDrawArrays(asInt(a[0]), asInt(a[1]), asInt(a[2])); break;
+			case GLTrace.OP_DRAW_ELEMENTS: gl.glDrawElements(asInt(a[0]), asInt(a[1]), asInt(a[2]), (Buffer)a[3]); break;
+			case GLTrace.OP_DRAW_ELEMENTS_OFFSET: gl.glDrawElements(asInt(a[0]), asInt(a[1]), asInt(a[2]), asInt(a[3])); break;
+			case GLTrace.OP_ENABLE: gl.glEnable(asInt(a[0])); break;
+			case GLTrace.OP_ENABLE_VERTEX_ATTRIB_ARRAY: gl.glEnableVertexAttribArray(asInt(a[0])); break;
+			case GLTrace.OP_FINISH: gl.glFinish(); break;
+			case GLTrace.OP_FRAMEBUFFER_RENDERBUFFER: gl.glFramebufferRenderbuffer(asInt(a[0]), asInt(a[1]), asInt(a[2]), asInt(a[3])); break;
+			case GLTrace.OP_FRAMEBUFFER_TEXTURE_2D: gl.glFramebufferTexture2D(asInt(a[0]), asInt(a[1]), asInt(a[2]), asInt(a[3]), asInt(a[4])); break;
+			case GLTrace.OP_GEN_BUFFERS: gl.glGenBuffers(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_GEN_FRAMEBUFFERS: gl.glGenFramebuffers(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_GEN_RENDERBUFFERS: gl.glGenRenderbuffers(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_GEN_TEXTURES: gl.glGenTextures(asInt(a[0]), (int[])a[1], 0); break;
+			case GLTrace.OP_GET_ATTRIB_LOCATION: gl.glGetAttribLocation(asInt(a[0]), (String)a[1]); break;
+			case GLTrace.OP_GET_ERROR: gl.glGetError(); break;
+			case GLTrace.OP_GET_PROGRAM_INFO_LOG: gl.glGetProgramInfoLog(asInt(a[0])); break;
+			case GLTrace.OP_GET_PROGRAMIV: gl.glGetProgramiv(asInt(a[0]), asInt(a[1]), scratch, 0); break;
+			case GLTrace.OP_GET_SHADER_INFO_LOG: gl.glGetShaderInfoLog(asInt(a[0])); break;
+			case GLTrace.OP_GET_SHADERIV: gl.glGetShaderiv(asInt(a[0]), asInt(a[1]), scratch, 0); break;
+			case GLTrace.OP_GET_UNIFORM_LOCATION: gl.glGetUniformLocation(asInt(a[0]), (String)a[1]); break;
+			case GLTrace.OP_LINK_PROGRAM: gl.glLinkProgram(asInt(a[0])); break;
+			case GLTrace.OP_RENDERBUFFER_STORAGE: gl.glRenderbufferStorage(asInt(a[0]), asInt(a[1]), asInt(a[2]), asInt(a[3])); break;
+			case GLTrace.OP_SHADER_SOURCE: gl.glShaderSource(asInt(a[0]), (String)a[1]); break;
+			case GLTrace.OP_TEX_IMAGE_2D: gl.glTexImage2D(asInt(a[0]), asInt(a[1]), asInt(a[2]), asInt(a[3]), asInt(a[4]), asInt(a[5]), asInt(a[6]), asInt(a[7]), (Buffer)a[8]); break;
+			case GLTrace.OP_TEX_IMAGE_2D_BITMAP: gl.texImage2D(asInt(a[0]), asInt(a[1]), null, asInt(a[3])); break;
+			case GLTrace.OP_TEX_PARAMETERI: gl.glTexParameteri(asInt(a[0]), asInt(a[1]), asInt(a[2])); break;
+			case GLTrace.OP_UNIFORM1F: gl.glUniform1f(asInt(a[0]), asFloat(a[1])); break;
+			case GLTrace.OP_UNIFORM1I: gl.glUniform1i(asInt(a[0]), asInt(a[1])); break;
+			case GLTrace.OP_UNIFORM2FV: gl.glUniform2fv(asInt(a[0]), asInt(a[1]), (float[])a[2], 0); break;
+			case GLTrace.OP_UNIFORM3FV: gl.glUniform3fv(asInt(a[0]), asInt(a[1]), (float[])a[2], 0); break;
+			case GLTrace.OP_UNIFORM4FV: gl.glUniform4fv(asInt(a[0]), asInt(a[1]), (float[])a[2], 0); break;
+			case GLTrace.OP_UNIFORM_MATRIX4FV: gl.glUniformMatrix4fv(asInt(a[0]), asInt(a[1]), asBoolean(a[2]), (float[])a[3], 0); break;
+			case GLTrace.OP_USE_PROGRAM: gl.glUseProgram(asInt(a[0])); break;
+			case GLTrace.OP_VERTEX_ATTRIB_POINTER: gl.glVertexAttribPointer(asInt(a[0]), asInt(a[1]), asInt(a[2]), asBoolean(a[3]), asInt(a[4]), (Buffer)a[5]); break;
+			case GLTrace.OP_VERTEX_ATTRIB_POINTER_OFFSET: gl.glVertexAttribPointer(asInt(a[0]), asInt(a[1]), asInt(a[2]), asBoolean(a[3]), asInt(a[4]), asInt(a[5])); break;
+			case GLTrace.OP_VIEWPORT: gl.glViewport(asInt(a[0]), asInt(a[1]), asInt(a[2]), asInt(a[3])); break;
+			case GLTrace.OP_GET_INTEGERV: gl.glGetIntegerv(asInt(a[0]), scratch, 0); break;
+			case GLTrace.OP_DEPTH_MASK: gl.glDepthMask(asBoolean(a[0])); break;
+			case GLTrace.OP_GET_STRING: gl.glGetString(asInt(a[0])); break;
+			default:
+				break;
+			}
+		}
+		return System.nanoTime() - start;
+	}
+	/**
+	 * Command line: TraceAnalyzer trace-file [replay-iterations [top-objects]].
+	 * Prints the reports, then replays the trace against NullGLES.
+	 * @param args Arguments.
+	 */
+	public static void main(String[] args) {
+		if(args.length < 1) {
+			System.err.println("usage: TraceAnalyzer trace-file [replay-iterations [top-objects]]");
+			System.exit(2);
+		}
+		final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		final int top = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		final TraceAnalyzer ta;
+		try {
+			final FileInputStream fis = new FileInputStream(args[0]);
+			try {
+				ta = new TraceAnalyzer(fis);
+			}
+			finally {
+				fis.close();
+			}
+		}
+		catch(IOException ex) {
+			System.err.println(args[0] + ": " + ex.getMessage());
+			System.exit(1);
+			return;
+		}
+		ta.report(System.out, top);
+		if(iterations > 0 && ta.getCallCount() > 0) {
+			final NullGLES gl = new NullGLES();
+			// warm up
+			ta.replay(gl);
+			long nanos = 0;
+			for(int ix = 0; ix < iterations; ix++) {
+				nanos += ta.replay(gl);
+			}
+			final double perPass = (double)nanos/iterations;
+			System.out.println();
+			System.out.printf("replay (NullGLES): %.1f us per pass, %.1f ns per call%n",
+					perPass/1000.0, perPass/ta.getCallCount());
+		}
+	}
+}
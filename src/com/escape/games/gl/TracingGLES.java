@@ -0,0 +1,733 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.gl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+import android.graphics.Bitmap;
+
+/**
+ * Backend decorator that forwards every call and writes it to a binary trace; see GLTrace for the format.
+ * Each record carries the call's arguments, Buffer sizes and the time spent in the delegate.
+ * Times measure submission on the CPU; GL executes asynchronously.
+ * The first write error stops the trace (see getError()); calls still reach the delegate.
+ * GL thread only.
+ * @author escape-llc
+ *
+ */
+public final class TracingGLES implements GLES {
+	/* longest string recorded; keeps writeUTF() under its 64K limit */
+	static final int MAX_STRING = 16384;
+	final GLES gl;
+	final DataOutputStream out;
+	int frames;
+	long calls;
+	IOException error;
+	boolean closed;
+	/**
+	 * Ctor.
+	 * Writes the trace header.
+	 * @param gl Delegate backend.
+	 * @param os Trace destination; closed by close().
+	 * @throws IOException on write failure.
+	 */
+	public TracingGLES(GLES gl, OutputStream os) throws IOException {
+		if(gl == null) throw new IllegalArgumentException("gl");
+		if(os == null) throw new IllegalArgumentException("os");
+		this.gl = gl;
+		this.out = new DataOutputStream(new BufferedOutputStream(os, 65536));
+		out.writeInt(GLTrace.MAGIC);
+		out.writeInt(GLTrace.VERSION);
+		out.writeInt(GLTrace.count());
+		for(int ix = 0; ix < GLTrace.count(); ix++) {
+			out.writeUTF(GLTrace.NAMES[ix]);
+			out.writeUTF(GLTrace.SIGNATURES[ix]);
+		}
+	}
+	/**
+	 * Return the delegate backend.
+	 * @return delegate.
+	 */
+	public GLES getDelegate() { return gl; }
+	/**
+	 * Return the number of frames marked.
+	 * @return frame count.
+	 */
+	public int getFrameCount() { return frames; }
+	/**
+	 * Return the number of calls recorded.
+	 * @return call count.
+	 */
+	public long getCallCount() { return calls; }
+	/**
+	 * Return the write error that stopped the trace.
+	 * @return error or NULL.
+	 */
+	public IOException getError() { return error; }
+	/**
+	 * Mark the start of a frame.
+	 */
+	public void frame() {
+		if(error != null || closed) return;
+		try {
+			out.writeByte(GLTrace.OP_FRAME);
+			out.writeLong(System.nanoTime());
+			frames++;
+		}
+		catch(IOException ex) {
+			error = ex;
+		}
+	}
+	/**
+	 * End the trace and close the stream.
+	 * Further calls are forwarded but not recorded.
+	 * @throws IOException the write error, if any.
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		try {
+			if(error == null) {
+				out.writeByte(GLTrace.OP_END);
+				out.writeLong(System.nanoTime());
+			}
+		}
+		catch(IOException ex) {
+			error = ex;
+		}
+		finally {
+			try {
+				out.close();
+			}
+			catch(IOException ex) {
+				if(error == null) error = ex;
+			}
+		}
+		if(error != null) throw error;
+	}
+	/**
+	 * Start a record.
+	 * @param op Opcode.
+	 * @param t0 System.nanoTime() before the delegate call.
+	 * @return true: write the arguments; false: not recording.
+	 */
+	boolean record(int op, long t0) {
+		final long dt = System.nanoTime() - t0;
+		if(error != null || closed) return false;
+		try {
+			out.writeByte(op);
+			out.writeInt(dt > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)dt);
+			calls++;
+			return true;
+		}
+		catch(IOException ex) {
+			error = ex;
+			return false;
+		}
+	}
+	void putInt(int value) {
+		if(error != null) return;
+		try {
+			out.writeInt(value);
+		}
+		catch(IOException ex) {
+			error = ex;
+		}
+	}
+	void putFloat(float value) {
+		if(error != null) return;
+		try {
+			out.writeFloat(value);
+		}
+		catch(IOException ex) {
+			error = ex;
+		}
+	}
+	void putBoolean(boolean value) {
+		if(error != null) return;
+		try {
+			out.writeByte(value ? 1 : 0);
+		}
+		catch(IOException ex) {
+			error = ex;
+		}
+	}
+	void putString(String value) {
+		if(error != null) return;
+		final String sx = value == null ? "" : (value.length() > MAX_STRING ? value.substring(0, MAX_STRING) : value);
+		try {
+			out.writeUTF(sx);
+		}
+		catch(IOException ex) {
+			error = ex;
+		}
+	}
+	void putInts(int[] values, int offset, int length) {
+		putInt(length);
+		for(int ix = 0; ix < length; ix++) {
+			putInt(values[offset + ix]);
+		}
+	}
+	void putFloats(float[] values, int offset, int length) {
+		putInt(length);
+		for(int ix = 0; ix < length; ix++) {
+			putFloat(values[offset + ix]);
+		}
+	}
+	void putBuffer(Buffer bx) {
+		putInt(bx == null ? 0 : bytes(bx));
+	}
+	void putBitmap(Bitmap bm) {
+		putInt(bm == null ? 0 : bm.getWidth());
+		putInt(bm == null ? 0 : bm.getHeight());
+	}
+	/**
+	 * Remaining size of a Buffer in bytes.
+	 * @param bx Source.
+	 * @return bytes.
+	 */
+	static int bytes(Buffer bx) {
+		final int count = bx.remaining();
+		if(bx instanceof ByteBuffer) return count;
+		if(bx instanceof ShortBuffer || bx instanceof CharBuffer) return count*2;
+		if(bx instanceof LongBuffer || bx instanceof DoubleBuffer) return count*8;
+		// IntBuffer, FloatBuffer
+		return count*4;
+	}
+	public void glActiveTexture(int texture) {
+		final long t0 = System.nanoTime();
+		gl.glActiveTexture(texture);
+		if(record(GLTrace.OP_ACTIVE_TEXTURE, t0)) {
+			putInt(texture);
+		}
+	}
+	public void glAttachShader(int program, int shader) {
+		final long t0 = System.nanoTime();
+		gl.glAttachShader(program, shader);
+		if(record(GLTrace.OP_ATTACH_SHADER, t0)) {
+			putInt(program);
+			putInt(shader);
+		}
+	}
+	public void glBindBuffer(int target, int buffer) {
+		final long t0 = System.nanoTime();
+		gl.glBindBuffer(target, buffer);
+		if(record(GLTrace.OP_BIND_BUFFER, t0)) {
+			putInt(target);
+			putInt(buffer);
+		}
+	}
+	public void glBindFramebuffer(int target, int framebuffer) {
+		final long t0 = System.nanoTime();
+		gl.glBindFramebuffer(target, framebuffer);
+		if(record(GLTrace.OP_BIND_FRAMEBUFFER, t0)) {
+			putInt(target);
+			putInt(framebuffer);
+		}
+	}
+	public void glBindRenderbuffer(int target, int renderbuffer) {
+		final long t0 = System.nanoTime();
+		gl.glBindRenderbuffer(target, renderbuffer);
+		if(record(GLTrace.OP_BIND_RENDERBUFFER, t0)) {
+			putInt(target);
+			putInt(renderbuffer);
+		}
+	}
+	public void glBindTexture(int target, int texture) {
+		final long t0 = System.nanoTime();
+		gl.glBindTexture(target, texture);
+		if(record(GLTrace.OP_BIND_TEXTURE, t0)) {
+			putInt(target);
+			putInt(texture);
+		}
+	}
+	public void glBlendFunc(int sfactor, int dfactor) {
+		final long t0 = System.nanoTime();
+		gl.glBlendFunc(sfactor, dfactor);
+		if(record(GLTrace.OP_BLEND_FUNC, t0)) {
+			putInt(sfactor);
+			putInt(dfactor);
+		}
+	}
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		final long t0 = System.nanoTime();
+		gl.glBufferData(target, size, data, usage);
+		if(record(GLTrace.OP_BUFFER_DATA, t0)) {
+			putInt(target);
+			putInt(size);
+			putBuffer(data);
+			putInt(usage);
+		}
+	}
+	public int glCheckFramebufferStatus(int target) {
+		final long t0 = System.nanoTime();
+		final int rv = gl.glCheckFramebufferStatus(target);
+		if(record(GLTrace.OP_CHECK_FRAMEBUFFER_STATUS, t0)) {
+			putInt(target);
+			putInt(rv);
+		}
+		return rv;
+	}
+	public void glClear(int mask) {
+		final long t0 = System.nanoTime();
+		gl.glClear(mask);
+		if(record(GLTrace.OP_CLEAR, t0)) {
+			putInt(mask);
+		}
+	}
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		final long t0 = System.nanoTime();
+		gl.glClearColor(red, green, blue, alpha);
+		if(record(GLTrace.OP_CLEAR_COLOR, t0)) {
+			putFloat(red);
+			putFloat(green);
+			putFloat(blue);
+			putFloat(alpha);
+		}
+	}
+	public void glCompileShader(int shader) {
+		final long t0 = System.nanoTime();
+		gl.glCompileShader(shader);
+		if(record(GLTrace.OP_COMPILE_SHADER, t0)) {
+			putInt(shader);
+		}
+	}
+	public int glCreateProgram() {
+		final long t0 = System.nanoTime();
+		final int rv = gl.glCreateProgram();
+		if(record(GLTrace.OP_CREATE_PROGRAM, t0)) {
+			putInt(rv);
+		}
+		return rv;
+	}
+	public int glCreateShader(int type) {
+		final long t0 = System.nanoTime();
+		final int rv = gl.glCreateShader(type);
+		if(record(GLTrace.OP_CREATE_SHADER, t0)) {
+			putInt(type);
+			putInt(rv);
+		}
+		return rv;
+	}
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glDeleteBuffers(n, buffers, offset);
+		if(record(GLTrace.OP_DELETE_BUFFERS, t0)) {
+			putInt(n);
+			putInts(buffers, offset, n);
+		}
+	}
+	public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glDeleteFramebuffers(n, framebuffers, offset);
+		if(record(GLTrace.OP_DELETE_FRAMEBUFFERS, t0)) {
+			putInt(n);
+			putInts(framebuffers, offset, n);
+		}
+	}
+	public void glDeleteProgram(int program) {
+		final long t0 = System.nanoTime();
+		gl.glDeleteProgram(program);
+		if(record(GLTrace.OP_DELETE_PROGRAM, t0)) {
+			putInt(program);
+		}
+	}
+	public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glDeleteRenderbuffers(n, renderbuffers, offset);
+		if(record(GLTrace.OP_DELETE_RENDERBUFFERS, t0)) {
+			putInt(n);
+			putInts(renderbuffers, offset, n);
+		}
+	}
+	public void glDeleteShader(int shader) {
+		final long t0 = System.nanoTime();
+		gl.glDeleteShader(shader);
+		if(record(GLTrace.OP_DELETE_SHADER, t0)) {
+			putInt(shader);
+		}
+	}
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glDeleteTextures(n, textures, offset);
+		if(record(GLTrace.OP_DELETE_TEXTURES, t0)) {
+			putInt(n);
+			putInts(textures, offset, n);
+		}
+	}
+	public void glDisable(int cap) {
+		final long t0 = System.nanoTime();
+		gl.glDisable(cap);
+		if(record(GLTrace.OP_DISABLE, t0)) {
+			putInt(cap);
+		}
+	}
+	public void glDisableVertexAttribArray(int index) {
+		final long t0 = System.nanoTime();
+		gl.glDisableVertexAttribArray(index);
+		if(record(GLTrace.OP_DISABLE_VERTEX_ATTRIB_ARRAY, t0)) {
+			putInt(index);
+		}
+	}
+	public void glDrawArrays(int mode, int first, int count) {
+		final long t0 = System.nanoTime();
+		gl.glDrawArrays(mode, first, count);
+		if(record(GLTrace.OP_DRAW_ARRAYS, t0)) {
+			putInt(mode);
+			putInt(first);
+			putInt(count);
+		}
+	}
+	public void glDrawElements(int mode, int count, int type, Buffer indices) {
+		final long t0 = System.nanoTime();
+		gl.glDrawElements(mode, count, type, indices);
+		if(record(GLTrace.OP_DRAW_ELEMENTS, t0)) {
+			putInt(mode);
+			putInt(count);
+			putInt(type);
+			putBuffer(indices);
+		}
+	}
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glDrawElements(mode, count, type, offset);
+		if(record(GLTrace.OP_DRAW_ELEMENTS_OFFSET, t0)) {
+			putInt(mode);
+			putInt(count);
+			putInt(type);
+			putInt(offset);
+		}
+	}
+	public void glEnable(int cap) {
+		final long t0 = System.nanoTime();
+		gl.glEnable(cap);
+		if(record(GLTrace.OP_ENABLE, t0)) {
+			putInt(cap);
+		}
+	}
+	public void glEnableVertexAttribArray(int index) {
+		final long t0 = System.nanoTime();
+		gl.glEnableVertexAttribArray(index);
+		if(record(GLTrace.OP_ENABLE_VERTEX_ATTRIB_ARRAY, t0)) {
+			putInt(index);
+		}
+	}
+	public void glFinish() {
+		final long t0 = System.nanoTime();
+		gl.glFinish();
+		record(GLTrace.OP_FINISH, t0);
+	}
+	public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+		final long t0 = System.nanoTime();
+		gl.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+		if(record(GLTrace.OP_FRAMEBUFFER_RENDERBUFFER, t0)) {
+			putInt(target);
+			putInt(attachment);
+			putInt(renderbuffertarget);
+			putInt(renderbuffer);
+		}
+	}
+	public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+		final long t0 = System.nanoTime();
+		gl.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+		if(record(GLTrace.OP_FRAMEBUFFER_TEXTURE_2D, t0)) {
+			putInt(target);
+			putInt(attachment);
+			putInt(textarget);
+			putInt(texture);
+			putInt(level);
+		}
+	}
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGenBuffers(n, buffers, offset);
+		if(record(GLTrace.OP_GEN_BUFFERS, t0)) {
+			putInt(n);
+			putInts(buffers, offset, n);
+		}
+	}
+	public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGenFramebuffers(n, framebuffers, offset);
+		if(record(GLTrace.OP_GEN_FRAMEBUFFERS, t0)) {
+			putInt(n);
+			putInts(framebuffers, offset, n);
+		}
+	}
+	public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGenRenderbuffers(n, renderbuffers, offset);
+		if(record(GLTrace.OP_GEN_RENDERBUFFERS, t0)) {
+			putInt(n);
+			putInts(renderbuffers, offset, n);
+		}
+	}
+	public void glGenTextures(int n, int[] textures, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGenTextures(n, textures, offset);
+		if(record(GLTrace.OP_GEN_TEXTURES, t0)) {
+			putInt(n);
+			putInts(textures, offset, n);
+		}
+	}
+	public int glGetAttribLocation(int program, String name) {
+		final long t0 = System.nanoTime();
+		final int rv = gl.glGetAttribLocation(program, name);
+		if(record(GLTrace.OP_GET_ATTRIB_LOCATION, t0)) {
+			putInt(program);
+			putString(name);
+			putInt(rv);
+		}
+		return rv;
+	}
+	public int glGetError() {
+		final long t0 = System.nanoTime();
+		final int rv = gl.glGetError();
+		if(record(GLTrace.OP_GET_ERROR, t0)) {
+			putInt(rv);
+		}
+		return rv;
+	}
+	public String glGetString(int name) {
+		final long t0 = System.nanoTime();
+		final String rv = gl.glGetString(name);
+		if(record(GLTrace.OP_GET_STRING, t0)) {
+			putInt(name);
+		}
+		return rv;
+	}
+	public String glGetProgramInfoLog(int program) {
+		final long t0 = System.nanoTime();
+		final String rv = gl.glGetProgramInfoLog(program);
+		if(record(GLTrace.OP_GET_PROGRAM_INFO_LOG, t0)) {
+			putInt(program);
+		}
+		return rv;
+	}
+	public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGetProgramiv(program, pname, params, offset);
+		if(record(GLTrace.OP_GET_PROGRAMIV, t0)) {
+			putInt(program);
+			putInt(pname);
+			putInt(params[offset]);
+		}
+	}
+	public String glGetShaderInfoLog(int shader) {
+		final long t0 = System.nanoTime();
+		final String rv = gl.glGetShaderInfoLog(shader);
+		if(record(GLTrace.OP_GET_SHADER_INFO_LOG, t0)) {
+			putInt(shader);
+		}
+		return rv;
+	}
+	public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGetShaderiv(shader, pname, params, offset);
+		if(record(GLTrace.OP_GET_SHADERIV, t0)) {
+			putInt(shader);
+			putInt(pname);
+			putInt(params[offset]);
+		}
+	}
+	public int glGetUniformLocation(int program, String name) {
+		final long t0 = System.nanoTime();
+		final int rv = gl.glGetUniformLocation(program, name);
+		if(record(GLTrace.OP_GET_UNIFORM_LOCATION, t0)) {
+			putInt(program);
+			putString(name);
+			putInt(rv);
+		}
+		return rv;
+	}
+	public void glLinkProgram(int program) {
+		final long t0 = System.nanoTime();
+		gl.glLinkProgram(program);
+		if(record(GLTrace.OP_LINK_PROGRAM, t0)) {
+			putInt(program);
+		}
+	}
+	public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+		final long t0 = System.nanoTime();
+		gl.glRenderbufferStorage(target, internalformat, width, height);
+		if(record(GLTrace.OP_RENDERBUFFER_STORAGE, t0)) {
+			putInt(target);
+			putInt(internalformat);
+			putInt(width);
+			putInt(height);
+		}
+	}
+	public void glShaderSource(int shader, String string) {
+		final long t0 = System.nanoTime();
+		gl.glShaderSource(shader, string);
+		if(record(GLTrace.OP_SHADER_SOURCE, t0)) {
+			putInt(shader);
+			putString(string);
+		}
+	}
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		final long t0 = System.nanoTime();
+		gl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+		if(record(GLTrace.OP_TEX_IMAGE_2D, t0)) {
+			putInt(target);
+			putInt(level);
+			putInt(internalformat);
+			putInt(width);
+			putInt(height);
+			putInt(border);
+			putInt(format);
+			putInt(type);
+			putBuffer(pixels);
+		}
+	}
+	public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+		final long t0 = System.nanoTime();
+		gl.texImage2D(target, level, bitmap, border);
+		if(record(GLTrace.OP_TEX_IMAGE_2D_BITMAP, t0)) {
+			putInt(target);
+			putInt(level);
+			putBitmap(bitmap);
+			putInt(border);
+		}
+	}
+	public void glTexParameteri(int target, int pname, int param) {
+		final long t0 = System.nanoTime();
+		gl.glTexParameteri(target, pname, param);
+		if(record(GLTrace.OP_TEX_PARAMETERI, t0)) {
+			putInt(target);
+			putInt(pname);
+			putInt(param);
+		}
+	}
+	public void glUniform1f(int location, float x) {
+		final long t0 = System.nanoTime();
+		gl.glUniform1f(location, x);
+		if(record(GLTrace.OP_UNIFORM1F, t0)) {
+			putInt(location);
+			putFloat(x);
+		}
+	}
+	public void glUniform1i(int location, int x) {
+		final long t0 = System.nanoTime();
+		gl.glUniform1i(location, x);
+		if(record(GLTrace.OP_UNIFORM1I, t0)) {
+			putInt(location);
+			putInt(x);
+		}
+	}
+	public void glUniform2fv(int location, int count, float[] v, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glUniform2fv(location, count, v, offset);
+		if(record(GLTrace.OP_UNIFORM2FV, t0)) {
+			putInt(location);
+			putInt(count);
+			putFloats(v, offset, 2*count);
+		}
+	}
+	public void glUniform3fv(int location, int count, float[] v, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glUniform3fv(location, count, v, offset);
+		if(record(GLTrace.OP_UNIFORM3FV, t0)) {
+			putInt(location);
+			putInt(count);
+			putFloats(v, offset, 3*count);
+		}
+	}
+	public void glUniform4fv(int location, int count, float[] v, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glUniform4fv(location, count, v, offset);
+		if(record(GLTrace.OP_UNIFORM4FV, t0)) {
+			putInt(location);
+			putInt(count);
+			putFloats(v, offset, 4*count);
+		}
+	}
+	public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glUniformMatrix4fv(location, count, transpose, value, offset);
+		if(record(GLTrace.OP_UNIFORM_MATRIX4FV, t0)) {
+			putInt(location);
+			putInt(count);
+			putBoolean(transpose);
+			putFloats(value, offset, 16*count);
+		}
+	}
+	public void glUseProgram(int program) {
+		final long t0 = System.nanoTime();
+		gl.glUseProgram(program);
+		if(record(GLTrace.OP_USE_PROGRAM, t0)) {
+			putInt(program);
+		}
+	}
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+		final long t0 = System.nanoTime();
+		gl.glVertexAttribPointer(indx, size, type, normalized, stride, ptr);
+		if(record(GLTrace.OP_VERTEX_ATTRIB_POINTER, t0)) {
+			putInt(indx);
+			putInt(size);
+			putInt(type);
+			putBoolean(normalized);
+			putInt(stride);
+			putBuffer(ptr);
+		}
+	}
+	public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+		if(record(GLTrace.OP_VERTEX_ATTRIB_POINTER_OFFSET, t0)) {
+			putInt(indx);
+			putInt(size);
+			putInt(type);
+			putBoolean(normalized);
+			putInt(stride);
+			putInt(offset);
+		}
+	}
+	public void glViewport(int x, int y, int width, int height) {
+		final long t0 = System.nanoTime();
+		gl.glViewport(x, y, width, height);
+		if(record(GLTrace.OP_VIEWPORT, t0)) {
+			putInt(x);
+			putInt(y);
+			putInt(width);
+			putInt(height);
+		}
+	}
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		final long t0 = System.nanoTime();
+		gl.glGetIntegerv(pname, params, offset);
+		if(record(GLTrace.OP_GET_INTEGERV, t0)) {
+			putInt(pname);
+			putInt(params[offset]);
+		}
+	}
+	public void glDepthMask(boolean flag) {
+		final long t0 = System.nanoTime();
+		gl.glDepthMask(flag);
+		if(record(GLTrace.OP_DEPTH_MASK, t0)) {
+			putBoolean(flag);
+		}
+	}
+}
@@ -0,0 +1,601 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.math;
+
+/**
+ * 4x4 matrix operations on column-major float[16], same layout and conventions as android.opengl.Matrix.
+ * Pure Java, so code using it also runs on a plain JVM.
+ * Nothing allocates; results go to caller-provided arrays.
+ * Affine fast paths (bottom row 0 0 0 1) skip the work a general 4x4 operation spends on the projective row.
+ * Unless noted, a result may not alias an input.
+ * @author escape-llc
+ *
+ */
+public final class Mat4 {
+	private Mat4() { }
+	/**
+	 * Set to identity.
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 */
+	public static void setIdentity(float[] mm, int off) {
+		for(int ix = 0; ix < 16; ix++) {
+			mm[off + ix] = 0f;
+		}
+		mm[off + 0] = 1f;
+		mm[off + 5] = 1f;
+		mm[off + 10] = 1f;
+		mm[off + 15] = 1f;
+	}
+	/**
+	 * Multiply result = lhs * rhs.
+	 * result may not alias lhs or rhs.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param lhs Left matrix.
+	 * @param loff Offset into lhs.
+	 * @param rhs Right matrix.
+	 * @param rroff Offset into rhs.
+	 */
+	public static void multiply(float[] result, int roff, float[] lhs, int loff, float[] rhs, int rroff) {
+		for(int col = 0; col < 4; col++) {
+			final float r0 = rhs[rroff + col*4 + 0];
+			final float r1 = rhs[rroff + col*4 + 1];
+			final float r2 = rhs[rroff + col*4 + 2];
+			final float r3 = rhs[rroff + col*4 + 3];
+			for(int row = 0; row < 4; row++) {
+				result[roff + col*4 + row] =
+					lhs[loff + row]*r0 + lhs[loff + 4 + row]*r1 + lhs[loff + 8 + row]*r2 + lhs[loff + 12 + row]*r3;
+			}
+		}
+	}
+	/**
+	 * Multiply result = lhs * rhs for affine matrices.
+	 * Bottom rows are assumed to be 0 0 0 1 and are not read.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param lhs Left matrix.
+	 * @param loff Offset into lhs.
+	 * @param rhs Right matrix.
+	 * @param rroff Offset into rhs.
+	 */
+	public static void multiplyAffine(float[] result, int roff, float[] lhs, int loff, float[] rhs, int rroff) {
+		final float l0 = lhs[loff + 0], l1 = lhs[loff + 1], l2 = lhs[loff + 2];
+		final float l4 = lhs[loff + 4], l5 = lhs[loff + 5], l6 = lhs[loff + 6];
+		final float l8 = lhs[loff + 8], l9 = lhs[loff + 9], l10 = lhs[loff + 10];
+		for(int col = 0; col < 4; col++) {
+			final float r0 = rhs[rroff + col*4 + 0];
+			final float r1 = rhs[rroff + col*4 + 1];
+			final float r2 = rhs[rroff + col*4 + 2];
+			result[roff + col*4 + 0] = l0*r0 + l4*r1 + l8*r2;
+			result[roff + col*4 + 1] = l1*r0 + l5*r1 + l9*r2;
+			result[roff + col*4 + 2] = l2*r0 + l6*r1 + l10*r2;
+			result[roff + col*4 + 3] = 0f;
+		}
+		result[roff + 12] += lhs[loff + 12];
+		result[roff + 13] += lhs[loff + 13];
+		result[roff + 14] += lhs[loff + 14];
+		result[roff + 15] = 1f;
+	}
+	/**
+	 * Multiply result = mm * vec for a 4-component vector.
+	 * Same as android.opengl.Matrix.multiplyMV().
+	 * @param result Target vector.
+	 * @param roff Offset into result.
+	 * @param mm Matrix.
+	 * @param moff Offset into mm.
+	 * @param vec Source vector.
+	 * @param voff Offset into vec.
+	 */
+	public static void multiplyVec4(float[] result, int roff, float[] mm, int moff, float[] vec, int voff) {
+		final float x = vec[voff], y = vec[voff + 1], z = vec[voff + 2], w = vec[voff + 3];
+		for(int row = 0; row < 4; row++) {
+			result[roff + row] = mm[moff + row]*x + mm[moff + 4 + row]*y + mm[moff + 8 + row]*z + mm[moff + 12 + row]*w;
+		}
+	}
+	/**
+	 * Transform a point by an affine matrix.
+	 * result may alias anything.
+	 * @param result Target x, y, z.
+	 * @param roff Offset into result.
+	 * @param mm Matrix.
+	 * @param moff Offset into mm.
+	 */
+	public static void transformPoint(float[] result, int roff, float[] mm, int moff, float x, float y, float z) {
+		final float rx = mm[moff + 0]*x + mm[moff + 4]*y + mm[moff + 8]*z + mm[moff + 12];
+		final float ry = mm[moff + 1]*x + mm[moff + 5]*y + mm[moff + 9]*z + mm[moff + 13];
+		final float rz = mm[moff + 2]*x + mm[moff + 6]*y + mm[moff + 10]*z + mm[moff + 14];
+		result[roff] = rx;
+		result[roff + 1] = ry;
+		result[roff + 2] = rz;
+	}
+	/**
+	 * Set translate * rotate * scale directly, without matrix multiplies.
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 * @param tx Translate x.
+	 * @param ty Translate y.
+	 * @param tz Translate z.
+	 * @param qq Unit quaternion x, y, z, w; see Quat.
+	 * @param qoff Offset into qq.
+	 * @param sx Scale x.
+	 * @param sy Scale y.
+	 * @param sz Scale z.
+	 */
+	public static void setTRS(float[] mm, int off, float tx, float ty, float tz, float[] qq, int qoff, float sx, float sy, float sz) {
+		final float x = qq[qoff], y = qq[qoff + 1], z = qq[qoff + 2], w = qq[qoff + 3];
+		final float x2 = x + x, y2 = y + y, z2 = z + z;
+		final float xx = x*x2, yy = y*y2, zz = z*z2;
+		final float xy = x*y2, xz = x*z2, yz = y*z2;
+		final float wx = w*x2, wy = w*y2, wz = w*z2;
+		mm[off + 0] = (1f - yy - zz)*sx;
+		mm[off + 1] = (xy + wz)*sx;
+		mm[off + 2] = (xz - wy)*sx;
+		mm[off + 3] = 0f;
+		mm[off + 4] = (xy - wz)*sy;
+		mm[off + 5] = (1f - xx - zz)*sy;
+		mm[off + 6] = (yz + wx)*sy;
+		mm[off + 7] = 0f;
+		mm[off + 8] = (xz + wy)*sz;
+		mm[off + 9] = (yz - wx)*sz;
+		mm[off + 10] = (1f - xx - yy)*sz;
+		mm[off + 11] = 0f;
+		mm[off + 12] = tx;
+		mm[off + 13] = ty;
+		mm[off + 14] = tz;
+		mm[off + 15] = 1f;
+	}
+	/**
+	 * Post-multiply by a translation, in place.
+	 * Same as android.opengl.Matrix.translateM(mm, off, x, y, z).
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 */
+	public static void translate(float[] mm, int off, float x, float y, float z) {
+		for(int row = 0; row < 4; row++) {
+			mm[off + 12 + row] += mm[off + row]*x + mm[off + 4 + row]*y + mm[off + 8 + row]*z;
+		}
+	}
+	/**
+	 * Post-multiply by a scale, in place.
+	 * Same as android.opengl.Matrix.scaleM(mm, off, x, y, z).
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 */
+	public static void scale(float[] mm, int off, float x, float y, float z) {
+		for(int row = 0; row < 4; row++) {
+			mm[off + row] *= x;
+			mm[off + 4 + row] *= y;
+			mm[off + 8 + row] *= z;
+		}
+	}
+	/**
+	 * Post-multiply by a rotation about an axis, in place.
+	 * Same as android.opengl.Matrix.rotateM(mm, off, a, x, y, z) without the temporary arrays.
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 * @param deg Angle in degrees.
+	 */
+	public static void rotate(float[] mm, int off, float deg, float x, float y, float z) {
+		final double rad = Math.toRadians(deg);
+		final float s = (float)Math.sin(rad);
+		final float c = (float)Math.cos(rad);
+		final float len = length(x, y, z);
+		if(len != 1f) {
+			final float rl = 1f/len;
+			x *= rl;
+			y *= rl;
+			z *= rl;
+		}
+		final float nc = 1f - c;
+		final float xy = x*y, yz = y*z, zx = z*x;
+		final float xs = x*s, ys = y*s, zs = z*s;
+		final float r00 = x*x*nc + c, r01 = xy*nc - zs, r02 = zx*nc + ys;
+		final float r10 = xy*nc + zs, r11 = y*y*nc + c, r12 = yz*nc - xs;
+		final float r20 = zx*nc - ys, r21 = yz*nc + xs, r22 = z*z*nc + c;
+		for(int row = 0; row < 4; row++) {
+			final float m0 = mm[off + row], m1 = mm[off + 4 + row], m2 = mm[off + 8 + row];
+			mm[off + row] = m0*r00 + m1*r10 + m2*r20;
+			mm[off + 4 + row] = m0*r01 + m1*r11 + m2*r21;
+			mm[off + 8 + row] = m0*r02 + m1*r12 + m2*r22;
+		}
+	}
+	/**
+	 * Invert a rigid transform (rotation and translation only).
+	 * Transposes the rotation instead of a general inverse; undefined if the matrix has scale or shear.
+	 * result may alias mm.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param mm Source.
+	 * @param moff Offset into mm.
+	 */
+	public static void invertRigid(float[] result, int roff, float[] mm, int moff) {
+		final float m0 = mm[moff + 0], m1 = mm[moff + 1], m2 = mm[moff + 2];
+		final float m4 = mm[moff + 4], m5 = mm[moff + 5], m6 = mm[moff + 6];
+		final float m8 = mm[moff + 8], m9 = mm[moff + 9], m10 = mm[moff + 10];
+		final float tx = mm[moff + 12], ty = mm[moff + 13], tz = mm[moff + 14];
+		result[roff + 0] = m0;
+		result[roff + 1] = m4;
+		result[roff + 2] = m8;
+		result[roff + 3] = 0f;
+		result[roff + 4] = m1;
+		result[roff + 5] = m5;
+		result[roff + 6] = m9;
+		result[roff + 7] = 0f;
+		result[roff + 8] = m2;
+		result[roff + 9] = m6;
+		result[roff + 10] = m10;
+		result[roff + 11] = 0f;
+		result[roff + 12] = -(m0*tx + m1*ty + m2*tz);
+		result[roff + 13] = -(m4*tx + m5*ty + m6*tz);
+		result[roff + 14] = -(m8*tx + m9*ty + m10*tz);
+		result[roff + 15] = 1f;
+	}
+	/**
+	 * Invert an affine matrix.
+	 * 3x3 inverse plus translation; bottom row is assumed to be 0 0 0 1.
+	 * result may alias mm.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param mm Source.
+	 * @param moff Offset into mm.
+	 * @return true: inverted; false: singular, result unchanged.
+	 */
+	public static boolean invertAffine(float[] result, int roff, float[] mm, int moff) {
+		final float m0 = mm[moff + 0], m1 = mm[moff + 1], m2 = mm[moff + 2];
+		final float m4 = mm[moff + 4], m5 = mm[moff + 5], m6 = mm[moff + 6];
+		final float m8 = mm[moff + 8], m9 = mm[moff + 9], m10 = mm[moff + 10];
+		final float tx = mm[moff + 12], ty = mm[moff + 13], tz = mm[moff + 14];
+		final float c0 = m5*m10 - m6*m9;
+		final float c1 = m6*m8 - m4*m10;
+		final float c2 = m4*m9 - m5*m8;
+		final float det = m0*c0 + m1*c1 + m2*c2;
+		if(det == 0f) return false;
+		final float rd = 1f/det;
+		final float i0 = c0*rd;
+		final float i1 = (m2*m9 - m1*m10)*rd;
+		final float i2 = (m1*m6 - m2*m5)*rd;
+		final float i4 = c1*rd;
+		final float i5 = (m0*m10 - m2*m8)*rd;
+		final float i6 = (m2*m4 - m0*m6)*rd;
+		final float i8 = c2*rd;
+		final float i9 = (m1*m8 - m0*m9)*rd;
+		final float i10 = (m0*m5 - m1*m4)*rd;
+		result[roff + 0] = i0;
+		result[roff + 1] = i1;
+		result[roff + 2] = i2;
+		result[roff + 3] = 0f;
+		result[roff + 4] = i4;
+		result[roff + 5] = i5;
+		result[roff + 6] = i6;
+		result[roff + 7] = 0f;
+		result[roff + 8] = i8;
+		result[roff + 9] = i9;
+		result[roff + 10] = i10;
+		result[roff + 11] = 0f;
+		result[roff + 12] = -(i0*tx + i4*ty + i8*tz);
+		result[roff + 13] = -(i1*tx + i5*ty + i9*tz);
+		result[roff + 14] = -(i2*tx + i6*ty + i10*tz);
+		result[roff + 15] = 1f;
+		return true;
+	}
+	/**
+	 * Invert a general 4x4 matrix.
+	 * Cofactor expansion; same result as android.opengl.Matrix.invertM() within rounding.
+	 * result may alias mm.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param mm Source.
+	 * @param moff Offset into mm.
+	 * @return true: inverted; false: singular, result unchanged.
+	 */
+	public static boolean invert(float[] result, int roff, float[] mm, int moff) {
+		final float a00 = mm[moff + 0], a01 = mm[moff + 1], a02 = mm[moff + 2], a03 = mm[moff + 3];
+		final float a10 = mm[moff + 4], a11 = mm[moff + 5], a12 = mm[moff + 6], a13 = mm[moff + 7];
+		final float a20 = mm[moff + 8], a21 = mm[moff + 9], a22 = mm[moff + 10], a23 = mm[moff + 11];
+		final float a30 = mm[moff + 12], a31 = mm[moff + 13], a32 = mm[moff + 14], a33 = mm[moff + 15];
+		final float b00 = a00*a11 - a01*a10;
+		final float b01 = a00*a12 - a02*a10;
+		final float b02 = a00*a13 - a03*a10;
+		final float b03 = a01*a12 - a02*a11;
+		final float b04 = a01*a13 - a03*a11;
+		final float b05 = a02*a13 - a03*a12;
+		final float b06 = a20*a31 - a21*a30;
+		final float b07 = a20*a32 - a22*a30;
+		final float b08 = a20*a33 - a23*a30;
+		final float b09 = a21*a32 - a22*a31;
+		final float b10 = a21*a33 - a23*a31;
+		final float b11 = a22*a33 - a23*a32;
+		final float det = b00*b11 - b01*b10 + b02*b09 + b03*b08 - b04*b07 + b05*b06;
+		if(det == 0f) return false;
+		final float rd = 1f/det;
+		result[roff + 0] = (a11*b11 - a12*b10 + a13*b09)*rd;
+		result[roff + 1] = (a02*b10 - a01*b11 - a03*b09)*rd;
+		result[roff + 2] = (a31*b05 - a32*b04 + a33*b03)*rd;
+		result[roff + 3] = (a22*b04 - a21*b05 - a23*b03)*rd;
+		result[roff + 4] = (a12*b08 - a10*b11 - a13*b07)*rd;
+		result[roff + 5] = (a00*b11 - a02*b08 + a03*b07)*rd;
+		result[roff + 6] = (a32*b02 - a30*b05 - a33*b01)*rd;
+		result[roff + 7] = (a20*b05 - a22*b02 + a23*b01)*rd;
+		result[roff + 8] = (a10*b10 - a11*b08 + a13*b06)*rd;
+		result[roff + 9] = (a01*b08 - a00*b10 - a03*b06)*rd;
+		result[roff + 10] = (a30*b04 - a31*b02 + a33*b00)*rd;
+		result[roff + 11] = (a21*b02 - a20*b04 - a23*b00)*rd;
+		result[roff + 12] = (a11*b07 - a10*b09 - a12*b06)*rd;
+		result[roff + 13] = (a00*b09 - a01*b07 + a02*b06)*rd;
+		result[roff + 14] = (a31*b01 - a30*b03 - a32*b00)*rd;
+		result[roff + 15] = (a20*b03 - a21*b01 + a22*b00)*rd;
+		return true;
+	}
+	/**
+	 * Set a viewing transform from eye position, center of view, and up vector.
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 */
+	public static void lookAt(float[] mm, int off,
+			float eyeX, float eyeY, float eyeZ,
+			float centerX, float centerY, float centerZ,
+			float upX, float upY, float upZ) {
+		float fx = centerX - eyeX;
+		float fy = centerY - eyeY;
+		float fz = centerZ - eyeZ;
+		final float rlf = 1f/length(fx, fy, fz);
+		fx *= rlf;
+		fy *= rlf;
+		fz *= rlf;
+		// s = f x up
+		float sx = fy*upZ - fz*upY;
+		float sy = fz*upX - fx*upZ;
+		float sz = fx*upY - fy*upX;
+		final float rls = 1f/length(sx, sy, sz);
+		sx *= rls;
+		sy *= rls;
+		sz *= rls;
+		// u = s x f
+		final float ux = sy*fz - sz*fy;
+		final float uy = sz*fx - sx*fz;
+		final float uz = sx*fy - sy*fx;
+		mm[off + 0] = sx;
+		mm[off + 1] = ux;
+		mm[off + 2] = -fx;
+		mm[off + 3] = 0f;
+		mm[off + 4] = sy;
+		mm[off + 5] = uy;
+		mm[off + 6] = -fy;
+		mm[off + 7] = 0f;
+		mm[off + 8] = sz;
+		mm[off + 9] = uz;
+		mm[off + 10] = -fz;
+		mm[off + 11] = 0f;
+		mm[off + 12] = -(sx*eyeX + sy*eyeY + sz*eyeZ);
+		mm[off + 13] = -(ux*eyeX + uy*eyeY + uz*eyeZ);
+		mm[off + 14] = fx*eyeX + fy*eyeY + fz*eyeZ;
+		mm[off + 15] = 1f;
+	}
+	/**
+	 * Set a perspective projection from clip planes.
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 */
+	public static void frustum(float[] mm, int off,
+			float left, float right, float bottom, float top, float near, float far) {
+		if(left == right) throw new IllegalArgumentException("left == right");
+		if(top == bottom) throw new IllegalArgumentException("top == bottom");
+		if(near == far) throw new IllegalArgumentException("near == far");
+		if(near <= 0f) throw new IllegalArgumentException("near <= 0.0f");
+		if(far <= 0f) throw new IllegalArgumentException("far <= 0.0f");
+		final float rw = 1f/(right - left);
+		final float rh = 1f/(top - bottom);
+		final float rd = 1f/(near - far);
+		for(int ix = 0; ix < 16; ix++) {
+			mm[off + ix] = 0f;
+		}
+		mm[off + 0] = 2f*near*rw;
+		mm[off + 5] = 2f*near*rh;
+		mm[off + 8] = (right + left)*rw;
+		mm[off + 9] = (top + bottom)*rh;
+		mm[off + 10] = (far + near)*rd;
+		mm[off + 11] = -1f;
+		mm[off + 14] = 2f*far*near*rd;
+	}
+	/**
+	 * Set a symmetric perspective projection.
+	 * Same as android.opengl.Matrix.perspectiveM().
+	 * @param mm Target.
+	 * @param off Offset into mm.
+	 * @param fovy Vertical field of view in degrees.
+	 * @param aspect Width / height.
+	 */
+	public static void perspective(float[] mm, int off, float fovy, float aspect, float near, float far) {
+		final float ff = 1f/(float)Math.tan(fovy*(Math.PI/360.0));
+		final float rd = 1f/(near - far);
+		for(int ix = 0; ix < 16; ix++) {
+			mm[off + ix] = 0f;
+		}
+		mm[off + 0] = ff/aspect;
+		mm[off + 5] = ff;
+		mm[off + 10] = (far + near)*rd;
+		mm[off + 11] = -1f;
+		mm[off + 14] = 2f*far*near*rd;
+	}
+	/**
+	 * Map a point through model-view and projection to window coordinates.
+	 * Same as android.opengl.GLU.gluProject(), without the temporary arrays.
+	 * @param x Object x.
+	 * @param y Object y.
+	 * @param z Object z.
+	 * @param mv Model-view matrix.
+	 * @param mvoff Offset into mv.
+	 * @param proj Projection matrix.
+	 * @param poff Offset into proj.
+	 * @param view Viewport x, y, width, height.
+	 * @param voff Offset into view.
+	 * @param win Target window x, y, z (depth 0..1).
+	 * @param woff Offset into win.
+	 * @return true: projected; false: point is on the eye plane.
+	 */
+	public static boolean project(float x, float y, float z, float[] mv, int mvoff, float[] proj, int poff,
+			int[] view, int voff, float[] win, int woff) {
+		final float ex = mv[mvoff + 0]*x + mv[mvoff + 4]*y + mv[mvoff + 8]*z + mv[mvoff + 12];
+		final float ey = mv[mvoff + 1]*x + mv[mvoff + 5]*y + mv[mvoff + 9]*z + mv[mvoff + 13];
+		final float ez = mv[mvoff + 2]*x + mv[mvoff + 6]*y + mv[mvoff + 10]*z + mv[mvoff + 14];
+		final float ew = mv[mvoff + 3]*x + mv[mvoff + 7]*y + mv[mvoff + 11]*z + mv[mvoff + 15];
+		final float cx = proj[poff + 0]*ex + proj[poff + 4]*ey + proj[poff + 8]*ez + proj[poff + 12]*ew;
+		final float cy = proj[poff + 1]*ex + proj[poff + 5]*ey + proj[poff + 9]*ez + proj[poff + 13]*ew;
+		final float cz = proj[poff + 2]*ex + proj[poff + 6]*ey + proj[poff + 10]*ez + proj[poff + 14]*ew;
+		final float cw = proj[poff + 3]*ex + proj[poff + 7]*ey + proj[poff + 11]*ez + proj[poff + 15]*ew;
+		if(cw == 0f) return false;
+		final float rw = 1f/cw;
+		win[woff] = view[voff] + view[voff + 2]*(cx*rw + 1f)*0.5f;
+		win[woff + 1] = view[voff + 1] + view[voff + 3]*(cy*rw + 1f)*0.5f;
+		win[woff + 2] = (cz*rw + 1f)*0.5f;
+		return true;
+	}
+	/**
+	 * Map packed points through a combined projection * view (or model-view-projection) matrix to window coordinates.
+	 * Points behind the eye (clip w &lt;= 0) are skipped and their outputs set to NaN.
+	 * src and dst may be the same array at the same offset.
+	 * @param pvm Combined matrix.
+	 * @param moff Offset into pvm.
+	 * @param view Viewport x, y, width, height.
+	 * @param voff Offset into view.
+	 * @param src Points as x, y, z triples.
+	 * @param soff Offset into src.
+	 * @param dst Window x, y, z (depth 0..1) triples.
+	 * @param doff Offset into dst.
+	 * @param count Number of points.
+	 * @return number of points in front of the eye.
+	 */
+	public static int projectPoints(float[] pvm, int moff, int[] view, int voff,
+			float[] src, int soff, float[] dst, int doff, int count) {
+		final float m0 = pvm[moff + 0], m1 = pvm[moff + 1], m2 = pvm[moff + 2], m3 = pvm[moff + 3];
+		final float m4 = pvm[moff + 4], m5 = pvm[moff + 5], m6 = pvm[moff + 6], m7 = pvm[moff + 7];
+		final float m8 = pvm[moff + 8], m9 = pvm[moff + 9], m10 = pvm[moff + 10], m11 = pvm[moff + 11];
+		final float m12 = pvm[moff + 12], m13 = pvm[moff + 13], m14 = pvm[moff + 14], m15 = pvm[moff + 15];
+		final float hw = view[voff + 2]*0.5f, hh = view[voff + 3]*0.5f;
+		final float cx = view[voff] + hw, cy = view[voff + 1] + hh;
+		int visible = 0;
+		for(int ix = 0, sx = soff, dx = doff; ix < count; ix++, sx += 3, dx += 3) {
+			final float x = src[sx], y = src[sx + 1], z = src[sx + 2];
+			final float cw = m3*x + m7*y + m11*z + m15;
+			if(cw <= 0f) {
+				dst[dx] = Float.NaN;
+				dst[dx + 1] = Float.NaN;
+				dst[dx + 2] = Float.NaN;
+				continue;
+			}
+			final float rw = 1f/cw;
+			final float px = (m0*x + m4*y + m8*z + m12)*rw;
+			final float py = (m1*x + m5*y + m9*z + m13)*rw;
+			final float pz = (m2*x + m6*y + m10*z + m14)*rw;
+			dst[dx] = cx + px*hw;
+			dst[dx + 1] = cy + py*hh;
+			dst[dx + 2] = (pz + 1f)*0.5f;
+			visible++;
+		}
+		return visible;
+	}
+	/**
+	 * Map packed window coordinates back through an inverse combined matrix.
+	 * Points that map to infinity are set to NaN.
+	 * src and dst may be the same array at the same offset.
+	 * @param inv Inverse of the combined matrix.
+	 * @param ioff Offset into inv.
+	 * @param view Viewport x, y, width, height.
+	 * @param voff Offset into view.
+	 * @param src Window x, y, z (depth 0..1) triples.
+	 * @param soff Offset into src.
+	 * @param dst Points as x, y, z triples.
+	 * @param doff Offset into dst.
+	 * @param count Number of points.
+	 * @return number of points unprojected.
+	 */
+	public static int unprojectPoints(float[] inv, int ioff, int[] view, int voff,
+			float[] src, int soff, float[] dst, int doff, int count) {
+		int done = 0;
+		for(int ix = 0, sx = soff, dx = doff; ix < count; ix++, sx += 3, dx += 3) {
+			if(unproject(src[sx], src[sx + 1], src[sx + 2], inv, ioff, view, voff, dst, dx)) {
+				done++;
+			}
+			else {
+				dst[dx] = Float.NaN;
+				dst[dx + 1] = Float.NaN;
+				dst[dx + 2] = Float.NaN;
+			}
+		}
+		return done;
+	}
+	/**
+	 * Map window coordinates back to object coordinates.
+	 * Like android.opengl.GLU.gluUnProject(), but the result is divided by w,
+	 * and the caller supplies scratch space for the combined inverse.
+	 * @param wx Window x.
+	 * @param wy Window y.
+	 * @param wz Window depth 0..1.
+	 * @param mv Model-view matrix.
+	 * @param mvoff Offset into mv.
+	 * @param proj Projection matrix.
+	 * @param poff Offset into proj.
+	 * @param view Viewport x, y, width, height.
+	 * @param voff Offset into view.
+	 * @param obj Target object x, y, z.
+	 * @param ooff Offset into obj.
+	 * @param scratch At least 32 floats.
+	 * @return true: unprojected; false: matrices are singular.
+	 */
+	public static boolean unproject(float wx, float wy, float wz, float[] mv, int mvoff, float[] proj, int poff,
+			int[] view, int voff, float[] obj, int ooff, float[] scratch) {
+		multiply(scratch, 0, proj, poff, mv, mvoff);
+		if(!invert(scratch, 16, scratch, 0)) return false;
+		return unproject(wx, wy, wz, scratch, 16, view, voff, obj, ooff);
+	}
+	/**
+	 * Map window coordinates back to object coordinates with a precomputed inverse.
+	 * Use when unprojecting many points through the same matrices.
+	 * @param wx Window x.
+	 * @param wy Window y.
+	 * @param wz Window depth 0..1.
+	 * @param inv Inverse of projection * model-view.
+	 * @param ioff Offset into inv.
+	 * @param view Viewport x, y, width, height.
+	 * @param voff Offset into view.
+	 * @param obj Target object x, y, z.
+	 * @param ooff Offset into obj.
+	 * @return true: unprojected; false: point maps to infinity.
+	 */
+	public static boolean unproject(float wx, float wy, float wz, float[] inv, int ioff, int[] view, int voff, float[] obj, int ooff) {
+		final float nx = 2f*(wx - view[voff])/view[voff + 2] - 1f;
+		final float ny = 2f*(wy - view[voff + 1])/view[voff + 3] - 1f;
+		final float nz = 2f*wz - 1f;
+		final float ow = inv[ioff + 3]*nx + inv[ioff + 7]*ny + inv[ioff + 11]*nz + inv[ioff + 15];
+		if(ow == 0f) return false;
+		final float rw = 1f/ow;
+		final float ox = inv[ioff + 0]*nx + inv[ioff + 4]*ny + inv[ioff + 8]*nz + inv[ioff + 12];
+		final float oy = inv[ioff + 1]*nx + inv[ioff + 5]*ny + inv[ioff + 9]*nz + inv[ioff + 13];
+		final float oz = inv[ioff + 2]*nx + inv[ioff + 6]*ny + inv[ioff + 10]*nz + inv[ioff + 14];
+		obj[ooff] = ox*rw;
+		obj[ooff + 1] = oy*rw;
+		obj[ooff + 2] = oz*rw;
+		return true;
+	}
+	/**
+	 * Length of a vector.
+	 * @return length.
+	 */
+	public static float length(float x, float y, float z) {
+		return (float)Math.sqrt(x*x + y*y + z*z);
+	}
+}
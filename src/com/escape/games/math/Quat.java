@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.math;
+
+/**
+ * Quaternion operations on float[4] as x, y, z, w.
+ * Rotations follow the right-hand rule, same as Mat4.rotate().
+ * Nothing allocates; unless noted, a result may alias its inputs.
+ * @author escape-llc
+ *
+ */
+public final class Quat {
+	private Quat() { }
+	/**
+	 * Set to identity (no rotation).
+	 * @param qq Target.
+	 * @param off Offset into qq.
+	 */
+	public static void setIdentity(float[] qq, int off) {
+		qq[off] = 0f;
+		qq[off + 1] = 0f;
+		qq[off + 2] = 0f;
+		qq[off + 3] = 1f;
+	}
+	/**
+	 * Set a rotation about an axis.
+	 * @param qq Target.
+	 * @param off Offset into qq.
+	 * @param deg Angle in degrees.
+	 * @param x Axis x; need not be unit length.
+	 * @param y Axis y.
+	 * @param z Axis z.
+	 */
+	public static void setAxisAngle(float[] qq, int off, float deg, float x, float y, float z) {
+		final float len = Mat4.length(x, y, z);
+		if(len == 0f) {
+			setIdentity(qq, off);
+			return;
+		}
+		final double half = Math.toRadians(deg)*0.5;
+		final float ss = (float)Math.sin(half)/len;
+		qq[off] = x*ss;
+		qq[off + 1] = y*ss;
+		qq[off + 2] = z*ss;
+		qq[off + 3] = (float)Math.cos(half);
+	}
+	/**
+	 * Set from Euler angles applied as RotateX * RotateY * RotateZ, the order used by Transform.
+	 * @param qq Target.
+	 * @param off Offset into qq.
+	 * @param rx X angle in degrees.
+	 * @param ry Y angle in degrees.
+	 * @param rz Z angle in degrees.
+	 */
+	public static void setEuler(float[] qq, int off, float rx, float ry, float rz) {
+		final double hx = Math.toRadians(rx)*0.5, hy = Math.toRadians(ry)*0.5, hz = Math.toRadians(rz)*0.5;
+		final float cx = (float)Math.cos(hx), sx = (float)Math.sin(hx);
+		final float cy = (float)Math.cos(hy), sy = (float)Math.sin(hy);
+		final float cz = (float)Math.cos(hz), sz = (float)Math.sin(hz);
+		// qx * qy * qz
+		qq[off] = sx*cy*cz + cx*sy*sz;
+		qq[off + 1] = cx*sy*cz - sx*cy*sz;
+		qq[off + 2] = cx*cy*sz + sx*sy*cz;
+		qq[off + 3] = cx*cy*cz - sx*sy*sz;
+	}
+	/**
+	 * Multiply result = lhs * rhs; the rotation rhs is applied first.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param lhs Left quaternion.
+	 * @param loff Offset into lhs.
+	 * @param rhs Right quaternion.
+	 * @param rroff Offset into rhs.
+	 */
+	public static void multiply(float[] result, int roff, float[] lhs, int loff, float[] rhs, int rroff) {
+		final float ax = lhs[loff], ay = lhs[loff + 1], az = lhs[loff + 2], aw = lhs[loff + 3];
+		final float bx = rhs[rroff], by = rhs[rroff + 1], bz = rhs[rroff + 2], bw = rhs[rroff + 3];
+		result[roff] = aw*bx + ax*bw + ay*bz - az*by;
+		result[roff + 1] = aw*by - ax*bz + ay*bw + az*bx;
+		result[roff + 2] = aw*bz + ax*by - ay*bx + az*bw;
+		result[roff + 3] = aw*bw - ax*bx - ay*by - az*bz;
+	}
+	/**
+	 * Scale to unit length.
+	 * @param qq Target.
+	 * @param off Offset into qq.
+	 */
+	public static void normalize(float[] qq, int off) {
+		final float x = qq[off], y = qq[off + 1], z = qq[off + 2], w = qq[off + 3];
+		final float len2 = x*x + y*y + z*z + w*w;
+		if(len2 == 0f) {
+			setIdentity(qq, off);
+			return;
+		}
+		final float rl = 1f/(float)Math.sqrt(len2);
+		qq[off] = x*rl;
+		qq[off + 1] = y*rl;
+		qq[off + 2] = z*rl;
+		qq[off + 3] = w*rl;
+	}
+	/**
+	 * Set the inverse of a unit quaternion.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param qq Source.
+	 * @param off Offset into qq.
+	 */
+	public static void conjugate(float[] result, int roff, float[] qq, int off) {
+		result[roff] = -qq[off];
+		result[roff + 1] = -qq[off + 1];
+		result[roff + 2] = -qq[off + 2];
+		result[roff + 3] = qq[off + 3];
+	}
+	/**
+	 * Spherical interpolation along the shorter arc.
+	 * Falls back to normalized linear interpolation when the inputs are nearly equal.
+	 * @param result Target.
+	 * @param roff Offset into result.
+	 * @param from Rotation at tt = 0.
+	 * @param foff Offset into from.
+	 * @param to Rotation at tt = 1.
+	 * @param toff Offset into to.
+	 * @param tt Fraction 0..1.
+	 */
+	public static void slerp(float[] result, int roff, float[] from, int foff, float[] to, int toff, float tt) {
+		final float ax = from[foff], ay = from[foff + 1], az = from[foff + 2], aw = from[foff + 3];
+		float bx = to[toff], by = to[toff + 1], bz = to[toff + 2], bw = to[toff + 3];
+		float dot = ax*bx + ay*by + az*bz + aw*bw;
+		if(dot < 0f) {
+			dot = -dot;
+			bx = -bx;
+			by = -by;
+			bz = -bz;
+			bw = -bw;
+		}
+		float wa, wb;
+		if(dot > 0.9995f) {
+			wa = 1f - tt;
+			wb = tt;
+		}
+		else {
+			final double theta = Math.acos(dot);
+			final double rs = 1.0/Math.sin(theta);
+			wa = (float)(Math.sin((1.0 - tt)*theta)*rs);
+			wb = (float)(Math.sin(tt*theta)*rs);
+		}
+		result[roff] = wa*ax + wb*bx;
+		result[roff + 1] = wa*ay + wb*by;
+		result[roff + 2] = wa*az + wb*bz;
+		result[roff + 3] = wa*aw + wb*bw;
+		if(dot > 0.9995f) {
+			normalize(result, roff);
+		}
+	}
+	/**
+	 * Rotate a vector by a unit quaternion.
+	 * @param result Target x, y, z.
+	 * @param roff Offset into result.
+	 * @param qq Rotation.
+	 * @param off Offset into qq.
+	 * @param x Vector x.
+	 * @param y Vector y.
+	 * @param z Vector z.
+	 */
+	public static void rotate(float[] result, int roff, float[] qq, int off, float x, float y, float z) {
+		final float qx = qq[off], qy = qq[off + 1], qz = qq[off + 2], qw = qq[off + 3];
+		// t = 2 * (q.xyz x v); v' = v + w*t + q.xyz x t
+		final float tx = 2f*(qy*z - qz*y);
+		final float ty = 2f*(qz*x - qx*z);
+		final float tz = 2f*(qx*y - qy*x);
+		result[roff] = x + qw*tx + (qy*tz - qz*ty);
+		result[roff + 1] = y + qw*ty + (qz*tx - qx*tz);
+		result[roff + 2] = z + qw*tz + (qx*ty - qy*tx);
+	}
+	/**
+	 * Set a rotation matrix.
+	 * @param mm Target.
+	 * @param moff Offset into mm.
+	 * @param qq Unit quaternion.
+	 * @param off Offset into qq.
+	 */
+	public static void toMatrix(float[] mm, int moff, float[] qq, int off) {
+		Mat4.setTRS(mm, moff, 0f, 0f, 0f, qq, off, 1f, 1f, 1f);
+	}
+}
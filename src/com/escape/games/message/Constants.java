@@ -79,6 +79,10 @@ public final class Constants {
 		//public static final int LOCATOR = 4;
 		public static final int HOST = 5;
 		public static final int INSTALLER = 6;
+		public static final int TRANSFORMS = 7;
+		/** optional TransformStore; register with addService() */
+		public static final int TRANSFORM_STORE = 8;
+		public static final int PICKING = 9;
 		public static final int USER_DEFINED_START = 1000;
 	}
 	/**
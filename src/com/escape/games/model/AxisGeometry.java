@@ -24,6 +24,8 @@ import android.opengl.GLES20;
 import com.escape.games.api.Properties;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
+import com.escape.games.gl.GL;
+import com.escape.games.resource.RenderStats;
 import com.escape.games.resource.Shader;
 
 /**
@@ -142,6 +144,8 @@ public class AxisGeometry extends Geometry {
 		// position
 		sx.vertex3d(mVertexBuffer);
 		// draw
-		GLES20.glDrawArrays(GLES20.GL_LINES, 0, elementCount);
+		sx.prepareDraw();
+		GL.glDrawArrays(GLES20.GL_LINES, 0, elementCount);
+		RenderStats.draw(GLES20.GL_LINES, elementCount);
 	}
 }
@@ -49,4 +49,14 @@ public class CompositeMaterial extends Material {
 	public String getShaderKey() {
 		return key;
 	}
+	/**
+	 * Transparent if any material is transparent.
+	 */
+	@Override
+	public boolean isTransparent() {
+		for(int ix = 0; ix < mats.length; ix++) {
+			if(mats[ix].isTransparent()) return true;
+		}
+		return false;
+	}
 }
@@ -71,9 +71,23 @@ public abstract class FloatPageImpl {
 	}
 	/**
 	 * Expand the array.
-	 * @param xby Number of additional elements.
+	 * Grows by at least half the current size, so filling N elements copies O(N) floats overall.
+	 * @param xby Minimum number of additional elements.
 	 */
-	void resize(int xby) { buffer = Arrays.copyOf(buffer, buffer.length + (xby*stride)); }
+	void resize(int xby) { buffer = Arrays.copyOf(buffer, buffer.length + Math.max(xby*stride, buffer.length/2)); }
+	/**
+	 * Append the populated elements of another page.
+	 * @param src Source page; same stride.
+	 */
+	void append(FloatPageImpl src) {
+		if(src.stride != stride) throw new IllegalArgumentException("stride");
+		final int need = (current + src.current)*stride;
+		if(need > buffer.length) {
+			buffer = Arrays.copyOf(buffer, need);
+		}
+		System.arraycopy(src.buffer, 0, buffer, current*stride, src.current*stride);
+		current += src.current;
+	}
 	/**
 	 * Return the number of populated floats (multiplied by stride).
 	 * @return current times stride.
@@ -20,13 +20,15 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
 import android.opengl.GLES20;
-import android.opengl.Matrix;
 import android.util.Log;
 
 import com.escape.games.api.Properties;
+import com.escape.games.api.RenderContext;
 import com.escape.games.api.RequireResourceLoader;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
+import com.escape.games.gl.GL;
+import com.escape.games.math.Mat4;
 import com.escape.games.resource.Shader;
 
 /**
@@ -81,6 +83,13 @@ public abstract class Geometry implements RequireResourceLoader {
 		halff, halff, halff, onef,
 	};
 	boolean loaded;
+	/* load() calls not yet matched by unload() */
+	int users;
+	/* loader of current load; released through it */
+	ResourceLoader loader;
+	/* picking hierarchy; built on first getBVH() */
+	MeshBVH bvh;
+	boolean bvhBuilt;
 	/**
 	 * Acquire resources etc.
 	 * @param rl
@@ -90,6 +99,7 @@ public abstract class Geometry implements RequireResourceLoader {
 	/**
 	 * Render geometry.
 	 * All transforms are applied to the shader.
+	 * Call sx.prepareDraw() after setting the attributes of each draw call.
 	 * @param sx the shader to render with.
 	 * @param px Source of values.
 	 */
@@ -99,6 +109,46 @@ public abstract class Geometry implements RequireResourceLoader {
 	 * @return the vertex count.
 	 */
 	public abstract int getVertexCount();
+	/**
+	 * Per-frame hook called before render() with the object's model matrix.
+	 * Default implementation does nothing.
+	 * @param rc Render context.
+	 * @param matrixM (M) matrix.
+	 */
+	public void prepare(RenderContext rc, float[] matrixM) {
+	}
+	/**
+	 * Return whether materials of the geometry itself, e.g. per-submesh materials, need blending.
+	 * The object is drawn in the transparent pass if either its MATERIAL or its geometry is transparent.
+	 * Default implementation returns false.
+	 * @return true: transparent.
+	 */
+	public boolean isTransparent() {
+		return false;
+	}
+	/**
+	 * Return the triangle hierarchy used for picking, building it on first call.
+	 * Objects sharing this geometry share the hierarchy.
+	 * Must hold update lock.
+	 * @return hierarchy or NULL if the geometry has no triangles or its data is not available yet.
+	 */
+	public MeshBVH getBVH() {
+		if(!bvhBuilt) {
+			bvh = buildBVH();
+			// retry until loaded in case the data is not there yet
+			bvhBuilt = bvh != null || loaded;
+		}
+		return bvh;
+	}
+	/**
+	 * Create the picking hierarchy.
+	 * Default implementation returns NULL (not pickable).
+	 * Return NULL if the vertex data is not available yet.
+	 * @return new instance or NULL.
+	 */
+	protected MeshBVH buildBVH() {
+		return null;
+	}
 	/**
 	 * 4-component vector.
 	 * @author escape-llc
@@ -125,7 +175,7 @@ public abstract class Geometry implements RequireResourceLoader {
     	sb.append(": glErrors: ");
         int error;
         int did = 0;
-        while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+        while ((error = GL.glGetError()) != GLES20.GL_NO_ERROR) {
         	did++;
         	sb.append(Integer.toHexString(error));
         	sb.append(" ");
@@ -139,7 +189,7 @@ public abstract class Geometry implements RequireResourceLoader {
 	 * @param off array offset.
 	 */
 	public static void normalize(float[] vec, int off) {
-		final float len = Matrix.length(vec[off + 0], vec[off + 1], vec[off + 2]);
+		final float len = Mat4.length(vec[off + 0], vec[off + 1], vec[off + 2]);
 		vec[off + 0] /= len;
 		vec[off + 1] /= len;
 		vec[off + 2] /= len;
@@ -158,8 +208,14 @@ public abstract class Geometry implements RequireResourceLoader {
 		cp[cpo + 1] = v0[v0o + 2] * v1[v1o + 0] - v0[v0o + 0] * v1[v1o + 2];
 		cp[cpo + 2] = v0[v0o + 0] * v1[v1o + 1] - v0[v0o + 1] * v1[v1o + 0];
 	}
-	public void load(ResourceLoader rl, Services svc) {
+	/**
+	 * Load on first call; each call adds a user.
+	 * Objects sharing this geometry each load and unload it.
+	 */
+	public synchronized void load(ResourceLoader rl, Services svc) {
+		users++;
 		if(loaded) return;
+		loader = rl;
 		try {
 			internalLoad(rl, svc);
 		}
@@ -167,6 +223,27 @@ public abstract class Geometry implements RequireResourceLoader {
 			loaded = true;
 		}
 	}
+	/**
+	 * Drop a user; the last one releases resources through internalUnload().
+	 * The geometry may be loaded again afterwards.
+	 */
+	public synchronized void unload() {
+		if(users == 0) return;
+		if(--users > 0 || !loaded) return;
+		final ResourceLoader rl = loader;
+		loaded = false;
+		loader = null;
+		bvh = null;
+		bvhBuilt = false;
+		internalUnload(rl);
+	}
+	/**
+	 * Release resources acquired by internalLoad().
+	 * Default implementation does nothing.
+	 * @param rl Loader passed to load().
+	 */
+	protected void internalUnload(ResourceLoader rl) {
+	}
 	/**
 	 * Create a vertex color buffer.
 	 * One vertex is made from each color in the list, looping around the list.
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import android.opengl.GLES20;
+
+import com.escape.games.api.Properties;
+import com.escape.games.api.RequireResourceLoader;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.gl.GL;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.IndexBufferObject;
+import com.escape.games.resource.RenderStats;
+import com.escape.games.resource.Shader;
+
+/**
+ * Interleaved Geometry of unique vertices plus an index list, bound to a VBO/IBO pair and drawn with glDrawElements().
+ * Indices are 16-bit up to 65536 vertices, else 32-bit; load() rejects 32-bit indices without GL_OES_element_index_uint.
+ * Falls back to client-side arrays if the buffer objects cannot be created.
+ * With submeshes, the buffers are bound once and each range is drawn after applying its material.
+ * @author escape-llc
+ *
+ */
+public class IndexedVBOGeometry extends InterleavedVBOGeometry {
+	/* ShortBuffer or IntBuffer */
+	final Buffer indices;
+	final int indexType;
+	final int indexCount;
+	IndexBufferObject ibo;
+	/* NULL: one draw of all indices */
+	Submesh[] submeshes;
+	/**
+	 * Ctor.
+	 * @param ivg Unique vertices.
+	 * @param indices ShortBuffer or IntBuffer; see makeIndices().
+	 */
+	public IndexedVBOGeometry(InterleavedVertexGeometry ivg, Buffer indices) {
+		this(ivg, indices, null);
+	}
+	/**
+	 * Ctor.
+	 * @param ivg Unique vertices.
+	 * @param indices ShortBuffer or IntBuffer; see makeIndices().
+	 * @param format Vertex encoding in the VBO; NULL: all FLOAT.
+	 */
+	public IndexedVBOGeometry(InterleavedVertexGeometry ivg, Buffer indices, VertexFormat format) {
+		super(ivg, format);
+		if(indices instanceof ShortBuffer) {
+			indexType = GLES20.GL_UNSIGNED_SHORT;
+		}
+		else if(indices instanceof IntBuffer) {
+			indexType = GLES20.GL_UNSIGNED_INT;
+		}
+		else throw new IllegalArgumentException("indices");
+		this.indices = indices;
+		this.indexCount = indices.capacity();
+	}
+	/**
+	 * Make a direct-IO index buffer of the narrowest type that holds the vertex count.
+	 * @param src Source indices.
+	 * @param count Number of indices.
+	 * @param vc Vertex count.
+	 * @return ShortBuffer if vc is at most 65536, else IntBuffer.
+	 */
+	public static Buffer makeIndices(int[] src, int count, int vc) {
+		if(vc <= 0x10000) {
+			final ShortBuffer sb = ByteBuffer.allocateDirect(count*SHORT_BYTES).order(ByteOrder.nativeOrder()).asShortBuffer();
+			for(int ix = 0; ix < count; ix++) {
+				sb.put((short)src[ix]);
+			}
+			sb.position(0);
+			return sb;
+		}
+		final IntBuffer ib = ByteBuffer.allocateDirect(count*FLOAT_BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+		ib.put(src, 0, count);
+		ib.position(0);
+		return ib;
+	}
+	/**
+	 * Return the index data.
+	 * @return ShortBuffer or IntBuffer.
+	 */
+	public Buffer getIndexBuffer() { return indices; }
+	/**
+	 * Return the number of indices.
+	 * @return count.
+	 */
+	public int getIndexCount() { return indexCount; }
+	/**
+	 * Return the GL index type.
+	 * @return GL_UNSIGNED_SHORT or GL_UNSIGNED_INT.
+	 */
+	public int getIndexType() { return indexType; }
+	/**
+	 * Return the draw ranges.
+	 * @return Submeshes or NULL.
+	 */
+	public Submesh[] getSubmeshes() { return submeshes; }
+	/**
+	 * Draw in ranges, each after applying its material.
+	 * Materials are loaded with this geometry if they implement RequireResourceLoader.
+	 * @param submeshes Ranges within the index list; NULL: one draw.
+	 */
+	public void setSubmeshes(Submesh[] submeshes) {
+		if(submeshes != null) {
+			for(int ix = 0; ix < submeshes.length; ix++) {
+				if(submeshes[ix].first + submeshes[ix].count > indexCount) throw new IllegalArgumentException("submeshes");
+			}
+		}
+		this.submeshes = submeshes;
+	}
+	/**
+	 * Transparent if any submesh material is; the whole object then draws in the transparent pass.
+	 */
+	@Override
+	public boolean isTransparent() {
+		final Submesh[] sms = submeshes;
+		if(sms == null) return false;
+		for(int ix = 0; ix < sms.length; ix++) {
+			final Material mx = sms[ix].material;
+			if(mx != null && mx.isTransparent()) return true;
+		}
+		return false;
+	}
+	int index(int ix) {
+		return indexType == GLES20.GL_UNSIGNED_SHORT ? ((ShortBuffer)indices).get(ix) & 0xffff : ((IntBuffer)indices).get(ix);
+	}
+	/**
+	 * @throws IllegalStateException 32-bit indices and the context does not have GL_OES_element_index_uint.
+	 */
+	@Override
+	protected void internalLoad(ResourceLoader rl, Services svc) {
+		if(indexType == GLES20.GL_UNSIGNED_INT && !GLState.hasExtension(GLState.OES_ELEMENT_INDEX_UINT))
+			throw new IllegalStateException(new StringBuilder(GLState.OES_ELEMENT_INDEX_UINT).append(" required for ").append(ivg.getVertexCount()).append(" vertices").toString());
+		super.internalLoad(rl, svc);
+		ibo = rl.createIndexBuffer(this);
+		if(vbo == null || ibo == null) {
+			// client-side arrays
+			ivg.load(rl, svc);
+		}
+		if(submeshes != null) {
+			for(int ix = 0; ix < submeshes.length; ix++) {
+				final Material mx = submeshes[ix].material;
+				if(mx instanceof RequireResourceLoader) {
+					((RequireResourceLoader)mx).load(rl, svc);
+				}
+			}
+		}
+	}
+	@Override
+	protected void internalUnload(ResourceLoader rl) {
+		super.internalUnload(rl);
+		rl.releaseIndexBuffer(ibo);
+		ibo = null;
+		// client-side arrays, if loaded
+		ivg.unload();
+	}
+	@Override
+	public void render(Shader sx, Properties px) {
+		if(vbo != null && ibo != null) {
+			vbo.setup();
+			attributes(sx);
+			ibo.setup();
+			if(submeshes == null) {
+				sx.prepareDraw();
+				GL.glDrawElements(ivg.elemType, indexCount, indexType, 0);
+				RenderStats.draw(ivg.elemType, indexCount);
+			}
+			else {
+				final int size = indexType == GLES20.GL_UNSIGNED_SHORT ? SHORT_BYTES : FLOAT_BYTES;
+				for(int ix = 0; ix < submeshes.length; ix++) {
+					final Submesh sm = submeshes[ix];
+					if(sm.count == 0) continue;
+					if(sm.material != null) {
+						sm.material.setup(sx);
+					}
+					sx.prepareDraw();
+					GL.glDrawElements(ivg.elemType, sm.count, indexType, sm.first*size);
+					RenderStats.draw(ivg.elemType, sm.count);
+				}
+			}
+			vbo.teardown();
+			ibo.teardown();
+		}
+		else {
+			if(ivg.mVertexBuffer == null) return;
+			ivg.attributes(sx);
+			GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+			if(submeshes == null) {
+				sx.prepareDraw();
+				GL.glDrawElements(ivg.elemType, indexCount, indexType, indices);
+				RenderStats.draw(ivg.elemType, indexCount);
+			}
+			else {
+				for(int ix = 0; ix < submeshes.length; ix++) {
+					final Submesh sm = submeshes[ix];
+					if(sm.count == 0) continue;
+					if(sm.material != null) {
+						sm.material.setup(sx);
+					}
+					indices.position(sm.first);
+					sx.prepareDraw();
+					GL.glDrawElements(ivg.elemType, sm.count, indexType, indices);
+					RenderStats.draw(ivg.elemType, sm.count);
+				}
+				indices.position(0);
+			}
+		}
+	}
+	/**
+	 * Picking hierarchy over the indexed triangles; GL_TRIANGLES only.
+	 */
+	@Override
+	protected MeshBVH buildBVH() {
+		if(ivg.elemType != GLES20.GL_TRIANGLES || indexCount < 3) return null;
+		final float[] src = ivg.floats();
+		if(src == null) return null;
+		final int[] ix = new int[indexCount - indexCount % 3];
+		for(int ii = 0; ii < ix.length; ii++) {
+			ix[ii] = index(ii);
+		}
+		return MeshBVH.fromInterleaved(src, 0, ivg.elems[InterleavedVertexGeometry.IX_POSITION], ivg.stride/FLOAT_BYTES, ivg.vc, ix);
+	}
+	/**
+	 * Return unique vertex count.
+	 */
+	@Override
+	public int getVertexCount() {
+		return ivg.getVertexCount();
+	}
+}
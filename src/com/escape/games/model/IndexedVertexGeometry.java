@@ -24,6 +24,9 @@ import android.opengl.GLES20;
 import com.escape.games.api.Properties;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
+import com.escape.games.gl.GL;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.RenderStats;
 import com.escape.games.resource.Shader;
 
 /**
@@ -121,6 +124,18 @@ public abstract class IndexedVertexGeometry extends Geometry {
 	
 	@Override
 	public int getVertexCount() { return vertices.length/3; }
+	/**
+	 * Picking hierarchy over the indexed triangles; GL_TRIANGLES only.
+	 */
+	@Override
+	protected MeshBVH buildBVH() {
+		if(elemType != GLES20.GL_TRIANGLES || indices.length < 3) return null;
+		final int[] ix = new int[indices.length - indices.length % 3];
+		for(int ii = 0; ii < ix.length; ii++) {
+			ix[ii] = indices[ii] & 0xff;
+		}
+		return new MeshBVH(vertices, ix);
+	}
 
 	@Override
 	public void render(Shader sx, Properties arg1) {
@@ -131,6 +146,10 @@ public abstract class IndexedVertexGeometry extends Geometry {
 		if(mTexcoordBuffer != null) {
 			sx.texture2d(mTexcoordBuffer);
 		}
-		GLES20.glDrawElements(elemType, indices.length, indexType, mIndexBuffer);
+		// client-side indices require no ELEMENT_ARRAY_BUFFER binding
+		GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		sx.prepareDraw();
+		GL.glDrawElements(elemType, indices.length, indexType, mIndexBuffer);
+		RenderStats.draw(elemType, indices.length);
 	}
 }
@@ -15,35 +15,85 @@
  */
 package com.escape.games.model;
 
-import android.opengl.GLES20;
+import android.util.Log;
 
 import com.escape.games.api.Properties;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
+import com.escape.games.core.TraceSwitches;
+import com.escape.games.gl.GL;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.RenderStats;
 import com.escape.games.resource.Shader;
 import com.escape.games.resource.VertexBufferObject;
 
 /**
  * Interleaved Geometry bound to VBO.
+ * With a VertexFormat, the VBO holds the attributes encoded at load time instead of 32-bit floats;
+ * quantized positions also set uPositionScale and uPositionOffset, so the shader must declare them
+ * (see ShaderBuilder.quantizedPosition()).
+ * HALF attributes are stored as FLOAT if the context does not have GL_OES_vertex_half_float.
  * @author escape-llc
  *
  */
 public class InterleavedVBOGeometry extends Geometry {
+	static final String TAG = "VBO";
+	/* shader slot per attribute */
+	static final int[] SLOTS = {
+		Shader.SLOT_POSITION, Shader.SLOT_NORMAL, Shader.SLOT_COLOR, Shader.SLOT_TEXTURE_COORD
+	};
 	VertexBufferObject vbo;
 	final InterleavedVertexGeometry ivg;
+	/* NULL: float VBO */
+	final VertexFormat format;
+	/* encoded vertices; NULL: float VBO */
+	VertexFormat.Layout layout;
 	public InterleavedVBOGeometry(InterleavedVertexGeometry ivg) {
+		this(ivg, null);
+	}
+	/**
+	 * Ctor.
+	 * @param ivg Source vertices.
+	 * @param format Vertex encoding in the VBO; NULL: all FLOAT.
+	 */
+	public InterleavedVBOGeometry(InterleavedVertexGeometry ivg, VertexFormat format) {
 		this.ivg = ivg;
+		this.format = format;
 	}
+	/**
+	 * Return the encoded vertices.
+	 * @return NULL: no format, or not loaded.
+	 */
+	public VertexFormat.Layout getLayout() { return layout; }
 
 	@Override
 	protected void internalLoad(ResourceLoader rl, Services svc) {
-		vbo = rl.createBuffer(ivg);
+		if(format != null && layout == null) {
+			final float[] src = ivg.floats();
+			if(src != null) {
+				layout = format.pack(src, ivg.elems, ivg.vc, GLState.hasExtension(GLState.OES_VERTEX_HALF_FLOAT));
+				if(TraceSwitches.Loader.GL_RESOURCES) {
+					Log.d(TAG, "packed " + layout.getFloatBytes() + " -> " + layout.getBytes() + " bytes, stride " + layout.getStride());
+				}
+			}
+		}
+		vbo = layout != null ? rl.createBuffer(this) : rl.createBuffer(ivg);
 	}
-
 	@Override
-	public void render(Shader sx, Properties px) {
-		if(vbo == null) return;
-		vbo.setup();
+	protected void internalUnload(ResourceLoader rl) {
+		rl.releaseBuffer(vbo);
+		vbo = null;
+	}
+
+	/**
+	 * Set attribute pointers into the bound VBO.
+	 * @param sx Shader.
+	 */
+	protected void attributes(Shader sx) {
+		if(layout != null) {
+			packedAttributes(sx, layout);
+			return;
+		}
 		final int[] elems = ivg.elems;
 		int offset = 0;
 		if(elems[InterleavedVertexGeometry.IX_POSITION] > 0) {
@@ -61,10 +111,40 @@ public class InterleavedVBOGeometry extends Geometry {
 		if(elems[InterleavedVertexGeometry.IX_TEXTURE] > 0) {
 			sx.texture(offset, elems[InterleavedVertexGeometry.IX_TEXTURE], ivg.stride);
 		}
-		GLES20.glDrawArrays(ivg.elemType, 0, ivg.vc);
+	}
+
+	/**
+	 * Set attribute pointers into the bound VBO for encoded vertices.
+	 * @param sx Shader.
+	 * @param lx Layout.
+	 */
+	void packedAttributes(Shader sx, VertexFormat.Layout lx) {
+		for(int ix = 0; ix < InterleavedVertexGeometry.IX_TOTAL; ix++) {
+			if(lx.elems[ix] > 0) {
+				sx.attribute(SLOTS[ix], lx.elems[ix], lx.getType(ix), lx.isNormalized(ix), lx.stride, lx.offsets[ix]);
+			}
+		}
+		if(lx.isQuantized()) {
+			sx.uniform3d(Shader.SLOT_UPOSITIONSCALE, lx.positionScale);
+			sx.uniform3d(Shader.SLOT_UPOSITIONOFFSET, lx.positionOffset);
+		}
+	}
+
+	@Override
+	public void render(Shader sx, Properties px) {
+		if(vbo == null) return;
+		vbo.setup();
+		attributes(sx);
+		sx.prepareDraw();
+		GL.glDrawArrays(ivg.elemType, 0, ivg.vc);
+		RenderStats.draw(ivg.elemType, ivg.vc);
 		vbo.teardown();
 	}
 
+	@Override
+	protected MeshBVH buildBVH() {
+		return ivg.getBVH();
+	}
 	@Override
 	public int getVertexCount() {
 		return ivg.getVertexCount();
@@ -24,6 +24,8 @@ import android.opengl.GLES20;
 import com.escape.games.api.Properties;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
+import com.escape.games.gl.GL;
+import com.escape.games.resource.RenderStats;
 import com.escape.games.resource.Shader;
 
 /**
@@ -136,6 +138,29 @@ public class InterleavedVertexGeometry extends Geometry {
 		return mVertexBuffer;
 	}
 
+	/**
+	 * Picking hierarchy over the positions; GL_TRIANGLES only.
+	 */
+	@Override
+	protected MeshBVH buildBVH() {
+		if(elemType != GLES20.GL_TRIANGLES || vc < 3) return null;
+		final float[] src = floats();
+		if(src == null) return null;
+		return MeshBVH.fromInterleaved(src, 0, elems[IX_POSITION], stride/FLOAT_BYTES, vc, null);
+	}
+	/**
+	 * Return the vertex attributes as an array.
+	 * @return vas, or a copy of the vertex buffer; NULL: neither is available.
+	 */
+	float[] floats() {
+		if(vas != null) return vas;
+		if(mVertexBuffer == null) return null;
+		final float[] src = new float[vc*(stride/FLOAT_BYTES)];
+		final FloatBuffer fb = mVertexBuffer.duplicate();
+		fb.position(0);
+		fb.get(src);
+		return src;
+	}
 	@Override
 	protected void internalLoad(ResourceLoader rl, Services svc) {
 		if (vas != null && mVertexBuffer == null) {
@@ -148,8 +173,11 @@ public class InterleavedVertexGeometry extends Geometry {
 		}
 	}
 
-	@Override
-	public void render(Shader sx, Properties px) {
+	/**
+	 * Set client-side attribute pointers into the vertex buffer.
+	 * @param sx Shader.
+	 */
+	protected void attributes(Shader sx) {
 		int offset = 0;
 		if(elems[IX_POSITION] > 0) {
 			mVertexBuffer.position(offset);
@@ -171,6 +199,13 @@ public class InterleavedVertexGeometry extends Geometry {
 			sx.texture(mVertexBuffer, elems[IX_TEXTURE], stride);
 		}
 		mVertexBuffer.position(0);
-		GLES20.glDrawArrays(elemType, 0, vc);
+	}
+
+	@Override
+	public void render(Shader sx, Properties px) {
+		attributes(sx);
+		sx.prepareDraw();
+		GL.glDrawArrays(elemType, 0, vc);
+		RenderStats.draw(elemType, vc);
 	}
 }
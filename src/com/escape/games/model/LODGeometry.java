@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import com.escape.games.api.Properties;
+import com.escape.games.api.RenderContext;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.math.Mat4;
+import com.escape.games.resource.Shader;
+
+/**
+ * Level-of-detail geometry.
+ * Wraps a list of geometries ordered from most (level 0) to least detailed,
+ * and selects one each frame in prepare() based on the object's distance from the camera.
+ * Thresholds are either camera distances (MODE_DISTANCE, ascending) or
+ * projected screen sizes as a fraction of viewport height (MODE_SCREEN_SIZE, descending).
+ * A level change only happens once the metric moves past a threshold by the hysteresis fraction,
+ * so objects sitting near a threshold do not pop back and forth.
+ * Level selection is per instance, so an instance has a single owner; the levels themselves may be shared.
+ * @author escape-llc
+ *
+ */
+public class LODGeometry extends Geometry {
+	/** thresholds are camera distances */
+	public static final int MODE_DISTANCE = 0;
+	/** thresholds are screen size as fraction of viewport height */
+	public static final int MODE_SCREEN_SIZE = 1;
+	final Geometry[] levels;
+	final float[] thresholds;
+	final int mode;
+	final float hysteresis;
+	final float radius;
+	/* per-level draw counts */
+	final int[] draws;
+	/* currently selected level */
+	int level;
+	/**
+	 * Ctor.
+	 * @param levels Geometry per level, most detailed first.
+	 * @param thresholds Switch points between level N and N+1; one less than levels.
+	 * @param mode MODE_DISTANCE or MODE_SCREEN_SIZE.
+	 * @param hysteresis Fraction of threshold the metric must pass before switching, e.g. 0.1.
+	 * @param radius Bounding radius in model units; used by MODE_SCREEN_SIZE.
+	 */
+	public LODGeometry(Geometry[] levels, float[] thresholds, int mode, float hysteresis, float radius) {
+		if(levels == null || levels.length == 0)
+			throw new IllegalArgumentException("levels");
+		if(thresholds == null || thresholds.length != levels.length - 1)
+			throw new IllegalArgumentException("thresholds");
+		if(mode != MODE_DISTANCE && mode != MODE_SCREEN_SIZE)
+			throw new IllegalArgumentException("mode");
+		if(hysteresis < 0f || hysteresis >= 1f)
+			throw new IllegalArgumentException("hysteresis");
+		if(mode == MODE_SCREEN_SIZE && radius <= 0f)
+			throw new IllegalArgumentException("radius");
+		this.levels = levels;
+		this.thresholds = thresholds;
+		this.mode = mode;
+		this.hysteresis = hysteresis;
+		this.radius = radius;
+		this.draws = new int[levels.length];
+	}
+	/**
+	 * Ctor.
+	 * Distance mode.
+	 * @param levels Geometry per level, most detailed first.
+	 * @param distances Switch distances; one less than levels.
+	 * @param hysteresis Fraction of threshold the distance must pass before switching.
+	 */
+	public LODGeometry(Geometry[] levels, float[] distances, float hysteresis) {
+		this(levels, distances, MODE_DISTANCE, hysteresis, 0f);
+	}
+	/**
+	 * Return the currently selected level.
+	 * @return level index.
+	 */
+	public int getLevel() { return level; }
+	/**
+	 * Return the number of levels.
+	 * @return level count.
+	 */
+	public int getLevelCount() { return levels.length; }
+	/**
+	 * Return the number of draws of given level since last resetDrawCounts().
+	 * @param lx level index.
+	 * @return draw count.
+	 */
+	public int getDrawCount(int lx) { return draws[lx]; }
+	/**
+	 * Reset all draw counts to zero.
+	 */
+	public void resetDrawCounts() {
+		for(int ix = 0; ix < draws.length; ix++) {
+			draws[ix] = 0;
+		}
+	}
+	/**
+	 * Switch distance between level lx and lx + 1 for the current projection.
+	 * @param lx level index.
+	 * @param pscale Projection scale (P[5]).
+	 * @param mscale Model scale.
+	 * @return camera distance.
+	 */
+	float distance(int lx, float pscale, float mscale) {
+		if(mode == MODE_DISTANCE) return thresholds[lx];
+		// projected size = radius * P[5] / distance
+		return radius * mscale * pscale / thresholds[lx];
+	}
+	/**
+	 * Select the level for this frame.
+	 * Uses the translation of matrixM as object position.
+	 */
+	@Override
+	public void prepare(RenderContext rc, float[] matrixM) {
+		if(levels.length == 1) return;
+		final float[] eye = rc.cameraPosition();
+		final float dx = matrixM[12] - eye[0];
+		final float dy = matrixM[13] - eye[1];
+		final float dz = matrixM[14] - eye[2];
+		final float dist = Mat4.length(dx, dy, dz);
+		float pscale = 0f, mscale = 0f;
+		if(mode == MODE_SCREEN_SIZE) {
+			pscale = rc.matrixP()[5];
+			mscale = Mat4.length(matrixM[0], matrixM[1], matrixM[2]);
+		}
+		int lx = level;
+		while(lx < levels.length - 1 && dist > distance(lx, pscale, mscale)*(1f + hysteresis)) {
+			lx++;
+		}
+		while(lx > 0 && dist < distance(lx - 1, pscale, mscale)*(1f - hysteresis)) {
+			lx--;
+		}
+		level = lx;
+	}
+	/**
+	 * Load for the single owner.
+	 * @throws IllegalStateException if already loaded by another object.
+	 */
+	@Override
+	public synchronized void load(ResourceLoader rl, Services svc) {
+		if(users > 0) throw new IllegalStateException("LODGeometry has a single owner");
+		super.load(rl, svc);
+	}
+	@Override
+	protected void internalLoad(ResourceLoader rl, Services svc) {
+		for(int ix = 0; ix < levels.length; ix++) {
+			levels[ix].load(rl, svc);
+		}
+	}
+	@Override
+	protected void internalUnload(ResourceLoader rl) {
+		for(int ix = 0; ix < levels.length; ix++) {
+			levels[ix].unload();
+		}
+	}
+	@Override
+	public void render(Shader sx, Properties px) {
+		draws[level]++;
+		levels[level].render(sx, px);
+	}
+	/**
+	 * Transparent if any level is, so the pass does not change with the level.
+	 */
+	@Override
+	public boolean isTransparent() {
+		for(int ix = 0; ix < levels.length; ix++) {
+			if(levels[ix].isTransparent()) return true;
+		}
+		return false;
+	}
+	/**
+	 * Pick against level 0.
+	 */
+	@Override
+	public MeshBVH getBVH() {
+		return levels[0].getBVH();
+	}
+	/**
+	 * Return vertex count of level 0.
+	 */
+	@Override
+	public int getVertexCount() {
+		return levels[0].getVertexCount();
+	}
+}
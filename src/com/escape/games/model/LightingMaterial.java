@@ -34,7 +34,7 @@ public class LightingMaterial extends Material {
 	}
 	@Override
 	public void setup(Shader sh) {
-		sh.uniform3d(Shader.SV_ULIGHTPOSITION, position);
+		sh.uniform3d(Shader.SLOT_ULIGHTPOSITION, position);
 	}
 
 	@Override
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wavefront material library (.mtl) parser.
+ * Recognized statements:
+ * <ul>
+ * 		<li><kbd>newmtl name</kbd> start a material</li>
+ * 		<li><kbd>Kd r g b</kbd> diffuse color</li>
+ * 		<li><kbd>d alpha</kbd> or <kbd>Tr 1-alpha</kbd> dissolve</li>
+ * 		<li><kbd>map_Kd file</kbd> diffuse texture</li>
+ * </ul>
+ * A material with map_Kd becomes a TextureMaterial whose texture key is the file name without directory or extension;
+ * otherwise a UniformMaterial of the diffuse color and alpha.
+ * Other statements are ignored.
+ * @author escape-llc
+ *
+ */
+public class MTLParser {
+	final LinkedHashMap<String, Material> materials = new LinkedHashMap<String, Material>();
+	/* current newmtl */
+	String name;
+	final float[] diffuse = new float[4];
+	String texture;
+	/**
+	 * Parse the stream and add its materials.
+	 * A later material of the same name replaces an earlier one.
+	 * @param is Source stream; closed on return.
+	 * @throws IOException
+	 */
+	public void parse(InputStream is) throws IOException {
+		final BufferedReader br = new BufferedReader(new InputStreamReader(is, "US-ASCII"));
+		try {
+			reset(null);
+			String line;
+			while((line = br.readLine()) != null) {
+				line = line.trim();
+				if(line.length() == 0 || line.charAt(0) == '#') continue;
+				final String[] parts = line.split("\\s+", 2);
+				final String rest = parts.length > 1 ? parts[1] : "";
+				if("newmtl".equals(parts[0])) {
+					finish();
+					reset(rest);
+				}
+				else if("Kd".equals(parts[0])) {
+					final String[] rgb = rest.split("\\s+");
+					for(int ix = 0; ix < 3 && ix < rgb.length; ix++) {
+						diffuse[ix] = Float.parseFloat(rgb[ix]);
+					}
+				}
+				else if("d".equals(parts[0])) {
+					diffuse[3] = Float.parseFloat(last(rest));
+				}
+				else if("Tr".equals(parts[0])) {
+					diffuse[3] = 1f - Float.parseFloat(last(rest));
+				}
+				else if("map_Kd".equals(parts[0])) {
+					// options (-s, -o, etc.) come first; file is last
+					texture = textureKey(last(rest));
+				}
+			}
+			finish();
+		}
+		finally {
+			try {
+				br.close();
+			} catch (IOException ioe) {
+			}
+		}
+	}
+	static String last(String rest) {
+		final String[] parts = rest.split("\\s+");
+		return parts[parts.length - 1];
+	}
+	/**
+	 * Map a texture file name to a texture key: drop directories and extension.
+	 * @param file File name from map_Kd.
+	 * @return Texture key, e.g. "textures/crate.png" is "crate".
+	 */
+	public static String textureKey(String file) {
+		final int slash = Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\'));
+		final String base = file.substring(slash + 1);
+		final int dot = base.lastIndexOf('.');
+		return dot > 0 ? base.substring(0, dot) : base;
+	}
+	void reset(String nx) {
+		name = nx;
+		diffuse[0] = diffuse[1] = diffuse[2] = diffuse[3] = 1f;
+		texture = null;
+	}
+	void finish() {
+		if(name == null) return;
+		materials.put(name, texture != null ? new TextureMaterial(texture) : new UniformMaterial(diffuse.clone()));
+	}
+	/**
+	 * Return the materials parsed so far.
+	 * @return Map of name to material, in file order.
+	 */
+	public Map<String, Material> getMaterials() { return materials; }
+	/**
+	 * Return a material by name.
+	 * @param name Material name (usemtl).
+	 * @return Material or NULL.
+	 */
+	public Material get(String name) { return materials.get(name); }
+}
@@ -34,4 +34,10 @@ public abstract class Material {
 	 * @return the shader key.
 	 */
 	public abstract String getShaderKey();
+	/**
+	 * Return whether this material requires alpha blending.
+	 * Default implementation returns false.
+	 * @return true: transparent; false: opaque.
+	 */
+	public boolean isTransparent() { return false; }
 }
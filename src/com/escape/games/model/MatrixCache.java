@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import com.escape.games.math.Mat4;
+
+/**
+ * Model (M) matrix with cached Model/View (MV) and Model/View/Projection (MVP) products.
+ * The owner bumps the version whenever the contents of M change.
+ * The render context records the View and Projection versions each product was computed against,
+ * and only recomputes a product when one of its inputs has a different version.
+ * Do not share an instance between render contexts; the versions are only meaningful to one.
+ * @author escape-llc
+ *
+ */
+public final class MatrixCache {
+	static final int NONE = -1;
+	/** Model (M) */
+	public final float[] matrixM = new float[16];
+	/** Model/View (MV) valid as of mvModel/mvView */
+	public final float[] matrixMV = new float[16];
+	/** Model/View/Projection (MVP) valid as of mvpModel/mvpView/mvpProj */
+	public final float[] matrixMVP = new float[16];
+	/* M version */
+	int version;
+	/* versions MV was computed against */
+	int mvModel = NONE;
+	int mvView = NONE;
+	/* versions MVP was computed against */
+	int mvpModel = NONE;
+	int mvpView = NONE;
+	int mvpProj = NONE;
+	/**
+	 * Ctor.
+	 * M is initialized to identity.
+	 */
+	public MatrixCache() {
+		Mat4.setIdentity(matrixM, 0);
+	}
+	/**
+	 * Return the current M version.
+	 * @return the version.
+	 */
+	public int getVersion() { return version; }
+	/**
+	 * Notify the contents of M have changed.
+	 * Cached products are recomputed on next use.
+	 */
+	public void invalidate() { version++; }
+	/**
+	 * Return MV, recomputing only if M or V changed since last time.
+	 * @param matrixV View (V) matrix.
+	 * @param vversion View version.
+	 * @return MV matrix.
+	 */
+	public float[] mv(float[] matrixV, int vversion) {
+		if(mvModel != version || mvView != vversion) {
+			Mat4.multiply(matrixMV, 0, matrixV, 0, matrixM, 0);
+			mvModel = version;
+			mvView = vversion;
+		}
+		return matrixMV;
+	}
+	/**
+	 * Return MVP, recomputing only if M, V, or P changed since last time.
+	 * @param matrixVP View/Projection (VP) matrix.
+	 * @param vversion View version.
+	 * @param pversion Projection version.
+	 * @return MVP matrix.
+	 */
+	public float[] mvp(float[] matrixVP, int vversion, int pversion) {
+		if(mvpModel != version || mvpView != vversion || mvpProj != pversion) {
+			Mat4.multiply(matrixMVP, 0, matrixVP, 0, matrixM, 0);
+			mvpModel = version;
+			mvpView = vversion;
+			mvpProj = pversion;
+		}
+		return matrixMVP;
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+/**
+ * Bounding volume hierarchy over a triangle mesh, for ray intersection.
+ * Built top-down by splitting at the median centroid along the longest axis, down to LEAF_SIZE triangles.
+ * Nodes are stored flat: 6 floats of bounds (min xyz, max xyz) and 2 ints per node;
+ * an inner node's children are adjacent, and a leaf holds a range of the triangle permutation.
+ * Positions are copied at build time, so the hierarchy stays valid after the vertex buffer is released.
+ * Immutable once built; queries may run on any thread, each with its own stack.
+ * @author escape-llc
+ *
+ */
+public final class MeshBVH {
+	/** most triangles in a leaf */
+	public static final int LEAF_SIZE = 4;
+	/** minimum stack length for intersect() */
+	public static final int STACK_SIZE = 64;
+	/* packed x, y, z per vertex */
+	final float[] positions;
+	/* 3 vertex indices per triangle; NULL: triangle t is vertices 3t..3t+2 */
+	final int[] indices;
+	/* triangle ids in leaf order */
+	final int[] tris;
+	final int triCount;
+	/* 6 per node */
+	float[] bounds;
+	/* 2 per node: inner (left child, 0); leaf (first, -count) */
+	int[] nodes;
+	int nodeCount;
+	/* build scratch */
+	float[] centroids;
+	/**
+	 * Ctor.
+	 * @param positions Packed x, y, z per vertex; not copied.
+	 * @param indices 3 vertex indices per triangle; NULL: consecutive vertex triples.
+	 */
+	public MeshBVH(float[] positions, int[] indices) {
+		if(positions == null) throw new IllegalArgumentException("positions");
+		this.positions = positions;
+		this.indices = indices;
+		this.triCount = indices != null ? indices.length/3 : positions.length/9;
+		this.tris = new int[triCount];
+		for(int ix = 0; ix < triCount; ix++) {
+			tris[ix] = ix;
+		}
+		// binary tree with at least one triangle per leaf; trimmed after build
+		final int cap = Math.max(1, 2*triCount - 1);
+		bounds = new float[cap*6];
+		nodes = new int[cap*2];
+		centroids = new float[triCount*3];
+		for(int ix = 0; ix < triCount; ix++) {
+			final int a = vertex(ix, 0)*3, b = vertex(ix, 1)*3, c = vertex(ix, 2)*3;
+			for(int ax = 0; ax < 3; ax++) {
+				centroids[ix*3 + ax] = (positions[a + ax] + positions[b + ax] + positions[c + ax])*(1f/3f);
+			}
+		}
+		nodeCount = 1;
+		build(0, 0, triCount);
+		centroids = null;
+		if(nodeCount*2 < nodes.length) {
+			final int[] nn = new int[nodeCount*2];
+			System.arraycopy(nodes, 0, nn, 0, nn.length);
+			nodes = nn;
+			final float[] nb = new float[nodeCount*6];
+			System.arraycopy(bounds, 0, nb, 0, nb.length);
+			bounds = nb;
+		}
+	}
+	/**
+	 * Build an instance from interleaved vertex data.
+	 * @param vas Interleaved attributes.
+	 * @param offset Offset of the position in each vertex, in floats.
+	 * @param size Position components, 2 or 3; 2 sets z = 0.
+	 * @param stride Floats per vertex.
+	 * @param vc Vertex count.
+	 * @param indices 3 vertex indices per triangle; NULL: consecutive vertex triples.
+	 * @return new instance.
+	 */
+	public static MeshBVH fromInterleaved(float[] vas, int offset, int size, int stride, int vc, int[] indices) {
+		final float[] pos = new float[vc*3];
+		for(int ix = 0, src = offset; ix < vc; ix++, src += stride) {
+			pos[ix*3] = vas[src];
+			pos[ix*3 + 1] = vas[src + 1];
+			pos[ix*3 + 2] = size > 2 ? vas[src + 2] : 0f;
+		}
+		return new MeshBVH(pos, indices);
+	}
+	/**
+	 * Return the number of triangles.
+	 * @return count.
+	 */
+	public int getTriangleCount() { return triCount; }
+	/**
+	 * Return the number of nodes.
+	 * @return count.
+	 */
+	public int getNodeCount() { return nodeCount; }
+	/**
+	 * Copy the mesh bounds.
+	 * @param box Target min x, y, z, max x, y, z.
+	 * @param off Offset into box.
+	 */
+	public void getBounds(float[] box, int off) {
+		System.arraycopy(bounds, 0, box, off, 6);
+	}
+	/**
+	 * Return a vertex index of a triangle.
+	 * @param tri Triangle id.
+	 * @param corner 0..2.
+	 * @return vertex index.
+	 */
+	public int vertex(int tri, int corner) {
+		return indices != null ? indices[tri*3 + corner] : tri*3 + corner;
+	}
+	/**
+	 * Build the subtree for tris[start..end) at node nx.
+	 */
+	void build(int nx, int start, int end) {
+		final float[] bb = bounds;
+		final int bo = nx*6;
+		bb[bo] = bb[bo + 1] = bb[bo + 2] = Float.POSITIVE_INFINITY;
+		bb[bo + 3] = bb[bo + 4] = bb[bo + 5] = Float.NEGATIVE_INFINITY;
+		float cminx = Float.POSITIVE_INFINITY, cminy = cminx, cminz = cminx;
+		float cmaxx = Float.NEGATIVE_INFINITY, cmaxy = cmaxx, cmaxz = cmaxx;
+		for(int ix = start; ix < end; ix++) {
+			final int tri = tris[ix];
+			for(int cx = 0; cx < 3; cx++) {
+				final int vo = vertex(tri, cx)*3;
+				for(int ax = 0; ax < 3; ax++) {
+					final float vv = positions[vo + ax];
+					if(vv < bb[bo + ax]) bb[bo + ax] = vv;
+					if(vv > bb[bo + 3 + ax]) bb[bo + 3 + ax] = vv;
+				}
+			}
+			final float px = centroids[tri*3], py = centroids[tri*3 + 1], pz = centroids[tri*3 + 2];
+			if(px < cminx) cminx = px;
+			if(px > cmaxx) cmaxx = px;
+			if(py < cminy) cminy = py;
+			if(py > cmaxy) cmaxy = py;
+			if(pz < cminz) cminz = pz;
+			if(pz > cmaxz) cmaxz = pz;
+		}
+		final int count = end - start;
+		final float ex = cmaxx - cminx, ey = cmaxy - cminy, ez = cmaxz - cminz;
+		if(count <= LEAF_SIZE || (ex <= 0f && ey <= 0f && ez <= 0f)) {
+			nodes[nx*2] = start;
+			nodes[nx*2 + 1] = -count;
+			return;
+		}
+		final int axis = ex >= ey && ex >= ez ? 0 : (ey >= ez ? 1 : 2);
+		final int mid = start + count/2;
+		select(start, end - 1, mid, axis);
+		final int left = nodeCount;
+		nodeCount += 2;
+		nodes[nx*2] = left;
+		nodes[nx*2 + 1] = 0;
+		build(left, start, mid);
+		build(left + 1, mid, end);
+	}
+	/**
+	 * Partially order tris[lo..hi] so tris[kk] has the median centroid on axis.
+	 */
+	void select(int lo, int hi, int kk, int axis) {
+		final int[] tt = tris;
+		final float[] cc = centroids;
+		while(hi > lo) {
+			final float pivot = cc[tt[(lo + hi) >>> 1]*3 + axis];
+			int ii = lo, jj = hi;
+			while(ii <= jj) {
+				while(cc[tt[ii]*3 + axis] < pivot) ii++;
+				while(cc[tt[jj]*3 + axis] > pivot) jj--;
+				if(ii <= jj) {
+					final int sw = tt[ii];
+					tt[ii] = tt[jj];
+					tt[jj] = sw;
+					ii++;
+					jj--;
+				}
+			}
+			if(kk <= jj) hi = jj;
+			else if(kk >= ii) lo = ii;
+			else return;
+		}
+	}
+	/**
+	 * Ray/box slab test.
+	 * @return entry distance, or +infinity on miss.
+	 */
+	static float slab(float[] bb, int bo, float ox, float oy, float oz, float ix, float iy, float iz, float tmax) {
+		float t0 = (bb[bo] - ox)*ix, t1 = (bb[bo + 3] - ox)*ix;
+		float tn = Math.min(t0, t1), tf = Math.max(t0, t1);
+		t0 = (bb[bo + 1] - oy)*iy;
+		t1 = (bb[bo + 4] - oy)*iy;
+		tn = Math.max(tn, Math.min(t0, t1));
+		tf = Math.min(tf, Math.max(t0, t1));
+		t0 = (bb[bo + 2] - oz)*iz;
+		t1 = (bb[bo + 5] - oz)*iz;
+		tn = Math.max(tn, Math.min(t0, t1));
+		tf = Math.min(tf, Math.max(t0, t1));
+		return tf >= Math.max(tn, 0f) && tn < tmax ? tn : Float.POSITIVE_INFINITY;
+	}
+	/**
+	 * Test a ray against the mesh bounds only.
+	 * @param tmax Farthest distance, in units of the direction vector.
+	 * @return true: ray enters the bounds before tmax.
+	 */
+	public boolean intersectsBounds(float ox, float oy, float oz, float dx, float dy, float dz, float tmax) {
+		return slab(bounds, 0, ox, oy, oz, 1f/dx, 1f/dy, 1f/dz, tmax) != Float.POSITIVE_INFINITY;
+	}
+	/**
+	 * Find the closest triangle hit by a ray.
+	 * Triangles are two-sided.
+	 * @param ox Origin x.
+	 * @param oy Origin y.
+	 * @param oz Origin z.
+	 * @param dx Direction x; need not be unit length.
+	 * @param dy Direction y.
+	 * @param dz Direction z.
+	 * @param tmax Farthest distance, in units of the direction vector.
+	 * @param stack Traversal stack; at least STACK_SIZE.
+	 * @param hit Target t, u, v (barycentric weights of corners 1 and 2).
+	 * @return triangle id or -1 on miss.
+	 */
+	public int intersect(float ox, float oy, float oz, float dx, float dy, float dz, float tmax, int[] stack, float[] hit) {
+		final float ix = 1f/dx, iy = 1f/dy, iz = 1f/dz;
+		final float[] bb = bounds;
+		final int[] nn = nodes;
+		float best = tmax;
+		int found = -1;
+		if(slab(bb, 0, ox, oy, oz, ix, iy, iz, best) == Float.POSITIVE_INFINITY) return -1;
+		int sp = 0;
+		stack[sp++] = 0;
+		while(sp > 0) {
+			final int nx = stack[--sp];
+			final int count = -nn[nx*2 + 1];
+			if(count > 0) {
+				final int first = nn[nx*2];
+				for(int ti = first; ti < first + count; ti++) {
+					final int tri = tris[ti];
+					final float tt = triangle(tri, ox, oy, oz, dx, dy, dz, best, hit);
+					if(tt < best) {
+						best = tt;
+						found = tri;
+					}
+				}
+				continue;
+			}
+			final int left = nn[nx*2];
+			final float tl = slab(bb, left*6, ox, oy, oz, ix, iy, iz, best);
+			final float tr = slab(bb, (left + 1)*6, ox, oy, oz, ix, iy, iz, best);
+			// push the farther child first so the nearer one is visited next
+			if(tl <= tr) {
+				if(tr != Float.POSITIVE_INFINITY) stack[sp++] = left + 1;
+				if(tl != Float.POSITIVE_INFINITY) stack[sp++] = left;
+			}
+			else {
+				if(tl != Float.POSITIVE_INFINITY) stack[sp++] = left;
+				stack[sp++] = left + 1;
+			}
+		}
+		if(found >= 0) {
+			// hit[] may hold a farther candidate's u, v; recompute for the winner
+			triangle(found, ox, oy, oz, dx, dy, dz, Float.POSITIVE_INFINITY, hit);
+		}
+		return found;
+	}
+	/**
+	 * Moller-Trumbore ray/triangle test.
+	 * @return distance, or +infinity on miss or not closer than tmax; hit receives t, u, v on a hit.
+	 */
+	float triangle(int tri, float ox, float oy, float oz, float dx, float dy, float dz, float tmax, float[] hit) {
+		final float[] pp = positions;
+		final int a = vertex(tri, 0)*3, b = vertex(tri, 1)*3, c = vertex(tri, 2)*3;
+		final float ax = pp[a], ay = pp[a + 1], az = pp[a + 2];
+		final float e1x = pp[b] - ax, e1y = pp[b + 1] - ay, e1z = pp[b + 2] - az;
+		final float e2x = pp[c] - ax, e2y = pp[c + 1] - ay, e2z = pp[c + 2] - az;
+		final float px = dy*e2z - dz*e2y, py = dz*e2x - dx*e2z, pz = dx*e2y - dy*e2x;
+		final float det = e1x*px + e1y*py + e1z*pz;
+		if(det == 0f) return Float.POSITIVE_INFINITY;
+		final float rd = 1f/det;
+		final float sx = ox - ax, sy = oy - ay, sz = oz - az;
+		final float uu = (sx*px + sy*py + sz*pz)*rd;
+		if(uu < 0f || uu > 1f) return Float.POSITIVE_INFINITY;
+		final float qx = sy*e1z - sz*e1y, qy = sz*e1x - sx*e1z, qz = sx*e1y - sy*e1x;
+		final float vv = (dx*qx + dy*qy + dz*qz)*rd;
+		if(vv < 0f || uu + vv > 1f) return Float.POSITIVE_INFINITY;
+		final float tt = (e2x*qx + e2y*qy + e2z*qz)*rd;
+		if(tt < 0f || tt >= tmax) return Float.POSITIVE_INFINITY;
+		hit[0] = tt;
+		hit[1] = uu;
+		hit[2] = vv;
+		return tt;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Offline converter from OBJ to MeshFile.
+ * Runs on a plain JVM; see main() for command line use.
+ * Output is what OBJModelGeometry would build at load time: deduplicated vertices and,
+ * unless -o is given, vertex cache optimized triangles.
+ * @author escape-llc
+ *
+ */
+public class MeshConverter {
+	/**
+	 * Convert one file.
+	 * @param input OBJ file path.
+	 * @param output Mesh file path.
+	 * @param options OBJParser options.
+	 * @return Parser holding the converted mesh.
+	 * @throws Exception
+	 */
+	public static OBJParser convert(String input, String output, int options) throws Exception {
+		final OBJParser op = new OBJParser(1024, 1024, options);
+		op.parse(new FileInputStream(input));
+		final OutputStream os = new BufferedOutputStream(new FileOutputStream(output));
+		try {
+			MeshFile.write(op, os);
+		}
+		finally {
+			os.close();
+		}
+		return op;
+	}
+	/**
+	 * Command line: MeshConverter [-n] [-t] [-u] [-v] [-o] input.obj output.mesh
+	 * <ul>
+	 * <li>-n: ignore normals</li>
+	 * <li>-t: ignore texture coords</li>
+	 * <li>-u, -v: invert texture U, V</li>
+	 * <li>-o: skip vertex cache optimization</li>
+	 * </ul>
+	 * @param args Arguments.
+	 */
+	public static void main(String[] args) {
+		int options = 0;
+		int ax = 0;
+		for(; ax < args.length && args[ax].startsWith("-"); ax++) {
+			final String opt = args[ax];
+			if("-n".equals(opt)) options |= OBJParser.OPTION_IGNORE_NORMAL;
+			else if("-t".equals(opt)) options |= OBJParser.OPTION_IGNORE_TEXTURE;
+			else if("-u".equals(opt)) options |= OBJParser.OPTION_TEXTURE_INVERTU;
+			else if("-v".equals(opt)) options |= OBJParser.OPTION_TEXTURE_INVERTV;
+			else if("-o".equals(opt)) options |= OBJParser.OPTION_NO_OPTIMIZE;
+			else {
+				ax = args.length;
+				break;
+			}
+		}
+		if(args.length - ax != 2) {
+			System.err.println("usage: MeshConverter [-n] [-t] [-u] [-v] [-o] input.obj output.mesh");
+			System.exit(2);
+		}
+		try {
+			final long start = System.nanoTime();
+			final OBJParser op = convert(args[ax], args[ax + 1], options);
+			final long nanos = System.nanoTime() - start;
+			System.out.printf("%s: %d vertices, %d triangles, %.1f ms%n", args[ax + 1], op.getVertexCount(), op.getIndexCount()/3, nanos/1e6);
+			if((options & OBJParser.OPTION_NO_OPTIMIZE) == 0) {
+				System.out.printf("ACMR %.3f -> %.3f%n", op.getOptimizer().getACMRBefore(), op.getOptimizer().getACMRAfter());
+			}
+		}
+		catch(Exception ex) {
+			System.err.println(args[ax] + ": " + ex);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Binary mesh file; precompiled form of an OBJ model (see MeshConverter).
+ * All values are little-endian, so on Android (always little-endian) the regions are used in place:
+ * <ul>
+ * <li>Header, HEADER_SIZE bytes: magic "EMSH", version, elems[4], vertex count, index count, index size (2 or 4),
+ * position bounds (min xyz, max xyz), reserved.</li>
+ * <li>Interleaved float vertices {Position, Normal, Color, Texture} per elems; starts at HEADER_SIZE.</li>
+ * <li>Triangle indices, 16-bit up to 65536 vertices else 32-bit; padded to 4 bytes.</li>
+ * </ul>
+ * getVertices() and getIndices() are views of the source buffer, e.g. a memory-mapped file; nothing is copied.
+ * @author escape-llc
+ *
+ */
+public final class MeshFile {
+	/** "EMSH" little-endian */
+	public static final int MAGIC = 0x48534D45;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+	final ByteBuffer data;
+	final int[] elems = new int[InterleavedVertexGeometry.IX_TOTAL];
+	final int vc;
+	final int indexCount;
+	final int indexSize;
+	final float[] bounds = new float[6];
+	final int vertexBytes;
+	/**
+	 * Ctor.
+	 * Reads and validates the header.
+	 * @param bb Source, from position; e.g. a memory-mapped file.
+	 * @throws IllegalArgumentException not a valid mesh file, or an index out of range.
+	 */
+	public MeshFile(ByteBuffer bb) {
+		if(bb == null) throw new IllegalArgumentException("bb");
+		data = bb.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if(data.capacity() < HEADER_SIZE) throw new IllegalArgumentException("length");
+		if(data.getInt(0) != MAGIC) throw new IllegalArgumentException("magic");
+		if(data.getInt(4) != VERSION) throw new IllegalArgumentException("version");
+		int epv = 0;
+		for(int ix = 0; ix < elems.length; ix++) {
+			elems[ix] = data.getInt(8 + ix*4);
+			if(elems[ix] != 0 && (elems[ix] < 2 || elems[ix] > 4)) throw new IllegalArgumentException("elems");
+			epv += elems[ix];
+		}
+		if(elems[InterleavedVertexGeometry.IX_POSITION] < 2) throw new IllegalArgumentException("elems");
+		vc = data.getInt(24);
+		indexCount = data.getInt(28);
+		indexSize = data.getInt(32);
+		if(vc < 0 || indexCount < 0 || indexCount % 3 != 0) throw new IllegalArgumentException("count");
+		if(indexSize != 2 && indexSize != 4) throw new IllegalArgumentException("indexSize");
+		for(int ix = 0; ix < bounds.length; ix++) {
+			bounds[ix] = data.getFloat(36 + ix*4);
+		}
+		// long: a corrupt count must not wrap past the length check
+		final long vbytes = (long)vc*epv*Geometry.FLOAT_BYTES;
+		if(HEADER_SIZE + vbytes + (long)indexCount*indexSize > data.capacity()) throw new IllegalArgumentException("length");
+		vertexBytes = (int)vbytes;
+		checkIndices(getIndices(), indexCount, vc);
+	}
+	/**
+	 * Verify every index addresses a vertex; GL does not check element indices.
+	 * @param indices ShortBuffer (unsigned) or IntBuffer.
+	 * @param count Number of indices.
+	 * @param vc Vertex count.
+	 * @throws IllegalArgumentException index out of range.
+	 */
+	static void checkIndices(Buffer indices, int count, int vc) {
+		if(indices instanceof ShortBuffer) {
+			final ShortBuffer sb = (ShortBuffer)indices;
+			for(int ix = 0; ix < count; ix++) {
+				if((sb.get(ix) & 0xffff) >= vc) throw new IllegalArgumentException("indices");
+			}
+		}
+		else {
+			final IntBuffer ib = (IntBuffer)indices;
+			for(int ix = 0; ix < count; ix++) {
+				final int vx = ib.get(ix);
+				if(vx < 0 || vx >= vc) throw new IllegalArgumentException("indices");
+			}
+		}
+	}
+	/**
+	 * Return the components per attribute.
+	 * @return elems {Position, Normal, Color, Texture}; 0: not present.
+	 */
+	public int[] getElems() { return elems.clone(); }
+	/**
+	 * Return the vertex count.
+	 * @return count.
+	 */
+	public int getVertexCount() { return vc; }
+	/**
+	 * Return the index count.
+	 * @return count; 3 per triangle.
+	 */
+	public int getIndexCount() { return indexCount; }
+	/**
+	 * Copy the position bounds.
+	 * @param dst Target; min xyz, max xyz.
+	 */
+	public void getBounds(float[] dst) { System.arraycopy(bounds, 0, dst, 0, bounds.length); }
+	/**
+	 * Return the vertex region.
+	 * @return view of the source.
+	 */
+	public FloatBuffer getVertices() {
+		return region(HEADER_SIZE, vertexBytes).asFloatBuffer();
+	}
+	/**
+	 * Return the index region.
+	 * @return ShortBuffer or IntBuffer view of the source.
+	 */
+	public Buffer getIndices() {
+		final ByteBuffer bb = region(HEADER_SIZE + vertexBytes, indexCount*indexSize);
+		return indexSize == 2 ? bb.asShortBuffer() : bb.asIntBuffer();
+	}
+	ByteBuffer region(int offset, int length) {
+		final ByteBuffer bb = data.duplicate();
+		bb.position(offset);
+		bb.limit(offset + length);
+		return bb.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+	/**
+	 * Write a mesh file.
+	 * @param os Target stream; not closed.
+	 * @param vas Interleaved vertices.
+	 * @param elems Components per attribute.
+	 * @param vc Vertex count.
+	 * @param indices Triangle list.
+	 * @param count Number of indices.
+	 * @return Number of bytes written.
+	 * @throws IOException
+	 * @throws IllegalArgumentException an index out of range, or the file would exceed 2GB.
+	 */
+	public static int write(OutputStream os, float[] vas, int[] elems, int vc, int[] indices, int count) throws IOException {
+		if(elems == null || elems.length != InterleavedVertexGeometry.IX_TOTAL) throw new IllegalArgumentException("elems");
+		if(count % 3 != 0) throw new IllegalArgumentException("count");
+		int epv = 0;
+		for(int ix = 0; ix < elems.length; ix++) {
+			epv += elems[ix];
+		}
+		if(vc < 0 || vas.length < (long)vc*epv) throw new IllegalArgumentException("vas");
+		for(int ix = 0; ix < count; ix++) {
+			if(indices[ix] < 0 || indices[ix] >= vc) throw new IllegalArgumentException("indices");
+		}
+		final int indexSize = vc <= 0x10000 ? 2 : 4;
+		final long indexBytes = ((long)count*indexSize + 3) & ~3L;
+		final long total = HEADER_SIZE + (long)vc*epv*Geometry.FLOAT_BYTES + indexBytes;
+		if(total > Integer.MAX_VALUE) throw new IllegalArgumentException("length");
+		final ByteBuffer bb = ByteBuffer.allocate((int)total).order(ByteOrder.LITTLE_ENDIAN);
+		bb.putInt(MAGIC);
+		bb.putInt(VERSION);
+		for(int ix = 0; ix < elems.length; ix++) {
+			bb.putInt(elems[ix]);
+		}
+		bb.putInt(vc);
+		bb.putInt(count);
+		bb.putInt(indexSize);
+		final float[] bounds = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		final int pc = Math.min(elems[InterleavedVertexGeometry.IX_POSITION], 3);
+		for(int vx = 0; vx < vc; vx++) {
+			for(int cx = 0; cx < pc; cx++) {
+				final float fv = vas[vx*epv + cx];
+				if(fv < bounds[cx]) bounds[cx] = fv;
+				if(fv > bounds[cx + 3]) bounds[cx + 3] = fv;
+			}
+		}
+		for(int cx = 0; cx < 3; cx++) {
+			if(vc == 0 || cx >= pc) {
+				bounds[cx] = 0f;
+				bounds[cx + 3] = 0f;
+			}
+		}
+		for(int ix = 0; ix < bounds.length; ix++) {
+			bb.putFloat(bounds[ix]);
+		}
+		bb.position(HEADER_SIZE);
+		for(int ix = 0; ix < vc*epv; ix++) {
+			bb.putFloat(vas[ix]);
+		}
+		for(int ix = 0; ix < count; ix++) {
+			if(indexSize == 2) {
+				bb.putShort((short)indices[ix]);
+			}
+			else {
+				bb.putInt(indices[ix]);
+			}
+		}
+		os.write(bb.array(), 0, bb.capacity());
+		return bb.capacity();
+	}
+	/**
+	 * Write the result of an OBJ parse.
+	 * @param op Parser after parse().
+	 * @param os Target stream; not closed.
+	 * @return Number of bytes written.
+	 * @throws IOException
+	 * @throws IllegalArgumentException parse() did not create data.
+	 */
+	public static int write(OBJParser op, OutputStream os) throws IOException {
+		final InterleavedPage ip = op.vertexPage();
+		if(ip == null) throw new IllegalArgumentException("parse() did not create data");
+		return write(os, ip.buffer, op.vertexElems(), ip.count(), op.indexList(), op.getIndexCount());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.util.Log;
+
+import com.escape.games.api.Properties;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.resource.Shader;
+
+/**
+ * Geometry based on a MeshFile resource or file; the precompiled sibling of OBJModelGeometry.
+ * The file is memory-mapped and its vertex and index regions go to the VBO/IBO upload as views, with no parse or copy.
+ * Raw resources can only be mapped when stored uncompressed (e.g. aaptOptions noCompress "mesh").
+ * @author escape-llc
+ *
+ */
+public class MeshModelGeometry extends Geometry {
+	static final String TAG = "MeshModel";
+	/* mesh resource ID; 0: use file */
+	final int resid;
+	final File file;
+	/* VBO encoding; NULL: all FLOAT */
+	VertexFormat format;
+	MeshFile mesh;
+	/* indexed vertex buffer */
+	private Geometry vertexBuffer;
+	/**
+	 * Ctor.
+	 * @param resid Resource ID of mesh file.
+	 */
+	public MeshModelGeometry(int resid) {
+		this.resid = resid;
+		this.file = null;
+	}
+	/**
+	 * Ctor.
+	 * @param file Mesh file.
+	 */
+	public MeshModelGeometry(File file) {
+		if(file == null) throw new IllegalArgumentException("file");
+		this.resid = 0;
+		this.file = file;
+	}
+	/**
+	 * Get the vertex encoding.
+	 * @return Current value; NULL: all FLOAT.
+	 */
+	public VertexFormat getVertexFormat() { return format; }
+	/**
+	 * Set the vertex encoding, e.g. VertexFormat.COMPACT.
+	 * Must call before install pipeline!
+	 * Any format other than NULL re-encodes at load time, so the vertices are copied.
+	 * @param format New value; NULL: all FLOAT.
+	 */
+	public void setVertexFormat(VertexFormat format) { this.format = format; }
+	/**
+	 * Return the mesh file.
+	 * @return NULL: not loaded.
+	 */
+	public MeshFile getMesh() { return mesh; }
+	/**
+	 * Map a file read-only.
+	 * @param file Source.
+	 * @return New buffer.
+	 * @throws IOException
+	 */
+	static ByteBuffer map(File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		finally {
+			raf.close();
+		}
+	}
+	@Override
+	protected void internalLoad(ResourceLoader rl, Services svc) {
+		try {
+			final ByteBuffer bb = file != null ? map(file) : rl.map(resid);
+			if(bb == null) return;
+			mesh = new MeshFile(bb);
+			final InterleavedVertexGeometry ivg = new InterleavedVertexGeometry(mesh.getVertices(), mesh.getElems());
+			vertexBuffer = new IndexedVBOGeometry(ivg, mesh.getIndices(), format);
+			// allocate the VBO/IBO
+			vertexBuffer.load(rl, svc);
+		} catch (Exception e) {
+			Log.e(TAG, "load", e);
+		}
+	}
+	@Override
+	protected void internalUnload(ResourceLoader rl) {
+		if(vertexBuffer != null) {
+			vertexBuffer.unload();
+			vertexBuffer = null;
+		}
+		mesh = null;
+	}
+	@Override
+	public MeshBVH getBVH() {
+		return vertexBuffer != null ? vertexBuffer.getBVH() : null;
+	}
+	@Override
+	public int getVertexCount() {
+		return vertexBuffer != null ? vertexBuffer.getVertexCount() : 0;
+	}
+	@Override
+	public void render(Shader sx, Properties px) {
+		if(vertexBuffer != null) {
+			vertexBuffer.render(sx, px);
+		}
+	}
+}
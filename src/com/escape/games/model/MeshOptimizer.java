@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.util.Arrays;
+
+/**
+ * Load-time reordering of indexed triangle lists for the GPU.
+ * <ul>
+ * <li>Triangle order: Forsyth's linear-speed vertex cache optimisation; greedy emission of the highest scoring triangle,
+ * scored by the LRU cache position and remaining valence of its vertices.</li>
+ * <li>Vertex order: vertices renumbered in order of first use, so fetches walk the vertex buffer forwards;
+ * unreferenced vertices are dropped.</li>
+ * </ul>
+ * ACMR (average cache miss ratio: vertex shader runs per triangle) is measured with a FIFO cache of ACMR_CACHE entries
+ * before and after; 0.5 is the ideal for a regular grid, 3 is the worst case.
+ * Deterministic: ties go to the lower triangle index.
+ * Not thread-safe; use one instance per thread.
+ * @author escape-llc
+ *
+ */
+public class MeshOptimizer {
+	/** LRU cache size modeled by the triangle ordering */
+	public static final int CACHE_SIZE = 32;
+	/** FIFO cache size used to measure ACMR */
+	public static final int ACMR_CACHE = 16;
+	static final float CACHE_DECAY_POWER = 1.5f;
+	static final float LAST_TRI_SCORE = 0.75f;
+	static final float VALENCE_BOOST_SCALE = 2.0f;
+	static final float VALENCE_BOOST_POWER = 0.5f;
+	static final int VALENCE_TABLE = 64;
+	static final float[] cacheScore = new float[CACHE_SIZE];
+	static final float[] valenceScore = new float[VALENCE_TABLE];
+	static {
+		for(int ix = 0; ix < CACHE_SIZE; ix++) {
+			if(ix < 3) {
+				// the last triangle's vertices; fixed score so it is not re-emitted by preference
+				cacheScore[ix] = LAST_TRI_SCORE;
+			}
+			else {
+				final float scaler = 1f/(CACHE_SIZE - 3);
+				cacheScore[ix] = (float)Math.pow(1f - (ix - 3)*scaler, CACHE_DECAY_POWER);
+			}
+		}
+		for(int ix = 1; ix < VALENCE_TABLE; ix++) {
+			valenceScore[ix] = VALENCE_BOOST_SCALE*(float)Math.pow(ix, -VALENCE_BOOST_POWER);
+		}
+	}
+	float acmrBefore;
+	float acmrAfter;
+	/**
+	 * Return the ACMR of the input of the last optimize().
+	 * @return misses per triangle.
+	 */
+	public float getACMRBefore() { return acmrBefore; }
+	/**
+	 * Return the ACMR of the output of the last optimize().
+	 * @return misses per triangle.
+	 */
+	public float getACMRAfter() { return acmrAfter; }
+	/**
+	 * Reorder triangles then vertices, in place.
+	 * @param indices Triangle list.
+	 * @param count Number of indices; multiple of 3.
+	 * @param vas Interleaved vertex data.
+	 * @param epv Floats per vertex.
+	 * @param vc Vertex count.
+	 * @return New vertex count; unreferenced vertices are dropped from the end of vas.
+	 */
+	public int optimize(int[] indices, int count, float[] vas, int epv, int vc) {
+		if(count % 3 != 0) throw new IllegalArgumentException("count");
+		if(vas.length < vc*epv) throw new IllegalArgumentException("vas");
+		acmrBefore = acmr(indices, count, vc, ACMR_CACHE);
+		optimizeTriangles(indices, count, vc);
+		final int nvc = optimizeVertices(indices, count, vas, epv, vc);
+		acmrAfter = acmr(indices, count, nvc, ACMR_CACHE);
+		return nvc;
+	}
+	/**
+	 * Reorder triangles within each range, then vertices, in place.
+	 * Triangles never move between ranges, so per-material draw ranges stay valid.
+	 * @param indices Triangle list.
+	 * @param count Number of indices; multiple of 3.
+	 * @param ranges First index of each range, ascending from 0; multiples of 3.
+	 * @param vas Interleaved vertex data.
+	 * @param epv Floats per vertex.
+	 * @param vc Vertex count.
+	 * @return New vertex count; unreferenced vertices are dropped from the end of vas.
+	 */
+	public int optimize(int[] indices, int count, int[] ranges, float[] vas, int epv, int vc) {
+		if(ranges.length <= 1) return optimize(indices, count, vas, epv, vc);
+		if(count % 3 != 0) throw new IllegalArgumentException("count");
+		if(vas.length < vc*epv) throw new IllegalArgumentException("vas");
+		acmrBefore = acmr(indices, count, vc, ACMR_CACHE);
+		for(int rx = 0; rx < ranges.length; rx++) {
+			final int first = ranges[rx];
+			final int end = rx + 1 < ranges.length ? ranges[rx + 1] : count;
+			final int[] part = Arrays.copyOfRange(indices, first, end);
+			optimizeTriangles(part, part.length, vc);
+			System.arraycopy(part, 0, indices, first, part.length);
+		}
+		final int nvc = optimizeVertices(indices, count, vas, epv, vc);
+		acmrAfter = acmr(indices, count, nvc, ACMR_CACHE);
+		return nvc;
+	}
+	/**
+	 * Simulate a FIFO post-transform cache.
+	 * @param indices Triangle list.
+	 * @param count Number of indices.
+	 * @param vc Vertex count.
+	 * @param size Cache entries.
+	 * @return misses per triangle; 0 for no triangles.
+	 */
+	public static float acmr(int[] indices, int count, int vc, int size) {
+		if(count < 3) return 0f;
+		// timestamp of entry into cache; a vertex is cached if it entered within the last size misses
+		final int[] stamp = new int[vc];
+		int misses = 0;
+		for(int ix = 0; ix < count; ix++) {
+			final int vx = indices[ix];
+			if(stamp[vx] == 0 || misses - stamp[vx] >= size) {
+				misses++;
+				stamp[vx] = misses;
+			}
+		}
+		return (float)misses/(float)(count/3);
+	}
+	static float vertexScore(int cachePos, int remaining) {
+		if(remaining == 0) return -1f;
+		final float score = cachePos < 0 ? 0f : cacheScore[cachePos];
+		return score + (remaining < VALENCE_TABLE ? valenceScore[remaining] : VALENCE_BOOST_SCALE*(float)Math.pow(remaining, -VALENCE_BOOST_POWER));
+	}
+	/**
+	 * Reorder triangles for post-transform cache reuse, in place.
+	 * @param indices Triangle list.
+	 * @param count Number of indices; multiple of 3.
+	 * @param vc Vertex count.
+	 */
+	public static void optimizeTriangles(int[] indices, int count, int vc) {
+		final int tc = count/3;
+		if(tc < 2) return;
+		// vertex -> triangle adjacency; the first remaining[v] entries of each run are not yet emitted
+		final int[] remaining = new int[vc];
+		for(int ix = 0; ix < count; ix++) {
+			remaining[indices[ix]]++;
+		}
+		final int[] offset = new int[vc + 1];
+		for(int vx = 0; vx < vc; vx++) {
+			offset[vx + 1] = offset[vx] + remaining[vx];
+		}
+		final int[] adjacency = new int[count];
+		final int[] fill = new int[vc];
+		for(int ix = 0; ix < count; ix++) {
+			final int vx = indices[ix];
+			adjacency[offset[vx] + fill[vx]++] = ix/3;
+		}
+		final int[] cachePos = new int[vc];
+		final float[] vscore = new float[vc];
+		for(int vx = 0; vx < vc; vx++) {
+			cachePos[vx] = -1;
+			vscore[vx] = vertexScore(-1, remaining[vx]);
+		}
+		final boolean[] emitted = new boolean[tc];
+		// LRU cache; 3 extra slots hold entries being pushed out
+		int[] cache = new int[CACHE_SIZE + 3];
+		int[] next = new int[CACHE_SIZE + 3];
+		int cached = 0;
+		final int[] output = new int[count];
+		int best = 0;
+		float bestScore = -1f;
+		for(int tx = 0; tx < tc; tx++) {
+			final float sc = vscore[indices[tx*3]] + vscore[indices[tx*3 + 1]] + vscore[indices[tx*3 + 2]];
+			if(sc > bestScore) {
+				bestScore = sc;
+				best = tx;
+			}
+		}
+		// dead-end fallback walks input order
+		int cursor = 0;
+		for(int ox = 0; ox < tc; ox++) {
+			if(best < 0) {
+				while(emitted[cursor]) cursor++;
+				best = cursor;
+			}
+			emitted[best] = true;
+			final int tb = best*3;
+			System.arraycopy(indices, tb, output, ox*3, 3);
+			// retire triangle from its vertices
+			for(int cx = 0; cx < 3; cx++) {
+				final int vx = indices[tb + cx];
+				final int start = offset[vx];
+				final int last = start + --remaining[vx];
+				for(int ax = start; ax <= last; ax++) {
+					if(adjacency[ax] == best) {
+						adjacency[ax] = adjacency[last];
+						adjacency[last] = best;
+						break;
+					}
+				}
+			}
+			// triangle's vertices move to the front
+			int nc = 0;
+			for(int cx = 0; cx < 3; cx++) {
+				next[nc++] = indices[tb + cx];
+			}
+			for(int cx = 0; cx < cached; cx++) {
+				final int vx = cache[cx];
+				if(vx != indices[tb] && vx != indices[tb + 1] && vx != indices[tb + 2]) {
+					next[nc++] = vx;
+				}
+			}
+			final int[] swap = cache;
+			cache = next;
+			next = swap;
+			cached = Math.min(nc, CACHE_SIZE);
+			for(int cx = 0; cx < nc; cx++) {
+				final int vx = cache[cx];
+				cachePos[vx] = cx < CACHE_SIZE ? cx : -1;
+				vscore[vx] = vertexScore(cachePos[vx], remaining[vx]);
+			}
+			// rescore triangles touching the cache; best is the highest
+			best = -1;
+			bestScore = -1f;
+			for(int cx = 0; cx < nc; cx++) {
+				final int vx = cache[cx];
+				final int start = offset[vx];
+				final int end = start + remaining[vx];
+				for(int ax = start; ax < end; ax++) {
+					final int tx = adjacency[ax];
+					final float sc = vscore[indices[tx*3]] + vscore[indices[tx*3 + 1]] + vscore[indices[tx*3 + 2]];
+					if(sc > bestScore || (sc == bestScore && tx < best)) {
+						bestScore = sc;
+						best = tx;
+					}
+				}
+			}
+		}
+		System.arraycopy(output, 0, indices, 0, count);
+	}
+	/**
+	 * Renumber vertices in order of first use and permute vertex data to match, in place.
+	 * @param indices Triangle list.
+	 * @param count Number of indices.
+	 * @param vas Interleaved vertex data.
+	 * @param epv Floats per vertex.
+	 * @param vc Vertex count.
+	 * @return Number of referenced vertices.
+	 */
+	public static int optimizeVertices(int[] indices, int count, float[] vas, int epv, int vc) {
+		final int[] remap = new int[vc];
+		for(int vx = 0; vx < vc; vx++) {
+			remap[vx] = -1;
+		}
+		final float[] src = new float[vc*epv];
+		System.arraycopy(vas, 0, src, 0, src.length);
+		int nvc = 0;
+		for(int ix = 0; ix < count; ix++) {
+			final int vx = indices[ix];
+			int nx = remap[vx];
+			if(nx < 0) {
+				nx = nvc++;
+				remap[vx] = nx;
+				System.arraycopy(src, vx*epv, vas, nx*epv, epv);
+			}
+			indices[ix] = nx;
+		}
+		return nvc;
+	}
+}
@@ -73,8 +73,8 @@ public class MixTextures extends GameObject implements Effect, RequireResourceLo
 	 */
 	public void setup() {
 		if(sx == null || tex1 == null || tex2 == null) return;
-		tex1.setup(sx, GLES20.GL_TEXTURE0, 0, Shader.SV_UTEXTURE);
-		tex2.setup(sx, GLES20.GL_TEXTURE1, 1, Shader.SV_UTEXTURE2);
-		sx.uniform(Shader.SV_URATIO, ratio);
+		tex1.setup(sx, GLES20.GL_TEXTURE0, 0, Shader.SLOT_UTEXTURE);
+		tex2.setup(sx, GLES20.GL_TEXTURE1, 1, Shader.SLOT_UTEXTURE2);
+		sx.uniform(Shader.SLOT_URATIO, ratio);
 	}
 }
@@ -15,18 +15,21 @@
  */
 package com.escape.games.model;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import android.util.Log;
 
 import com.escape.games.api.Properties;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.Services;
+import com.escape.games.core.TraceSwitches;
 import com.escape.games.resource.Shader;
 
 /**
  * Geometry based on OBJ file resource.
+ * Instances with the same resource, options, material library and vertex format share one parsed geometry and its VBO/IBO,
+ * through ResourceLoader.acquireGeometry(); the last unload() frees them.
  * @author escape-llc
  *
  */
@@ -37,8 +40,17 @@ public class OBJModelGeometry extends Geometry {
 	final int options;
 	int capacity;
 	int extendBy;
-	/* Vertex Attribute Buffer */
-	private InterleavedVertexGeometry vertexBuffer;
+	/* VBO encoding; NULL: all FLOAT */
+	VertexFormat format;
+	/* .mtl resource ID; 0: none */
+	int mtlResid;
+	/* parallel parse; NULL: serial */
+	Executor exec;
+	int chunks;
+	/* indexed vertex buffer; shared through the loader */
+	private Geometry vertexBuffer;
+	/* key of vertexBuffer; NULL: not acquired */
+	String key;
 	/**
 	 * Ctor.
 	 * Sets capacity=100 and extendBy=20.
@@ -83,25 +95,124 @@ public class OBJModelGeometry extends Geometry {
 	 * @param extendBy New value.
 	 */
 	public void setExtendBy(int extendBy) { this.extendBy = extendBy; }
+	/**
+	 * Get the vertex encoding.
+	 * @return Current value; NULL: all FLOAT.
+	 */
+	public VertexFormat getVertexFormat() { return format; }
+	/**
+	 * Set the vertex encoding, e.g. VertexFormat.COMPACT.
+	 * Must call before install pipeline!
+	 * QUANTIZED positions need a shader from ShaderBuilder.quantizedPosition().
+	 * @param format New value; NULL: all FLOAT.
+	 */
+	public void setVertexFormat(VertexFormat format) { this.format = format; }
+	/**
+	 * Set the material library for usemtl names.
+	 * Resources are not looked up by file name, so the model's mtllib is not followed; pass its resource here.
+	 * Each material's range is drawn with one call after applying the material; see Submesh.
+	 * Materials are applied with the object's shader, so the object's MATERIAL must select a shader they suit,
+	 * e.g. TEXTURE for map_Kd materials.
+	 * Must call before install pipeline!
+	 * @param resid Resource ID of .mtl file; 0: none.
+	 */
+	public void setMaterialLibrary(int resid) { this.mtlResid = resid; }
+	/**
+	 * Return the draw ranges by material.
+	 * Shared by all instances with the same resource, options, library and format; so are their materials.
+	 * @return Submeshes or NULL if not loaded or single material.
+	 */
+	public Submesh[] getSubmeshes() {
+		return vertexBuffer instanceof IndexedVBOGeometry ? ((IndexedVBOGeometry)vertexBuffer).getSubmeshes() : null;
+	}
+	/**
+	 * Parse on several threads; worthwhile for large models only.
+	 * The resource is memory-mapped; see ResourceLoader.map().
+	 * Must call before install pipeline!
+	 * @param exec Runs the chunks; NULL: serial.
+	 * @param chunks Most chunks; one per thread is typical.
+	 */
+	public void setParallel(Executor exec, int chunks) {
+		if(exec != null && chunks < 1) throw new IllegalArgumentException("chunks");
+		this.exec = exec;
+		this.chunks = chunks;
+	}
+	/**
+	 * Return the cache key; everything that affects the vertex and index data.
+	 * @return key.
+	 */
+	String cacheKey() {
+		return new StringBuilder("obj:").append(resid).append(":").append(options)
+				.append(":").append(mtlResid).append(":").append(format).toString();
+	}
+	/**
+	 * Share the geometry of other instances with the same cache key, or parse the model.
+	 */
 	@Override
-	protected void internalLoad(ResourceLoader rl, Services svc) {
-		final InputStream is = rl.open(resid);
+	protected void internalLoad(final ResourceLoader rl, Services svc) {
+		final String kx = cacheKey();
 		try {
-			final OBJParser op = new OBJParser(capacity, extendBy, options);
-			op.parse(is);
-			vertexBuffer = op.vertexAttributes();
-			// allocate the VBA
-			vertexBuffer.load(rl, svc);
+			vertexBuffer = rl.acquireGeometry(kx, new Callable<Geometry>() {
+				public Geometry call() throws Exception {
+					return parse(rl);
+				}
+			}, svc);
+			if(vertexBuffer != null) {
+				key = kx;
+			}
 		} catch (Exception e) {
 			Log.e("OMG", "op.parse", e);
 		}
-		finally {
-			try {
-				is.close();
-			} catch (IOException e) {
-				// eat it
+	}
+	@Override
+	protected void internalUnload(ResourceLoader rl) {
+		if(key != null) {
+			rl.releaseGeometry(key);
+			key = null;
+		}
+		vertexBuffer = null;
+	}
+	/**
+	 * Parse the model and build the indexed geometry; not loaded.
+	 * @param rl Resource loader.
+	 * @return New instance.
+	 * @throws Exception
+	 */
+	IndexedVBOGeometry parse(ResourceLoader rl) throws Exception {
+		final OBJParser op = new OBJParser(capacity, extendBy, options);
+		if(exec != null) {
+			op.parse(rl.map(resid), exec, chunks);
+		}
+		else {
+			op.parse(rl.open(resid));
+		}
+		// loader diagnostic; ungated, every load in a release build pays for the string and the log call
+		if(TraceSwitches.Loader.GL_RESOURCES && (options & OBJParser.OPTION_NO_OPTIMIZE) == 0) {
+			Log.d("OMG", "ACMR " + op.getOptimizer().getACMRBefore() + " -> " + op.getOptimizer().getACMRAfter());
+		}
+		final IndexedVBOGeometry ivg = op.indexedAttributes(format);
+		if(mtlResid != 0 && ivg.getSubmeshes() != null) {
+			final MTLParser mp = new MTLParser();
+			mp.parse(rl.open(mtlResid));
+			final Submesh[] sms = ivg.getSubmeshes();
+			for(int ix = 0; ix < sms.length; ix++) {
+				if(sms[ix].name == null) continue;
+				final Material mx = mp.get(sms[ix].name);
+				if(mx == null) {
+					Log.w("OMG", "material not found: " + sms[ix].name);
+				}
+				sms[ix].setMaterial(mx);
 			}
 		}
+		return ivg;
+	}
+	@Override
+	public boolean isTransparent() {
+		return vertexBuffer != null && vertexBuffer.isTransparent();
+	}
+	@Override
+	public MeshBVH getBVH() {
+		return vertexBuffer != null ? vertexBuffer.getBVH() : null;
 	}
 	@Override
 	public int getVertexCount() {
@@ -15,28 +15,40 @@
  */
 package com.escape.games.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
 import android.opengl.GLES20;
 
 /**
  * OBJ file parser.
- * Creates Interleaved Geometry.
+ * Creates Interleaved Geometry of unique vertices and a triangle index list.
+ * Face corners that repeat a (position, texture, normal) tuple reuse its vertex; the lookup is a primitive open-addressed hash.
+ * Scans ASCII bytes directly, from a ByteBuffer (e.g. memory-mapped) or an InputStream read in chunks;
+ * numbers are parsed in place, so no per-line or per-token objects are created.
+ * Parsing runs in two phases over chunks of lines, scan then resolve, followed by an in-order merge;
+ * with an Executor the chunks of a large buffer run concurrently and the result is identical to the serial parse.
  * OBJ file format:
  * <ul>
  * 		<li>list of vertices: <kbd>v x y z</kbd></li>
  * 		<li>list of tex coords: <kbd>vt u v</kbd></li>
  * 		<li>list of normals: <kbd>vn x y z</kbd></li>
- * 		<li>list of faces: <kbd>f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3</kbd></li>
+ * 		<li>list of faces: <kbd>f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3 ...</kbd></li>
+ * 		<li>material of following faces: <kbd>usemtl name</kbd>; see getSubmeshes()</li>
+ * 		<li>material library: <kbd>mtllib file</kbd>; see MTLParser</li>
  * </ul>
  * Parsing options (OPTION_*):
  * <ul>
  * 		<li><kbd>IGNORE_NORMAL</kbd> ignore normals if present</li>
  * 		<li><kbd>IGNORE_TEXTURE</kbd> ignore texture coords if present</li>
  * 		<li><kbd>TEXTURE_INVERT[UV]</kbd>	invert the texture coord (1-uv)</li>
+ * 		<li><kbd>NO_OPTIMIZE</kbd> keep file order of triangles and vertices (see MeshOptimizer)</li>
  * </ul>
  * @author escape-llc
  *
@@ -55,10 +67,28 @@ public class OBJParser {
 	public static final int OPTION_TEXTURE_INVERTU = (1<<2);
 	/** texture option: invert V (1-v) */
 	public static final int OPTION_TEXTURE_INVERTV = (1<<3);
+	/** parse option: skip vertex cache optimization */
+	public static final int OPTION_NO_OPTIMIZE = (1<<4);
+	/** bytes read per chunk by parse(InputStream) */
+	public static final int CHUNK_SIZE = 64*1024;
+	/** smallest range given to one thread by the parallel parse */
+	public static final int MIN_CHUNK_BYTES = 256*1024;
+	/* mantissas below this are exact in a float */
+	static final long FLOAT_EXACT = 1L << 24;
+	/* powers of ten exact in a float */
+	static final float[] POW10 = { 1f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
 	private InterleavedPage mainBuffer;
+	private int[] mainElems;
+	/* triangle list into mainBuffer */
+	private int[] indices;
+	private int indexCount;
+	/* index ranges by material; see merge() */
+	private Submesh[] submeshes;
+	private final ArrayList<String> libraries = new ArrayList<String>();
 	private final int capacity;
 	private final int expandBy;
 	private final int options;
+	private final MeshOptimizer optimizer = new MeshOptimizer();
 	/**
 	 * Ctor.
 	 * @param capacity Initial capacity for buffers.
@@ -72,199 +102,854 @@ public class OBJParser {
 	}
 	
 	/**
-	 * Return the geometry created by the parse.
+	 * Return the geometry created by the parse, one vertex per triangle corner.
+	 * Expands the index list; prefer indexedAttributes().
 	 * @return New geometry instance.
 	 * @throws IllegalArgumentException buffer was not created by parse().
 	 */
 	public InterleavedVertexGeometry vertexAttributes() {
 		if(mainBuffer == null) throw new IllegalArgumentException("parse() did not create data");
-		return mainBuffer.createGeometry();
+		final int stride = mainBuffer.stride;
+		final float[] vas = new float[indexCount*stride];
+		for(int ix = 0; ix < indexCount; ix++) {
+			mainBuffer.copyTo(indices[ix], vas, ix*stride);
+		}
+		return new InterleavedVertexGeometry(vas, mainElems);
+	}
+	/**
+	 * Return the geometry created by the parse, as unique vertices plus an index list.
+	 * @return New geometry instance.
+	 * @throws IllegalArgumentException buffer was not created by parse().
+	 */
+	public IndexedVBOGeometry indexedAttributes() {
+		return indexedAttributes(null);
+	}
+	/**
+	 * Return the geometry created by the parse, as unique vertices plus an index list.
+	 * @param format Vertex encoding in the VBO; NULL: all FLOAT.
+	 * @return New geometry instance.
+	 * @throws IllegalArgumentException buffer was not created by parse().
+	 */
+	public IndexedVBOGeometry indexedAttributes(VertexFormat format) {
+		if(mainBuffer == null) throw new IllegalArgumentException("parse() did not create data");
+		final IndexedVBOGeometry ivg = new IndexedVBOGeometry(mainBuffer.createGeometry(), IndexedVBOGeometry.makeIndices(indices, indexCount, mainBuffer.count()), format);
+		if(submeshes.length > 1 || submeshes[0].name != null) {
+			ivg.setSubmeshes(submeshes);
+		}
+		return ivg;
 	}
+	/**
+	 * Return the index ranges by material from the last parse.
+	 * Faces before any usemtl have a NULL name.
+	 * @return Submeshes in order of first use, or NULL.
+	 */
+	public Submesh[] getSubmeshes() { return submeshes; }
+	/**
+	 * Return the mtllib names from the last parse.
+	 * @return File names in order.
+	 */
+	public List<String> getMaterialLibraries() { return libraries; }
+	/**
+	 * Return the number of unique vertices from the last parse.
+	 * @return count.
+	 */
+	public int getVertexCount() { return mainBuffer != null ? mainBuffer.count() : 0; }
+	/**
+	 * Return the number of indices (3 per triangle) from the last parse.
+	 * @return count.
+	 */
+	public int getIndexCount() { return indexCount; }
+	/**
+	 * Return the optimizer; holds ACMR of the last parse unless OPTION_NO_OPTIMIZE.
+	 * @return optimizer.
+	 */
+	public MeshOptimizer getOptimizer() { return optimizer; }
+	/* raw output for MeshFile */
+	InterleavedPage vertexPage() { return mainBuffer; }
+	int[] vertexElems() { return mainElems; }
+	int[] indexList() { return indices; }
 	public int getElementType() { return GLES20.GL_TRIANGLES; }
 	/**
 	 * Parse the OBJ stream and populate buffers.
-	 * @param is
+	 * Reads in chunks of CHUNK_SIZE bytes; only complete lines are scanned, the remainder carries into the next chunk.
+	 * @param is Source stream; closed on return.
 	 * @throws Exception
 	 */
 	public void parse(InputStream is) throws Exception {
-		final BufferedReader in = new BufferedReader(new InputStreamReader(is));
 		try {
-			load(in);
+			final Chunk cx = new Chunk(options, capacity, expandBy);
+			byte[] buf = new byte[CHUNK_SIZE];
+			ByteBuffer bb = ByteBuffer.wrap(buf);
+			int fill = 0;
+			for(;;) {
+				final int rd = is.read(buf, fill, buf.length - fill);
+				if(rd < 0) {
+					if(fill > 0) {
+						cx.scan(bb, 0, fill);
+					}
+					break;
+				}
+				fill += rd;
+				int last = fill - 1;
+				while(last >= 0 && buf[last] != '\n') {
+					last--;
+				}
+				if(last < 0) {
+					if(fill == buf.length) {
+						// line longer than buffer
+						buf = Arrays.copyOf(buf, buf.length*2);
+						bb = ByteBuffer.wrap(buf);
+					}
+					continue;
+				}
+				cx.scan(bb, 0, last + 1);
+				fill -= last + 1;
+				System.arraycopy(buf, last + 1, buf, 0, fill);
+			}
+			merge(new Chunk[] { cx }, null);
 		} finally {
 			try {
-				in.close();
+				is.close();
 			} catch (IOException ioe) {
 			}
 		}
 	}
 	/**
-	 * Return the index of whitespace character or one-past end-of-string.
-	 * To repeat the call, add one to the return value of previous call, or zero for initial.
-	 * @param line Source string.
-	 * @param startat Starting index.
-	 * @return Ending index. Points to either whitespace or one-past end-of-string.
+	 * Parse OBJ text and populate buffers.
+	 * Use with a memory-mapped file, or any buffer holding the whole file.
+	 * @param bb Source; scanned from position to limit with absolute gets, so position is unchanged.
+	 */
+	public void parse(ByteBuffer bb) {
+		final Chunk cx = new Chunk(options, capacity, expandBy);
+		cx.scan(bb, bb.position(), bb.limit());
+		try {
+			merge(new Chunk[] { cx }, null);
+		}
+		catch(Exception ex) {
+			// serial merge runs no tasks
+			throw new IllegalStateException(ex);
+		}
+	}
+	/**
+	 * Parse OBJ text on several threads.
+	 * The buffer is split on line boundaries into chunks of at least MIN_CHUNK_BYTES.
+	 * Chunks are scanned, then resolved and deduplicated, concurrently; the merge runs in file order,
+	 * so the output is identical to parse(ByteBuffer).
+	 * The calling thread runs the first chunk of each phase and waits for the rest.
+	 * @param bb Source; scanned from position to limit with absolute gets, so position is unchanged.
+	 * @param exec Runs the other chunks, e.g. a fixed thread pool.
+	 * @param chunks Most chunks; one per thread is typical.
+	 * @throws Exception first failure of any chunk, e.g. NumberFormatException.
+	 */
+	public void parse(ByteBuffer bb, Executor exec, int chunks) throws Exception {
+		if(exec == null) throw new IllegalArgumentException("exec");
+		if(chunks < 1) throw new IllegalArgumentException("chunks");
+		final int start = bb.position();
+		final int limit = bb.limit();
+		final int count = Math.max(1, Math.min(chunks, (limit - start)/MIN_CHUNK_BYTES));
+		final Chunk[] cs = new Chunk[count];
+		int at = start;
+		for(int ix = 0; ix < count; ix++) {
+			int end = ix == count - 1 ? limit : start + (int)((long)(limit - start)*(ix + 1)/count);
+			if(end < at) end = at;
+			while(end < limit && end > start && bb.get(end - 1) != '\n') {
+				end++;
+			}
+			cs[ix] = new Chunk(options, Math.max(capacity/count, 16), expandBy);
+			cs[ix].source = bb;
+			cs[ix].start = at;
+			cs[ix].end = end;
+			cs[ix].phase = Chunk.PHASE_SCAN;
+			at = end;
+		}
+		run(cs, exec);
+		merge(cs, exec);
+	}
+	/**
+	 * Run the current phase of each chunk and wait for all of them.
+	 * @param cs Chunks.
+	 * @param exec Runs all but the first; NULL: run all on the calling thread.
+	 * @throws Exception first failure.
 	 */
-	int advance(String line, int startat) {
-		int endat = startat;
-		while(endat < line.length() && !Character.isWhitespace(line.charAt(endat))) {
-			endat++;
+	static void run(Chunk[] cs, Executor exec) throws Exception {
+		final CountDownLatch done = new CountDownLatch(cs.length - 1);
+		for(int ix = 1; ix < cs.length; ix++) {
+			cs[ix].done = done;
+			if(exec != null) {
+				exec.execute(cs[ix]);
+			}
+			else {
+				cs[ix].run();
+			}
+		}
+		cs[0].done = null;
+		cs[0].run();
+		done.await();
+		for(int ix = 0; ix < cs.length; ix++) {
+			if(cs[ix].failure != null) {
+				final Throwable ex = cs[ix].failure;
+				if(ex instanceof Exception) throw (Exception)ex;
+				throw (Error)ex;
+			}
 		}
-		return endat;
 	}
 	/**
-	 * Same as advance() but with specific delimiter.
-	 * @param line Source string.
-	 * @param delim Delimiter to search for.
-	 * @param startat Starting index.
-	 * @return Ending index. Points to either DELIM or one-past end-of-string.
+	 * Compare bytes to an ASCII keyword.
+	 * @param bb Source.
+	 * @param at Starting index.
+	 * @param kw Keyword.
+	 * @return true: match.
 	 */
-	int advance(String line, char delim, int startat) {
-		int endat = startat;
-		while(endat < line.length() && delim != line.charAt(endat)) {
-			endat++;
+	static boolean keyword(ByteBuffer bb, int at, String kw) {
+		for(int ix = 0; ix < kw.length(); ix++) {
+			if(bb.get(at + ix) != kw.charAt(ix)) return false;
 		}
-		return endat;
+		return true;
 	}
 	/**
-	 * Parse a float using return and parameters from advance().
-	 * int endat = advance(line, startat);
-	 * final float vx = parse(line, startat, endat);
-	 * if(endat >= line.length()) newlinetime();
-	 * startat = endat + 1;
-	 * endat = advance(line, startat);
-	 * thenextone();
-	 * ...
-	 * @param line Source string.
-	 * @param startat Starting index.
-	 * @param endat Ending index.
-	 * @return
+	 * Return the rest of the line, without surrounding blanks.
+	 * @param bb Source.
+	 * @param at Starting index.
+	 * @param limit End of source.
+	 * @return Text; may contain blanks.
 	 */
-	float parse(String line, int startat, int endat) {
-		return Float.parseFloat(line.substring(startat, endat));
+	static String rest(ByteBuffer bb, int at, int limit) {
+		final int start = skipBlank(bb, at, limit);
+		int end = start;
+		while(end < limit && bb.get(end) != '\n') {
+			end++;
+		}
+		while(end > start && isWhitespace(bb.get(end - 1))) {
+			end--;
+		}
+		final char[] cx = new char[end - start];
+		for(int ix = 0; ix < cx.length; ix++) {
+			cx[ix] = (char)(bb.get(start + ix) & 0xff);
+		}
+		return new String(cx);
+	}
+	static boolean isWhitespace(int ch) {
+		return ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n' || ch == '\f' || ch == 0x0b;
 	}
 	/**
-	 * Parse integer version.
-	 * @param line Source string.
-	 * @param startat Starting index.
-	 * @param endat Ending index.
-	 * @return
+	 * Skip spaces and tabs within the current line.
+	 * @param bb Source.
+	 * @param at Starting index.
+	 * @param limit End of source.
+	 * @return Index of next non-blank, end of line, or limit.
 	 */
-	int parseInt(String line, int startat, int endat) {
-		return Integer.parseInt(line.substring(startat, endat));
+	static int skipBlank(ByteBuffer bb, int at, int limit) {
+		while(at < limit) {
+			final int ch = bb.get(at);
+			if(ch == '\n' || !isWhitespace(ch)) break;
+			at++;
+		}
+		return at;
 	}
 	/**
-	 * Parse 3 floats and do put3d().
-	 * @param fp Target page.
-	 * @param line Source line.
-	 * @param start Source start position (first char of first float).
+	 * Return the index of the next whitespace or limit.
+	 * @param bb Source.
+	 * @param at Starting index.
+	 * @param limit End of source.
+	 * @return Ending index of the token.
 	 */
-	void parse3d(FloatPage fp, String line, int start) {
-		int startat = start;
-		int endat = advance(line, startat);
-		final float f0 = parse(line, startat, endat);
-		startat = endat + 1;
-		endat = advance(line, startat);
-		final float f1 = parse(line, startat, endat);
-		startat = endat + 1;
-		endat = advance(line, startat);
-		final float f2 = parse(line, startat, endat);
-		fp.put3d(f0, f1, f2);
+	static int token(ByteBuffer bb, int at, int limit) {
+		while(at < limit && !isWhitespace(bb.get(at))) {
+			at++;
+		}
+		return at;
 	}
 	/**
-	 * @param in Input source.
-	 * @throws Exception
+	 * Parse a decimal float.
+	 * Plain decimals with a mantissa below 2^24 and an exponent within 10 are computed with one float multiply or divide,
+	 * which is correctly rounded and so matches Float.parseFloat(); anything else is passed to Float.parseFloat().
+	 * @param bb Source.
+	 * @param start Starting index.
+	 * @param end Ending index.
+	 * @return value.
+	 * @throws NumberFormatException not a number.
+	 */
+	static float parseFloat(ByteBuffer bb, int start, int end) {
+		int at = start;
+		boolean negative = false;
+		if(at < end) {
+			final int ch = bb.get(at);
+			if(ch == '-' || ch == '+') {
+				negative = ch == '-';
+				at++;
+			}
+		}
+		long mantissa = 0;
+		int exp10 = 0;
+		int digits = 0;
+		boolean any = false;
+		boolean fast = true;
+		while(at < end) {
+			final int ch = bb.get(at);
+			if(ch < '0' || ch > '9') break;
+			any = true;
+			if(mantissa != 0 || ch != '0') {
+				if(++digits > 18) {
+					fast = false;
+					break;
+				}
+				mantissa = mantissa*10 + (ch - '0');
+			}
+			at++;
+		}
+		if(at < end && bb.get(at) == '.') {
+			at++;
+			while(at < end) {
+				final int ch = bb.get(at);
+				if(ch < '0' || ch > '9') break;
+				any = true;
+				if(mantissa != 0 || ch != '0') {
+					if(++digits > 18) {
+						fast = false;
+						break;
+					}
+					mantissa = mantissa*10 + (ch - '0');
+				}
+				exp10--;
+				at++;
+			}
+		}
+		if(fast && any && at < end) {
+			final int ch = bb.get(at);
+			if(ch == 'e' || ch == 'E') {
+				at++;
+				boolean eneg = false;
+				if(at < end && (bb.get(at) == '-' || bb.get(at) == '+')) {
+					eneg = bb.get(at) == '-';
+					at++;
+				}
+				int ev = 0;
+				final int estart = at;
+				while(at < end && ev < 1000) {
+					final int ec = bb.get(at);
+					if(ec < '0' || ec > '9') break;
+					ev = ev*10 + (ec - '0');
+					at++;
+				}
+				if(at == estart) fast = false;
+				exp10 += eneg ? -ev : ev;
+			}
+		}
+		if(fast && any && at == end && mantissa < FLOAT_EXACT && exp10 >= -10 && exp10 <= 10) {
+			float fv = (float)mantissa;
+			if(exp10 < 0) {
+				fv /= POW10[-exp10];
+			}
+			else if(exp10 > 0) {
+				fv *= POW10[exp10];
+			}
+			return negative ? -fv : fv;
+		}
+		// rare forms: long mantissa, large exponent, NaN, Infinity, etc.
+		final char[] cx = new char[end - start];
+		for(int ix = 0; ix < cx.length; ix++) {
+			cx[ix] = (char)(bb.get(start + ix) & 0xff);
+		}
+		return Float.parseFloat(new String(cx));
+	}
+	/**
+	 * Parse a decimal int.
+	 * @param bb Source.
+	 * @param start Starting index.
+	 * @param end Ending index.
+	 * @return value.
+	 * @throws NumberFormatException not an int.
+	 */
+	static int parseInt(ByteBuffer bb, int start, int end) {
+		int at = start;
+		boolean negative = false;
+		if(at < end && (bb.get(at) == '-' || bb.get(at) == '+')) {
+			negative = bb.get(at) == '-';
+			at++;
+		}
+		if(at == end || end - at > 9) throw new NumberFormatException("index at " + start);
+		int value = 0;
+		while(at < end) {
+			final int ch = bb.get(at++);
+			if(ch < '0' || ch > '9') throw new NumberFormatException("index at " + start);
+			value = value*10 + (ch - '0');
+		}
+		return negative ? -value : value;
+	}
+	/**
+	 * Resolve an OBJ index: 1-based, or negative relative to the end.
+	 * @param value Parsed value.
+	 * @param count Elements defined so far.
+	 * @return 0-based index.
+	 */
+	static int resolve(int value, int count) {
+		return value < 0 ? count + value : value - 1;
+	}
+	/**
+	 * Open-addressed hash of unique (position, texture, normal) tuples.
+	 * Ids are assigned in order of first appearance.
+	 */
+	static final class TupleTable {
+		/* 3 per id */
+		int[] keys;
+		/* id + 1; 0: empty */
+		int[] table;
+		int unique;
+		TupleTable(int capacity) {
+			keys = new int[Math.max(capacity, 16)*3];
+			table = new int[Integer.highestOneBit(Math.max(capacity, 16)*2 - 1) << 1];
+		}
+		static int hash(int pp, int tt, int nn) {
+			final int hash = pp*0x9E3779B1 ^ tt*0x85EBCA77 ^ nn*0xC2B2AE3D;
+			return hash ^ (hash >>> 15);
+		}
+		/**
+		 * Return the id of a tuple, adding it if new.
+		 * A new tuple gets id unique - 1.
+		 * @return id.
+		 */
+		int find(int pp, int tt, int nn) {
+			final int mask = table.length - 1;
+			int slot = hash(pp, tt, nn) & mask;
+			int id;
+			while((id = table[slot]) != 0) {
+				final int ko = (id - 1)*3;
+				if(keys[ko] == pp && keys[ko + 1] == tt && keys[ko + 2] == nn) return id - 1;
+				slot = (slot + 1) & mask;
+			}
+			id = unique++;
+			if(keys.length < unique*3) {
+				keys = Arrays.copyOf(keys, keys.length*2);
+			}
+			keys[id*3] = pp;
+			keys[id*3 + 1] = tt;
+			keys[id*3 + 2] = nn;
+			table[slot] = id + 1;
+			if(unique*2 > table.length) {
+				rehash(table.length*2);
+			}
+			return id;
+		}
+		void rehash(int size) {
+			final int[] nt = new int[size];
+			final int mask = size - 1;
+			for(int id = 0; id < unique; id++) {
+				final int ko = id*3;
+				int slot = hash(keys[ko], keys[ko + 1], keys[ko + 2]) & mask;
+				while(nt[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				nt[slot] = id + 1;
+			}
+			table = nt;
+		}
+	}
+	/**
+	 * Contiguous range of lines.
+	 * Scan: attribute lines go to local pages; face corners are kept raw, with relative indices local to the chunk.
+	 * Resolve: corners become global tuples, deduplicated into a local table, with triangles over the local ids.
 	 */
-	void load(BufferedReader in) throws Exception {
-		final FloatPage vertices = new FloatPage(3, capacity, expandBy);
-		final FloatPage normals = (options & OPTION_IGNORE_NORMAL) == 0 ? new FloatPage(3, capacity, expandBy) : null;
-		final FloatPage tcs = (options & OPTION_IGNORE_TEXTURE) == 0 ? new FloatPage(2, capacity, expandBy) : null;
-		final String facelist[] = new String[4];
-		final int[] indices = new int[4];
-		// these get established on the first face
-		FloatPage[] pages = null;
-		int[] elems = null;
-		InterleavedPage ip = null;
-		String line = in.readLine();
-		while(line != null) {
-			int endat = advance(line, 0);
-			final String type = line.substring(0, endat);
-			if (type.equals(VERTEX)) {
-				parse3d(vertices, line, endat + 1);
+	static final class Chunk implements Runnable {
+		static final int PHASE_SCAN = 0;
+		static final int PHASE_RESOLVE = 1;
+		final int options;
+		final FloatPage vertices;
+		final FloatPage normals;
+		final FloatPage tcs;
+		/* 4 per corner: position, texture, normal, RELATIVE_* flags */
+		int[] corners;
+		int cornerCount;
+		/* corners per face */
+		int[] faces;
+		int faceCount;
+		/* local attribute counts at the first face line */
+		int firstNormals;
+		int firstTcs;
+		boolean anyFace;
+		/* usemtl names in order of appearance */
+		final ArrayList<String> materials = new ArrayList<String>();
+		/* index in materials per face; -1: carried over from the previous chunk */
+		int[] faceMaterials;
+		/* current usemtl */
+		int material = -1;
+		/* mtllib names */
+		final ArrayList<String> libraries = new ArrayList<String>();
+		/* index after the last token of nextFloat() */
+		int cursor;
+		/* run() parameters */
+		int phase;
+		ByteBuffer source;
+		int start;
+		int end;
+		int vbase;
+		int tbase;
+		int nbase;
+		boolean useTex;
+		boolean useNormal;
+		CountDownLatch done;
+		Throwable failure;
+		/* resolve output */
+		TupleTable table;
+		int[] tris;
+		int triCount;
+		Chunk(int options, int capacity, int expandBy) {
+			this.options = options;
+			vertices = new FloatPage(3, capacity, expandBy);
+			normals = (options & OPTION_IGNORE_NORMAL) == 0 ? new FloatPage(3, capacity, expandBy) : null;
+			tcs = (options & OPTION_IGNORE_TEXTURE) == 0 ? new FloatPage(2, capacity, expandBy) : null;
+			corners = new int[Math.max(capacity, 16)*4];
+			faces = new int[Math.max(capacity, 16)];
+			faceMaterials = new int[faces.length];
+		}
+		public void run() {
+			try {
+				if(phase == PHASE_SCAN) {
+					scan(source, start, end);
+				}
+				else {
+					resolve();
+				}
+			}
+			catch(Throwable ex) {
+				failure = ex;
+			}
+			finally {
+				if(done != null) {
+					done.countDown();
+				}
+			}
+		}
+		/**
+		 * Parse the next float of a line; skips leading blanks.
+		 * Leaves the index after the token in cursor.
+		 */
+		float nextFloat(ByteBuffer bb, int at, int limit) {
+			final int start = skipBlank(bb, at, limit);
+			final int end = token(bb, start, limit);
+			cursor = end;
+			return parseFloat(bb, start, end);
+		}
+		/**
+		 * Scan complete lines.
+		 * @param bb Source.
+		 * @param start Starting index; beginning of a line.
+		 * @param limit Ending index; end of a line.
+		 */
+		void scan(ByteBuffer bb, int start, int limit) {
+			int at = start;
+			while(at < limit) {
+				final int type = token(bb, at, limit);
+				final int len = type - at;
+				final int c0 = len > 0 ? bb.get(at) : 0;
+				if(len == 1 && c0 == 'v') {
+					final float f0 = nextFloat(bb, type, limit);
+					final float f1 = nextFloat(bb, cursor, limit);
+					final float f2 = nextFloat(bb, cursor, limit);
+					vertices.put3d(f0, f1, f2);
+				}
+				else if(len == 2 && c0 == 'v' && bb.get(at + 1) == 't') {
+					if(tcs != null) {
+						final float f0 = nextFloat(bb, type, limit);
+						final float f1 = nextFloat(bb, cursor, limit);
+						tcs.put2d((options & OPTION_TEXTURE_INVERTU) == 0 ? f0 : 1f - f0, (options & OPTION_TEXTURE_INVERTV) == 0 ? f1 : 1f - f1);
+					}
+				}
+				else if(len == 2 && c0 == 'v' && bb.get(at + 1) == 'n') {
+					if(normals != null) {
+						final float f0 = nextFloat(bb, type, limit);
+						final float f1 = nextFloat(bb, cursor, limit);
+						final float f2 = nextFloat(bb, cursor, limit);
+						normals.put3d(f0, f1, f2);
+					}
+				}
+				else if(len == 1 && c0 == 'f') {
+					face(bb, type, limit);
+				}
+				else if(len == 6 && keyword(bb, at, "usemtl")) {
+					final String name = rest(bb, type, limit);
+					int mx = materials.indexOf(name);
+					if(mx < 0) {
+						mx = materials.size();
+						materials.add(name);
+					}
+					material = mx;
+				}
+				else if(len == 6 && keyword(bb, at, "mtllib")) {
+					libraries.add(rest(bb, type, limit));
+				}
+				// g and o do not affect batching; submeshes are per material
+				// next line
+				while(at < limit && bb.get(at) != '\n') {
+					at++;
+				}
+				at++;
+			}
+		}
+		/**
+		 * Scan the corners of a face line.
+		 * Each line: f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3 ...
+		 * @param bb Source.
+		 * @param at Index after the "f".
+		 * @param limit End of source.
+		 */
+		void face(ByteBuffer bb, int at, int limit) {
+			if(!anyFace) {
+				// decides which attributes the mesh has; see merge()
+				anyFace = true;
+				firstNormals = normals != null ? normals.count() : 0;
+				firstTcs = tcs != null ? tcs.count() : 0;
 			}
-			else if (type.equals(TEXTURE)) {
-				if(tcs == null) continue;
-				int startat = endat + 1;
-				endat = advance(line, startat);
-				final float f0 = parse(line, startat, endat);
-				startat = endat + 1;
-				endat = advance(line, startat);
-				final float f1 = parse(line, startat, endat);
-				tcs.put2d((options & OPTION_TEXTURE_INVERTU) == 0 ? f0 : 1f - f0, (options & OPTION_TEXTURE_INVERTV) == 0 ? f1 : 1f - f1);
+			int count = 0;
+			for(;;) {
+				final int start = skipBlank(bb, at, limit);
+				if(start >= limit || bb.get(start) == '\n') break;
+				final int end = token(bb, start, limit);
+				if(corners.length < (cornerCount + 1)*4) {
+					corners = Arrays.copyOf(corners, corners.length*2);
+				}
+				final int co = cornerCount*4;
+				corners[co] = 0;
+				corners[co + 1] = 0;
+				corners[co + 2] = 0;
+				int flags = 0;
+				int fstart = start;
+				int ixc = 0;
+				while(fstart < end) {
+					int fend = fstart;
+					while(fend < end && bb.get(fend) != '/') {
+						fend++;
+					}
+					if(fstart != fend && ixc < 3) {
+						// non-empty field; negative is relative to the attributes so far
+						final int value = parseInt(bb, fstart, fend);
+						final int local = ixc == 0 ? vertices.count() : (ixc == 1 ? (tcs != null ? tcs.count() : 0) : (normals != null ? normals.count() : 0));
+						corners[co + ixc] = OBJParser.resolve(value, local);
+						if(value < 0) flags |= 1 << ixc;
+					}
+					ixc++;
+					fstart = fend + 1;
+				}
+				corners[co + 3] = flags;
+				cornerCount++;
+				count++;
+				at = end;
+			}
+			if(faces.length == faceCount) {
+				faces = Arrays.copyOf(faces, faces.length*2);
+				faceMaterials = Arrays.copyOf(faceMaterials, faces.length);
 			}
-			else if (type.equals(NORMAL)) {
-				if(normals == null) continue;
-				parse3d(normals, line, endat + 1);
+			faceMaterials[faceCount] = material;
+			faces[faceCount++] = count;
+		}
+		/**
+		 * Convert corners to global tuples, deduplicate and triangulate.
+		 * Polygons are split into a triangle fan (0, i, i+1).
+		 */
+		void resolve() {
+			table = new TupleTable(cornerCount/4);
+			int ntris = 0;
+			for(int fx = 0; fx < faceCount; fx++) {
+				if(faces[fx] > 2) ntris += faces[fx] - 2;
 			}
-			else if (type.equals(FACE)) {
-				if(ip == null) {
-					// initialize for final staging
-					pages = new FloatPage[] {
-						vertices,
-						normals != null && normals.count() > 0 ? normals : null,
-						null,
-						tcs != null && tcs.count() > 0 ? tcs : null
-					};
-					elems = new int[] {
-						3,
-						pages[InterleavedVertexGeometry.IX_NORMAL] != null && pages[InterleavedVertexGeometry.IX_NORMAL].count() > 0 ? 3 : 0,
-						pages[InterleavedVertexGeometry.IX_COLOR] != null && pages[InterleavedVertexGeometry.IX_COLOR].count() > 0 ? 4 : 0,
-						pages[InterleavedVertexGeometry.IX_TEXTURE] != null && pages[InterleavedVertexGeometry.IX_TEXTURE].count() > 0 ? 2 : 0
-					};
-					ip = new InterleavedPage(elems, vertices.count()*3, vertices.count());
+			tris = new int[ntris*3];
+			triCount = 0;
+			int cx = 0;
+			for(int fx = 0; fx < faceCount; fx++) {
+				int first = -1, prev = -1;
+				for(int kx = 0; kx < faces[fx]; kx++, cx++) {
+					final int co = cx*4;
+					final int flags = corners[co + 3];
+					final int pp = (flags & 1) != 0 ? vbase + corners[co] : corners[co];
+					final int tt = useTex ? ((flags & 2) != 0 ? tbase + corners[co + 1] : corners[co + 1]) : 0;
+					final int nn = useNormal ? ((flags & 4) != 0 ? nbase + corners[co + 2] : corners[co + 2]) : 0;
+					final int vx = table.find(pp, tt, nn);
+					if(kx == 0) {
+						first = vx;
+					}
+					else if(kx > 1) {
+						tris[triCount++] = first;
+						tris[triCount++] = prev;
+						tris[triCount++] = vx;
+					}
+					prev = vx;
 				}
-				// read faces
-				int facecount = 0;
-				int startat = endat + 1;
-				while(startat < line.length() && facecount < facelist.length) {
-					final int fendat = advance(line, startat);
-					final String face0 = line.substring(startat, fendat);
-					facelist[facecount++] = face0;
-					startat = fendat + 1;
+			}
+			// raw corners are no longer needed
+			corners = null;
+		}
+	}
+	/**
+	 * Resolve the scanned chunks and merge them in file order.
+	 * Global attribute indices are the chunk's base (sum of earlier chunks) plus its local index.
+	 * Each chunk's unique tuples are added to the global table in their local order, so ids follow first appearance in the file.
+	 * Triangles are then grouped by material (stable), one Submesh per material in order of first use.
+	 * @param cs Scanned chunks.
+	 * @param exec Runs the resolve phase of all but the first chunk; NULL: serial.
+	 * @throws Exception
+	 */
+	void merge(Chunk[] cs, Executor exec) throws Exception {
+		mainBuffer = null;
+		mainElems = null;
+		indices = null;
+		indexCount = 0;
+		submeshes = null;
+		libraries.clear();
+		for(int ix = 0; ix < cs.length; ix++) {
+			libraries.addAll(cs[ix].libraries);
+		}
+		int vc = 0, tc = 0, nc = 0;
+		int firstTcs = -1, firstNormals = -1;
+		for(int ix = 0; ix < cs.length; ix++) {
+			final Chunk cx = cs[ix];
+			cx.vbase = vc;
+			cx.tbase = tc;
+			cx.nbase = nc;
+			if(firstTcs < 0 && cx.anyFace) {
+				firstTcs = tc + cx.firstTcs;
+				firstNormals = nc + cx.firstNormals;
+			}
+			vc += cx.vertices.count();
+			tc += cx.tcs != null ? cx.tcs.count() : 0;
+			nc += cx.normals != null ? cx.normals.count() : 0;
+		}
+		// no faces: no output
+		if(firstTcs < 0) return;
+		// attributes defined before the first face are the ones used
+		final boolean useTex = firstTcs > 0;
+		final boolean useNormal = firstNormals > 0;
+		final int[] elems = { 3, useNormal ? 3 : 0, 0, useTex ? 2 : 0 };
+		for(int ix = 0; ix < cs.length; ix++) {
+			cs[ix].useTex = useTex;
+			cs[ix].useNormal = useNormal;
+			cs[ix].phase = Chunk.PHASE_RESOLVE;
+		}
+		run(cs, exec);
+		final FloatPage[] pages = {
+			concat(cs, 0, vc),
+			useNormal ? concat(cs, 1, nc) : null,
+			null,
+			useTex ? concat(cs, 2, tc) : null
+		};
+		int ucount = 0, icount = 0;
+		for(int ix = 0; ix < cs.length; ix++) {
+			ucount += cs[ix].table.unique;
+			icount += cs[ix].triCount;
+		}
+		final InterleavedPage ip = new InterleavedPage(elems, Math.max(ucount, 1), Math.max(ucount/2, 1));
+		// one chunk: local ids are global ids
+		final TupleTable global = cs.length > 1 ? new TupleTable(ucount) : null;
+		final int[] corner = new int[4];
+		indices = new int[icount];
+		final int[] triMaterial = new int[icount/3];
+		final ArrayList<String> names = new ArrayList<String>();
+		int tcount = 0;
+		String active = null;
+		for(int ix = 0; ix < cs.length; ix++) {
+			final Chunk cx = cs[ix];
+			// local material + 1 to position in names; 0: carried over
+			final int[] gmap = new int[cx.materials.size() + 1];
+			Arrays.fill(gmap, -1);
+			for(int fx = 0; fx < cx.faceCount; fx++) {
+				if(cx.faces[fx] < 3) continue;
+				final int lm = cx.faceMaterials[fx];
+				int gx = gmap[lm + 1];
+				if(gx < 0) {
+					final String name = lm < 0 ? active : cx.materials.get(lm);
+					gx = names.indexOf(name);
+					if(gx < 0) {
+						gx = names.size();
+						names.add(name);
+					}
+					gmap[lm + 1] = gx;
+				}
+				for(int tx = cx.faces[fx] - 2; tx > 0; tx--) {
+					triMaterial[tcount++] = gx;
 				}
-				// Each line: f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3
-				for (int ix = 0; ix < facecount; ix++) {
-					final String face = facelist[ix];
-					int fstartat = 0;
-					int ixc = 0;
-					while(fstartat < face.length()) {
-						final int fendat = advance(face, '/', fstartat);
-						if (startat != endat) {
-							// non-empty string
-							switch (ixc) {
-							case 0:
-								indices[InterleavedVertexGeometry.IX_POSITION] = parseInt(face, fstartat, fendat) - 1;
-								break;
-							case 1:
-								indices[InterleavedVertexGeometry.IX_TEXTURE] = parseInt(face, fstartat, fendat) - 1;
-								break;
-							case 2:
-								indices[InterleavedVertexGeometry.IX_NORMAL] = parseInt(face, fstartat, fendat) - 1;
-								break;
-							}
-						}
-						ixc++;
-						fstartat = fendat + 1;
+			}
+			if(cx.material >= 0) {
+				active = cx.materials.get(cx.material);
+			}
+			final int[] keys = cx.table.keys;
+			final int[] map = new int[cx.table.unique];
+			for(int ux = 0; ux < map.length; ux++) {
+				final int pp = keys[ux*3], tt = keys[ux*3 + 1], nn = keys[ux*3 + 2];
+				int id = ux;
+				if(global != null) {
+					final int before = global.unique;
+					id = global.find(pp, tt, nn);
+					if(global.unique == before) {
+						map[ux] = id;
+						continue;
 					}
-					indices[InterleavedVertexGeometry.IX_COLOR] = 0;
-					// Add vertex attributes
-					ip.put(indices, pages);
 				}
+				corner[InterleavedVertexGeometry.IX_POSITION] = pp;
+				corner[InterleavedVertexGeometry.IX_NORMAL] = nn;
+				corner[InterleavedVertexGeometry.IX_TEXTURE] = tt;
+				ip.put(corner, pages);
+				map[ux] = id;
+			}
+			for(int tx = 0; tx < cx.triCount; tx++) {
+				indices[indexCount++] = map[cx.tris[tx]];
 			}
-			// next line
-			line = in.readLine();
+			cx.table = null;
+			cx.tris = null;
+		}
+		final int[] firsts = group(triMaterial, Math.max(names.size(), 1));
+		submeshes = new Submesh[firsts.length - 1];
+		for(int gx = 0; gx < submeshes.length; gx++) {
+			submeshes[gx] = new Submesh(names.isEmpty() ? null : names.get(gx), firsts[gx], firsts[gx + 1] - firsts[gx]);
+		}
+		if((options & OPTION_NO_OPTIMIZE) == 0) {
+			ip.current = optimizer.optimize(indices, indexCount, Arrays.copyOf(firsts, submeshes.length), ip.buffer, ip.stride, ip.count());
 		}
-		// set the output buffer
 		mainBuffer = ip;
+		mainElems = elems;
+	}
+	/**
+	 * Sort triangles by material, keeping file order within each material.
+	 * @param triMaterial Material of each triangle.
+	 * @param groups Number of materials.
+	 * @return First index of each material, plus indexCount.
+	 */
+	int[] group(int[] triMaterial, int groups) {
+		final int[] firsts = new int[groups + 1];
+		if(groups == 1) {
+			firsts[1] = indexCount;
+			return firsts;
+		}
+		for(int tx = 0; tx < triMaterial.length; tx++) {
+			firsts[triMaterial[tx] + 1] += 3;
+		}
+		for(int gx = 0; gx < groups; gx++) {
+			firsts[gx + 1] += firsts[gx];
+		}
+		final int[] at = Arrays.copyOf(firsts, groups);
+		final int[] sorted = new int[indexCount];
+		for(int tx = 0; tx < triMaterial.length; tx++) {
+			final int dst = at[triMaterial[tx]];
+			System.arraycopy(indices, tx*3, sorted, dst, 3);
+			at[triMaterial[tx]] = dst + 3;
+		}
+		indices = sorted;
+		return firsts;
+	}
+	/**
+	 * Return one attribute page spanning all chunks.
+	 * @param cs Chunks.
+	 * @param which 0: vertices; 1: normals; 2: texture coords.
+	 * @param count Total elements.
+	 * @return page.
+	 */
+	FloatPage concat(Chunk[] cs, int which, int count) {
+		if(cs.length == 1) return page(cs[0], which);
+		final FloatPage fp = new FloatPage(which == 2 ? 2 : 3, Math.max(count, 1), expandBy);
+		for(int ix = 0; ix < cs.length; ix++) {
+			fp.append(page(cs[ix], which));
+		}
+		return fp;
+	}
+	static FloatPage page(Chunk cx, int which) {
+		return which == 0 ? cx.vertices : (which == 1 ? cx.normals : cx.tcs);
 	}
 
 	/**
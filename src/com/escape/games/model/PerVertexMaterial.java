@@ -33,8 +33,10 @@ public class PerVertexMaterial extends Material implements RequireResourceLoader
 	final Geometry.Vec4[] colors;
 	final float[] table;
 	int vc;
+	/* true: some vertex alpha is less than one */
+	final boolean transparent;
 	private FloatBuffer mColorBuffer;
-	protected PerVertexMaterial() { colors = null; table = null; }
+	protected PerVertexMaterial() { colors = null; table = null; transparent = false; }
 	/**
 	 * Rotate through the given list of colors for each vertex specified.
 	 * @param colors List of vec4 to cycle through.
@@ -44,6 +46,11 @@ public class PerVertexMaterial extends Material implements RequireResourceLoader
 			throw new IllegalArgumentException("colors");
 		this.colors = colors;
 		this.table = null;
+		boolean tx = false;
+		for(int ix = 0; ix < colors.length; ix++) {
+			if(colors[ix].w < 1f) tx = true;
+		}
+		this.transparent = tx;
 	}
 	/**
 	 * The given array is the table of vertex colors.
@@ -54,6 +61,11 @@ public class PerVertexMaterial extends Material implements RequireResourceLoader
 			throw new IllegalArgumentException("colors");
 		this.colors = null;
 		this.table = colors;
+		boolean tx = false;
+		for(int ix = 3; ix < colors.length; ix += 4) {
+			if(colors[ix] < 1f) tx = true;
+		}
+		this.transparent = tx;
 	}
 	/**
 	 * Make every vertex specified the given color.
@@ -65,6 +77,7 @@ public class PerVertexMaterial extends Material implements RequireResourceLoader
 	public PerVertexMaterial(float r, float g, float b, float a) {
 		this.colors = new Geometry.Vec4[] { new Geometry.Vec4(r,g,b,a) };
 		this.table = null;
+		this.transparent = a < 1f;
 	}
 	public void setVertexCount(int vc) { this.vc = vc; }
 	protected FloatBuffer createBuffer(ResourceLoader rl, Services svc) {
@@ -95,4 +108,9 @@ public class PerVertexMaterial extends Material implements RequireResourceLoader
 	}
 	@Override
 	public String getShaderKey() { return Shader.COLORPERVERTEX; }
+	/**
+	 * Transparent if any vertex alpha is less than one.
+	 */
+	@Override
+	public boolean isTransparent() { return transparent; }
 }
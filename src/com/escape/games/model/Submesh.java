@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+/**
+ * Contiguous range of triangles in a shared index list, drawn with one material.
+ * @author escape-llc
+ *
+ */
+public class Submesh {
+	/** material name (usemtl); NULL: faces before any usemtl */
+	public final String name;
+	/** first index */
+	public final int first;
+	/** number of indices */
+	public final int count;
+	/* NULL: object's material only */
+	Material material;
+	/**
+	 * Ctor.
+	 * @param name Material name.
+	 * @param first First index.
+	 * @param count Number of indices.
+	 */
+	public Submesh(String name, int first, int count) {
+		if(first < 0) throw new IllegalArgumentException("first");
+		if(count < 0) throw new IllegalArgumentException("count");
+		this.name = name;
+		this.first = first;
+		this.count = count;
+	}
+	@Override
+	public String toString() {
+		return new StringBuilder("Submesh.").append(name).append(".").append(first).append("+").append(count).toString();
+	}
+	/**
+	 * Return the material.
+	 * @return Current value or NULL.
+	 */
+	public Material getMaterial() { return material; }
+	/**
+	 * Set the material applied before drawing this range.
+	 * Applied after the object's material, with the object's shader.
+	 * If it is transparent, the whole object draws in the transparent pass; see Geometry.isTransparent().
+	 * @param material New value; NULL: none.
+	 */
+	public void setMaterial(Material material) { this.material = material; }
+}
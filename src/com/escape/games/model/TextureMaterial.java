@@ -31,6 +31,8 @@ import com.escape.games.resource.Texture;
 public class TextureMaterial extends Material implements RequireResourceLoader {
 	Texture tex;
 	final String locname;
+	/* slot for locname; -1 for non-standard names */
+	final int slot;
 	public final String name;
 	public final int ttex;
 	/**
@@ -43,6 +45,7 @@ public class TextureMaterial extends Material implements RequireResourceLoader {
 		this.name = texname;
 		this.ttex = ttex;
 		this.locname = locname;
+		this.slot = Shader.slotFor(locname);
 	}
 	@Override
 	public String toString() {
@@ -71,7 +74,11 @@ public class TextureMaterial extends Material implements RequireResourceLoader {
 	@Override
 	public void setup(Shader sh) {
 		if(tex != null) {
-			tex.setup(sh, ttex, 0, locname);
+			if(slot != -1) {
+				tex.setup(sh, ttex, 0, slot);
+			} else {
+				tex.setup(sh, ttex, 0, locname);
+			}
 		}
 	}
 
@@ -55,4 +55,72 @@ public class Transform {
 		sy = scale;
 		sz = scale;
 	}
+	/**
+	 * Return whether the given instance has the same component values.
+	 * @param tf Source instance; may be NULL.
+	 * @return true: same values; false: different or NULL.
+	 */
+	public boolean sameAs(Transform tf) {
+		if(tf == null) return false;
+		return tx == tf.tx && ty == tf.ty && tz == tf.tz
+			&& sx == tf.sx && sy == tf.sy && sz == tf.sz
+			&& rx == tf.rx && ry == tf.ry && rz == tf.rz;
+	}
+	/**
+	 * Copy component values from given instance.
+	 * @param tf Source instance.
+	 */
+	public void set(Transform tf) {
+		tx = tf.tx;
+		ty = tf.ty;
+		tz = tf.tz;
+		sx = tf.sx;
+		sy = tf.sy;
+		sz = tf.sz;
+		rx = tf.rx;
+		ry = tf.ry;
+		rz = tf.rz;
+	}
+	/**
+	 * Compose the model matrix Translate * Scale * RotateX * RotateY * RotateZ directly.
+	 * Same result as setIdentityM/translateM/scaleM/rotateM(x,y,z) without the intermediate multiplies.
+	 * Rotations are in degrees.
+	 * @param mx Target matrix (column-major).
+	 * @param offset Target offset.
+	 */
+	public void compose(float[] mx, int offset) {
+		float ca = 1f, sa = 0f, cb = 1f, sb = 0f, cc = 1f, sc = 0f;
+		if(rx != 0f) {
+			final double ax = Math.toRadians(rx);
+			ca = (float)Math.cos(ax);
+			sa = (float)Math.sin(ax);
+		}
+		if(ry != 0f) {
+			final double ay = Math.toRadians(ry);
+			cb = (float)Math.cos(ay);
+			sb = (float)Math.sin(ay);
+		}
+		if(rz != 0f) {
+			final double az = Math.toRadians(rz);
+			cc = (float)Math.cos(az);
+			sc = (float)Math.sin(az);
+		}
+		// R = Rx*Ry*Rz; row r scaled by s[r]; stored column-major
+		mx[offset + 0] = sx * cb*cc;
+		mx[offset + 1] = sy * (ca*sc + sa*sb*cc);
+		mx[offset + 2] = sz * (sa*sc - ca*sb*cc);
+		mx[offset + 3] = 0f;
+		mx[offset + 4] = sx * -cb*sc;
+		mx[offset + 5] = sy * (ca*cc - sa*sb*sc);
+		mx[offset + 6] = sz * (sa*cc + ca*sb*sc);
+		mx[offset + 7] = 0f;
+		mx[offset + 8] = sx * sb;
+		mx[offset + 9] = sy * -sa*cb;
+		mx[offset + 10] = sz * ca*cb;
+		mx[offset + 11] = 0f;
+		mx[offset + 12] = tx;
+		mx[offset + 13] = ty;
+		mx[offset + 14] = tz;
+		mx[offset + 15] = 1f;
+	}
 }
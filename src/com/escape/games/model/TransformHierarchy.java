@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import com.escape.games.math.Mat4;
+
+/**
+ * Forest of TransformNodes with incremental world matrix propagation.
+ * Nodes are kept in a flattened breadth-first array with parent indices, rebuilt only after attach/detach,
+ * so every parent precedes its children and update() is a single forward pass over the array.
+ * update() recomputes a world matrix only if the node is dirty or its parent was recomputed in the same pass;
+ * clean subtrees cost one flag test per node.
+ * Must hold update lock.
+ * @author escape-llc
+ *
+ */
+public final class TransformHierarchy {
+	/* sentinel parent of all roots; never in the order */
+	final TransformNode root = new TransformNode();
+	TransformNode[] order = new TransformNode[16];
+	/* index into order of parent; -1: root */
+	int[] parents = new int[16];
+	int count;
+	boolean rebuild;
+	int pass;
+	/**
+	 * Add a node as a root.
+	 * @param tn Node not in any hierarchy.
+	 */
+	public void add(TransformNode tn) {
+		if(tn == null) throw new IllegalArgumentException("tn");
+		if(tn.owner != null) throw new IllegalArgumentException("tn already in a hierarchy");
+		tn.owner = this;
+		tn.link(root);
+		tn.dirty = true;
+		count++;
+		structureChanged();
+	}
+	/**
+	 * Remove a node; its children become roots and keep their local matrices.
+	 * @param tn Node in this hierarchy.
+	 */
+	public void remove(TransformNode tn) {
+		if(tn == null || tn.owner != this) throw new IllegalArgumentException("tn");
+		while(tn.firstChild != null) {
+			final TransformNode child = tn.firstChild;
+			child.unlink();
+			child.link(root);
+			child.dirty = true;
+		}
+		tn.unlink();
+		tn.owner = null;
+		count--;
+		structureChanged();
+	}
+	/**
+	 * Return the number of nodes.
+	 * @return count.
+	 */
+	public int size() { return count; }
+	void structureChanged() { rebuild = true; }
+	/**
+	 * Rebuild the breadth-first order.
+	 */
+	void flatten() {
+		if(order.length < count) {
+			final int cap = Math.max(count, order.length*2);
+			order = new TransformNode[cap];
+			parents = new int[cap];
+		}
+		int tail = 0;
+		for(TransformNode tn = root.firstChild; tn != null; tn = tn.nextSibling) {
+			order[tail] = tn;
+			parents[tail] = -1;
+			tail++;
+		}
+		for(int head = 0; head < tail; head++) {
+			for(TransformNode tn = order[head].firstChild; tn != null; tn = tn.nextSibling) {
+				order[tail] = tn;
+				parents[tail] = head;
+				tail++;
+			}
+		}
+		// clear stale references past the end
+		for(int ix = tail; ix < order.length && order[ix] != null; ix++) {
+			order[ix] = null;
+		}
+		rebuild = false;
+	}
+	/**
+	 * Propagate world matrices down dirty subtrees.
+	 */
+	public void update() {
+		if(rebuild) {
+			flatten();
+		}
+		final int px = ++pass;
+		final TransformNode[] nodes = order;
+		final int[] pidx = parents;
+		for(int ix = 0; ix < count; ix++) {
+			final TransformNode tn = nodes[ix];
+			final int pi = pidx[ix];
+			if(tn.dirty || (pi >= 0 && nodes[pi].stamp == px)) {
+				if(pi < 0) {
+					System.arraycopy(tn.local, 0, tn.world, 0, 16);
+				}
+				else {
+					Mat4.multiply(tn.world, 0, nodes[pi].world, 0, tn.local, 0);
+				}
+				tn.dirty = false;
+				tn.stamp = px;
+				if(tn.cache != null) tn.cache.invalidate();
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import com.escape.games.math.Mat4;
+
+/**
+ * Node in a transform hierarchy.
+ * The local matrix is relative to the parent; the world matrix is parent world * local.
+ * Children are a doubly-linked list, so attach/detach is O(1).
+ * Outside a TransformHierarchy, invalidate() copies local to world immediately;
+ * inside one, it only marks the node dirty and TransformHierarchy.update() propagates the change.
+ * @author escape-llc
+ *
+ */
+public final class TransformNode {
+	/** Local matrix; relative to parent */
+	public final float[] local = new float[16];
+	/** World matrix; valid after TransformHierarchy.update() */
+	public final float[] world;
+	/* bumped when world changes; may be NULL */
+	final MatrixCache cache;
+	TransformHierarchy owner;
+	TransformNode parent;
+	TransformNode firstChild;
+	TransformNode prevSibling;
+	TransformNode nextSibling;
+	/* local changed since last update */
+	volatile boolean dirty;
+	/* update pass that last recomputed world */
+	int stamp;
+	/**
+	 * Ctor.
+	 * World matrix is M of the cache, which is invalidated whenever world changes.
+	 * @param mc Matrix cache.
+	 */
+	public TransformNode(MatrixCache mc) {
+		if(mc == null) throw new IllegalArgumentException("mc");
+		this.cache = mc;
+		this.world = mc.matrixM;
+		Mat4.setIdentity(local, 0);
+	}
+	/**
+	 * Ctor.
+	 * Grouping node with its own world matrix.
+	 */
+	public TransformNode() {
+		this.cache = null;
+		this.world = new float[16];
+		Mat4.setIdentity(local, 0);
+		Mat4.setIdentity(world, 0);
+	}
+	/**
+	 * Notify the local matrix changed.
+	 * Safe to call from TransformBatch workers; touches only this node.
+	 */
+	public void invalidate() {
+		if(owner == null) {
+			System.arraycopy(local, 0, world, 0, 16);
+			if(cache != null) cache.invalidate();
+		}
+		else {
+			dirty = true;
+		}
+	}
+	/**
+	 * Return the owning hierarchy.
+	 * @return hierarchy or NULL.
+	 */
+	public TransformHierarchy getHierarchy() { return owner; }
+	/**
+	 * Return the parent.
+	 * @return parent or NULL if a root.
+	 */
+	public TransformNode getParent() {
+		return owner != null && parent == owner.root ? null : parent;
+	}
+	/**
+	 * Attach to a new parent, keeping the local matrix.
+	 * Linking is O(1); the ancestor check is O(depth).
+	 * Must hold update lock.
+	 * @param np New parent in the same hierarchy; NULL: make a root.
+	 */
+	public void setParent(TransformNode np) {
+		if(owner == null) throw new IllegalStateException("not in a hierarchy");
+		if(np == null) {
+			np = owner.root;
+		}
+		else {
+			if(np.owner != owner) throw new IllegalArgumentException("np");
+			for(TransformNode tn = np; tn != null; tn = tn.parent) {
+				if(tn == this) throw new IllegalArgumentException("np is a descendant");
+			}
+		}
+		if(np == parent) return;
+		unlink();
+		link(np);
+		dirty = true;
+		owner.structureChanged();
+	}
+	/**
+	 * Insert at head of parent's child list.
+	 * @param np Parent.
+	 */
+	void link(TransformNode np) {
+		parent = np;
+		prevSibling = null;
+		nextSibling = np.firstChild;
+		if(np.firstChild != null) {
+			np.firstChild.prevSibling = this;
+		}
+		np.firstChild = this;
+	}
+	/**
+	 * Remove from parent's child list.
+	 */
+	void unlink() {
+		if(parent == null) return;
+		if(prevSibling != null) {
+			prevSibling.nextSibling = nextSibling;
+		}
+		else {
+			parent.firstChild = nextSibling;
+		}
+		if(nextSibling != null) {
+			nextSibling.prevSibling = prevSibling;
+		}
+		parent = null;
+		prevSibling = null;
+		nextSibling = null;
+	}
+}
@@ -41,4 +41,9 @@ public class UniformMaterial extends Material {
 	}
 	@Override
 	public String getShaderKey() { return Shader.BASIC; }
+	/**
+	 * Transparent if alpha is less than one.
+	 */
+	@Override
+	public boolean isTransparent() { return color[3] < 1f; }
 }
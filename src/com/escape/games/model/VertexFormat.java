@@ -0,0 +1,347 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import android.opengl.GLES20;
+
+/**
+ * Storage encoding for each interleaved vertex attribute {Position, Normal, Color, Texture}.
+ * pack() converts the float attributes of a mesh at load time into a Layout:
+ * <ul>
+ * <li>Normalized types map [-1, 1] or [0, 1] onto the integer range; GL converts back in the vertex fetch.</li>
+ * <li>QUANTIZED positions are 16-bit integers relative to the mesh bounds; the shader restores them with
+ * uPositionScale and uPositionOffset (see ShaderBuilder.quantizedPosition()).
+ * The built-in shaders do not, so only use QUANTIZED with such a shader. Positions with a 4th component stay FLOAT.</li>
+ * <li>HALF uses GL_HALF_FLOAT_OES and requires GL_OES_vertex_half_float; without it, pack() stores those attributes as FLOAT.</li>
+ * </ul>
+ * Texture coordinates outside [0, 1] (or [-1, 1] for SHORT) cannot be normalized and stay FLOAT for that mesh.
+ * Every attribute starts on a 4-byte boundary.
+ * @author escape-llc
+ *
+ */
+public final class VertexFormat {
+	/** 32-bit float */
+	public static final int FLOAT = 0;
+	/** 16-bit float; GL_OES_vertex_half_float */
+	public static final int HALF = 1;
+	/** signed normalized 16-bit; [-1, 1] */
+	public static final int SHORT = 2;
+	/** unsigned normalized 16-bit; [0, 1] */
+	public static final int USHORT = 3;
+	/** signed normalized 8-bit; [-1, 1] */
+	public static final int BYTE = 4;
+	/** unsigned normalized 8-bit; [0, 1] */
+	public static final int UBYTE = 5;
+	/** signed 16-bit with per-mesh scale and offset; position only */
+	public static final int QUANTIZED = 6;
+	/** GL_HALF_FLOAT_OES */
+	public static final int GL_HALF_FLOAT_OES = 0x8D61;
+	static final int[] GL_TYPE = {
+		GLES20.GL_FLOAT, GL_HALF_FLOAT_OES, GLES20.GL_SHORT, GLES20.GL_UNSIGNED_SHORT, GLES20.GL_BYTE, GLES20.GL_UNSIGNED_BYTE, GLES20.GL_SHORT
+	};
+	static final int[] BYTES = { 4, 2, 2, 2, 1, 1, 2 };
+	/** all attributes FLOAT */
+	public static final VertexFormat DEFAULT = new VertexFormat(FLOAT, FLOAT, FLOAT, FLOAT);
+	/** FLOAT position, BYTE normal, UBYTE color, USHORT texture; needs no extensions and works with every shader */
+	public static final VertexFormat COMPACT = new VertexFormat(FLOAT, BYTE, UBYTE, USHORT);
+	final int[] encoding;
+	/**
+	 * Ctor.
+	 * @param position FLOAT, HALF or QUANTIZED.
+	 * @param normal FLOAT, HALF, SHORT or BYTE.
+	 * @param color FLOAT, HALF, USHORT or UBYTE.
+	 * @param texture FLOAT, HALF, SHORT or USHORT.
+	 */
+	public VertexFormat(int position, int normal, int color, int texture) {
+		if(position != FLOAT && position != HALF && position != QUANTIZED) throw new IllegalArgumentException("position");
+		if(normal != FLOAT && normal != HALF && normal != SHORT && normal != BYTE) throw new IllegalArgumentException("normal");
+		if(color != FLOAT && color != HALF && color != USHORT && color != UBYTE) throw new IllegalArgumentException("color");
+		if(texture != FLOAT && texture != HALF && texture != SHORT && texture != USHORT) throw new IllegalArgumentException("texture");
+		this.encoding = new int[] { position, normal, color, texture };
+	}
+	/**
+	 * Return the encoding of an attribute.
+	 * @param ix IX_POSITION, etc.
+	 * @return encoding.
+	 */
+	public int getEncoding(int ix) { return encoding[ix]; }
+	@Override
+	public String toString() {
+		return new StringBuilder("VertexFormat.").append(encoding[0]).append(",")
+				.append(encoding[1]).append(",").append(encoding[2]).append(",").append(encoding[3]).toString();
+	}
+	/**
+	 * Result of pack(); the encoded vertices and how to bind them.
+	 */
+	public static final class Layout {
+		/* encoding per attribute; may differ from the format when a value is out of range */
+		final int[] encoding = new int[InterleavedVertexGeometry.IX_TOTAL];
+		/* components per attribute; 0: not present */
+		final int[] elems = new int[InterleavedVertexGeometry.IX_TOTAL];
+		/* byte offset per attribute */
+		final int[] offsets = new int[InterleavedVertexGeometry.IX_TOTAL];
+		/* QUANTIZED position restore: p = scale*q + offset */
+		final float[] positionScale = { 1f, 1f, 1f };
+		final float[] positionOffset = new float[3];
+		int stride;
+		int vc;
+		ByteBuffer buffer;
+		/**
+		 * Return the encoded vertex data.
+		 * @return direct buffer in native order.
+		 */
+		public ByteBuffer getBuffer() { return buffer; }
+		/**
+		 * Return the vertex size.
+		 * @return bytes.
+		 */
+		public int getStride() { return stride; }
+		/**
+		 * Return the size of the same vertices as 32-bit floats.
+		 * @return bytes.
+		 */
+		public int getFloatBytes() {
+			int epv = 0;
+			for(int ix = 0; ix < elems.length; ix++) {
+				epv += elems[ix];
+			}
+			return epv*Geometry.FLOAT_BYTES*vc;
+		}
+		/**
+		 * Return the size of the encoded vertices.
+		 * @return bytes.
+		 */
+		public int getBytes() { return stride*vc; }
+		/**
+		 * Return the GL type of an attribute.
+		 * @param ix IX_POSITION, etc.
+		 * @return GL_FLOAT, etc.
+		 */
+		public int getType(int ix) { return GL_TYPE[encoding[ix]]; }
+		/**
+		 * Return whether GL normalizes an attribute.
+		 * @param ix IX_POSITION, etc.
+		 * @return true: normalized.
+		 */
+		public boolean isNormalized(int ix) {
+			final int enc = encoding[ix];
+			return enc == SHORT || enc == USHORT || enc == BYTE || enc == UBYTE;
+		}
+		/**
+		 * Return whether positions need uPositionScale and uPositionOffset.
+		 * @return true: quantized.
+		 */
+		public boolean isQuantized() { return encoding[InterleavedVertexGeometry.IX_POSITION] == QUANTIZED; }
+		/**
+		 * Return the position scale.
+		 * @return vec3.
+		 */
+		public float[] getPositionScale() { return positionScale; }
+		/**
+		 * Return the position offset.
+		 * @return vec3.
+		 */
+		public float[] getPositionOffset() { return positionOffset; }
+	}
+	/**
+	 * Encode interleaved float vertices, with HALF attributes as GL_HALF_FLOAT_OES.
+	 * @param src Interleaved attributes {Position, Normal, Color, Texture}.
+	 * @param elems Components per attribute; 0: not present.
+	 * @param vc Vertex count.
+	 * @return new instance.
+	 */
+	public Layout pack(float[] src, int[] elems, int vc) {
+		return pack(src, elems, vc, true);
+	}
+	/**
+	 * Encode interleaved float vertices.
+	 * @param src Interleaved attributes {Position, Normal, Color, Texture}.
+	 * @param elems Components per attribute; 0: not present.
+	 * @param vc Vertex count.
+	 * @param half true: context has GL_OES_vertex_half_float; false: HALF attributes stay FLOAT.
+	 * @return new instance.
+	 */
+	public Layout pack(float[] src, int[] elems, int vc, boolean half) {
+		if(elems == null || elems.length != InterleavedVertexGeometry.IX_TOTAL) throw new IllegalArgumentException("elems");
+		final Layout lx = new Layout();
+		int epv = 0;
+		final int[] srcoff = new int[elems.length];
+		for(int ix = 0; ix < elems.length; ix++) {
+			srcoff[ix] = epv;
+			epv += elems[ix];
+		}
+		if(src.length < epv*vc) throw new IllegalArgumentException("src");
+		int offset = 0;
+		for(int ix = 0; ix < elems.length; ix++) {
+			lx.elems[ix] = elems[ix];
+			if(elems[ix] == 0) continue;
+			int enc = encoding[ix];
+			if(enc == SHORT || enc == USHORT || enc == BYTE || enc == UBYTE) {
+				final float min = enc == USHORT || enc == UBYTE ? 0f : -1f;
+				if(!inRange(src, srcoff[ix], elems[ix], epv, vc, min, 1f)) enc = FLOAT;
+			}
+			else if(enc == HALF && !half) {
+				enc = FLOAT;
+			}
+			else if(enc == QUANTIZED && elems[ix] > 3) {
+				// restore uniforms are vec3
+				enc = FLOAT;
+			}
+			lx.encoding[ix] = enc;
+			lx.offsets[ix] = offset;
+			offset += (elems[ix]*BYTES[enc] + 3) & ~3;
+		}
+		lx.stride = offset;
+		lx.vc = vc;
+		if(lx.isQuantized()) {
+			bounds(src, srcoff[InterleavedVertexGeometry.IX_POSITION], elems[InterleavedVertexGeometry.IX_POSITION], epv, vc, lx);
+		}
+		final ByteBuffer bb = ByteBuffer.allocateDirect(lx.stride*vc).order(ByteOrder.nativeOrder());
+		for(int vx = 0; vx < vc; vx++) {
+			final int sbase = vx*epv;
+			final int dbase = vx*lx.stride;
+			for(int ix = 0; ix < elems.length; ix++) {
+				final int count = elems[ix];
+				if(count == 0) continue;
+				final int enc = lx.encoding[ix];
+				final int size = BYTES[enc];
+				for(int cx = 0; cx < count; cx++) {
+					final float fv = src[sbase + srcoff[ix] + cx];
+					final int at = dbase + lx.offsets[ix] + cx*size;
+					switch(enc) {
+					case FLOAT:
+						bb.putFloat(at, fv);
+						break;
+					case HALF:
+						bb.putShort(at, toHalf(fv));
+						break;
+					case SHORT:
+						bb.putShort(at, (short)snorm(fv, 0xffff));
+						break;
+					case USHORT:
+						bb.putShort(at, (short)unorm(fv, 0xffff));
+						break;
+					case BYTE:
+						bb.put(at, (byte)snorm(fv, 0xff));
+						break;
+					case UBYTE:
+						bb.put(at, (byte)unorm(fv, 0xff));
+						break;
+					case QUANTIZED:
+						final int qv = Math.round((fv - lx.positionOffset[cx])/lx.positionScale[cx]);
+						bb.putShort(at, (short)(qv < -32767 ? -32767 : (qv > 32767 ? 32767 : qv)));
+						break;
+					}
+				}
+			}
+		}
+		bb.position(0);
+		lx.buffer = bb;
+		return lx;
+	}
+	static boolean inRange(float[] src, int off, int count, int epv, int vc, float min, float max) {
+		for(int vx = 0; vx < vc; vx++) {
+			for(int cx = 0; cx < count; cx++) {
+				final float fv = src[vx*epv + off + cx];
+				if(!(fv >= min && fv <= max)) return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Compute scale and offset mapping the position bounds onto [-32767, 32767].
+	 */
+	static void bounds(float[] src, int off, int count, int epv, int vc, Layout lx) {
+		for(int cx = 0; cx < count; cx++) {
+			float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+			for(int vx = 0; vx < vc; vx++) {
+				final float fv = src[vx*epv + off + cx];
+				if(fv < min) min = fv;
+				if(fv > max) max = fv;
+			}
+			if(vc == 0) {
+				min = max = 0f;
+			}
+			lx.positionOffset[cx] = (min + max)*0.5f;
+			final float half = (max - min)*0.5f;
+			lx.positionScale[cx] = half > 0f ? half/32767f : 1f;
+		}
+	}
+	/**
+	 * Signed normalized encoding; GLES 2.0 maps c to (2c + 1)/(2^b - 1).
+	 * @param fv Value in [-1, 1].
+	 * @param range 2^b - 1.
+	 * @return integer value.
+	 */
+	static int snorm(float fv, int range) {
+		final int hi = range >> 1;
+		final int cv = Math.round((fv*range - 1f)*0.5f);
+		return cv < -hi - 1 ? -hi - 1 : (cv > hi ? hi : cv);
+	}
+	/**
+	 * Unsigned normalized encoding; c maps to c/(2^b - 1).
+	 * @param fv Value in [0, 1].
+	 * @param range 2^b - 1.
+	 * @return integer value.
+	 */
+	static int unorm(float fv, int range) {
+		final int cv = Math.round(fv*range);
+		return cv < 0 ? 0 : (cv > range ? range : cv);
+	}
+	/**
+	 * Convert to IEEE 754 half precision, rounding to nearest.
+	 * @param fv Source value.
+	 * @return half bits.
+	 */
+	public static short toHalf(float fv) {
+		final int bits = Float.floatToIntBits(fv);
+		final int sign = (bits >>> 16) & 0x8000;
+		final int abs = bits & 0x7fffffff;
+		int val = abs + 0x1000;
+		if(val >= 0x47800000) {
+			if(abs >= 0x47800000) {
+				// NaN keeps a mantissa bit; infinity and overflow saturate to infinity
+				if(abs > 0x7f800000) return (short)(sign | 0x7e00);
+				return (short)(sign | 0x7c00);
+			}
+			return (short)(sign | 0x7bff);
+		}
+		if(val >= 0x38800000) return (short)(sign | ((val - 0x38000000) >>> 13));
+		if(val < 0x33000000) return (short)sign;
+		// subnormal
+		val = abs >>> 23;
+		return (short)(sign | ((((abs & 0x7fffff) | 0x800000) + (0x800000 >>> (val - 102))) >>> (126 - val)));
+	}
+	/**
+	 * Convert from IEEE 754 half precision.
+	 * @param hv Half bits.
+	 * @return value.
+	 */
+	public static float fromHalf(short hv) {
+		final int sign = (hv & 0x8000) << 16;
+		final int exp = (hv >>> 10) & 0x1f;
+		final int man = hv & 0x3ff;
+		if(exp == 0) {
+			final float fv = man*(1f/16777216f);
+			return sign != 0 ? -fv : fv;
+		}
+		if(exp == 0x1f) return Float.intBitsToFloat(sign | 0x7f800000 | (man << 13));
+		return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (man << 13));
+	}
+}
@@ -17,15 +17,17 @@ package com.escape.games.resource;
 
 import java.util.concurrent.CountDownLatch;
 
-
 import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.util.Log;
 
+import com.escape.games.gl.GL;
+
 /**
  * Support for GL Framebuffer
  * Uses 16-bit depth attachment and RGBA color attachment.
+ * The color attachment clamps to edge, so any size (e.g. the viewport) can be sampled.
  * @author escape-llc
  *
  */
@@ -55,25 +57,26 @@ public class Framebuffer implements GLResource {
 	}
 	public void load(Object ctx) {
 		final int[] handle = new int[3];
-		GLES20.glGenFramebuffers(1, handle, 0);
-		GLES20.glGenRenderbuffers(1, handle, 1);
-		GLES20.glGenTextures(1, handle, 2);
+		GL.glGenFramebuffers(1, handle, 0);
+		GL.glGenRenderbuffers(1, handle, 1);
+		GL.glGenTextures(1, handle, 2);
 		if (handle[0] != 0 && handle[1] != 0 && handle[2] != 0) {
 			// select
-			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, handle[0]);
-			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, handle[1]);
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, handle[2]);
+			GLState.bindFramebuffer(handle[0]);
+			GL.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, handle[1]);
+			GLState.bindTexture(handle[2]);
 			// configure
-			GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
-			GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT, GLES20.GL_RENDERBUFFER, handle[1]);
-			GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
-			GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, handle[2], 0);
+			GL.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
+			GL.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT, GLES20.GL_RENDERBUFFER, handle[1]);
+			GL.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+			// NPOT textures must clamp to be complete
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+			GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+			GL.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, handle[2], 0);
 			// check status
-			final int fbs = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+			final int fbs = GL.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
 			if(fbs == GLES20.GL_FRAMEBUFFER_COMPLETE) {
 				// ok to make it
 				id = handle[0];
@@ -84,20 +87,24 @@ public class Framebuffer implements GLResource {
 				Log.w("FB", "failed status check: " + Integer.toHexString(fbs));
 			}
 			// unselect
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-			GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
-			GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+			GLState.bindTexture(0);
+			GL.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+			GLState.bindFramebuffer(0);
 			released = false;
 		}
 		else {
 			// failed either no handles or not complete status
 			Log.w("FB", "failed to create: resources: " + handle[0] + "/" + handle[1] + "/" + handle[2]);
-			if(handle[0] != 0)
-				GLES20.glDeleteFramebuffers(1, handle, 0);
+			if(handle[0] != 0) {
+				GL.glDeleteFramebuffers(1, handle, 0);
+				GLState.deletedFramebuffer(handle[0]);
+			}
 			if(handle[1] != 0)
-				GLES20.glDeleteRenderbuffers(1, handle, 1);
-			if(handle[2] != 0)
-				GLES20.glDeleteTextures(1, handle, 2);
+				GL.glDeleteRenderbuffers(1, handle, 1);
+			if(handle[2] != 0) {
+				GL.glDeleteTextures(1, handle, 2);
+				GLState.deletedTexture(handle[2]);
+			}
 			id = 0;
 			rbid = 0;
 			txid = 0;
@@ -106,9 +113,11 @@ public class Framebuffer implements GLResource {
 	public void unload(Context ctx) {
 		if(released) return;
 		final int handle[] = { id, rbid, txid };
-		GLES20.glDeleteFramebuffers(1, handle, 0);
-		GLES20.glDeleteRenderbuffers(1, handle, 1);
-		GLES20.glDeleteTextures(1, handle, 2);
+		GL.glDeleteFramebuffers(1, handle, 0);
+		GL.glDeleteRenderbuffers(1, handle, 1);
+		GL.glDeleteTextures(1, handle, 2);
+		GLState.deletedFramebuffer(id);
+		GLState.deletedTexture(txid);
 		id = 0;
 		rbid = 0;
 		txid = 0;
@@ -121,13 +130,26 @@ public class Framebuffer implements GLResource {
 		txid = 0;
 		released = true;
 	}
+	public int getWidth() { return width; }
+	public int getHeight() { return height; }
+	/**
+	 * Return the color attachment texture ID.
+	 * @return texture ID; 0 if not loaded.
+	 */
+	public int getTexture() { return txid; }
+	/**
+	 * Select as render target.
+	 */
 	public void setup() {
 		if(released) return;
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, id);
+		GLState.bindFramebuffer(id);
 	}
+	/**
+	 * Select the window surface as render target.
+	 */
 	public void teardown() {
 		if(released) return;
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		GLState.bindFramebuffer(0);
 	}
 	/**
 	 * Create a frame buffer with 16-bit depth attachment and RGBA color attachment.
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.resource;
+
+import android.opengl.GLES20;
+
+import com.escape.games.gl.GL;
+
+/**
+ * Shadow of the GL context state that resources bind on the draw path.
+ * Each method compares against the last value issued and only calls GL when the state actually changes.
+ * Tracks program, array/element buffers, active texture unit and per-unit 2D texture bindings,
+ * enabled vertex attribute arrays, DEPTH_TEST/CULL_FACE/BLEND, and framebuffer.
+ * All state starts (and after reset() becomes) unknown, so the first call of each kind is always issued.
+ * GL thread only; there is one GL context per process.
+ * Code that changes this state directly through GL must call reset().
+ * @author escape-llc
+ *
+ */
+public final class GLState {
+	/* value for unknown binding state */
+	static final int UNKNOWN = -1;
+	/** number of tracked texture units */
+	public static final int MAX_TEXTURE_UNITS = 8;
+	/** number of tracked vertex attribute arrays */
+	public static final int MAX_ATTRIBUTES = 32;
+	/* GL_MAX_VERTEX_ATTRIBS guaranteed by ES2 */
+	static final int MIN_ATTRIBUTES = 8;
+	/** 32-bit glDrawElements() indices */
+	public static final String OES_ELEMENT_INDEX_UINT = "GL_OES_element_index_uint";
+	/** GL_HALF_FLOAT_OES vertex attributes */
+	public static final String OES_VERTEX_HALF_FLOAT = "GL_OES_vertex_half_float";
+	/* tracked capabilities */
+	static final int CAP_DEPTH_TEST = 0;
+	static final int CAP_CULL_FACE = 1;
+	static final int CAP_BLEND = 2;
+	static int program = UNKNOWN;
+	static int arrayBuffer = UNKNOWN;
+	static int elementBuffer = UNKNOWN;
+	static int framebuffer = UNKNOWN;
+	/* unit index, not GL_TEXTUREn */
+	static int activeUnit = UNKNOWN;
+	static final int[] textures = new int[MAX_TEXTURE_UNITS];
+	/* bit per attribute index; valid only when attributesKnown */
+	static int attributes;
+	static boolean attributesKnown;
+	/* GL_MAX_VERTEX_ATTRIBS of current context; 0: not queried */
+	static int attributeLimit;
+	/* UNKNOWN, 0, 1 */
+	static final int[] caps = new int[3];
+	static int blendSrc = UNKNOWN;
+	static int blendDst = UNKNOWN;
+	static int depthMask = UNKNOWN;
+	/* GL_EXTENSIONS of current context, padded with spaces; NULL: not queried */
+	static volatile String extensions;
+	/* counters for current frame */
+	static int issued;
+	static int suppressed;
+	/* counters for last completed frame */
+	static int lastIssued;
+	static int lastSuppressed;
+	static {
+		reset();
+	}
+	private GLState() { }
+	/**
+	 * Forget all tracked state.
+	 * Call when the GL context is (re)created, or after external code changes state.
+	 */
+	public static void reset() {
+		program = UNKNOWN;
+		arrayBuffer = UNKNOWN;
+		elementBuffer = UNKNOWN;
+		framebuffer = UNKNOWN;
+		activeUnit = UNKNOWN;
+		for(int ix = 0; ix < textures.length; ix++) {
+			textures[ix] = UNKNOWN;
+		}
+		attributes = 0;
+		attributesKnown = false;
+		attributeLimit = 0;
+		for(int ix = 0; ix < caps.length; ix++) {
+			caps[ix] = UNKNOWN;
+		}
+		blendSrc = UNKNOWN;
+		blendDst = UNKNOWN;
+		depthMask = UNKNOWN;
+		extensions = null;
+	}
+	/**
+	 * Latch the counters for the completed frame and start a new frame.
+	 */
+	public static void beginFrame() {
+		lastIssued = issued;
+		lastSuppressed = suppressed;
+		issued = 0;
+		suppressed = 0;
+	}
+	/**
+	 * Return the number of state calls issued in the last completed frame.
+	 * @return issued count.
+	 */
+	public static int getIssuedCount() { return lastIssued; }
+	/**
+	 * Return the number of redundant state calls suppressed in the last completed frame.
+	 * @return suppressed count.
+	 */
+	public static int getSuppressedCount() { return lastSuppressed; }
+	/**
+	 * Select the given program.
+	 * @param pgx Program ID.
+	 */
+	public static void useProgram(int pgx) {
+		if(program == pgx) {
+			suppressed++;
+			return;
+		}
+		GL.glUseProgram(pgx);
+		program = pgx;
+		issued++;
+	}
+	/**
+	 * Bind buffer to the given target.
+	 * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER.
+	 * @param id Buffer ID; 0 for client-side arrays.
+	 */
+	public static void bindBuffer(int target, int id) {
+		if(target == GLES20.GL_ARRAY_BUFFER) {
+			if(arrayBuffer == id) {
+				suppressed++;
+				return;
+			}
+			arrayBuffer = id;
+		}
+		else if(target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+			if(elementBuffer == id) {
+				suppressed++;
+				return;
+			}
+			elementBuffer = id;
+		}
+		GL.glBindBuffer(target, id);
+		issued++;
+	}
+	/**
+	 * Select the active texture unit.
+	 * @param tex GL_TEXTUREn value.
+	 */
+	public static void activeTexture(int tex) {
+		final int unit = tex - GLES20.GL_TEXTURE0;
+		if(activeUnit == unit) {
+			suppressed++;
+			return;
+		}
+		GL.glActiveTexture(tex);
+		activeUnit = unit;
+		issued++;
+	}
+	/**
+	 * Bind 2D texture to the active texture unit.
+	 * @param id Texture ID.
+	 */
+	public static void bindTexture(int id) {
+		final int unit = activeUnit;
+		if(unit >= 0 && unit < MAX_TEXTURE_UNITS) {
+			if(textures[unit] == id) {
+				suppressed++;
+				return;
+			}
+			textures[unit] = id;
+		}
+		GL.glBindTexture(GLES20.GL_TEXTURE_2D, id);
+		issued++;
+	}
+	/**
+	 * Bind the given framebuffer.
+	 * @param id Framebuffer ID; 0 for the window surface.
+	 */
+	public static void bindFramebuffer(int id) {
+		if(framebuffer == id) {
+			suppressed++;
+			return;
+		}
+		GL.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, id);
+		framebuffer = id;
+		issued++;
+	}
+	/**
+	 * Enable the given vertex attribute array.
+	 * @param handle Attribute location.
+	 */
+	public static void enableAttribute(int handle) {
+		final int bit = 1 << handle;
+		if(attributesKnown && (attributes & bit) != 0) {
+			suppressed++;
+			return;
+		}
+		GL.glEnableVertexAttribArray(handle);
+		attributes |= bit;
+		issued++;
+	}
+	/**
+	 * Disable every enabled vertex attribute array not in the given mask.
+	 * Attributes in the mask are left as-is; they are enabled on demand by enableAttribute().
+	 * @param mask bit per attribute location to keep.
+	 */
+	public static void retainAttributes(int mask) {
+		if(!attributesKnown) {
+			// state unknown: disable everything outside mask once; higher indices raise GL_INVALID_VALUE
+			final int limit = attributeLimit();
+			for(int ix = 0; ix < limit; ix++) {
+				if((mask & (1 << ix)) == 0) {
+					GL.glDisableVertexAttribArray(ix);
+					issued++;
+				}
+			}
+			attributes &= mask;
+			attributesKnown = true;
+			return;
+		}
+		final int off = attributes & ~mask;
+		if(off == 0) {
+			suppressed++;
+			return;
+		}
+		for(int ix = 0; ix < MAX_ATTRIBUTES; ix++) {
+			if((off & (1 << ix)) != 0) {
+				GL.glDisableVertexAttribArray(ix);
+				issued++;
+			}
+		}
+		attributes &= mask;
+	}
+	/**
+	 * Query the extensions of the current context.
+	 * Call when the GL context is (re)created, after reset() and before loading.
+	 * GL thread only.
+	 */
+	public static void queryExtensions() {
+		final String ext = GL.glGetString(GLES20.GL_EXTENSIONS);
+		extensions = new StringBuilder(" ").append(ext != null ? ext : "").append(" ").toString();
+	}
+	/**
+	 * Return whether the current context has an extension.
+	 * Any thread.
+	 * @param name Extension name, e.g. OES_ELEMENT_INDEX_UINT.
+	 * @return true: supported; false: not supported or queryExtensions() not called.
+	 */
+	public static boolean hasExtension(String name) {
+		final String ext = extensions;
+		return ext != null && ext.contains(" " + name + " ");
+	}
+	/**
+	 * Return the number of vertex attribute arrays of the current context.
+	 * Queried once per reset().
+	 * @return GL_MAX_VERTEX_ATTRIBS, clamped to MAX_ATTRIBUTES.
+	 */
+	static int attributeLimit() {
+		if(attributeLimit == 0) {
+			final int[] value = new int[1];
+			GL.glGetIntegerv(GLES20.GL_MAX_VERTEX_ATTRIBS, value, 0);
+			attributeLimit = value[0] < MIN_ATTRIBUTES ? MIN_ATTRIBUTES : Math.min(value[0], MAX_ATTRIBUTES);
+		}
+		return attributeLimit;
+	}
+	/**
+	 * Enable or disable GL_DEPTH_TEST.
+	 * @param on true: enable; false: disable.
+	 */
+	public static void depthTest(boolean on) {
+		capability(CAP_DEPTH_TEST, GLES20.GL_DEPTH_TEST, on);
+	}
+	/**
+	 * Enable or disable GL_CULL_FACE.
+	 * @param on true: enable; false: disable.
+	 */
+	public static void cullFace(boolean on) {
+		capability(CAP_CULL_FACE, GLES20.GL_CULL_FACE, on);
+	}
+	/**
+	 * Enable or disable GL_BLEND.
+	 * @param on true: enable; false: disable.
+	 */
+	public static void blend(boolean on) {
+		capability(CAP_BLEND, GLES20.GL_BLEND, on);
+	}
+	/**
+	 * Set the blend function.
+	 * @param src Source factor, e.g. GL_SRC_ALPHA.
+	 * @param dst Destination factor, e.g. GL_ONE_MINUS_SRC_ALPHA.
+	 */
+	public static void blendFunc(int src, int dst) {
+		if(blendSrc == src && blendDst == dst) {
+			suppressed++;
+			return;
+		}
+		GL.glBlendFunc(src, dst);
+		blendSrc = src;
+		blendDst = dst;
+		issued++;
+	}
+	/**
+	 * Enable or disable depth buffer writes.
+	 * @param on true: write depth; false: test only.
+	 */
+	public static void depthMask(boolean on) {
+		final int value = on ? 1 : 0;
+		if(depthMask == value) {
+			suppressed++;
+			return;
+		}
+		GL.glDepthMask(on);
+		depthMask = value;
+		issued++;
+	}
+	static void capability(int ix, int cap, boolean on) {
+		final int value = on ? 1 : 0;
+		if(caps[ix] == value) {
+			suppressed++;
+			return;
+		}
+		if(on) {
+			GL.glEnable(cap);
+		}
+		else {
+			GL.glDisable(cap);
+		}
+		caps[ix] = value;
+		issued++;
+	}
+	/**
+	 * Notify the given program was deleted.
+	 * @param pgx Program ID.
+	 */
+	public static void deleted(int pgx) {
+		if(program == pgx) {
+			program = UNKNOWN;
+		}
+	}
+	/**
+	 * Notify the given buffer was deleted.
+	 * GL reverts bindings of deleted buffers to zero.
+	 * @param id Buffer ID.
+	 */
+	public static void deletedBuffer(int id) {
+		if(arrayBuffer == id) {
+			arrayBuffer = 0;
+		}
+		if(elementBuffer == id) {
+			elementBuffer = 0;
+		}
+	}
+	/**
+	 * Notify the given texture was deleted.
+	 * GL reverts bindings of deleted textures to zero.
+	 * @param id Texture ID.
+	 */
+	public static void deletedTexture(int id) {
+		for(int ix = 0; ix < textures.length; ix++) {
+			if(textures[ix] == id) {
+				textures[ix] = 0;
+			}
+		}
+	}
+	/**
+	 * Notify the given framebuffer was deleted.
+	 * GL reverts binding of deleted framebuffer to zero.
+	 * @param id Framebuffer ID.
+	 */
+	public static void deletedFramebuffer(int id) {
+		if(framebuffer == id) {
+			framebuffer = 0;
+		}
+	}
+}
@@ -15,9 +15,12 @@
  */
 package com.escape.games.resource;
 
+import java.nio.Buffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.concurrent.CountDownLatch;
 
+import com.escape.games.gl.GL;
 import com.escape.games.model.Geometry;
 
 import android.content.Context;
@@ -27,7 +30,7 @@ import android.util.Log;
 
 /**
  * Implementation of GL Index Buffer Object resource.
- * Indices are 16-bits wide.
+ * Indices are 16-bits wide, or 32-bits from an IntBuffer (requires GL_OES_element_index_uint).
  * @author escape-llc
  *
  */
@@ -36,22 +39,45 @@ public class IndexBufferObject implements GLResource {
 	int id;
 	volatile boolean released;
 	/* actual data */
-	final ShortBuffer fb;
+	final Buffer fb;
+	/* GL_UNSIGNED_SHORT or GL_UNSIGNED_INT */
+	final int type;
 	public IndexBufferObject(ShortBuffer fb) {
 		if(fb == null) throw new IllegalArgumentException("fb");
 		this.fb = fb;
+		this.type = GLES20.GL_UNSIGNED_SHORT;
 	}
+	public IndexBufferObject(IntBuffer fb) {
+		if(fb == null) throw new IllegalArgumentException("fb");
+		this.fb = fb;
+		this.type = GLES20.GL_UNSIGNED_INT;
+	}
+	/**
+	 * Return the index type for glDrawElements().
+	 * @return GL_UNSIGNED_SHORT or GL_UNSIGNED_INT.
+	 */
+	public int getType() { return type; }
+	/**
+	 * Return the number of indices.
+	 * @return count.
+	 */
+	public int getCount() { return fb.capacity(); }
+	/**
+	 * Return the source data.
+	 * @return ShortBuffer or IntBuffer.
+	 */
+	public Buffer getBuffer() { return fb; }
 	public Object preload(Context ctx) {
 		return null;
 	}
 	public void load(Object ctx) {
 		final int[] handle = new int[1];
-		GLES20.glGenBuffers(1, handle, 0);
+		GL.glGenBuffers(1, handle, 0);
 		if(handle[0] != 0) {
 			id = handle[0];
-			GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, id);
-			GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, fb.capacity() * Geometry.SHORT_BYTES, fb, GLES20.GL_STATIC_DRAW);
-			GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, id);
+			final int bytes = type == GLES20.GL_UNSIGNED_INT ? Geometry.FLOAT_BYTES : Geometry.SHORT_BYTES;
+			GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, fb.capacity() * bytes, fb, GLES20.GL_STATIC_DRAW);
 			released = false;
 		}
 		else {
@@ -62,7 +88,8 @@ public class IndexBufferObject implements GLResource {
 	public void unload(Context ctx) {
 		if(released) return;
 		final int handle[] = { id };
-		GLES20.glDeleteBuffers(1, handle, 0);
+		GL.glDeleteBuffers(1, handle, 0);
+		GLState.deletedBuffer(id);
 		id = 0;
 		released = true;
 	}
@@ -71,30 +98,36 @@ public class IndexBufferObject implements GLResource {
 		id = 0;
 		released = true;
 	}
+	/**
+	 * Bind as the ELEMENT_ARRAY_BUFFER.
+	 */
 	public void setup() {
 		if(released) return;
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, id);
+		GLState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, id);
+		RenderStats.buffer();
 	}
+	/**
+	 * Binding is left in place; client-side indices rebind zero on demand.
+	 */
 	public void teardown() {
-		if(released) return;
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
 	}
 	/**
-	 * Dispatch an operation to the GL thread to create a VBO.
+	 * Dispatch an operation to the GL thread to create an IBO.
 	 * Waits for the operation to complete.
 	 * @param ctx Source of resources.
-	 * @param fb Source data buffer.
+	 * @param fb Source data buffer; ShortBuffer or IntBuffer.
 	 * @param sv GL Surface view.
-	 * @return New VBO or NULL.
+	 * @return New IBO or NULL.
 	 */
-	public static IndexBufferObject create(final Context ctx, final ShortBuffer fb, GLSurfaceView sv) {
+	public static IndexBufferObject create(final Context ctx, final Buffer fb, GLSurfaceView sv) {
+		if(!(fb instanceof ShortBuffer) && !(fb instanceof IntBuffer)) throw new IllegalArgumentException("fb");
 		if(sv != null) {
 			final CountDownLatch cl = new CountDownLatch(1);
 			final IndexBufferObject[] output = new IndexBufferObject[1];
 			final Runnable rx = new Runnable() {
 				public void run() {
 					try {
-						final IndexBufferObject vbo = new IndexBufferObject(fb);
+						final IndexBufferObject vbo = fb instanceof IntBuffer ? new IndexBufferObject((IntBuffer)fb) : new IndexBufferObject((ShortBuffer)fb);
 						vbo.load(ctx);
 						output[0] = vbo;
 					} catch(Exception ex) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.resource;
+
+import android.opengl.GLES20;
+
+/**
+ * Per-frame render counters.
+ * Draw calls report through draw(); shader, texture and buffer selection through the other hooks.
+ * beginFrame() latches the completed frame and folds it into a rolling average over WINDOW frames.
+ * Counters are plain int increments into preallocated arrays; nothing allocates, so it can stay on in release builds.
+ * GL thread only.
+ * @author escape-llc
+ *
+ */
+public final class RenderStats {
+	/** draw calls */
+	public static final int DRAWS = 0;
+	/** primitives (triangles, lines, points) */
+	public static final int PRIMITIVES = 1;
+	/** vertices submitted */
+	public static final int VERTICES = 2;
+	/** shader program switches */
+	public static final int SHADER_SWITCHES = 3;
+	/** texture binds requested */
+	public static final int TEXTURE_BINDS = 4;
+	/** buffer binds requested */
+	public static final int BUFFER_BINDS = 5;
+	/** number of counters */
+	public static final int COUNT = 6;
+	/** frames in rolling average */
+	public static final int WINDOW = 60;
+	/* current frame */
+	static final int[] current = new int[COUNT];
+	/* last completed frame */
+	static final int[] last = new int[COUNT];
+	/* ring of completed frames, per counter */
+	static final int[][] history = new int[COUNT][WINDOW];
+	static final long[] sums = new long[COUNT];
+	static int head;
+	static int filled;
+	private RenderStats() { }
+	/**
+	 * Latch the completed frame and start a new frame.
+	 */
+	public static void beginFrame() {
+		for(int ix = 0; ix < COUNT; ix++) {
+			final int value = current[ix];
+			last[ix] = value;
+			sums[ix] += value - history[ix][head];
+			history[ix][head] = value;
+			current[ix] = 0;
+		}
+		head = (head + 1) % WINDOW;
+		if(filled < WINDOW) filled++;
+	}
+	/**
+	 * Discard all counts and history.
+	 */
+	public static void reset() {
+		for(int ix = 0; ix < COUNT; ix++) {
+			current[ix] = 0;
+			last[ix] = 0;
+			sums[ix] = 0;
+			for(int jx = 0; jx < WINDOW; jx++) {
+				history[ix][jx] = 0;
+			}
+		}
+		head = 0;
+		filled = 0;
+	}
+	/**
+	 * Return a counter for the last completed frame.
+	 * @param counter DRAWS, PRIMITIVES, etc.
+	 * @return count.
+	 */
+	public static int get(int counter) { return last[counter]; }
+	/**
+	 * Return the rolling average of a counter.
+	 * @param counter DRAWS, PRIMITIVES, etc.
+	 * @return average per frame over the last WINDOW (or fewer) frames.
+	 */
+	public static float getAverage(int counter) {
+		return filled == 0 ? 0f : (float)sums[counter]/(float)filled;
+	}
+	/**
+	 * Record a draw call.
+	 * @param mode GL primitive mode, e.g. GL_TRIANGLES.
+	 * @param count vertex (or index) count.
+	 */
+	public static void draw(int mode, int count) {
+		current[DRAWS]++;
+		current[VERTICES] += count;
+		switch(mode) {
+		case GLES20.GL_TRIANGLES:
+			current[PRIMITIVES] += count/3;
+			break;
+		case GLES20.GL_TRIANGLE_STRIP:
+		case GLES20.GL_TRIANGLE_FAN:
+			current[PRIMITIVES] += count > 2 ? count - 2 : 0;
+			break;
+		case GLES20.GL_LINES:
+			current[PRIMITIVES] += count/2;
+			break;
+		case GLES20.GL_LINE_STRIP:
+			current[PRIMITIVES] += count > 1 ? count - 1 : 0;
+			break;
+		default:
+			// GL_POINTS, GL_LINE_LOOP
+			current[PRIMITIVES] += count;
+			break;
+		}
+	}
+	/**
+	 * Record a shader program switch.
+	 */
+	public static void shader() { current[SHADER_SWITCHES]++; }
+	/**
+	 * Record a texture bind.
+	 */
+	public static void texture() { current[TEXTURE_BINDS]++; }
+	/**
+	 * Record a buffer bind.
+	 */
+	public static void buffer() { current[BUFFER_BINDS]++; }
+}
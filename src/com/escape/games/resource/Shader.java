@@ -17,10 +17,12 @@ package com.escape.games.resource;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.concurrent.CountDownLatch;
 
 import com.escape.games.core.TraceSwitches;
+import com.escape.games.gl.GL;
 import com.escape.games.model.Geometry;
 
 import android.content.Context;
@@ -32,6 +34,15 @@ import android.util.Log;
  * Implementation for GL 2.x shader program.
  * System-defined shaders use a pre-defined set of location names; use these in externally-defined shaders for compatibility
  * with existing materials and geometries.
+ * Each uniform Location keeps a shadow copy of the value last uploaded; setting the same value again skips the GL call.
+ * Uniform values belong to the program object, so the shadow copies stay valid across program switches,
+ * and are discarded when the program is (re)loaded or released.
+ * Code that sets uniforms directly through GL must call invalidateUniforms().
+ * The standard locations are also resolved to dense integer slots (SLOT_*) once at load time;
+ * the slot overloads avoid the name lookup and should be used on the draw path.
+ * The String overloads remain for custom location names.
+ * Program selection and vertex attribute enables go through GLState; attribute arrays stay enabled across draws
+ * that set them, and prepareDraw() disables those the current draw did not set.
  * @author escape-llc
  *
  */
@@ -72,12 +83,68 @@ public class Shader implements GLResource {
 	public static final String SV_ULIGHTPOSITION = "uLightPos";
 	/** uniform float uRatio */
 	public static final String SV_URATIO = "uRatio";
+	/** uniform vec3 uPositionScale; quantized positions */
+	public static final String SV_UPOSITIONSCALE = "uPositionScale";
+	/** uniform vec3 uPositionOffset; quantized positions */
+	public static final String SV_UPOSITIONOFFSET = "uPositionOffset";
+	// shader location slots; dense index of the location names above
+	/** slot for SV_POSITION */
+	public static final int SLOT_POSITION = 0;
+	/** slot for SV_NORMAL */
+	public static final int SLOT_NORMAL = 1;
+	/** slot for SV_COLOR */
+	public static final int SLOT_COLOR = 2;
+	/** slot for SV_TEXTURE_COORD */
+	public static final int SLOT_TEXTURE_COORD = 3;
+	/** slot for SV_UCOLOR */
+	public static final int SLOT_UCOLOR = 4;
+	/** slot for SV_MATRIX_MV */
+	public static final int SLOT_MATRIX_MV = 5;
+	/** slot for SV_MATRIX_MVP */
+	public static final int SLOT_MATRIX_MVP = 6;
+	/** slot for SV_UTEXTURE */
+	public static final int SLOT_UTEXTURE = 7;
+	/** slot for SV_UTEXTURE2 */
+	public static final int SLOT_UTEXTURE2 = 8;
+	/** slot for SV_ULIGHTPOSITION */
+	public static final int SLOT_ULIGHTPOSITION = 9;
+	/** slot for SV_URATIO */
+	public static final int SLOT_URATIO = 10;
+	/** slot for SV_UPOSITIONSCALE */
+	public static final int SLOT_UPOSITIONSCALE = 11;
+	/** slot for SV_UPOSITIONOFFSET */
+	public static final int SLOT_UPOSITIONOFFSET = 12;
+	/** number of slots */
+	public static final int SLOT_COUNT = 13;
 	static final String[] ALL_ATTRIBUTES = {
 		SV_POSITION, SV_NORMAL, SV_COLOR, SV_TEXTURE_COORD
 	};
 	static final String[] ALL_UNIFORMS = {
-		SV_UCOLOR, SV_MATRIX_MV, SV_MATRIX_MVP, SV_UTEXTURE, SV_UTEXTURE2, SV_ULIGHTPOSITION, SV_URATIO
+		SV_UCOLOR, SV_MATRIX_MV, SV_MATRIX_MVP, SV_UTEXTURE, SV_UTEXTURE2, SV_ULIGHTPOSITION, SV_URATIO, SV_UPOSITIONSCALE, SV_UPOSITIONOFFSET
 	};
+	/* slot for each entry of ALL_ATTRIBUTES */
+	static final int[] ATTRIBUTE_SLOTS = {
+		SLOT_POSITION, SLOT_NORMAL, SLOT_COLOR, SLOT_TEXTURE_COORD
+	};
+	/* slot for each entry of ALL_UNIFORMS */
+	static final int[] UNIFORM_SLOTS = {
+		SLOT_UCOLOR, SLOT_MATRIX_MV, SLOT_MATRIX_MVP, SLOT_UTEXTURE, SLOT_UTEXTURE2, SLOT_ULIGHTPOSITION, SLOT_URATIO, SLOT_UPOSITIONSCALE, SLOT_UPOSITIONOFFSET
+	};
+	/**
+	 * Map a standard location name to its slot.
+	 * Use once (e.g. in a ctor) to avoid name lookups on the draw path.
+	 * @param name Location name.
+	 * @return -1: not a standard name; else: slot.
+	 */
+	public static int slotFor(String name) {
+		for(int ix = 0; ix < ALL_ATTRIBUTES.length; ix++) {
+			if(ALL_ATTRIBUTES[ix].equals(name)) return ATTRIBUTE_SLOTS[ix];
+		}
+		for(int ix = 0; ix < ALL_UNIFORMS.length; ix++) {
+			if(ALL_UNIFORMS[ix].equals(name)) return UNIFORM_SLOTS[ix];
+		}
+		return -1;
+	}
 	/**
 	 * Configuration data for active locations.
 	 * @author escape-llc
@@ -86,11 +153,42 @@ public class Shader implements GLResource {
 	static final class Location {
 		public final String name;
 		public final int handle;
-		public boolean setup;
+		/* true: shadow holds the value last uploaded to this uniform */
+		public boolean valid;
+		/* shadow copy of last uploaded uniform value; sized for mat4 */
+		public final float[] shadow = new float[16];
 		public Location(String name, int handle) {
 			this.name = name;
 			this.handle = handle;
 		}
+		/**
+		 * Compare to shadow copy, then update shadow copy.
+		 * @param src Source values.
+		 * @param count Number of values.
+		 * @return true: same as shadow; false: changed (shadow now updated).
+		 */
+		public boolean same(float[] src, int count) {
+			boolean same = valid;
+			for(int ix = 0; ix < count; ix++) {
+				if(shadow[ix] != src[ix]) {
+					shadow[ix] = src[ix];
+					same = false;
+				}
+			}
+			valid = true;
+			return same;
+		}
+		/**
+		 * Compare to shadow copy, then update shadow copy.
+		 * @param vx Source value.
+		 * @return true: same as shadow; false: changed (shadow now updated).
+		 */
+		public boolean same(float vx) {
+			final boolean same = valid && shadow[0] == vx;
+			shadow[0] = vx;
+			valid = true;
+			return same;
+		}
 	}
 	// Vertex shader source
 	final String vertex;
@@ -104,8 +202,20 @@ public class Shader implements GLResource {
 	final HashMap<String, Location> locs = new HashMap<String, Location>();
 	// use for iteration
 	final ArrayList<Location> itlocs = new ArrayList<Location>(10);
+	// use for lookup by slot; NULL entries are not present in program
+	final Location[] slots = new Location[SLOT_COUNT];
 	// GL released state
 	volatile boolean released;
+	// bit per attribute location used by this program
+	int attributes;
+	// bit per attribute location set for the current draw
+	int drawAttributes;
+	// true: prepareDraw() since the last attribute was set; the next one starts a new draw
+	boolean drawn;
+	// uniform uploads issued
+	int uploads;
+	// uniform uploads skipped (same as shadow copy)
+	int skipped;
 	/**
 	 * Ctor.
 	 * @param vertex Vertex shader source.
@@ -130,11 +240,24 @@ public class Shader implements GLResource {
 	boolean vertexAttribArray(Location lx, int elems, int stride, FloatBuffer fb) {
 		if(lx == null) return false;
 		if(lx.handle == -1) return false;
-		GLES20.glEnableVertexAttribArray(lx.handle);
-		GLES20.glVertexAttribPointer(lx.handle, elems, GLES20.GL_FLOAT, false, stride, fb);
-		lx.setup = true;
+		// client-side array requires no ARRAY_BUFFER binding
+		GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		GLState.enableAttribute(lx.handle);
+		attribute(lx.handle);
+		GL.glVertexAttribPointer(lx.handle, elems, GLES20.GL_FLOAT, false, stride, fb);
 		return true;
 	}
+	/**
+	 * Add an attribute location to the current draw's set.
+	 * @param handle location handle.
+	 */
+	void attribute(int handle) {
+		if(drawn) {
+			drawAttributes = 0;
+			drawn = false;
+		}
+		drawAttributes |= 1 << handle;
+	}
 	/**
 	 * Configure the given VBO attribute.
 	 * @param lx location handle.
@@ -144,11 +267,24 @@ public class Shader implements GLResource {
 	 * @return true: value was set; false: not set.
 	 */
 	boolean vertexAttribArray(Location lx, int elems, int stride, int offset) {
+		return vertexAttribArray(lx, elems, GLES20.GL_FLOAT, false, stride, offset*Geometry.FLOAT_BYTES);
+	}
+	/**
+	 * Configure the given VBO attribute with an encoded type.
+	 * @param lx location handle.
+	 * @param elems number of elements.
+	 * @param type GL component type.
+	 * @param normalized true: GL normalizes integer types.
+	 * @param stride array stride in bytes.
+	 * @param offset Byte offset.
+	 * @return true: value was set; false: not set.
+	 */
+	boolean vertexAttribArray(Location lx, int elems, int type, boolean normalized, int stride, int offset) {
 		if(lx == null) return false;
 		if(lx.handle == -1) return false;
-		GLES20.glEnableVertexAttribArray(lx.handle);
-		GLES20.glVertexAttribPointer(lx.handle, elems, GLES20.GL_FLOAT, false, stride, offset*Geometry.FLOAT_BYTES);
-		lx.setup = true;
+		GLState.enableAttribute(lx.handle);
+		attribute(lx.handle);
+		GL.glVertexAttribPointer(lx.handle, elems, type, normalized, stride, offset);
 		return true;
 	}
 	/**
@@ -157,22 +293,47 @@ public class Shader implements GLResource {
 	 * @param pgx GL Program ID.
 	 */
 	protected void registerLocations(int pgx) {
+		registerStandardLocations(pgx);
+	}
+	/**
+	 * Register a custom uniform location by name.
+	 * Call from registerLocations() overrides; the String API can then set it.
+	 * @param pgx GL Program ID.
+	 * @param name Uniform name.
+	 * @return true: registered; false: not present in program.
+	 */
+	protected boolean registerUniform(int pgx, String name) {
+		final int lx = GL.glGetUniformLocation(pgx, name);
+		if(lx == -1) return false;
+		final Location llx = new Location(name, lx);
+		locs.put(llx.name, llx);
+		itlocs.add(llx);
+		return true;
+	}
+	/**
+	 * Register the standard attribute and uniform locations.
+	 * @param pgx GL Program ID.
+	 */
+	void registerStandardLocations(int pgx) {
 		// attributes
 		for(int ix = 0; ix < ALL_ATTRIBUTES.length; ix++) {
-			final int lx = GLES20.glGetAttribLocation(pgx, ALL_ATTRIBUTES[ix]);
+			final int lx = GL.glGetAttribLocation(pgx, ALL_ATTRIBUTES[ix]);
 			if(lx != -1) {
 				final Location llx = new Location(ALL_ATTRIBUTES[ix], lx);
 				locs.put(llx.name, llx);
 				itlocs.add(llx);
+				slots[ATTRIBUTE_SLOTS[ix]] = llx;
+				attributes |= 1 << lx;
 			}
 		}
 		// uniforms
 		for (int ix = 0; ix < ALL_UNIFORMS.length; ix++) {
-			final int lx = GLES20.glGetUniformLocation(pgx, ALL_UNIFORMS[ix]);
+			final int lx = GL.glGetUniformLocation(pgx, ALL_UNIFORMS[ix]);
 			if (lx != -1) {
 				final Location llx = new Location(ALL_UNIFORMS[ix], lx);
 				locs.put(llx.name, llx);
 				itlocs.add(llx);
+				slots[UNIFORM_SLOTS[ix]] = llx;
 			}
 		}
 	}
@@ -192,7 +353,7 @@ public class Shader implements GLResource {
 		if(fsi == 0) {
 			Log.w(TAG, "Could not create fragment shader");
 			if(vsi != 0) {
-				GLES20.glDeleteShader(vsi);
+				GL.glDeleteShader(vsi);
 			}
 			return;
 		}
@@ -205,8 +366,8 @@ public class Shader implements GLResource {
 		}
 		else {
 			// it failed, program was deleted, now clean up shaders
-			GLES20.glDeleteShader(vsi);
-			GLES20.glDeleteShader(fsi);
+			GL.glDeleteShader(vsi);
+			GL.glDeleteShader(fsi);
 			vid = 0;
 			fid = 0;
 		}
@@ -215,9 +376,12 @@ public class Shader implements GLResource {
 		if(released) return;
 		locs.clear();
 		itlocs.clear();
-		GLES20.glDeleteProgram(program);
-		GLES20.glDeleteShader(fid);
-		GLES20.glDeleteShader(vid);
+		Arrays.fill(slots, null);
+		attributes = 0;
+		GL.glDeleteProgram(program);
+		GLState.deleted(program);
+		GL.glDeleteShader(fid);
+		GL.glDeleteShader(vid);
 		checkGlError("Shader.glDeleteProgram");
 		program = -1;
 		vid = 0;
@@ -228,6 +392,8 @@ public class Shader implements GLResource {
 		if(released) return;
 		locs.clear();
 		itlocs.clear();
+		Arrays.fill(slots, null);
+		attributes = 0;
 		program = -1;
 		vid = 0;
 		fid = 0;
@@ -235,30 +401,61 @@ public class Shader implements GLResource {
 	}
 	/**
 	 * Select the shader program into GL context.
-	 * Clear setup flags for glDisableVertexAttribArray() bookkeeping in teardown().
+	 * Disables any enabled vertex attribute arrays this program does not use.
 	 */
 	public void setup() {
 		if(released) return;
-		for(int ix = 0; ix < itlocs.size(); ix++) {
-			itlocs.get(ix).setup = false;
-		}
-		GLES20.glUseProgram(program);
+		GLState.useProgram(program);
 		checkGlError("Shader.glUseProgram");
+		GLState.retainAttributes(attributes);
+		drawAttributes = 0;
+		drawn = false;
+	}
+	/**
+	 * Disable the enabled vertex attribute arrays the current draw did not set,
+	 * so none is left pointing at a previous geometry's buffer.
+	 * Call after setting the attributes, immediately before glDrawArrays()/glDrawElements();
+	 * further draws of the same attributes (e.g. submeshes) may call it again.
+	 */
+	public void prepareDraw() {
+		if(released) return;
+		GLState.retainAttributes(drawAttributes);
+		drawn = true;
 	}
 	/**
 	 * Clean up shader program after rendering is complete.
-	 * Disables all vertex attribute arrays that have setup flag true.
+	 * Attribute arrays are left enabled; the next draw disables those it does not set.
 	 */
 	public void teardown() {
-		if(released) return;
+		drawAttributes = 0;
+		drawn = false;
+	}
+	/**
+	 * Discard all uniform shadow copies.
+	 * The next set of each uniform is uploaded unconditionally.
+	 */
+	public void invalidateUniforms() {
 		for(int ix = 0; ix < itlocs.size(); ix++) {
-			final Location lx = itlocs.get(ix);
-			if(lx.setup) {
-				GLES20.glDisableVertexAttribArray(lx.handle);
-				lx.setup = false;
-			}
+			itlocs.get(ix).valid = false;
 		}
 	}
+	/**
+	 * Return the number of uniform uploads issued since last resetCounters().
+	 * @return upload count.
+	 */
+	public int getUploadCount() { return uploads; }
+	/**
+	 * Return the number of uniform uploads skipped since last resetCounters().
+	 * @return skip count.
+	 */
+	public int getSkippedCount() { return skipped; }
+	/**
+	 * Reset the uniform upload counters.
+	 */
+	public void resetCounters() {
+		uploads = 0;
+		skipped = 0;
+	}
 	/**
 	 * Return whether the given Location exists.
 	 * Should be called after load() is successfully completed.
@@ -270,6 +467,16 @@ public class Shader implements GLResource {
 		if(released) return false;
 		return locs.containsKey(name);
 	}
+	/**
+	 * Return whether the given slot exists.
+	 * Should be called after load() is successfully completed.
+	 * @param slot location slot (SLOT_*).
+	 * @return true: available; false: not available.
+	 */
+	public boolean query(int slot) {
+		if(released) return false;
+		return slots[slot] != null;
+	}
 	/**
 	 * Return whether the given uniform exists.
 	 * Queries the shader program directly.
@@ -278,7 +485,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean queryUniform(String name) {
 		if(released) return false;
-		final int handle = GLES20.glGetUniformLocation(program, name);
+		final int handle = GL.glGetUniformLocation(program, name);
 		return handle != -1;
 	}
 	/**
@@ -289,23 +496,114 @@ public class Shader implements GLResource {
 	 */
 	public boolean queryAttribute(String name) {
 		if(released) return false;
-		final int handle = GLES20.glGetAttribLocation(program, name);
+		final int handle = GL.glGetAttribLocation(program, name);
 		return handle != -1;
 	}
 	/**
 	 * Set the given uniform matrix.
-	 * @param name Location name.
+	 * @param lx Location; may be NULL.
 	 * @param mat4 Source matrix.
 	 * @return true: value was set; false: not set.
 	 */
-	public boolean matrix4(String name, float[] mat4) {
-		if(released) return false;
-		final Location lx = locs.get(name);
+	boolean uniformMatrix4(Location lx, float[] mat4) {
 		if(lx == null) return false;
 		if(lx.handle == -1) return false;
-		GLES20.glUniformMatrix4fv(lx.handle, 1, false, mat4, 0);
+		if(lx.same(mat4, 16)) {
+			skipped++;
+			return true;
+		}
+		GL.glUniformMatrix4fv(lx.handle, 1, false, mat4, 0);
+		uploads++;
 		return true;
 	}
+	/**
+	 * Set the given uniform vec3.
+	 * @param lx Location; may be NULL.
+	 * @param vec3 Source vec3.
+	 * @return true: value was set; false: not set.
+	 */
+	boolean uniform3(Location lx, float[] vec3) {
+		if(lx == null) return false;
+		if(lx.handle == -1) return false;
+		if(lx.same(vec3, 3)) {
+			skipped++;
+			return true;
+		}
+		GL.glUniform3fv(lx.handle, 1, vec3, 0);
+		uploads++;
+		return true;
+	}
+	/**
+	 * Set the given uniform vec4.
+	 * @param lx Location; may be NULL.
+	 * @param vec4 Source vec4.
+	 * @return true: value was set; false: not set.
+	 */
+	boolean uniform4(Location lx, float[] vec4) {
+		if(lx == null) return false;
+		if(lx.handle == -1) return false;
+		if(lx.same(vec4, 4)) {
+			skipped++;
+			return true;
+		}
+		GL.glUniform4fv(lx.handle, 1, vec4, 0);
+		uploads++;
+		return true;
+	}
+	/**
+	 * Set the given uniform float.
+	 * @param lx Location; may be NULL.
+	 * @param vx Source float.
+	 * @return true: value was set; false: not set.
+	 */
+	boolean uniform1(Location lx, float vx) {
+		if(lx == null) return false;
+		if(lx.handle == -1) return false;
+		if(lx.same(vx)) {
+			skipped++;
+			return true;
+		}
+		GL.glUniform1f(lx.handle, vx);
+		uploads++;
+		return true;
+	}
+	/**
+	 * Set the given uniform int (sampler).
+	 * @param lx Location; may be NULL.
+	 * @param ix Source int.
+	 * @return true: value was set; false: not set.
+	 */
+	boolean uniform1i(Location lx, int ix) {
+		if(lx == null) return false;
+		if(lx.handle == -1) return false;
+		if(lx.same((float)ix)) {
+			skipped++;
+			return true;
+		}
+		GL.glUniform1i(lx.handle, ix);
+		uploads++;
+		return true;
+	}
+	/**
+	 * Set the given uniform matrix.
+	 * @param name Location name.
+	 * @param mat4 Source matrix.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean matrix4(String name, float[] mat4) {
+		if(released) return false;
+		return uniformMatrix4(locs.get(name), mat4);
+	}
+	/**
+	 * Set the given uniform matrix.
+	 * @param slot Location slot (SLOT_*).
+	 * @param mat4 Source matrix.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean matrix4(int slot, float[] mat4) {
+		if(released) return false;
+		return uniformMatrix4(slots[slot], mat4);
+	}
 	/**
 	 * Set the given uniform vec3.
 	 * @param name Location name.
@@ -313,13 +611,38 @@ public class Shader implements GLResource {
 	 * @return true: value was set; false: not set.
 	 */
 	public boolean uniform3d(String name, float[] vec3) {
+		if(released) return false;
+		return uniform3(locs.get(name), vec3);
+	}
+	/**
+	 * Set the given uniform vec2.
+	 * @param name Location name.
+	 * @param vec2 Source vec2.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean uniform2d(String name, float[] vec2) {
 		if(released) return false;
 		final Location lx = locs.get(name);
 		if(lx == null) return false;
 		if(lx.handle == -1) return false;
-		GLES20.glUniform3fv(lx.handle, 1, vec3, 0);
+		if(lx.same(vec2, 2)) {
+			skipped++;
+			return true;
+		}
+		GL.glUniform2fv(lx.handle, 1, vec2, 0);
+		uploads++;
 		return true;
 	}
+	/**
+	 * Set the given uniform vec3.
+	 * @param slot Location slot (SLOT_*).
+	 * @param vec3 Source vec3.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean uniform3d(int slot, float[] vec3) {
+		if(released) return false;
+		return uniform3(slots[slot], vec3);
+	}
 	/**
 	 * Set the given uniform float.
 	 * @param name Location name.
@@ -328,11 +651,32 @@ public class Shader implements GLResource {
 	 */
 	public boolean uniform(String name, float vx) {
 		if(released) return false;
-		final Location lx = locs.get(name);
-		if(lx == null) return false;
-		if(lx.handle == -1) return false;
-		GLES20.glUniform1f(lx.handle, vx);
-		return true;
+		return uniform1(locs.get(name), vx);
+	}
+	/**
+	 * Set the given uniform float.
+	 * @param slot Location slot (SLOT_*).
+	 * @param vx Source float.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean uniform(int slot, float vx) {
+		if(released) return false;
+		return uniform1(slots[slot], vx);
+	}
+	/**
+	 * Set a VBO attribute stored in a compact encoding (see VertexFormat).
+	 * Use with interleaved layout.
+	 * @param slot Attribute slot (SLOT_POSITION, etc.).
+	 * @param elems number of elements.
+	 * @param type GL component type, e.g. GL_SHORT.
+	 * @param normalized true: GL normalizes integer types.
+	 * @param stride array stride in bytes.
+	 * @param offset Byte offset.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean attribute(int slot, int elems, int type, boolean normalized, int stride, int offset) {
+		if(released) return false;
+		return vertexAttribArray(slots[slot], elems, type, normalized, stride, offset);
 	}
 	/**
 	 * Set the position vertex attribute array (SV_POSITION).
@@ -344,7 +688,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean vertex(FloatBuffer fb, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_POSITION), elems, stride, fb);
+		return vertexAttribArray(slots[SLOT_POSITION], elems, stride, fb);
 	}
 	/**
 	 * Set the position VBO attribute (SV_POSITION).
@@ -356,7 +700,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean vertex(int offset, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_POSITION), elems, stride, offset);
+		return vertexAttribArray(slots[SLOT_POSITION], elems, stride, offset);
 	}
 	/**
 	 * Set the position vertex attribute array (SV_POSITION).
@@ -365,7 +709,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean vertex3d(FloatBuffer fb) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_POSITION), 3, 0, fb);
+		return vertexAttribArray(slots[SLOT_POSITION], 3, 0, fb);
 	}
 	/**
 	 * Set the vertex-normal vertex attribute array (SV_NORMAL).
@@ -377,7 +721,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean normal(FloatBuffer fb, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_NORMAL), elems, stride, fb);
+		return vertexAttribArray(slots[SLOT_NORMAL], elems, stride, fb);
 	}
 	/**
 	 * Set the vertex-normal VBO attribute (SV_NORMAL).
@@ -389,7 +733,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean normal(int offset, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_NORMAL), elems, stride, offset);
+		return vertexAttribArray(slots[SLOT_NORMAL], elems, stride, offset);
 	}
 	/**
 	 * Set the vertex-normal vertex attribute array (SV_NORMAL).
@@ -398,7 +742,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean normal3d(FloatBuffer fb) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_NORMAL), 3, 0, fb);
+		return vertexAttribArray(slots[SLOT_NORMAL], 3, 0, fb);
 	}
 	/**
 	 * Set the texture-coord vertex attribute array (SV_TEXTURE_COORD).
@@ -410,7 +754,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean texture(FloatBuffer fb, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_TEXTURE_COORD), elems, stride, fb);
+		return vertexAttribArray(slots[SLOT_TEXTURE_COORD], elems, stride, fb);
 	}
 	/**
 	 * Set the texture-coord VBO attribute (SV_TEXTURE_COORD).
@@ -422,7 +766,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean texture(int offset, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_TEXTURE_COORD), elems, stride, offset);
+		return vertexAttribArray(slots[SLOT_TEXTURE_COORD], elems, stride, offset);
 	}
 	/**
 	 * Set the texture-coord attribute array (SV_TEXTURE_COORD).
@@ -431,7 +775,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean texture2d(FloatBuffer fb) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_TEXTURE_COORD), 2, 0, fb);
+		return vertexAttribArray(slots[SLOT_TEXTURE_COORD], 2, 0, fb);
 	}
 	/**
 	 * Set the color vertex attribute array (SV_COLOR).
@@ -443,7 +787,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean color(FloatBuffer fb, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_COLOR), elems, stride, fb);
+		return vertexAttribArray(slots[SLOT_COLOR], elems, stride, fb);
 	}
 	/**
 	 * Set the color VBO attribute (SV_COLOR).
@@ -455,7 +799,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean color(int offset, int elems, int stride) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_COLOR), elems, stride, offset);
+		return vertexAttribArray(slots[SLOT_COLOR], elems, stride, offset);
 	}
 	/**
 	 * Set the 4D vertex-color attribute array (SV_COLOR).
@@ -464,7 +808,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean color4d(FloatBuffer fb) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_COLOR), 4, 0, fb);
+		return vertexAttribArray(slots[SLOT_COLOR], 4, 0, fb);
 	}
 	/**
 	 * Set the 3D vertex-color attribute array (SV_COLOR).
@@ -473,7 +817,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean color3d(FloatBuffer fb) {
 		if(released) return false;
-		return vertexAttribArray(locs.get(SV_COLOR), 3, 0, fb);
+		return vertexAttribArray(slots[SLOT_COLOR], 3, 0, fb);
 	}
 	/**
 	 * Set texture unit ID for given location.
@@ -483,11 +827,17 @@ public class Shader implements GLResource {
 	 */
 	public boolean texture(String name, int texid) {
 		if(released) return false;
-		final Location lx = locs.get(name);
-		if(lx == null) return false;
-		if(lx.handle == -1) return false;
-		GLES20.glUniform1i(lx.handle, texid);
-		return true;
+		return uniform1i(locs.get(name), texid);
+	}
+	/**
+	 * Set texture unit ID for given slot.
+	 * @param slot Location slot (SLOT_*).
+	 * @param texid Texture unit id.
+	 * @return true: value was set; false: not set.
+	 */
+	public boolean texture(int slot, int texid) {
+		if(released) return false;
+		return uniform1i(slots[slot], texid);
 	}
 	/**
 	 * Set the color uniform (SV_UCOLOR).
@@ -496,11 +846,7 @@ public class Shader implements GLResource {
 	 */
 	public boolean color4d(float[] color) {
 		if(released) return false;
-		final Location lx = locs.get(SV_UCOLOR);
-		if(lx == null) return false;
-		if(lx.handle == -1) return false;
-		GLES20.glUniform4fv(lx.handle, 1, color, 0);
-		return true;
+		return uniform4(slots[SLOT_UCOLOR], color);
 	}
 	/**
 	 * Dump any GL errors to the log.
@@ -510,7 +856,7 @@ public class Shader implements GLResource {
     	StringBuilder sb = null;
         int error;
         int did = 0;
-        while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+        while ((error = GL.glGetError()) != GLES20.GL_NO_ERROR) {
         	did++;
         	if(sb == null) {
         		sb = new StringBuilder(op);
@@ -530,16 +876,16 @@ public class Shader implements GLResource {
      * @return 0: failed; else: compiled shader ID.
      */
 	static int loadShader(int type, String shaderCode) {
-	    final int shader = GLES20.glCreateShader(type);
+	    final int shader = GL.glCreateShader(type);
 		if (shader != 0) {
 			// add the source code to the shader and compile it
-			GLES20.glShaderSource(shader, shaderCode);
-			GLES20.glCompileShader(shader);
+			GL.glShaderSource(shader, shaderCode);
+			GL.glCompileShader(shader);
 			final int[] compiled = new int[1];
-			GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+			GL.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
 			if (compiled[0] != GLES20.GL_TRUE) {
-				Log.e(TAG, "Could not compile shader " + type + ": " + GLES20.glGetShaderInfoLog(shader));
-				GLES20.glDeleteShader(shader);
+				Log.e(TAG, "Could not compile shader " + type + ": " + GL.glGetShaderInfoLog(shader));
+				GL.glDeleteShader(shader);
 				return 0;
 			}
 		}
@@ -556,19 +902,19 @@ public class Shader implements GLResource {
 	 * @return 0: failed; else: linked program ID.
 	 */
 	static final int createProgram(int vs, int fs) {
-		final int mProgram = GLES20.glCreateProgram();
+		final int mProgram = GL.glCreateProgram();
 		if(mProgram != 0) {
-			GLES20.glAttachShader(mProgram, vs);
+			GL.glAttachShader(mProgram, vs);
 			checkGlError("Shader.glAttachShader(vs)");
-			GLES20.glAttachShader(mProgram, fs);
+			GL.glAttachShader(mProgram, fs);
 			checkGlError("Shader.glAttachShader(fs)");
-			GLES20.glLinkProgram(mProgram);
+			GL.glLinkProgram(mProgram);
 			checkGlError("Shader.glLinkProgram");
             final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(mProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
+            GL.glGetProgramiv(mProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
             if (linkStatus[0] != GLES20.GL_TRUE) {
-                Log.e(TAG, "Could not link program: " + GLES20.glGetProgramInfoLog(mProgram));
-                GLES20.glDeleteProgram(mProgram);
+                Log.e(TAG, "Could not link program: " + GL.glGetProgramInfoLog(mProgram));
+                GL.glDeleteProgram(mProgram);
                 return 0;
             }
 		}
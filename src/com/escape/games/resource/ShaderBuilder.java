@@ -72,15 +72,19 @@ public class ShaderBuilder {
 	public static final String UniformTexture1 = "uTexture";
 	public static final String UniformTexture2 = "uTexture2";
 	public static final String UniformLightPosition = "uLightPos";
+	public static final String UniformPositionScale = "uPositionScale";
+	public static final String UniformPositionOffset = "uPositionOffset";
 	public static final String AttributePosition = "aPosition";
 	public static final String AttributeNormal = "aNormal";
 	public static final String AttributeColor = "aColor";
 	public static final String AttributeTexture = "aTextureCoord";
-	static final String FMT_SHADER_VERTEX = "%0$s\nvoid main() {\n %1$s\n%2$s \n}";
-	static final String FMT_SHADER_FRAGMENT = "precision mediump float;\n%0$s\nvoid main() {\n %1$s\n%2$s \n}";
-	static final String FMT_Texture2D = "texture2D(%0$s, %1$s).rgba";
-	static final String FMT_Assignment = "%0$s = %1$s;\n";
-	static final String FMT_AssignmentLocal = "%0$s %1$s = %2$s;\n";
+	/** model-space position expression for quantized positions */
+	public static final String QuantizedPosition = "(aPosition * uPositionScale + uPositionOffset)";
+	static final String FMT_SHADER_VERTEX = "%1$s\nvoid main() {\n %2$s\n%3$s \n}";
+	static final String FMT_SHADER_FRAGMENT = "precision mediump float;\n%1$s\nvoid main() {\n %2$s\n%3$s \n}";
+	static final String FMT_Texture2D = "texture2D(%1$s, %2$s).rgba";
+	static final String FMT_Assignment = "%1$s = %2$s;\n";
+	static final String FMT_AssignmentLocal = "%1$s %2$s = %3$s;\n";
 	final StringBuilder vdecl;
 	final StringBuilder fdecl;
 	final StringBuilder vertex;
@@ -108,13 +112,13 @@ public class ShaderBuilder {
 	 * @param ratio mix ratio
 	 * @return "mix(e1, e2, ratio)"
 	 */
-	public static String mix(String expr1, String expr2, String ratio) { return String.format("mix(%0$s, %1$s, %2$s)", expr1, expr2, ratio); }
+	public static String mix(String expr1, String expr2, String ratio) { return String.format("mix(%1$s, %2$s, %3$s)", expr1, expr2, ratio); }
 	/**
 	 * Format expression surrounded by parens.
 	 * @param expr1 expression
 	 * @return "(e1)".
 	 */
-	public static String expr(String expr1) { return String.format("(%0$s)", expr1); }
+	public static String expr(String expr1) { return String.format("(%1$s)", expr1); }
 	/**
 	 * Format an expression involving multiplication.
 	 * Does not consider operator precedence of the two terms; supply parens if unsure!
@@ -122,7 +126,7 @@ public class ShaderBuilder {
 	 * @param expr2 expression 2
 	 * @return "(e1 * e2)".
 	 */
-	public static String multiply(String expr1, String expr2) { return String.format("(%0$s * %1$s)", expr1, expr2); }
+	public static String multiply(String expr1, String expr2) { return String.format("(%1$s * %2$s)", expr1, expr2); }
 	/**
 	 * Format an expression involving division.
 	 * Does not consider operator precedence of the two terms; supply parens if unsure!
@@ -130,7 +134,7 @@ public class ShaderBuilder {
 	 * @param expr2 expression 2
 	 * @return "(e1 / e2)".
 	 */
-	public static String divide(String expr1, String expr2) { return String.format("(%0$s / %1$s)", expr1, expr2); }
+	public static String divide(String expr1, String expr2) { return String.format("(%1$s / %2$s)", expr1, expr2); }
 	/**
 	 * Format an expression involving addition.
 	 * Does not consider operator precedence of the two terms; supply parens if unsure!
@@ -138,7 +142,7 @@ public class ShaderBuilder {
 	 * @param expr2 expression 2
 	 * @return "(e1 + e2)".
 	 */
-	public static String add(String expr1, String expr2) { return String.format("(%0$s + %1$s)", expr1, expr2); }
+	public static String add(String expr1, String expr2) { return String.format("(%1$s + %2$s)", expr1, expr2); }
 	/**
 	 * Format an expression involving subtraction.
 	 * Does not consider operator precedence of the two terms; supply parens if unsure!
@@ -146,21 +150,21 @@ public class ShaderBuilder {
 	 * @param expr2 expression 2
 	 * @return "(e1 - e2)".
 	 */
-	public static String subtract(String expr1, String expr2) { return String.format("(%0$s - %1$s)", expr1, expr2); }
+	public static String subtract(String expr1, String expr2) { return String.format("(%1$s - %2$s)", expr1, expr2); }
 	/**
 	 * Format a vec3 to vec4 conversion, supplying W component.
 	 * @param expr
 	 * @param ww
 	 * @return "vec4(vec3, float)"
 	 */
-	public static String vec3ToVec4(String expr, String ww) { return String.format("vec4(%0$s, %1$s)", expr, ww); }
+	public static String vec3ToVec4(String expr, String ww) { return String.format("vec4(%1$s, %2$s)", expr, ww); }
 	/**
 	 * Format in function call syntax.
 	 * @param name "function" name.
 	 * @param expr parameter.
 	 * @return "name(e1)"
 	 */
-	public static String call(String name, String expr) { return String.format("%0$s(%1$s)", name, expr); }
+	public static String call(String name, String expr) { return String.format("%1$s(%2$s)", name, expr); }
 	/**
 	 * Format in function call syntax.
 	 * @param name "function" name.
@@ -208,7 +212,7 @@ public class ShaderBuilder {
 	 * @return self.
 	 */
 	public ShaderBuilder varying(String type, String name) {
-		final String decl = String.format("varying %0$s %1$s;\n", type, name);
+		final String decl = String.format("varying %1$s %2$s;\n", type, name);
 		if(!checkDecl(vdecl, name)) vdecl.append(decl);
 		if(!checkDecl(fdecl, name)) fdecl.append(decl);
 		return this;
@@ -224,6 +228,20 @@ public class ShaderBuilder {
 		vertexPosition("uMVPMatrix * vec4(aPosition, 1)");
 		return this;
 	}
+	/**
+	 * Set GLSL vertex position statement for quantized positions (VertexFormat.QUANTIZED).
+	 * Restores the position from uPositionScale and uPositionOffset; other statements using the position should use QuantizedPosition.
+	 * Checks for dependent decls and adds if missing.
+	 * @return self.
+	 */
+	public ShaderBuilder quantizedPosition() {
+		if(!checkDecl(vdecl, UniformMVP)) mvpMatrix();
+		if(!checkDecl(vdecl, AttributePosition)) position();
+		if(!checkDecl(vdecl, UniformPositionScale)) vertexUniform(GL_Vec3, UniformPositionScale);
+		if(!checkDecl(vdecl, UniformPositionOffset)) vertexUniform(GL_Vec3, UniformPositionOffset);
+		vertexPosition("uMVPMatrix * vec4(" + QuantizedPosition + ", 1)");
+		return this;
+	}
 	/**
 	 * Assign GLSL vertex position statement in vertex shader.
 	 * Overwrites previous assignment to vertex position.
@@ -304,7 +322,7 @@ public class ShaderBuilder {
 	 */
 	public ShaderBuilder inFragment(String... stmts) {
 		for(int ix = 0; ix < stmts.length; ix++) {
-			this.frag.append(stmts);
+			this.frag.append(stmts[ix]);
 		}
 		return this;
 	}
@@ -318,7 +336,7 @@ public class ShaderBuilder {
 	 */
 	public ShaderBuilder fragmentUniform(String type, String name) {
 		if(checkDecl(fdecl, name)) throw new IllegalArgumentException(name + ": already defined");
-		fdecl.append(String.format("uniform %0$s %1$s;\n", type, name));
+		fdecl.append(String.format("uniform %1$s %2$s;\n", type, name));
 		return this;
 	}
 	/**
@@ -331,7 +349,7 @@ public class ShaderBuilder {
 	 */
 	public ShaderBuilder fragmentAttribute(String type, String name) {
 		if(checkDecl(fdecl, name)) throw new IllegalArgumentException(name + ": already defined");
-		fdecl.append(String.format("attribute %0$s %1$s;\n", type, name));
+		fdecl.append(String.format("attribute %1$s %2$s;\n", type, name));
 		return this;
 	}
 	/**
@@ -344,7 +362,7 @@ public class ShaderBuilder {
 	 */
 	public ShaderBuilder vertexUniform(String type, String name) {
 		if(checkDecl(vdecl, name)) throw new IllegalArgumentException(name + ": already defined");
-		vdecl.append(String.format("uniform %0$s %1$s;\n", type, name));
+		vdecl.append(String.format("uniform %1$s %2$s;\n", type, name));
 		return this;
 	}
 	/**
@@ -357,7 +375,7 @@ public class ShaderBuilder {
 	 */
 	public ShaderBuilder vertexAttribute(String type, String name) {
 		if(checkDecl(vdecl, name)) throw new IllegalArgumentException(name + ": already defined");
-		vdecl.append(String.format("attribute %0$s %1$s;\n", type, name));
+		vdecl.append(String.format("attribute %1$s %2$s;\n", type, name));
 		return this;
 	}
 	/**
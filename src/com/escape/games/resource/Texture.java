@@ -17,13 +17,13 @@ package com.escape.games.resource;
 
 import java.util.concurrent.CountDownLatch;
 import com.escape.games.core.TraceSwitches;
+import com.escape.games.gl.GL;
 
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.GLUtils;
 import android.util.Log;
 
 /**
@@ -77,7 +77,8 @@ public class Texture implements GLResource {
 	public void unload(Context ctx) {
 		if(released) return;
 		final int[] handle = { id };
-		GLES20.glDeleteTextures(1, handle, 0);
+		GL.glDeleteTextures(1, handle, 0);
+		GLState.deletedTexture(id);
 		id = 0;
 		released = true;
 	}
@@ -101,15 +102,15 @@ public class Texture implements GLResource {
 		final Bitmap bitmap = (Bitmap)preload;
 		try {
 			final int[] handle = new int[1];
-			GLES20.glGenTextures(1, handle, 0);
+			GL.glGenTextures(1, handle, 0);
 			if (handle[0] != 0) {
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, handle[0]);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, minf);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, magf);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, wraps);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, wrapt);
-				GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+				GLState.bindTexture(handle[0]);
+				GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, minf);
+				GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, magf);
+				GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, wraps);
+				GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, wrapt);
+				GL.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+				GLState.bindTexture(0);
 				id = handle[0];
 				released = false;
 			} else {
@@ -129,10 +130,25 @@ public class Texture implements GLResource {
 	 */
 	public void setup(Shader sx, int tex, int tuniform, String locname) {
 		if(released) return;
-		GLES20.glActiveTexture(tex);
-		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, id);
+		GLState.activeTexture(tex);
+		GLState.bindTexture(id);
+		RenderStats.texture();
 		sx.texture(locname, tuniform);
 	}
+	/**
+	 * Configure texturing into shader.
+	 * @param sx Target shader.
+	 * @param tex value for glActiveTexure().
+	 * @param tuniform value for shader sampler2d uniform.
+	 * @param slot shader uniform location slot (Shader.SLOT_*).
+	 */
+	public void setup(Shader sx, int tex, int tuniform, int slot) {
+		if(released) return;
+		GLState.activeTexture(tex);
+		GLState.bindTexture(id);
+		RenderStats.texture();
+		sx.texture(slot, tuniform);
+	}
 	/**
 	 * Create a texture by resource id from non-GL thread.
 	 * Waits for the operation on GL thread to complete.
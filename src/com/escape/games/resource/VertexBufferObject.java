@@ -15,9 +15,12 @@
  */
 package com.escape.games.resource;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.concurrent.CountDownLatch;
 
+import com.escape.games.gl.GL;
 import com.escape.games.model.Geometry;
 
 import android.content.Context;
@@ -27,7 +30,7 @@ import android.util.Log;
 
 /**
  * Implementation of GL Vertex Buffer Object resource.
- * Buffers are 4-byte Floats.
+ * Buffers are 4-byte Floats, or bytes already encoded per VertexFormat.
  * @author escape-llc
  *
  */
@@ -36,22 +39,38 @@ public class VertexBufferObject implements GLResource {
 	int id;
 	volatile boolean released;
 	/* actual data */
-	final FloatBuffer fb;
+	final Buffer fb;
+	/* size in bytes */
+	final int bytes;
 	public VertexBufferObject(FloatBuffer fb) {
 		if(fb == null) throw new IllegalArgumentException("fb");
 		this.fb = fb;
+		this.bytes = fb.capacity() * Geometry.FLOAT_BYTES;
 	}
+	/**
+	 * Ctor.
+	 * @param bb Encoded vertices.
+	 */
+	public VertexBufferObject(ByteBuffer bb) {
+		if(bb == null) throw new IllegalArgumentException("bb");
+		this.fb = bb;
+		this.bytes = bb.capacity();
+	}
+	/**
+	 * Return the source data.
+	 * @return FloatBuffer or ByteBuffer.
+	 */
+	public Buffer getBuffer() { return fb; }
 	public Object preload(Context ctx) {
 		return null;
 	}
 	public void load(Object ctx) {
 		final int[] handle = new int[1];
-		GLES20.glGenBuffers(1, handle, 0);
+		GL.glGenBuffers(1, handle, 0);
 		if(handle[0] != 0) {
 			id = handle[0];
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, id);
-			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, fb.capacity() * Geometry.FLOAT_BYTES, fb, GLES20.GL_STATIC_DRAW);
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, id);
+			GL.glBufferData(GLES20.GL_ARRAY_BUFFER, bytes, fb, GLES20.GL_STATIC_DRAW);
 			released = false;
 		}
 		else {
@@ -62,7 +81,8 @@ public class VertexBufferObject implements GLResource {
 	public void unload(Context ctx) {
 		if(released) return;
 		final int handle[] = { id };
-		GLES20.glDeleteBuffers(1, handle, 0);
+		GL.glDeleteBuffers(1, handle, 0);
+		GLState.deletedBuffer(id);
 		id = 0;
 		released = true;
 	}
@@ -71,27 +91,34 @@ public class VertexBufferObject implements GLResource {
 		id = 0;
 		released = true;
 	}
+	/**
+	 * Bind as the ARRAY_BUFFER.
+	 */
 	public void setup() {
 		if(released) return;
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, id);
+		GLState.bindBuffer(GLES20.GL_ARRAY_BUFFER, id);
+		RenderStats.buffer();
 	}
+	/**
+	 * Binding is left in place; client-side arrays rebind zero on demand.
+	 */
 	public void teardown() {
-		if(released) return;
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 	}
 	/**
 	 * Dispatch an operation to the GL thread to create a VBO.
 	 * Waits for the operation to complete.
 	 * @param ctx Source of resources.
-	 * @param fb Source data buffer.  Should be InterleavedVertexGeometry.
+	 * @param fb Source data buffer.  FloatBuffer from InterleavedVertexGeometry, or ByteBuffer from VertexFormat.
 	 * @param sv GL Surface view.
 	 * @return New VBO or NULL.
+	 * @throws IllegalArgumentException fb is neither FloatBuffer nor ByteBuffer.
 	 */
-	public static VertexBufferObject create(Context ctx, FloatBuffer fb, GLSurfaceView sv) {
+	public static VertexBufferObject create(Context ctx, Buffer fb, GLSurfaceView sv) {
+		if(!(fb instanceof FloatBuffer) && !(fb instanceof ByteBuffer)) throw new IllegalArgumentException("fb");
 		if(sv != null) {
 			final CountDownLatch cl = new CountDownLatch(1);
 			final VertexBufferObject[] output = new VertexBufferObject[1];
-			final VertexBufferObject vbo = new VertexBufferObject(fb);
+			final VertexBufferObject vbo = fb instanceof FloatBuffer ? new VertexBufferObject((FloatBuffer)fb) : new VertexBufferObject((ByteBuffer)fb);
 			final Object ox = vbo.preload(ctx);
 			final Runnable rx = new Runnable() {
 				public void run() {
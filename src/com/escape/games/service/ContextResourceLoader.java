@@ -16,23 +16,37 @@
 package com.escape.games.service;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 
 import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
 import com.escape.games.core.TraceSwitches;
 import com.escape.games.model.Geometry;
+import com.escape.games.model.IndexedVBOGeometry;
+import com.escape.games.model.InterleavedVBOGeometry;
 import com.escape.games.model.InterleavedVertexGeometry;
+import com.escape.games.resource.GLResource;
+import com.escape.games.resource.IndexBufferObject;
 import com.escape.games.resource.Shader;
 import com.escape.games.resource.Texture;
 import com.escape.games.resource.VertexBufferObject;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
 import android.graphics.Point;
 import android.opengl.GLSurfaceView;
 import android.util.DisplayMetrics;
@@ -42,6 +56,7 @@ import android.view.WindowManager;
 /**
  * Default implementation for resource loader.
  * Holds weak references to Android components.
+ * Geometry, VBOs and IBOs are shared and reference counted; the last release deletes GL buffers on the GL thread.
  * @author escape-llc
  *
  */
@@ -61,6 +76,49 @@ public class ContextResourceLoader implements ResourceLoader {
 	final HashMap<String, Texture> tmap = new HashMap<String, Texture>();
 	/* owner-supplied resource map */
 	final HashMap<String, Integer> resmap;
+	/* shared geometry by content key */
+	final HashMap<String, Shared<Geometry>> gmap = new HashMap<String, Shared<Geometry>>();
+	/* shared VBO/IBO by source buffer */
+	final IdentityHashMap<Buffer, Shared<GLResource>> bmap = new IdentityHashMap<Buffer, Shared<GLResource>>();
+	/**
+	 * Reference counted cache entry.
+	 * Mapped before the resource exists, so the creator works outside the update lock;
+	 * other users wait in await() until the creator calls complete().
+	 * @param <T> resource type.
+	 */
+	static final class Shared<T> {
+		/* guarded by update lock */
+		int refs = 1;
+		T value;
+		Exception error;
+		/* written last by complete(); lets update lock holders test for in-flight entries */
+		volatile boolean ready;
+		synchronized void complete(T value, Exception error) {
+			this.value = value;
+			this.error = error;
+			ready = true;
+			notifyAll();
+		}
+		/**
+		 * Wait for the creator.
+		 * @return resource or NULL if creation failed; see error.
+		 */
+		synchronized T await() {
+			boolean interrupted = false;
+			while(!ready) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// creator always completes; keep waiting
+					interrupted = true;
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return value;
+		}
+	}
 	/**
 	 * Helper for creating shaders.
 	 * @author escape-llc
@@ -141,6 +199,49 @@ public class ContextResourceLoader implements ResourceLoader {
 		}
 		return null;
 	}
+	/**
+	 * Map a raw resource through its file descriptor; falls back to reading a compressed resource.
+	 */
+	public ByteBuffer map(int resid) throws IOException {
+		final Context ctx = wrc.get();
+		if(ctx == null) return null;
+		AssetFileDescriptor afd = null;
+		try {
+			afd = ctx.getResources().openRawResourceFd(resid);
+		}
+		catch(Resources.NotFoundException nfe) {
+			// compressed in the APK
+		}
+		if(afd != null) {
+			final FileInputStream fis = new FileInputStream(afd.getFileDescriptor());
+			try {
+				return fis.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+			}
+			finally {
+				fis.close();
+				afd.close();
+			}
+		}
+		final InputStream is = ctx.getResources().openRawResource(resid);
+		try {
+			byte[] buf = new byte[64*1024];
+			int fill = 0;
+			int rd;
+			while((rd = is.read(buf, fill, buf.length - fill)) >= 0) {
+				fill += rd;
+				if(fill == buf.length) {
+					buf = Arrays.copyOf(buf, buf.length*2);
+				}
+			}
+			final ByteBuffer bb = ByteBuffer.allocateDirect(fill);
+			bb.put(buf, 0, fill);
+			bb.position(0);
+			return bb;
+		}
+		finally {
+			is.close();
+		}
+	}
 	/**
 	 * Create a new vertex/fragment shader for the key.
 	 * Must hold update lock.
@@ -324,19 +425,196 @@ public class ContextResourceLoader implements ResourceLoader {
 		}
 	}
 	/**
-	 * Create the VBO.
+	 * Return the entry for key, adding a reference; map a new in-flight entry if there is none.
+	 * Obtains update lock.
+	 * @param map Target map.
+	 * @param key Entry key.
+	 * @param created [0] receives true if the caller must create the resource and call complete().
+	 * @return entry.
+	 */
+	<K, T> Shared<T> enter(Map<K, Shared<T>> map, K key, boolean[] created) {
+		synchronized(updateLock) {
+			final Shared<T> sx = map.get(key);
+			if(sx != null) {
+				sx.refs++;
+				created[0] = false;
+				return sx;
+			}
+			final Shared<T> nx = new Shared<T>();
+			map.put(key, nx);
+			created[0] = true;
+			return nx;
+		}
+	}
+	/**
+	 * Publish the outcome of creating an entry and wake its waiters.
+	 * A failed entry is unmapped, so the next user tries again.
+	 * Obtains update lock.
+	 * @param map Target map.
+	 * @param key Entry key.
+	 * @param sx Entry from enter().
+	 * @param value Resource or NULL if failed.
+	 * @param error Failure or NULL.
+	 */
+	<K, T> void complete(Map<K, Shared<T>> map, K key, Shared<T> sx, T value, Exception error) {
+		if(value == null) {
+			synchronized(updateLock) {
+				if(map.get(key) == sx) {
+					map.remove(key);
+				}
+			}
+		}
+		sx.complete(value, error);
+	}
+	/**
+	 * Create the VBO, or share the one made from the same buffer.
+	 * Only map access holds the update lock; concurrent users of the same buffer wait for the first.
 	 * Synchronizes with GL thread.
 	 */
 	public VertexBufferObject createBuffer(Geometry geom) {
-		if(!(geom instanceof InterleavedVertexGeometry))
-			throw new IllegalArgumentException("Geometry not interleaved");
+		final Buffer fb;
+		if(geom instanceof InterleavedVertexGeometry) {
+			fb = ((InterleavedVertexGeometry)geom).getBuffer();
+		}
+		else if(geom instanceof InterleavedVBOGeometry && ((InterleavedVBOGeometry)geom).getLayout() != null) {
+			fb = ((InterleavedVBOGeometry)geom).getLayout().getBuffer();
+		}
+		else throw new IllegalArgumentException("Geometry not interleaved");
+		final boolean[] created = new boolean[1];
+		final Shared<GLResource> sx = enter(bmap, fb, created);
+		if(!created[0]) return (VertexBufferObject)sx.await();
+		VertexBufferObject vbo = null;
+		try {
+			final GLSurfaceView sv = glsv.get();
+			final Context ctx = wrc.get();
+			if(ctx != null && sv != null) {
+				vbo = VertexBufferObject.create(ctx, fb, sv);
+			}
+		}
+		finally {
+			complete(bmap, fb, sx, vbo, null);
+		}
+		return vbo;
+	}
+	/**
+	 * Create the IBO, or share the one made from the same buffer.
+	 * Only map access holds the update lock; concurrent users of the same buffer wait for the first.
+	 * Synchronizes with GL thread.
+	 */
+	public IndexBufferObject createIndexBuffer(Geometry geom) {
+		if(!(geom instanceof IndexedVBOGeometry))
+			throw new IllegalArgumentException("Geometry not indexed");
+		final Buffer fb = ((IndexedVBOGeometry)geom).getIndexBuffer();
+		final boolean[] created = new boolean[1];
+		final Shared<GLResource> sx = enter(bmap, fb, created);
+		if(!created[0]) return (IndexBufferObject)sx.await();
+		IndexBufferObject ibo = null;
+		try {
+			final GLSurfaceView sv = glsv.get();
+			final Context ctx = wrc.get();
+			if(ctx != null && sv != null) {
+				ibo = IndexBufferObject.create(ctx, fb, sv);
+			}
+		}
+		finally {
+			complete(bmap, fb, sx, ibo, null);
+		}
+		return ibo;
+	}
+	public void releaseBuffer(VertexBufferObject vbo) {
+		if(vbo != null) {
+			release(vbo.getBuffer(), vbo);
+		}
+	}
+	public void releaseIndexBuffer(IndexBufferObject ibo) {
+		if(ibo != null) {
+			release(ibo.getBuffer(), ibo);
+		}
+	}
+	/**
+	 * Drop a reference to a shared buffer; delete it on the GL thread after the last one.
+	 * Obtains update lock.
+	 * Does not wait for the GL thread.
+	 * @param fb Source buffer.
+	 * @param res VBO or IBO.
+	 */
+	void release(Buffer fb, final GLResource res) {
+		synchronized(updateLock) {
+			final Shared<GLResource> sx = bmap.get(fb);
+			if(sx == null || !sx.ready || sx.value != res) return;
+			if(--sx.refs > 0) return;
+			bmap.remove(fb);
+		}
+		if(TraceSwitches.Loader.GL_RESOURCES) {
+			Log.d(TAG, "release " + res);
+		}
 		final GLSurfaceView sv = glsv.get();
-		final Context ctx = wrc.get();
-		if(ctx != null && sv != null) {
-			final InterleavedVertexGeometry ivg = (InterleavedVertexGeometry)geom;
-			return VertexBufferObject.create(ctx, ivg.getBuffer(), sv);
+		if(sv != null) {
+			sv.queueEvent(new Runnable() {
+				public void run() {
+					res.unload(null);
+				}
+			});
 		}
-		return null;
+		else {
+			// no GL thread to delete on
+			res.release();
+		}
+	}
+	/**
+	 * Return the cached geometry, or create and load it.
+	 * Only map access holds the update lock; the factory and Geometry.load() run outside it,
+	 * and concurrent users of the same key wait for the first.
+	 */
+	public Geometry acquireGeometry(String key, Callable<Geometry> factory, Services svc) throws Exception {
+		if(key == null) throw new IllegalArgumentException("key");
+		if(factory == null) throw new IllegalArgumentException("factory");
+		final boolean[] created = new boolean[1];
+		final Shared<Geometry> sx = enter(gmap, key, created);
+		if(!created[0]) {
+			final Geometry geom = sx.await();
+			if(sx.error != null) throw sx.error;
+			return geom;
+		}
+		if(TraceSwitches.Loader.GL_RESOURCES) {
+			Log.d(TAG, "acquireGeometry " + key);
+		}
+		Geometry result = null;
+		Exception error = null;
+		try {
+			final Geometry geom = factory.call();
+			if(geom != null) {
+				geom.load(this, svc);
+			}
+			result = geom;
+			return geom;
+		}
+		catch(Exception ex) {
+			error = ex;
+			throw ex;
+		}
+		finally {
+			complete(gmap, key, sx, result, error);
+		}
+	}
+	/**
+	 * Drop a reference; unload the geometry after the last one.
+	 * Obtains update lock.
+	 */
+	public boolean releaseGeometry(String key) {
+		final Geometry geom;
+		synchronized(updateLock) {
+			final Shared<Geometry> sx = gmap.get(key);
+			if(sx == null || !sx.ready) return false;
+			if(--sx.refs > 0) return false;
+			gmap.remove(key);
+			geom = sx.value;
+		}
+		if(TraceSwitches.Loader.GL_RESOURCES) {
+			Log.d(TAG, "releaseGeometry " + key);
+		}
+		geom.unload();
+		return true;
 	}
 	/**
 	 * Pump the stream into a string.
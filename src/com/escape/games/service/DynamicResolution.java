@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+/**
+ * Controller for render scale driven by measured frame time.
+ * Frame time is the interval between successive frames, smoothed with an exponential moving average.
+ * Adjustments happen at most once per interval of frames:
+ * <ul>
+ * <li>Over budget: scale down in proportion to the overrun (fill cost goes with scale squared), limited to maxStep.</li>
+ * <li>Within budget: probe upward by upStep.</li>
+ * </ul>
+ * A probe that is immediately reversed doubles the number of in-budget decisions required before the next probe,
+ * so the scale settles instead of oscillating around the budget.
+ * The first interval after a change is ignored, so the average reflects the new scale before the next decision.
+ * GL thread only.
+ * @author escape-llc
+ *
+ */
+public class DynamicResolution {
+	final float minScale;
+	final float maxScale;
+	final long budgetNanos;
+	/* EMA weight of newest sample */
+	final float alpha;
+	/* frames between adjustments */
+	final int interval;
+	/* largest downward change per adjustment */
+	final float maxStep;
+	/* upward change per adjustment */
+	final float upStep;
+	/* fraction over budget tolerated before scaling down */
+	final float band;
+	float scale;
+	float average;
+	long lastFrame;
+	int frames;
+	boolean settling;
+	/* last change was upward */
+	boolean probed;
+	/* in-budget decisions required before probing up */
+	int upDelay = 1;
+	/* consecutive in-budget decisions */
+	int calm;
+	/**
+	 * Ctor.
+	 * @param minScale Lowest scale, e.g. 0.5.
+	 * @param maxScale Highest scale, e.g. 1.0.
+	 * @param budgetNanos Target frame time in nanoseconds.
+	 * @param interval Frames between adjustments.
+	 */
+	public DynamicResolution(float minScale, float maxScale, long budgetNanos, int interval) {
+		if(minScale <= 0f || minScale > maxScale) throw new IllegalArgumentException("minScale");
+		if(maxScale > 1f) throw new IllegalArgumentException("maxScale");
+		if(budgetNanos <= 0) throw new IllegalArgumentException("budgetNanos");
+		if(interval <= 0) throw new IllegalArgumentException("interval");
+		this.minScale = minScale;
+		this.maxScale = maxScale;
+		this.budgetNanos = budgetNanos;
+		this.interval = interval;
+		this.alpha = 0.1f;
+		this.maxStep = 0.1f;
+		this.upStep = 0.05f;
+		this.band = 0.1f;
+		this.scale = maxScale;
+	}
+	/**
+	 * Ctor.
+	 * 0.5 - 1.0 scale, adjust every 30 frames.
+	 * @param fps Target frame rate.
+	 */
+	public DynamicResolution(int fps) {
+		this(0.5f, 1f, 1000000000L/fps, 30);
+	}
+	/**
+	 * Return the current scale.
+	 * @return scale.
+	 */
+	public float getScale() { return scale; }
+	/**
+	 * Return the smoothed frame time.
+	 * @return nanoseconds.
+	 */
+	public float getAverageFrameTime() { return average; }
+	/**
+	 * Forget timing history, e.g. after a pause.
+	 * Scale is unchanged.
+	 */
+	public void reset() {
+		lastFrame = 0;
+		average = 0f;
+		frames = 0;
+		settling = false;
+		probed = false;
+		upDelay = 1;
+		calm = 0;
+	}
+	/**
+	 * Record a frame and return the scale to use for it.
+	 * @param now Frame start time; System.nanoTime().
+	 * @return scale.
+	 */
+	public float frame(long now) {
+		final long last = lastFrame;
+		lastFrame = now;
+		if(last == 0) return scale;
+		final long dt = now - last;
+		average = average == 0f ? dt : average + alpha*(dt - average);
+		if(++frames < interval) return scale;
+		frames = 0;
+		if(settling) {
+			settling = false;
+			return scale;
+		}
+		float next = scale;
+		if(average > budgetNanos*(1f + band)) {
+			// pixel cost goes with scale squared
+			final float target = scale*(float)Math.sqrt(budgetNanos/average);
+			next = Math.max(target, scale - maxStep);
+			if(probed) {
+				upDelay = Math.min(upDelay*2, 64);
+			}
+			calm = 0;
+		}
+		else if(++calm >= upDelay) {
+			next = scale + upStep;
+			calm = 0;
+		}
+		next = Math.max(minScale, Math.min(maxScale, next));
+		if(next != scale) {
+			probed = next > scale;
+			scale = next;
+			settling = true;
+		}
+		return scale;
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import java.util.ArrayList;
+
+import com.escape.games.api.RequirePicking;
+import com.escape.games.core.GameObject;
+import com.escape.games.math.Mat4;
+import com.escape.games.model.MeshBVH;
+
+/**
+ * Screen-space picking against mesh triangles.
+ * A ray from the near to the far plane under the screen point comes from RenderServiceImpl.unproject().
+ * For each registered object, the ray is moved into model space with the inverse of its matrix
+ * and tested against the mesh bounds; objects it enters are tested triangle by triangle through the mesh's MeshBVH.
+ * The hierarchy is built on first pick and cached on the Geometry, so objects sharing a mesh share it.
+ * Distances are in units of the near-to-far ray, so the closest hit across objects is well defined
+ * under any affine model matrix.
+ * Nothing is allocated per pick.
+ * Must hold update lock.
+ * @author escape-llc
+ *
+ */
+public class PickingService {
+	/**
+	 * Result of a pick.
+	 */
+	public static final class Hit {
+		/** object hit; NULL: nothing */
+		public GameObject target;
+		/** triangle id within the mesh */
+		public int triangle;
+		/** distance along the ray, 0 (near plane) to 1 (far plane) */
+		public float distance;
+		/** barycentric weight of triangle corner 1 */
+		public float u;
+		/** barycentric weight of triangle corner 2 */
+		public float v;
+		/** hit point in World space */
+		public final float[] point = new float[3];
+		/** hit point in model space */
+		public final float[] local = new float[3];
+		void clear() {
+			target = null;
+			triangle = -1;
+			distance = Float.POSITIVE_INFINITY;
+		}
+	}
+	final RenderServiceImpl rs;
+	final ArrayList<GameObject> objects = new ArrayList<GameObject>();
+	/* near and far points, window then world */
+	final float[] ray = new float[6];
+	final float[] inverse = new float[16];
+	final float[] tuv = new float[3];
+	final int[] stack = new int[MeshBVH.STACK_SIZE];
+	/**
+	 * Ctor.
+	 * @param rs Source of camera matrices and viewport.
+	 */
+	public PickingService(RenderServiceImpl rs) {
+		if(rs == null) throw new IllegalArgumentException("rs");
+		this.rs = rs;
+	}
+	/**
+	 * Register an object.
+	 * @param go Object; must implement RequirePicking.
+	 */
+	public void add(GameObject go) {
+		if(!(go instanceof RequirePicking)) throw new IllegalArgumentException("go");
+		if(!objects.contains(go)) {
+			objects.add(go);
+		}
+	}
+	/**
+	 * Unregister an object.
+	 * @param go Object.
+	 */
+	public void remove(GameObject go) {
+		objects.remove(go);
+	}
+	/**
+	 * Return the number of registered objects.
+	 * @return count.
+	 */
+	public int size() { return objects.size(); }
+	/**
+	 * Pick the closest object under a screen point.
+	 * @param sx Screen x in pixels.
+	 * @param sy Screen y in pixels, from the top (touch coordinates).
+	 * @param hit Target for the result.
+	 * @return object hit or NULL.
+	 */
+	public GameObject pick(float sx, float sy, Hit hit) {
+		final int vh;
+		synchronized(rs.updateLock) {
+			vh = rs.viewportHeight;
+		}
+		final float[] rr = ray;
+		final float wy = (float)vh - sy;
+		rr[0] = sx;
+		rr[1] = wy;
+		rr[2] = 0f;
+		rr[3] = sx;
+		rr[4] = wy;
+		rr[5] = 1f;
+		hit.clear();
+		if(rs.unproject(rr, 0, rr, 0, 2) != 2) return null;
+		return pick(rr[0], rr[1], rr[2], rr[3] - rr[0], rr[4] - rr[1], rr[5] - rr[2], hit);
+	}
+	/**
+	 * Pick the closest object along a World space ray.
+	 * @param ox Origin x.
+	 * @param oy Origin y.
+	 * @param oz Origin z.
+	 * @param dx Direction x; distances are in units of its length.
+	 * @param dy Direction y.
+	 * @param dz Direction z.
+	 * @param hit Target for the result.
+	 * @return object hit or NULL.
+	 */
+	public GameObject pick(float ox, float oy, float oz, float dx, float dy, float dz, Hit hit) {
+		hit.clear();
+		final float[] inv = inverse;
+		final float[] tv = tuv;
+		for(int ix = 0; ix < objects.size(); ix++) {
+			final GameObject go = objects.get(ix);
+			final RequirePicking rp = (RequirePicking)go;
+			if(!rp.isPickable()) continue;
+			final MeshBVH mesh = rp.getPickMesh();
+			if(mesh == null) continue;
+			if(!Mat4.invertAffine(inv, 0, rp.getPickMatrix(), 0)) continue;
+			// same parameter t in model space: the map is affine
+			final float lox = inv[0]*ox + inv[4]*oy + inv[8]*oz + inv[12];
+			final float loy = inv[1]*ox + inv[5]*oy + inv[9]*oz + inv[13];
+			final float loz = inv[2]*ox + inv[6]*oy + inv[10]*oz + inv[14];
+			final float ldx = inv[0]*dx + inv[4]*dy + inv[8]*dz;
+			final float ldy = inv[1]*dx + inv[5]*dy + inv[9]*dz;
+			final float ldz = inv[2]*dx + inv[6]*dy + inv[10]*dz;
+			if(!mesh.intersectsBounds(lox, loy, loz, ldx, ldy, ldz, hit.distance)) continue;
+			final int tri = mesh.intersect(lox, loy, loz, ldx, ldy, ldz, hit.distance, stack, tv);
+			if(tri >= 0) {
+				hit.target = go;
+				hit.triangle = tri;
+				hit.distance = tv[0];
+				hit.u = tv[1];
+				hit.v = tv[2];
+				hit.local[0] = lox + ldx*tv[0];
+				hit.local[1] = loy + ldy*tv[0];
+				hit.local[2] = loz + ldz*tv[0];
+			}
+		}
+		if(hit.target != null) {
+			hit.point[0] = ox + dx*hit.distance;
+			hit.point[1] = oy + dy*hit.distance;
+			hit.point[2] = oz + dz*hit.distance;
+		}
+		return hit.target;
+	}
+}
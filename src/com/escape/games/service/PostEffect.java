@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import static com.escape.games.resource.ShaderBuilder.*;
+
+import com.escape.games.resource.Shader;
+import com.escape.games.resource.ShaderBuilder;
+
+/**
+ * Full-screen post-processing effect.
+ * The source image is bound to texture unit 0 at UniformTexture1, sampled at varying VaryingTexture.
+ * The source may only partly fill its texture (dynamic resolution); builder() scales the coordinates by UniformSourceScale.
+ * Start the shader from builder(), then declare any uniforms and set fragmentColor().
+ * Custom uniform names passed to the ctor are registered so the String API can set them in apply().
+ * @author escape-llc
+ *
+ */
+public class PostEffect {
+	/** varying holding the source texture coordinate */
+	public static final String VaryingTexture = "vTexCoord";
+	/** fragment expression for the source pixel */
+	public static final String SourceColor = "texture2D(uTexture, vTexCoord)";
+	/** uniform vec2 set to the size of one source texel, if declared */
+	public static final String UniformTexelSize = "uTexelSize";
+	/** uniform vec2 set to the fraction of the source texture holding the image */
+	public static final String UniformSourceScale = "uSourceScale";
+	/**
+	 * Shader that also registers the effect's custom uniforms.
+	 */
+	static final class EffectShader extends Shader {
+		final String[] uniforms;
+		EffectShader(String vertex, String fragment, String[] uniforms) {
+			super(vertex, fragment);
+			this.uniforms = uniforms;
+		}
+		@Override
+		protected void registerLocations(int pgx) {
+			super.registerLocations(pgx);
+			registerUniform(pgx, UniformTexelSize);
+			registerUniform(pgx, UniformSourceScale);
+			for(int ix = 0; ix < uniforms.length; ix++) {
+				registerUniform(pgx, uniforms[ix]);
+			}
+		}
+	}
+	public final String name;
+	final Shader shader;
+	final float[] texel = new float[2];
+	/**
+	 * Ctor.
+	 * @param name Effect name.
+	 * @param sb Completed builder; see builder().
+	 * @param uniforms Custom uniform names used by apply().
+	 */
+	public PostEffect(String name, ShaderBuilder sb, String... uniforms) {
+		if(name == null) throw new IllegalArgumentException("name");
+		if(sb == null) throw new IllegalArgumentException("sb");
+		this.name = name;
+		this.shader = new EffectShader(sb.buildVertexShader(), sb.buildFragmentShader(), uniforms);
+	}
+	@Override
+	public String toString() {
+		return new StringBuilder("PostEffect.").append(name).toString();
+	}
+	/**
+	 * Builder with the full-screen quad vertex stage and source texture declared.
+	 * Quad positions are already in clip space; no matrices are used.
+	 * @return new builder.
+	 */
+	public static ShaderBuilder builder() {
+		return new ShaderBuilder()
+			.position()
+			.texture()
+			.vertexUniform(GL_Vec2, UniformSourceScale)
+			.textureUnit(UniformTexture1)
+			.varying(GL_Vec2, VaryingTexture)
+			.inVertex(assignment(VaryingTexture, multiply(AttributeTexture, UniformSourceScale)))
+			.vertexPosition(vec3ToVec4(AttributePosition, "1.0"));
+	}
+	/**
+	 * Set effect uniforms.
+	 * Called with the effect's shader current; default implementation sets UniformTexelSize.
+	 * @param sx Effect shader.
+	 * @param width Source width in pixels.
+	 * @param height Source height in pixels.
+	 */
+	protected void apply(Shader sx, int width, int height) {
+		texel[0] = 1f/(float)width;
+		texel[1] = 1f/(float)height;
+		sx.uniform2d(UniformTexelSize, texel);
+	}
+	/**
+	 * Copy source to target.
+	 * Used to upscale when the chain has no effects.
+	 * @return new instance.
+	 */
+	public static PostEffect copy() {
+		return new PostEffect("copy", builder().fragmentColor(SourceColor));
+	}
+	/**
+	 * Tint and saturation.
+	 * Uses UniformColor as RGB multiplier and UniformRatio as saturation (0: gray, 1: unchanged).
+	 * @param tint RGBA tint; alpha is ignored.
+	 * @param saturation Saturation.
+	 * @return new instance.
+	 */
+	public static PostEffect colorGrade(final float[] tint, final float saturation) {
+		final ShaderBuilder sb = builder()
+			.fragmentUniform(GL_Vec4, UniformColor)
+			.fragmentUniform(GL_Float, UniformRatio)
+			.inFragment(assignment(GL_Vec4, "src", SourceColor))
+			.inFragment(assignment(GL_Vec3, "gray", "vec3(dot(src.rgb, vec3(0.299, 0.587, 0.114)))"))
+			.fragmentColor(vec3ToVec4(multiply(mix("gray", "src.rgb", UniformRatio), "uColor.rgb"), "src.a"));
+		return new PostEffect("colorGrade", sb) {
+			@Override
+			protected void apply(Shader sx, int width, int height) {
+				sx.color4d(tint);
+				sx.uniform(Shader.SLOT_URATIO, saturation);
+			}
+		};
+	}
+	/**
+	 * Darken toward the corners.
+	 * Uses UniformRatio as strength (0: none).
+	 * @param strength Strength.
+	 * @return new instance.
+	 */
+	public static PostEffect vignette(final float strength) {
+		final ShaderBuilder sb = builder()
+			.fragmentUniform(GL_Float, UniformRatio)
+			.inFragment(assignment(GL_Vec4, "src", SourceColor))
+			.inFragment(assignment(GL_Vec2, "dv", subtract(VaryingTexture, "vec2(0.5)")))
+			.inFragment(assignment(GL_Float, "fall", "clamp(1.0 - uRatio * dot(dv, dv) * 2.0, 0.0, 1.0)"))
+			.fragmentColor(vec3ToVec4(multiply("src.rgb", "fall"), "src.a"));
+		return new PostEffect("vignette", sb) {
+			@Override
+			protected void apply(Shader sx, int width, int height) {
+				sx.uniform(Shader.SLOT_URATIO, strength);
+			}
+		};
+	}
+	/**
+	 * 5-tap separable gaussian blur along one axis.
+	 * Use one of each axis in sequence for a full blur.
+	 * @param horizontal true: X axis; false: Y axis.
+	 * @return new instance.
+	 */
+	public static PostEffect blur(boolean horizontal) {
+		final String step = horizontal ? "vec2(uTexelSize.x, 0.0)" : "vec2(0.0, uTexelSize.y)";
+		final ShaderBuilder sb = builder()
+			.fragmentUniform(GL_Vec2, UniformTexelSize)
+			.inFragment(assignment(GL_Vec2, "st", step))
+			.inFragment(assignment(GL_Vec4, "sum", multiply(SourceColor, "0.375")))
+			.inFragment("sum += texture2D(uTexture, vTexCoord + st) * 0.25;\n")
+			.inFragment("sum += texture2D(uTexture, vTexCoord - st) * 0.25;\n")
+			.inFragment("sum += texture2D(uTexture, vTexCoord + 2.0 * st) * 0.0625;\n")
+			.inFragment("sum += texture2D(uTexture, vTexCoord - 2.0 * st) * 0.0625;\n")
+			.fragmentColor("sum");
+		return new PostEffect(horizontal ? "blurX" : "blurY", sb);
+	}
+}
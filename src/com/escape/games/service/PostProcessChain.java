@@ -0,0 +1,309 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import com.escape.games.gl.GL;
+import com.escape.games.model.Geometry;
+import com.escape.games.resource.Framebuffer;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.RenderStats;
+import com.escape.games.resource.Shader;
+
+/**
+ * Ordered list of full-screen effects applied to the rendered scene.
+ * begin() redirects scene rendering into an offscreen Framebuffer; end() runs each effect in turn,
+ * ping-ponging between two Framebuffers, with the last effect drawing to the window surface.
+ * Framebuffers are (re)allocated only when the size changes; effect shaders are compiled on first use.
+ * With a render scale below 1, the scene and intermediate passes use only the scaled sub-rectangle of each target
+ * and the last pass upscales to the full viewport; with no effects, a copy pass does the upscale.
+ * Targets stay at full size, so scale changes never reallocate.
+ * Each pass is timed with System.nanoTime(); pass 0 is the scene.
+ * GL is asynchronous, so times measure submission unless setFinishPasses(true) is used (debug only).
+ * begin()/end() run on the GL thread; add()/remove() may be called from any thread.
+ * @author escape-llc
+ *
+ */
+public class PostProcessChain {
+	static final String TAG = "PostProcess";
+	/* full-screen quad as triangle strip, clip space */
+	static final float[] QUAD_POSITION = {
+		-1f, -1f, 0f,
+		1f, -1f, 0f,
+		-1f, 1f, 0f,
+		1f, 1f, 0f
+	};
+	static final float[] QUAD_TEXTURE = {
+		0f, 0f,
+		1f, 0f,
+		0f, 1f,
+		1f, 1f
+	};
+	final ArrayList<PostEffect> effects = new ArrayList<PostEffect>();
+	/* effects whose shader is loaded in current GL context */
+	final ArrayList<PostEffect> loaded = new ArrayList<PostEffect>();
+	/* ping-pong render targets; [1] only allocated for 2+ effects */
+	final Framebuffer[] targets = new Framebuffer[2];
+	final FloatBuffer position;
+	final FloatBuffer texcoord;
+	/* upscale pass when there are no effects */
+	final PostEffect copy = PostEffect.copy();
+	/* current target size */
+	int width;
+	int height;
+	/* render scale; (0, 1] */
+	volatile float scale = 1f;
+	/* scaled size for current frame */
+	int scaledWidth;
+	int scaledHeight;
+	final float[] sourceScale = new float[2];
+	/* pass count latched by begin() */
+	int passes;
+	/* nanoseconds per pass of last frame; [0] is scene */
+	long[] passNanos = new long[2];
+	long frameStart;
+	volatile boolean finishPasses;
+	/**
+	 * Ctor.
+	 */
+	public PostProcessChain() {
+		position = allocate(QUAD_POSITION);
+		texcoord = allocate(QUAD_TEXTURE);
+	}
+	static FloatBuffer allocate(float[] src) {
+		final ByteBuffer bb = ByteBuffer.allocateDirect(src.length*Geometry.FLOAT_BYTES);
+		bb.order(ByteOrder.nativeOrder());
+		final FloatBuffer fb = bb.asFloatBuffer();
+		fb.put(src);
+		fb.position(0);
+		return fb;
+	}
+	/**
+	 * Append an effect to the end of the chain.
+	 * @param pe Effect.
+	 */
+	public synchronized void add(PostEffect pe) {
+		if(pe == null) throw new IllegalArgumentException("pe");
+		effects.add(pe);
+		passNanos = new long[Math.max(effects.size(), 1) + 1];
+	}
+	/**
+	 * Remove an effect from the chain.
+	 * Its shader stays loaded until unload() or release().
+	 * @param pe Effect.
+	 * @return true: removed; false: not found.
+	 */
+	public synchronized boolean remove(PostEffect pe) {
+		final boolean did = effects.remove(pe);
+		if(did) {
+			passNanos = new long[Math.max(effects.size(), 1) + 1];
+		}
+		return did;
+	}
+	/**
+	 * Return the number of effects.
+	 * @return effect count.
+	 */
+	public synchronized int size() { return effects.size(); }
+	/**
+	 * Set the render scale applied to the scene and intermediate passes.
+	 * Takes effect on next begin().
+	 * @param sc Scale; clamped to (0, 1].
+	 */
+	public void setScale(float sc) { scale = sc > 1f ? 1f : (sc <= 0f ? scale : sc); }
+	/**
+	 * Return the render scale.
+	 * @return scale.
+	 */
+	public float getScale() { return scale; }
+	/**
+	 * Return the scaled scene width of the current frame.
+	 * @return pixels.
+	 */
+	public int getScaledWidth() { return scaledWidth; }
+	/**
+	 * Return the scaled scene height of the current frame.
+	 * @return pixels.
+	 */
+	public int getScaledHeight() { return scaledHeight; }
+	/**
+	 * Return the time of the given pass in the last frame.
+	 * @param ix 0: scene; 1..size(): effect (1: copy pass when there are no effects).
+	 * @return nanoseconds.
+	 */
+	public synchronized long getPassTime(int ix) { return passNanos[ix]; }
+	/**
+	 * Control glFinish() after each pass, so times reflect GPU work.
+	 * Stalls the pipeline; for profiling only.
+	 * @param finish true: finish each pass.
+	 */
+	public void setFinishPasses(boolean finish) { finishPasses = finish; }
+	/**
+	 * Allocate render targets for the given size.
+	 * Must be on GL thread.
+	 * @param ww width.
+	 * @param hh height.
+	 * @param need Number of targets.
+	 * @return true: targets available; false: allocation failed.
+	 */
+	boolean ensureTargets(int ww, int hh, int need) {
+		if(ww != width || hh != height) {
+			unloadTargets();
+			width = ww;
+			height = hh;
+		}
+		for(int ix = 0; ix < need; ix++) {
+			if(targets[ix] == null) {
+				final Framebuffer fb = new Framebuffer(ww, hh);
+				fb.load(null);
+				if(fb.getTexture() == 0) {
+					Log.w(TAG, "Framebuffer allocation failed " + ww + "x" + hh);
+					fb.unload(null);
+					return false;
+				}
+				targets[ix] = fb;
+			}
+		}
+		return true;
+	}
+	void unloadTargets() {
+		for(int ix = 0; ix < targets.length; ix++) {
+			if(targets[ix] != null) {
+				targets[ix].unload(null);
+				targets[ix] = null;
+			}
+		}
+	}
+	/**
+	 * Redirect rendering into the offscreen target.
+	 * Must be on GL thread, before the scene clears and renders.
+	 * @param ww Viewport width.
+	 * @param hh Viewport height.
+	 * @return true: call end() after the scene is rendered; false: chain is inactive, render directly.
+	 */
+	public synchronized boolean begin(int ww, int hh) {
+		final float sc = scale;
+		if((effects.isEmpty() && sc >= 1f) || ww <= 0 || hh <= 0) return false;
+		passes = Math.max(effects.size(), 1);
+		if(!ensureTargets(ww, hh, passes > 1 ? 2 : 1)) return false;
+		scaledWidth = Math.max(1, Math.round(ww*sc));
+		scaledHeight = Math.max(1, Math.round(hh*sc));
+		sourceScale[0] = (float)scaledWidth/(float)ww;
+		sourceScale[1] = (float)scaledHeight/(float)hh;
+		targets[0].setup();
+		GL.glViewport(0, 0, scaledWidth, scaledHeight);
+		frameStart = System.nanoTime();
+		return true;
+	}
+	/**
+	 * Run the effects and present the result to the window surface.
+	 * Must be on GL thread, after the scene is rendered.
+	 */
+	public synchronized void end() {
+		if(finishPasses) {
+			GL.glFinish();
+		}
+		long start = System.nanoTime();
+		passNanos[0] = start - frameStart;
+		GLState.depthTest(false);
+		GLState.cullFace(false);
+		GLState.blend(false);
+		// effects may change between begin() and end(); use the latched count
+		final int count = Math.min(passes, passNanos.length - 1);
+		int src = 0;
+		for(int ix = 0; ix < count; ix++) {
+			if(ix == count - 1) {
+				GLState.bindFramebuffer(0);
+				GL.glViewport(0, 0, width, height);
+			}
+			else {
+				targets[1 - src].setup();
+				GL.glViewport(0, 0, scaledWidth, scaledHeight);
+			}
+			draw(ix < effects.size() ? effects.get(ix) : copy, targets[src]);
+			if(finishPasses) {
+				GL.glFinish();
+			}
+			final long stop = System.nanoTime();
+			passNanos[ix + 1] = stop - start;
+			start = stop;
+			src = 1 - src;
+		}
+	}
+	/**
+	 * Draw one effect as a full-screen quad sampling the source.
+	 * @param pe Effect.
+	 * @param source Source target.
+	 */
+	void draw(PostEffect pe, Framebuffer source) {
+		final Shader sx = pe.shader;
+		if(!loaded.contains(pe)) {
+			sx.load(null);
+			loaded.add(pe);
+		}
+		sx.setup();
+		RenderStats.shader();
+		GLState.activeTexture(GLES20.GL_TEXTURE0);
+		GLState.bindTexture(source.getTexture());
+		RenderStats.texture();
+		sx.texture(Shader.SLOT_UTEXTURE, 0);
+		pe.apply(sx, source.getWidth(), source.getHeight());
+		sx.uniform2d(PostEffect.UniformSourceScale, sourceScale);
+		sx.vertex3d(position);
+		sx.texture2d(texcoord);
+		sx.prepareDraw();
+		GL.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+		RenderStats.draw(GLES20.GL_TRIANGLE_STRIP, 4);
+	}
+	/**
+	 * Delete all GL resources.
+	 * Must be on GL thread.
+	 */
+	public synchronized void unload() {
+		unloadTargets();
+		for(int ix = 0; ix < loaded.size(); ix++) {
+			loaded.get(ix).shader.unload(null);
+		}
+		loaded.clear();
+		width = 0;
+		height = 0;
+	}
+	/**
+	 * Forget all GL resources without deleting; the GL context was lost.
+	 * Resources are recreated on next begin().
+	 */
+	public synchronized void release() {
+		for(int ix = 0; ix < targets.length; ix++) {
+			if(targets[ix] != null) {
+				targets[ix].release();
+				targets[ix] = null;
+			}
+		}
+		for(int ix = 0; ix < loaded.size(); ix++) {
+			loaded.get(ix).shader.release();
+		}
+		loaded.clear();
+		width = 0;
+		height = 0;
+	}
+}
@@ -15,6 +15,9 @@
  */
 package com.escape.games.service;
 
+import com.escape.games.gl.GL;
+import com.escape.games.resource.GLState;
+
 import android.opengl.GLES20;
 
 /**
@@ -34,20 +37,40 @@ public class RenderService extends RenderServiceImpl  {
 	/**
 	 * Render the current Scene.
 	 * Obtains update lock.
+	 * If a post-processing chain is active, the scene renders offscreen, then through the chain.
+	 * If a render scale controller is set, it picks the chain's scale from the frame interval.
+	 * If a trace capture is requested, the frame's GL calls are recorded; see captureTrace().
 	 * Enable CULL_FACE, DEPTH_TEST.
 	 * Clear COLOR_BUFFER_BIT, DEPTH_BUFFER_BIT.
+	 * Render counters are latched at the end of the frame.
 	 */
 	@Override
 	public void render() {
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
-		if(!suspended) {
+		traceBegin();
+		final PostProcessChain ppc = post;
+		final DynamicResolution dr = dynres;
+		if(dr != null && ppc != null && !suspended) {
+			ppc.setScale(dr.frame(System.nanoTime()));
+		}
+		final boolean offscreen = !suspended && ppc != null && ppc.begin(viewportWidth, viewportHeight);
+		GLState.cullFace(true);
+		GLState.depthTest(true);
+		GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+		final boolean rendered = !suspended;
+		if(rendered) {
 			synchronized (updateLock) {
 				initFrame();
 				currentScene.render(this);
 				doneFrame();
 			}
 		}
+		if(offscreen) {
+			ppc.end();
+		}
+		if(rendered) {
+			// after post-processing, so its passes count in this frame
+			latchFrame();
+		}
+		traceEnd();
 	}
 }
@@ -15,13 +15,22 @@
  */
 package com.escape.games.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import com.escape.games.api.RenderContext;
 import com.escape.games.api.SceneRender;
+import com.escape.games.gl.GL;
+import com.escape.games.gl.GLES;
+import com.escape.games.gl.TracingGLES;
+import com.escape.games.math.Mat4;
+import com.escape.games.model.MatrixCache;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.RenderStats;
 import com.escape.games.resource.Shader;
 
 import android.graphics.Point;
-import android.opengl.GLU;
-import android.opengl.Matrix;
+import android.util.Log;
 
 /**
  * Render service core.
@@ -32,6 +41,8 @@ import android.opengl.Matrix;
  * <li>Projection (P): viewport width/height plus z near/far. Creates a frustum.</li>
  * <li>View/Projection (VP): combined matrix.</li>
  * </ul>
+ * V and P each carry a version that is bumped whenever they are recomputed;
+ * objects using a MatrixCache only recompute their MV/MVP products when a version changes.
  * @author escape-llc
  *
  */
@@ -39,6 +50,7 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	static final int VEC_X = 0;
 	static final int VEC_Y = 1;
 	static final int VEC_Z = 2;
+	static final String TAG = "RenderService";
 	/**
 	 * Implementation for Null Object pattern.
 	 * @author escape-llc
@@ -60,6 +72,10 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	protected final float[] matrixV = new float[16];
 	/** Combined View/Projection  (VP) */
 	protected final float[] matrixVP = new float[16];
+	/** View (V) version; bumped by updateViewMatrix() */
+	protected int viewVersion;
+	/** Projection (P) version; bumped by updateProjMatrix() */
+	protected int projVersion;
 	/* pre-allocated for activateShader() */
 	final float[] finalMatrix = new float[16];
 	/** Currently displaying */
@@ -68,10 +84,32 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	protected Shader currentShader;
 	/** The update lock */
 	protected final Object updateLock;
-	/** Viewport size */
-	protected final Point viewport = new Point(0, 0);
+	/** Viewport width */
+	protected int viewportWidth;
+	/** Viewport height */
+	protected int viewportHeight;
+	/* project()/unproject() viewport and single-point buffer; must hold update lock */
+	final int[] projectView = new int[4];
+	final float[] projectPoint = new float[3];
+	/* inverse of matrixVP, valid for the versions below */
+	final float[] inverseVP = new float[16];
+	int inverseView = -1;
+	int inverseProj = -1;
+	boolean inverseValid;
 	/* Control drawing */
 	volatile boolean suspended;
+	/** Post-processing; NULL: render directly */
+	protected volatile PostProcessChain post;
+	/** Render scale controller; NULL: full resolution */
+	protected volatile DynamicResolution dynres;
+	/* pending trace capture; NULL: none */
+	volatile OutputStream traceOutput;
+	volatile int traceFrames;
+	/** Active trace capture; GL thread only */
+	protected TracingGLES tracer;
+	/* backend to restore when capture ends */
+	GLES traceRestore;
+	int traceRemaining;
 	/**
 	 * Ctor.
 	 * @param updateLock Model update lock.
@@ -80,7 +118,7 @@ public abstract class RenderServiceImpl implements RenderContext  {
 		if(updateLock == null)
 			throw new IllegalArgumentException("updateLock");
 		this.updateLock = updateLock;
-		Matrix.setIdentityM(matrixP, 0);
+		Mat4.setIdentity(matrixP, 0);
 		updateViewMatrix();
 		currentScene = EMPTY;
 	}
@@ -90,9 +128,10 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	 * Must hold update lock.
 	 */
 	protected void updateViewMatrix() {
-	    Matrix.setLookAtM(matrixV, 0, cameraPosition[VEC_X], cameraPosition[VEC_Y], cameraPosition[VEC_Z],
+	    Mat4.lookAt(matrixV, 0, cameraPosition[VEC_X], cameraPosition[VEC_Y], cameraPosition[VEC_Z],
 	    		cameraLooksAt[VEC_X], cameraLooksAt[VEC_Y], cameraLooksAt[VEC_Z], 0f, 1f, 0f);
-	    Matrix.multiplyMM(matrixVP, 0, matrixP, 0, matrixV, 0);
+	    Mat4.multiply(matrixVP, 0, matrixP, 0, matrixV, 0);
+	    viewVersion++;
 	}
 	/**
 	 * Update P and VP matrix in response to settings.
@@ -100,19 +139,127 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	 * Must hold update lock.
 	 */
 	protected void updateProjMatrix() { 
-	    final float ratio = (float) viewport.x / (float)viewport.y;
+	    final float ratio = (float) viewportWidth / (float)viewportHeight;
 	    //Matrix.perspectiveM(mProjMatrix, 0, vangle/zoom, ratio, zPlanes[VEC_X], zPlanes[VEC_Y]);
-		Matrix.frustumM(matrixP, 0, -ratio, ratio, -1, 1, zPlanes[VEC_X], zPlanes[VEC_Y]);
-	    Matrix.multiplyMM(matrixVP, 0, matrixP, 0, matrixV, 0);
+		Mat4.frustum(matrixP, 0, -ratio, ratio, -1, 1, zPlanes[VEC_X], zPlanes[VEC_Y]);
+	    Mat4.multiply(matrixVP, 0, matrixP, 0, matrixV, 0);
+	    projVersion++;
 	}
 	/**
 	 * Stop drawing while GL resources are being reacquired.
+	 * Post-processing resources are dropped; they are recreated on demand.
+	 */
+	public void suspend() {
+		suspended = true;
+		final PostProcessChain ppc = post;
+		if(ppc != null) {
+			ppc.release();
+		}
+	}
+	/**
+	 * Set the post-processing chain.
+	 * The previous chain, if any, keeps its GL resources; call its unload() on the GL thread.
+	 * @param ppc New chain; NULL to render directly.
+	 */
+	public void setPostProcess(PostProcessChain ppc) { post = ppc; }
+	/**
+	 * Get the post-processing chain.
+	 * @return current chain or NULL.
+	 */
+	public PostProcessChain getPostProcess() { return post; }
+	/**
+	 * Set the render scale controller.
+	 * The scene renders through the post-processing chain at the controller's scale and is upscaled to the viewport;
+	 * a chain is created if none is set.
+	 * The logical viewport is unchanged, so project()/unproject() are unaffected.
+	 * @param dr New controller; NULL for full resolution.
+	 */
+	public void setDynamicResolution(DynamicResolution dr) {
+		if(dr != null && post == null) {
+			post = new PostProcessChain();
+		}
+		if(dr == null && post != null) {
+			post.setScale(1f);
+		}
+		dynres = dr;
+	}
+	/**
+	 * Get the render scale controller.
+	 * @return current controller or NULL.
+	 */
+	public DynamicResolution getDynamicResolution() { return dynres; }
+	/**
+	 * Capture the GL calls of the next frames to a binary trace; see GLTrace and TraceAnalyzer.
+	 * Capture starts at the next render() and stops after the given number of frames, then closes the stream.
+	 * Calls made on the GL thread between frames (e.g. resource loading) are included.
+	 * Replaces any pending request; a capture already running is not affected.
+	 * @param os Trace destination.
+	 * @param frames Number of frames.
 	 */
-	public void suspend() { suspended = true; }
+	public void captureTrace(OutputStream os, int frames) {
+		if(os == null) throw new IllegalArgumentException("os");
+		if(frames <= 0) throw new IllegalArgumentException("frames");
+		traceFrames = frames;
+		traceOutput = os;
+	}
+	/**
+	 * Start trace capture if requested, and mark the frame.
+	 * Call at the start of render().
+	 * GL thread only.
+	 */
+	protected void traceBegin() {
+		if(tracer == null) {
+			final OutputStream os = traceOutput;
+			if(os == null) return;
+			traceOutput = null;
+			try {
+				tracer = new TracingGLES(GL.getBackend(), os);
+			}
+			catch(IOException ex) {
+				Log.e(TAG, "traceBegin", ex);
+				try {
+					os.close();
+				}
+				catch(IOException ex2) {
+					// nothing more to do
+				}
+				return;
+			}
+			traceRemaining = traceFrames;
+			traceRestore = GL.setBackend(tracer);
+		}
+		tracer.frame();
+	}
+	/**
+	 * Stop trace capture once the requested frames are done, or on write error.
+	 * Call at the end of render().
+	 * GL thread only.
+	 */
+	protected void traceEnd() {
+		final TracingGLES tx = tracer;
+		if(tx == null) return;
+		if(--traceRemaining > 0 && tx.getError() == null) return;
+		GL.setBackend(traceRestore);
+		tracer = null;
+		traceRestore = null;
+		try {
+			tx.close();
+		}
+		catch(IOException ex) {
+			Log.e(TAG, "traceEnd", ex);
+		}
+	}
 	/**
 	 * Resume drawing; GL resources are reloaded.
 	 */
-	public void resume() { suspended = false; }
+	public void resume() {
+		final DynamicResolution dr = dynres;
+		if(dr != null) {
+			// the pause is not a slow frame
+			dr.reset();
+		}
+		suspended = false;
+	}
 	/**
 	 * Render all registered elements.
 	 * Must hold updateLock while accessing scene.
@@ -137,6 +284,14 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	protected void initFrame() {
 		currentShader = null;
 	}
+	/**
+	 * Latch the GLState and RenderStats counters of the completed frame and start new ones.
+	 * Call after the last GL call of the frame, including post-processing.
+	 */
+	protected void latchFrame() {
+		GLState.beginFrame();
+		RenderStats.beginFrame();
+	}
 	/**
 	 * Final bookkeeping for frame.
 	 * Must hold update lock.
@@ -159,6 +314,7 @@ public abstract class RenderServiceImpl implements RenderContext  {
 			currentShader = null;
 		}
 		sx.setup();
+		RenderStats.shader();
 		currentShader = sx;
 		currentScene.activateShader(sx);
 	}
@@ -169,13 +325,28 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	public void usingModel(float[] matrixM) {
 		if(null == currentShader) return;
 		// transforms
-		if(currentShader.query(Shader.SV_MATRIX_MV)) {
-			Matrix.multiplyMM(finalMatrix, 0, matrixV, 0, matrixM, 0);
-			currentShader.matrix4(Shader.SV_MATRIX_MV, finalMatrix);
+		if(currentShader.query(Shader.SLOT_MATRIX_MV)) {
+			Mat4.multiply(finalMatrix, 0, matrixV, 0, matrixM, 0);
+			currentShader.matrix4(Shader.SLOT_MATRIX_MV, finalMatrix);
+		}
+		if(currentShader.query(Shader.SLOT_MATRIX_MVP)) {
+			Mat4.multiply(finalMatrix, 0, matrixVP, 0, matrixM, 0);
+			currentShader.matrix4(Shader.SLOT_MATRIX_MVP, finalMatrix);
+		}
+	}
+	/**
+	 * Apply matrix uniforms of current shader from the cache.
+	 * MV/MVP are only recomputed when M, V, or P changed since the cache was last used.
+	 * Must hold update lock.
+	 */
+	public void usingModel(MatrixCache mc) {
+		if(null == currentShader) return;
+		// transforms
+		if(currentShader.query(Shader.SLOT_MATRIX_MV)) {
+			currentShader.matrix4(Shader.SLOT_MATRIX_MV, mc.mv(matrixV, viewVersion));
 		}
-		if(currentShader.query(Shader.SV_MATRIX_MVP)) {
-			Matrix.multiplyMM(finalMatrix, 0, matrixVP, 0, matrixM, 0);
-			currentShader.matrix4(Shader.SV_MATRIX_MVP, finalMatrix);
+		if(currentShader.query(Shader.SLOT_MATRIX_MVP)) {
+			currentShader.matrix4(Shader.SLOT_MATRIX_MVP, mc.mvp(matrixVP, viewVersion, projVersion));
 		}
 	}
 	/**
@@ -192,6 +363,20 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	public float[] matrixVP() {
 		return matrixVP;
 	}
+	/**
+	 * return the P matrix.
+	 * Must hold update lock.
+	 */
+	public float[] matrixP() {
+		return matrixP;
+	}
+	/**
+	 * return the camera position.
+	 * Must hold update lock.
+	 */
+	public float[] cameraPosition() {
+		return cameraPosition;
+	}
 	/**
 	 * Reset the projection matrix.
 	 * Obtains update lock.
@@ -200,8 +385,8 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	 */
 	public void setProjection(int width, int height) {
 		synchronized(updateLock) {
-			viewport.x = width;
-			viewport.y = height;
+			viewportWidth = width;
+			viewportHeight = height;
 			updateProjMatrix();
 		}
 	}
@@ -228,8 +413,8 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	 */
 	public void setProjection(int width, int height, float zn, float zf) {
 		synchronized(updateLock) {
-			viewport.x = width;
-			viewport.y = height;
+			viewportWidth = width;
+			viewportHeight = height;
 			zPlanes[VEC_X] = zn;
 			zPlanes[VEC_Y] = zf;
 			updateProjMatrix();
@@ -294,8 +479,8 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	 */
 	public void getViewportSize(Point vp) {
 		synchronized(updateLock) {
-			vp.x = viewport.x;
-			vp.y = viewport.y;
+			vp.x = viewportWidth;
+			vp.y = viewportHeight;
 		}
 	}
 	/**
@@ -306,29 +491,87 @@ public abstract class RenderServiceImpl implements RenderContext  {
 	 * @param xx World-x
 	 * @param yy World-y
 	 * @param zz World-z
-	 * @param win Output Window space.
+	 * @param win Output Window space; NaN if behind the camera.
 	 * @param invertY true: invert Y-axis value by viewport.y
 	 */
 	public void project(float xx, float yy, float zz, float[] win, boolean invertY) {
 		synchronized(updateLock) {
-			final int[] view = { 0, 0, viewport.x, viewport.y };
-			GLU.gluProject(xx, yy, zz, matrixV, 0, matrixP, 0, view, 0, win, 0);
+			projectPoint[0] = xx;
+			projectPoint[1] = yy;
+			projectPoint[2] = zz;
+			project(projectPoint, 0, win, 0, 1, invertY);
+		}
+	}
+	/**
+	 * Project packed points in World space to Window space.
+	 * Uses matrixVP and the viewport as of the call; obtains update lock once for the whole batch.
+	 * Points behind the camera are skipped and their outputs set to NaN.
+	 * Allocates nothing; world and win may be the same array at the same offset.
+	 * @param world World x, y, z triples.
+	 * @param woff Offset into world.
+	 * @param win Output Window x, y, z triples.
+	 * @param winoff Offset into win.
+	 * @param count Number of points.
+	 * @param invertY true: invert Y-axis value by viewport.y
+	 * @return number of points in front of the camera.
+	 */
+	public int project(float[] world, int woff, float[] win, int winoff, int count, boolean invertY) {
+		synchronized(updateLock) {
+			projectView[2] = viewportWidth;
+			projectView[3] = viewportHeight;
+			final int visible = Mat4.projectPoints(matrixVP, 0, projectView, 0, world, woff, win, winoff, count);
 			if(invertY) {
-				win[1] = (float)viewport.y - win[1];
+				final float vh = (float)viewportHeight;
+				for(int ix = 0, wx = winoff + 1; ix < count; ix++, wx += 3) {
+					win[wx] = vh - win[wx];
+				}
 			}
+			return visible;
 		}
 	}
 	/**
 	 * Unproject a point in Window space to point in World space.
+	 * Obtains update lock.
 	 * @param xx Window-x
 	 * @param yy Window-y
 	 * @param zz Window-z
-	 * @param world Output World space.
+	 * @param world Output World space x, y, z.
 	 */
 	public void unproject(float xx, float yy, float zz, float[] world) {
 		synchronized(updateLock) {
-			final int[] view = { 0, 0, viewport.x, viewport.y };
-			GLU.gluUnProject(xx, yy, zz, matrixV, 0, matrixP, 0, view, 0, world, 0);
+			projectPoint[0] = xx;
+			projectPoint[1] = yy;
+			projectPoint[2] = zz;
+			unproject(projectPoint, 0, world, 0, 1);
+		}
+	}
+	/**
+	 * Unproject packed points in Window space to World space.
+	 * The inverse of matrixVP is cached until the view or projection changes; obtains update lock once for the whole batch.
+	 * Allocates nothing; win and world may be the same array at the same offset.
+	 * @param win Window x, y, z triples; z is depth 0..1.
+	 * @param winoff Offset into win.
+	 * @param world Output World x, y, z triples; NaN if not invertible.
+	 * @param woff Offset into world.
+	 * @param count Number of points.
+	 * @return number of points unprojected.
+	 */
+	public int unproject(float[] win, int winoff, float[] world, int woff, int count) {
+		synchronized(updateLock) {
+			if(inverseView != viewVersion || inverseProj != projVersion) {
+				inverseValid = Mat4.invert(inverseVP, 0, matrixVP, 0);
+				inverseView = viewVersion;
+				inverseProj = projVersion;
+			}
+			if(!inverseValid) {
+				for(int ix = 0; ix < count*3; ix++) {
+					world[woff + ix] = Float.NaN;
+				}
+				return 0;
+			}
+			projectView[2] = viewportWidth;
+			projectView[3] = viewportHeight;
+			return Mat4.unprojectPoints(inverseVP, 0, projectView, 0, win, winoff, world, woff, count);
 		}
 	}
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import com.escape.games.api.RequireTransform;
+
+/**
+ * Deferred model transform updates.
+ * Objects whose TRANSFORM changes are queued with add() while messages are processed;
+ * flush() recomputes them all before the update lock is released, so the renderer never sees a stale matrix.
+ * Large batches are split into one contiguous chunk per thread; the calling thread runs the first chunk.
+ * The parallel threshold adapts: flush() measures the cost per item and the fixed cost of a parallel dispatch,
+ * and goes parallel only when the estimated time saved exceeds the dispatch cost.
+ * Large batches below the threshold are re-measured in parallel now and then.
+ * Worker threads are daemons and start on first parallel flush.
+ * add() and flush() must hold the update lock.
+ * @author escape-llc
+ *
+ */
+public class TransformBatch {
+	static final String TAG = "TransformBatch";
+	/* threshold bounds */
+	static final int MIN_THRESHOLD = 64;
+	static final int MAX_THRESHOLD = 1 << 16;
+	/* EMA weight of newest sample */
+	static final float ALPHA = 0.2f;
+	/* serial flushes of a probe-worthy size between parallel re-measurements */
+	static final int PROBE_INTERVAL = 128;
+	/**
+	 * One contiguous range of the batch.
+	 */
+	final class Chunk implements Runnable {
+		int start;
+		int end;
+		CountDownLatch done;
+		/* first failure of this chunk */
+		Throwable failure;
+		public void run() {
+			try {
+				failure = update(start, end);
+			}
+			finally {
+				done.countDown();
+			}
+		}
+	}
+	final int threads;
+	final ArrayList<RequireTransform> dirty = new ArrayList<RequireTransform>();
+	RequireTransform[] work = new RequireTransform[0];
+	final Chunk[] chunks;
+	ExecutorService pool;
+	/* items at or above this go parallel */
+	int threshold;
+	/* nanoseconds per item */
+	float itemNanos;
+	/* nanoseconds of parallel dispatch overhead */
+	float dispatchNanos;
+	/* forced threshold; 0: adaptive */
+	int fixedThreshold;
+	int lastCount;
+	boolean lastParallel;
+	boolean stopped;
+	/* serial flushes since last parallel run */
+	int sinceParallel;
+	/**
+	 * Ctor.
+	 * @param threads Number of threads including the caller; 1: always serial.
+	 */
+	public TransformBatch(int threads) {
+		if(threads < 1) throw new IllegalArgumentException("threads");
+		this.threads = threads;
+		this.chunks = new Chunk[threads];
+		for(int ix = 0; ix < threads; ix++) {
+			chunks[ix] = new Chunk();
+		}
+		this.threshold = 1024;
+	}
+	/**
+	 * Ctor.
+	 * One thread per available processor.
+	 */
+	public TransformBatch() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 * Queue an object for update at next flush().
+	 * The caller guards against queueing the same object twice.
+	 * Must hold update lock.
+	 * @param rt Object to update.
+	 */
+	public void add(RequireTransform rt) {
+		dirty.add(rt);
+	}
+	/**
+	 * Return the number of queued objects.
+	 * Must hold update lock.
+	 * @return count.
+	 */
+	public int size() { return dirty.size(); }
+	/**
+	 * Return the current parallel threshold.
+	 * @return item count.
+	 */
+	public int getThreshold() { return fixedThreshold > 0 ? fixedThreshold : threshold; }
+	/**
+	 * Force the parallel threshold, e.g. for benchmarking.
+	 * @param items Item count; 0: adaptive.
+	 */
+	public void setThreshold(int items) {
+		if(items < 0) throw new IllegalArgumentException("items");
+		fixedThreshold = items;
+	}
+	/**
+	 * Return the number of objects updated by the last flush().
+	 * @return count.
+	 */
+	public int getLastCount() { return lastCount; }
+	/**
+	 * Return whether the last flush() ran in parallel.
+	 * @return true: parallel; false: serial.
+	 */
+	public boolean wasParallel() { return lastParallel; }
+	/**
+	 * Update a range of the batch.
+	 * Every item is updated even if some fail; a failed item is re-queued by its next change.
+	 * @param start Starting index.
+	 * @param end Ending index (exclusive).
+	 * @return first failure or NULL.
+	 */
+	Throwable update(int start, int end) {
+		final RequireTransform[] items = work;
+		Throwable failure = null;
+		for(int ix = start; ix < end; ix++) {
+			try {
+				items[ix].updateTransform();
+			}
+			catch(Throwable ex) {
+				if(failure == null) failure = ex;
+			}
+		}
+		return failure;
+	}
+	/**
+	 * Rethrow a failure unchanged if unchecked.
+	 * @param ex Failure.
+	 */
+	static void rethrow(Throwable ex) {
+		if(ex instanceof RuntimeException) throw (RuntimeException)ex;
+		if(ex instanceof Error) throw (Error)ex;
+		throw new IllegalStateException(ex);
+	}
+	/**
+	 * Update all queued objects and empty the queue.
+	 * Returns after every object is updated, even if some fail; then rethrows the first failure.
+	 * Must hold update lock.
+	 */
+	public void flush() {
+		final int count = dirty.size();
+		lastCount = count;
+		lastParallel = false;
+		if(count == 0) return;
+		if(work.length < count) {
+			work = new RequireTransform[Math.max(count, work.length*2)];
+		}
+		dirty.toArray(work);
+		dirty.clear();
+		try {
+			final long t0 = System.nanoTime();
+			if(threads > 1 && !stopped && goParallel(count)) {
+				lastParallel = true;
+				sinceParallel = 0;
+				final long own = parallel(count);
+				// caller's chunk is the ideal time; the rest is dispatch and imbalance
+				sample(true, (float)own/chunks[0].end);
+				sample(false, Math.max(0f, System.nanoTime() - t0 - own));
+			}
+			else {
+				final Throwable failure = update(0, count);
+				if(failure != null) rethrow(failure);
+				sample(true, (float)(System.nanoTime() - t0)/count);
+			}
+		}
+		finally {
+			// drop references so unloaded objects can be collected
+			for(int ix = 0; ix < count; ix++) {
+				work[ix] = null;
+			}
+		}
+	}
+	/**
+	 * Decide whether to run in parallel.
+	 * Below the threshold, a large enough batch occasionally runs in parallel anyway,
+	 * so one bad measurement (e.g. a GC pause) cannot disable parallel updates for good.
+	 * @param count Number of items.
+	 * @return true: parallel.
+	 */
+	boolean goParallel(int count) {
+		if(count >= getThreshold()) return true;
+		if(fixedThreshold > 0 || count < MIN_THRESHOLD*threads) return false;
+		return ++sinceParallel >= PROBE_INTERVAL;
+	}
+	/**
+	 * Fold a measurement into the cost model and recompute the threshold.
+	 * Parallel pays off when count*c*(1 - 1/threads) &gt; dispatch.
+	 * @param perItem true: value is per-item cost; false: value is dispatch cost.
+	 * @param value Nanoseconds.
+	 */
+	void sample(boolean perItem, float value) {
+		if(perItem) {
+			itemNanos = itemNanos == 0f ? value : itemNanos + ALPHA*(value - itemNanos);
+		}
+		else {
+			dispatchNanos = dispatchNanos == 0f ? value : dispatchNanos + ALPHA*(value - dispatchNanos);
+		}
+		if(itemNanos <= 0f || dispatchNanos <= 0f || threads < 2) return;
+		final float gain = itemNanos*(1f - 1f/threads);
+		final float items = dispatchNanos/gain;
+		threshold = (int)Math.max(MIN_THRESHOLD, Math.min(MAX_THRESHOLD, items));
+	}
+	/**
+	 * Run the batch in chunks and wait for all of them.
+	 * Rethrows the first failure in batch order once every chunk is done.
+	 * @param count Number of items.
+	 * @return nanoseconds the calling thread spent on its own chunk.
+	 */
+	long parallel(int count) {
+		if(pool == null) {
+			pool = Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+				int serial;
+				public Thread newThread(Runnable rx) {
+					final Thread tx = new Thread(rx, TAG + "-" + (++serial));
+					tx.setDaemon(true);
+					return tx;
+				}
+			});
+		}
+		final int nchunks = Math.min(threads, count);
+		final CountDownLatch done = new CountDownLatch(nchunks - 1);
+		final int per = count/nchunks, extra = count % nchunks;
+		int start = 0;
+		for(int ix = 0; ix < nchunks; ix++) {
+			final Chunk cx = chunks[ix];
+			cx.start = start;
+			cx.end = start + per + (ix < extra ? 1 : 0);
+			cx.done = done;
+			cx.failure = null;
+			start = cx.end;
+		}
+		for(int ix = 1; ix < nchunks; ix++) {
+			try {
+				pool.execute(chunks[ix]);
+			}
+			catch(RejectedExecutionException ex) {
+				// every chunk must count down
+				chunks[ix].run();
+			}
+		}
+		final long t0 = System.nanoTime();
+		long own = 0;
+		try {
+			chunks[0].failure = update(chunks[0].start, chunks[0].end);
+			own = System.nanoTime() - t0;
+		}
+		finally {
+			boolean interrupted = false;
+			for(;;) {
+				try {
+					// workers touch objects guarded by the update lock; never return early
+					done.await();
+					break;
+				}
+				catch(InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for(int ix = 0; ix < nchunks; ix++) {
+			final Throwable ex = chunks[ix].failure;
+			if(ex != null) {
+				chunks[ix].failure = null;
+				rethrow(ex);
+			}
+		}
+		return own;
+	}
+	/**
+	 * Stop the worker threads.
+	 * Subsequent flush() calls run serially.
+	 */
+	public void shutdown() {
+		stopped = true;
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+}
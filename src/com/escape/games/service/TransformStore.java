@@ -0,0 +1,333 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import com.escape.games.api.RequireTransform;
+import com.escape.games.model.Transform;
+import com.escape.games.model.TransformNode;
+
+/**
+ * Struct-of-arrays transform storage for large numbers of moving objects.
+ * Each transform is a dense integer handle into parallel float arrays for translate, rotate (degrees), scale and velocity,
+ * plus a contiguous array of column-major matrices, 16 floats per handle.
+ * Released handles go on a free list and are reused first, so live handles stay packed toward zero.
+ * Bulk loops (e.g. integrate()) are straight index loops over primitive arrays, which the JIT can unroll and vectorize;
+ * after writing the arrays directly, call invalidate() or invalidateAll().
+ * update() recomposes the matrices of changed handles (same result as Transform.compose()) and
+ * publishes each one to its bound TransformNode.
+ * With a TransformBatch, the first invalidation in a cycle queues the store, and update() runs at flush().
+ * Capacity is fixed, so arrays never move; allocate() returns -1 when full.
+ * Must hold update lock.
+ * @author escape-llc
+ *
+ */
+public final class TransformStore implements RequireTransform {
+	public final float[] tx;
+	public final float[] ty;
+	public final float[] tz;
+	public final float[] rx;
+	public final float[] ry;
+	public final float[] rz;
+	public final float[] sx;
+	public final float[] sy;
+	public final float[] sz;
+	/** velocity in units per second; used by integrate() */
+	public final float[] vx;
+	public final float[] vy;
+	public final float[] vz;
+	/** composed matrices; handle h at offset h*16 */
+	public final float[] matrix;
+	final int capacity;
+	/* per-handle cos/sin of rotation; valid for the angles in ax/ay/az */
+	final float[] cosx, sinx, cosy, siny, cosz, sinz;
+	final float[] ax, ay, az;
+	final TransformNode[] nodes;
+	final boolean[] live;
+	final int[] free;
+	int freeCount;
+	/* one past highest handle ever allocated */
+	int high;
+	int count;
+	/* sparse dirty list */
+	final boolean[] dirty;
+	final int[] pending;
+	int pendingCount;
+	boolean allDirty;
+	final TransformBatch batch;
+	boolean queued;
+	/**
+	 * Ctor.
+	 * @param capacity Maximum number of handles.
+	 * @param tb Batch to queue with on change; NULL: caller runs update().
+	 */
+	public TransformStore(int capacity, TransformBatch tb) {
+		if(capacity <= 0) throw new IllegalArgumentException("capacity");
+		this.capacity = capacity;
+		this.batch = tb;
+		tx = new float[capacity];
+		ty = new float[capacity];
+		tz = new float[capacity];
+		rx = new float[capacity];
+		ry = new float[capacity];
+		rz = new float[capacity];
+		sx = new float[capacity];
+		sy = new float[capacity];
+		sz = new float[capacity];
+		vx = new float[capacity];
+		vy = new float[capacity];
+		vz = new float[capacity];
+		matrix = new float[capacity*16];
+		cosx = new float[capacity];
+		sinx = new float[capacity];
+		cosy = new float[capacity];
+		siny = new float[capacity];
+		cosz = new float[capacity];
+		sinz = new float[capacity];
+		ax = new float[capacity];
+		ay = new float[capacity];
+		az = new float[capacity];
+		nodes = new TransformNode[capacity];
+		live = new boolean[capacity];
+		free = new int[capacity];
+		dirty = new boolean[capacity];
+		pending = new int[capacity];
+	}
+	/**
+	 * Return the maximum number of handles.
+	 * @return capacity.
+	 */
+	public int getCapacity() { return capacity; }
+	/**
+	 * Return the number of live handles.
+	 * @return count.
+	 */
+	public int size() { return count; }
+	/**
+	 * Return one past the highest handle in use; bulk loops run over [0, getHigh()).
+	 * Released handles below it have no node and are otherwise ignored.
+	 * @return handle bound.
+	 */
+	public int getHigh() { return high; }
+	/**
+	 * Allocate a handle with identity transform and zero velocity.
+	 * @param tn Node receiving the matrix as its local matrix; may be NULL.
+	 * @return handle or -1 if full.
+	 */
+	public int allocate(TransformNode tn) {
+		final int hx;
+		if(freeCount > 0) {
+			hx = free[--freeCount];
+		}
+		else if(high < capacity) {
+			hx = high++;
+		}
+		else {
+			return -1;
+		}
+		tx[hx] = 0f; ty[hx] = 0f; tz[hx] = 0f;
+		rx[hx] = 0f; ry[hx] = 0f; rz[hx] = 0f;
+		sx[hx] = 1f; sy[hx] = 1f; sz[hx] = 1f;
+		vx[hx] = 0f; vy[hx] = 0f; vz[hx] = 0f;
+		ax[hx] = 0f; ay[hx] = 0f; az[hx] = 0f;
+		cosx[hx] = 1f; sinx[hx] = 0f;
+		cosy[hx] = 1f; siny[hx] = 0f;
+		cosz[hx] = 1f; sinz[hx] = 0f;
+		nodes[hx] = tn;
+		live[hx] = true;
+		count++;
+		invalidate(hx);
+		return hx;
+	}
+	/**
+	 * Release a handle for reuse.
+	 * Its node keeps the last published matrix.
+	 * @param hx Handle from allocate().
+	 */
+	public void release(int hx) {
+		if(hx < 0 || hx >= high || !live[hx]) throw new IllegalArgumentException("hx");
+		live[hx] = false;
+		nodes[hx] = null;
+		vx[hx] = 0f; vy[hx] = 0f; vz[hx] = 0f;
+		free[freeCount++] = hx;
+		count--;
+	}
+	/**
+	 * Copy component values from a Transform.
+	 * @param hx Handle.
+	 * @param tf Source; NULL: identity.
+	 */
+	public void set(int hx, Transform tf) {
+		if(tf == null) {
+			tx[hx] = 0f; ty[hx] = 0f; tz[hx] = 0f;
+			rx[hx] = 0f; ry[hx] = 0f; rz[hx] = 0f;
+			sx[hx] = 1f; sy[hx] = 1f; sz[hx] = 1f;
+		}
+		else {
+			tx[hx] = tf.tx; ty[hx] = tf.ty; tz[hx] = tf.tz;
+			rx[hx] = tf.rx; ry[hx] = tf.ry; rz[hx] = tf.rz;
+			sx[hx] = tf.sx; sy[hx] = tf.sy; sz[hx] = tf.sz;
+		}
+		invalidate(hx);
+	}
+	/**
+	 * Copy component values to a Transform.
+	 * @param hx Handle.
+	 * @param tf Target.
+	 */
+	public void get(int hx, Transform tf) {
+		tf.tx = tx[hx]; tf.ty = ty[hx]; tf.tz = tz[hx];
+		tf.rx = rx[hx]; tf.ry = ry[hx]; tf.rz = rz[hx];
+		tf.sx = sx[hx]; tf.sy = sy[hx]; tf.sz = sz[hx];
+	}
+	/**
+	 * Mark one handle changed.
+	 * @param hx Handle.
+	 */
+	public void invalidate(int hx) {
+		if(!dirty[hx]) {
+			dirty[hx] = true;
+			pending[pendingCount++] = hx;
+		}
+		queue();
+	}
+	/**
+	 * Mark every handle changed, e.g. after a bulk loop.
+	 */
+	public void invalidateAll() {
+		allDirty = true;
+		queue();
+	}
+	void queue() {
+		if(batch != null && !queued) {
+			queued = true;
+			batch.add(this);
+		}
+	}
+	/**
+	 * Advance translation by velocity.
+	 * @param dt Elapsed time in seconds.
+	 */
+	public void integrate(float dt) {
+		final int hx = high;
+		final float[] px = tx, py = ty, pz = tz, qx = vx, qy = vy, qz = vz;
+		for(int ix = 0; ix < hx; ix++) {
+			px[ix] += qx[ix]*dt;
+		}
+		for(int ix = 0; ix < hx; ix++) {
+			py[ix] += qy[ix]*dt;
+		}
+		for(int ix = 0; ix < hx; ix++) {
+			pz[ix] += qz[ix]*dt;
+		}
+		invalidateAll();
+	}
+	/**
+	 * TransformBatch entry point; same as update().
+	 */
+	public void updateTransform() {
+		update();
+	}
+	/**
+	 * Recompose changed matrices and publish them to their nodes.
+	 */
+	public void update() {
+		queued = false;
+		if(allDirty) {
+			final int hx = high;
+			for(int ix = 0; ix < hx; ix++) {
+				rotation(ix);
+			}
+			compose(0, hx);
+			for(int ix = 0; ix < hx; ix++) {
+				publish(ix);
+			}
+			for(int ix = 0; ix < pendingCount; ix++) {
+				dirty[pending[ix]] = false;
+			}
+			allDirty = false;
+		}
+		else {
+			for(int ix = 0; ix < pendingCount; ix++) {
+				final int hx = pending[ix];
+				dirty[hx] = false;
+				rotation(hx);
+				compose(hx, hx + 1);
+				publish(hx);
+			}
+		}
+		pendingCount = 0;
+	}
+	/**
+	 * Refresh cached cos/sin if the angles changed.
+	 * @param hx Handle.
+	 */
+	void rotation(int hx) {
+		if(rx[hx] != ax[hx]) {
+			final double rad = Math.toRadians(ax[hx] = rx[hx]);
+			cosx[hx] = (float)Math.cos(rad);
+			sinx[hx] = (float)Math.sin(rad);
+		}
+		if(ry[hx] != ay[hx]) {
+			final double rad = Math.toRadians(ay[hx] = ry[hx]);
+			cosy[hx] = (float)Math.cos(rad);
+			siny[hx] = (float)Math.sin(rad);
+		}
+		if(rz[hx] != az[hx]) {
+			final double rad = Math.toRadians(az[hx] = rz[hx]);
+			cosz[hx] = (float)Math.cos(rad);
+			sinz[hx] = (float)Math.sin(rad);
+		}
+	}
+	/**
+	 * Compose Translate * Scale * RotateX * RotateY * RotateZ for a range of handles.
+	 * Branch-free; see Transform.compose().
+	 * @param start First handle.
+	 * @param end One past last handle.
+	 */
+	void compose(int start, int end) {
+		final float[] mx = matrix;
+		for(int ix = start, ox = start*16; ix < end; ix++, ox += 16) {
+			final float ca = cosx[ix], sa = sinx[ix], cb = cosy[ix], sb = siny[ix], cc = cosz[ix], sc = sinz[ix];
+			final float ssx = sx[ix], ssy = sy[ix], ssz = sz[ix];
+			mx[ox + 0] = ssx * cb*cc;
+			mx[ox + 1] = ssy * (ca*sc + sa*sb*cc);
+			mx[ox + 2] = ssz * (sa*sc - ca*sb*cc);
+			mx[ox + 3] = 0f;
+			mx[ox + 4] = ssx * -cb*sc;
+			mx[ox + 5] = ssy * (ca*cc - sa*sb*sc);
+			mx[ox + 6] = ssz * (sa*cc + ca*sb*sc);
+			mx[ox + 7] = 0f;
+			mx[ox + 8] = ssx * sb;
+			mx[ox + 9] = ssy * -sa*cb;
+			mx[ox + 10] = ssz * ca*cb;
+			mx[ox + 11] = 0f;
+			mx[ox + 12] = tx[ix];
+			mx[ox + 13] = ty[ix];
+			mx[ox + 14] = tz[ix];
+			mx[ox + 15] = 1f;
+		}
+	}
+	/**
+	 * Copy matrix to the bound node's local matrix and invalidate it.
+	 * @param hx Handle.
+	 */
+	void publish(int hx) {
+		final TransformNode tn = nodes[hx];
+		if(tn == null) return;
+		System.arraycopy(matrix, hx*16, tn.local, 0, 16);
+		tn.invalidate();
+	}
+}
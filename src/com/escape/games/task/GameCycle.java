@@ -31,7 +31,9 @@ import com.escape.games.api.GameHost;
 import com.escape.games.api.Pipelines;
 import com.escape.games.api.LoadedCallback;
 import com.escape.games.api.Locator;
+import com.escape.games.api.RequireInstall;
 import com.escape.games.api.RequireLocatable;
+import com.escape.games.api.RequirePicking;
 import com.escape.games.api.RequireTimer;
 import com.escape.games.api.ResourceLoader;
 import com.escape.games.api.SceneRender;
@@ -55,9 +57,11 @@ import com.escape.games.message.LoadGameObject;
 import com.escape.games.message.SceneMessage;
 import com.escape.games.message.SurfaceChanged;
 import com.escape.games.message.UnloadGameObject;
+import com.escape.games.service.PickingService;
 import com.escape.games.service.RenderService;
 import com.escape.games.service.RenderServiceImpl;
 import com.escape.games.service.TimerService;
+import com.escape.games.service.TransformBatch;
 
 /**
  * Core implementation for games.
@@ -73,6 +77,8 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 	final WeakReference<ViewHost> view;
 	protected final RenderServiceImpl rr;
 	protected final TimerService timer;
+	protected final TransformBatch transforms;
+	protected final PickingService picking;
 	protected final ResourceLoader rl;
 	protected final GameHost host;
 	protected final Object updateLock;
@@ -111,6 +117,8 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 		fr = new Framerate(this, fps);
 		gol = new GameObjectLoader(this, rl, this, qcap, mcap);
 		timer = new TimerService(this, tb);
+		transforms = new TransformBatch();
+		picking = new PickingService(rr);
 		services = new ConcurrentHashMap<Integer, Object>();
 		model = new HashMap<String, GameObject>();
 		view = new WeakReference<ViewHost>(glgv);
@@ -119,6 +127,8 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 		addService(Constants.Service.RESOURCES, rl);
 		addService(Constants.Service.HOST, host);
 		addService(Constants.Service.INSTALLER, (Pipelines)this);
+		addService(Constants.Service.TRANSFORMS, transforms);
+		addService(Constants.Service.PICKING, picking);
 	}
 	/**
 	 * Ctor.
@@ -350,7 +360,14 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 	 */
 	public void loaded(GameObject go, Exception ex, Locator lc, Pipelines pps) {
 		objectLoadedPre(go, ex);
+		if (ex != null && go instanceof RequireInstall) {
+			// release what was acquired before the failure
+			((RequireInstall) go).uninstalled();
+		}
 		if (ex == null) {
+			if (go instanceof RequireInstall) {
+				((RequireInstall) go).installed(this);
+			}
 			if(go.locatable) {
 				// register GO in locator
 				model.put(go.name, go);
@@ -382,6 +399,9 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 					timer.register(rt);
 				}
 			}
+			if (go instanceof RequirePicking) {
+				picking.add(go);
+			}
 		}
 		objectLoadedPost(go, ex);
 	}
@@ -391,6 +411,9 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 	 */
 	public void unloaded(GameObject go, Exception ex, Locator lc, Pipelines pps) {
 		objectUnloadedPre(go, ex);
+		if (go instanceof RequirePicking) {
+			picking.remove(go);
+		}
 		if (go instanceof RequireTimer) {
 			// register additional timers
 			final ArrayList<TimerCallback> timers = new ArrayList<TimerCallback>();
@@ -421,6 +444,9 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 		if(go.locatable) {
 			model.remove(go.name);
 		}
+		if (go instanceof RequireInstall) {
+			((RequireInstall) go).uninstalled();
+		}
 		objectUnloadedPost(go, ex);
 	}
 	/**
@@ -452,6 +478,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 	@Override
 	protected void shutdown() {
 		Log.d(name, "shutdown start");
+		transforms.shutdown();
 		if(timer != null) {
 			try {
 				timer.send(Constants.Message.MSG_SHUTDOWN);
@@ -514,6 +541,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 				}
 				synchronized(updateLock) {
 					startLoading(gotsurfaceready);
+					transforms.flush();
 				}
 			} finally {
 				gotsurfaceready = true;
@@ -537,6 +565,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 				}
 				synchronized(updateLock) {
 					startLoading(false);
+					transforms.flush();
 				}
 			} finally {
 				gotsurfaceready = true;
@@ -563,6 +592,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			final LoadGameObject lgo = (LoadGameObject) msg;
 			synchronized (updateLock) {
 				lgo.callback(this, this);
+				transforms.flush();
 			}
 			break;
 		case Constants.Message.LOAD_OBJECTS:
@@ -570,6 +600,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			final LoadGameObjects lgos = (LoadGameObjects) msg;
 			synchronized (updateLock) {
 				lgos.callback(this, this);
+				transforms.flush();
 			}
 			break;
 		case Constants.Message.UNLOAD_OBJECT:
@@ -577,6 +608,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			final UnloadGameObject ugo = (UnloadGameObject) msg;
 			synchronized (updateLock) {
 				ugo.callback(this, this);
+				transforms.flush();
 			}
 			break;
 		case Constants.Message.GAME_EVENT:
@@ -584,6 +616,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			final GameEvent ge = (GameEvent) msg;
 			synchronized (updateLock) {
 				ge.callback(this, this, this);
+				transforms.flush();
 			}
 			break;
 		case Constants.Message.GAME_EVENTS:
@@ -591,6 +624,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			final GameEvents ges = (GameEvents) msg;
 			synchronized (updateLock) {
 				ges.callback(this, this, this);
+				transforms.flush();
 			}
 			break;
 		case Constants.Message.SCENE_START:
@@ -603,6 +637,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			gameStarted = true;
 			synchronized(updateLock) {
 				gameStarting();
+				transforms.flush();
 			}
 		case Constants.Message.GAME_RESUME:
 			paused = false;
@@ -632,6 +667,7 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 			gameOver = true;
 			synchronized(updateLock) {
 				gameOver();
+				transforms.flush();
 			}
 			break;
 		}
@@ -642,12 +678,14 @@ public abstract class GameCycle extends GameTaskWithChannel implements GameContr
 				final NotifyTimer at = (NotifyTimer) msg;
 				synchronized (updateLock) {
 					at.execute(this, this);
+					transforms.flush();
 				}
 				break;
 			case Constants.Message.AGGREGATE_NOTIFY_TIMER:
 				final AggregateNotifyTimer ant = (AggregateNotifyTimer) msg;
 				synchronized (updateLock) {
 					ant.execute(this, this);
+					transforms.flush();
 				}
 				try {
 					// recycle message back to timer service
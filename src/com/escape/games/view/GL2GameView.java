@@ -18,6 +18,9 @@ package com.escape.games.view;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
+import com.escape.games.gl.GL;
+import com.escape.games.resource.GLState;
+
 import android.content.Context;
 import android.opengl.GLES20;
 import android.util.AttributeSet;
@@ -46,7 +49,7 @@ public final class GL2GameView extends GLSurfaceViewImpl {
 	 */
 	@Override
 	public void surfaceChanged(GL10 gl, int width, int height) {
-	    GLES20.glViewport(0, 0, width, height);
+	    GL.glViewport(0, 0, width, height);
 	}
 	/**
 	 * GL Setup on surface created.
@@ -57,19 +60,22 @@ public final class GL2GameView extends GLSurfaceViewImpl {
 	@Override
 	public void surfaceCreated(GL10 gl, EGLConfig arg1) {
 		Log.d("GL2GV", "created " + arg1);
-		GLES20.glDisable(GLES20.GL_DITHER);
+		// new context; nothing is bound
+		GLState.reset();
+		GLState.queryExtensions();
+		GL.glDisable(GLES20.GL_DITHER);
 		//Set The Blending Function For Translucency
-		GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE);
-		GLES20.glClearColor(clear[0], clear[1], clear[2], clear[3]);
+		GL.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE);
+		GL.glClearColor(clear[0], clear[1], clear[2], clear[3]);
 		/*
 		try {
 			final ByteBuffer byteBuf = ByteBuffer.allocateDirect(4);
 			byteBuf.order(ByteOrder.nativeOrder());
 			final IntBuffer ib = byteBuf.asIntBuffer();
-			GLES20.glGetIntegerv(GL10.GL_MAX_ELEMENTS_VERTICES, ib);
+			GL.glGetIntegerv(GL10.GL_MAX_ELEMENTS_VERTICES, ib);
 			Log.d(NAME, "max_vertices=" + ib.get(0));
 			ib.rewind();
-			GLES20.glGetIntegerv(GL10.GL_MAX_ELEMENTS_INDICES, ib);
+			GL.glGetIntegerv(GL10.GL_MAX_ELEMENTS_INDICES, ib);
 			Log.d(NAME, "max_indices=" + ib.get(0));
 		} catch (Exception ex) {
 			Log.e(NAME, "getint failed", ex);
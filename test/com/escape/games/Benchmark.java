@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games;
+
+import java.util.Locale;
+
+/**
+ * Timing for the hand-run *Benchmark classes; these are not part of the test run.
+ * Run them on a quiet machine; each figure is the best of several passes after warm-up.
+ * @author escape-llc
+ *
+ */
+public final class Benchmark {
+	public static final int WARMUP = 8;
+	public static final int PASSES = 5;
+	/**
+	 * One timed pass.
+	 * @author escape-llc
+	 *
+	 */
+	public interface Pass {
+		void run() throws Exception;
+	}
+	Benchmark() { }
+	/**
+	 * Time a pass.
+	 * @param px The pass.
+	 * @return Best time over PASSES runs after WARMUP runs, in ns.
+	 * @throws Exception from the pass.
+	 */
+	public static long best(Pass px) throws Exception {
+		for(int ix = 0; ix < WARMUP; ix++) {
+			px.run();
+		}
+		long best = Long.MAX_VALUE;
+		for(int ix = 0; ix < PASSES; ix++) {
+			final long t0 = System.nanoTime();
+			px.run();
+			best = Math.min(best, System.nanoTime() - t0);
+		}
+		return best;
+	}
+	/**
+	 * Print one timing line.
+	 * @param name Label.
+	 * @param nanos Time of one pass.
+	 * @param units Work per pass, e.g. MB or draws.
+	 * @param unit Name of the work unit.
+	 */
+	public static void report(String name, long nanos, double units, String unit) {
+		System.out.println(String.format(Locale.US, "%-28s %9.3f ms %12.1f %s/s", name, nanos/1e6, units/(nanos/1e9), unit));
+	}
+	/**
+	 * Time a pass and print it.
+	 * @param name Label.
+	 * @param units Work per pass.
+	 * @param unit Name of the work unit.
+	 * @param px The pass.
+	 * @return Best time in ns.
+	 * @throws Exception from the pass.
+	 */
+	public static long run(String name, double units, String unit, Pass px) throws Exception {
+		final long nanos = best(px);
+		report(name, nanos, units, unit);
+		return nanos;
+	}
+}
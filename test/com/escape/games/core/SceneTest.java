@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.core;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.opengl.GLES20;
+
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.gl.GL;
+import com.escape.games.gl.GLES;
+import com.escape.games.gl.RecordingGLES;
+import com.escape.games.message.Constants;
+import com.escape.games.model.Geometry;
+import com.escape.games.model.IndexedVBOGeometry;
+import com.escape.games.model.InterleavedVBOGeometry;
+import com.escape.games.model.InterleavedVertexGeometry;
+import com.escape.games.model.Submesh;
+import com.escape.games.model.Transform;
+import com.escape.games.model.UniformMaterial;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.RenderStats;
+import com.escape.games.resource.Shader;
+import com.escape.games.resource.VertexBufferObject;
+import com.escape.games.service.RenderService;
+
+/**
+ * Full Scene render through RenderService, checked against the recorded GL call stream.
+ * @author escape-llc
+ *
+ */
+public class SceneTest {
+	static final String VERTEX = "uniform mat4 uMVPMatrix;\nattribute vec4 aPosition;\nvoid main() { gl_Position = uMVPMatrix * aPosition; }\n";
+	static final String FRAGMENT = "precision mediump float;\nuniform vec4 uColor;\nvoid main() { gl_FragColor = uColor; }\n";
+	static final float[] TRIANGLE = { -1f, -1f, 0f, 1f, -1f, 0f, 0f, 1f, 0f };
+	RecordingGLES rec;
+	GLES saved;
+	Shader sx;
+	InterleavedVertexGeometry ivg;
+	ResourceLoader rl;
+	Services svc;
+	RenderService rs;
+	Scene scene;
+	@Before
+	public void setUp() {
+		rec = new RecordingGLES();
+		saved = GL.setBackend(rec);
+		GLState.reset();
+		RenderStats.reset();
+		sx = new Shader(VERTEX, FRAGMENT);
+		sx.load(null);
+		ivg = new InterleavedVertexGeometry(TRIANGLE, new int[] { 3, 0, 0, 0 }) { };
+		ivg.load(null, null);
+		// one shader and one shared VBO, as the real loader hands out
+		final VertexBufferObject vbo = new VertexBufferObject((FloatBuffer)ivg.getBuffer());
+		vbo.load(null);
+		rl = (ResourceLoader)Proxy.newProxyInstance(ResourceLoader.class.getClassLoader(), new Class<?>[] { ResourceLoader.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if(method.getName().equals("createShader")) return sx;
+				if(method.getName().equals("createBuffer")) return vbo;
+				return null;
+			}
+		});
+		svc = (Services)Proxy.newProxyInstance(Services.class.getClassLoader(), new Class<?>[] { Services.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return null;
+			}
+		});
+		rs = new RenderService(new Object());
+		rs.setProjection(200, 100, 1f, 100f);
+		rs.setCamera(0f, 0f, 0f, 0f, 0f, -1f);
+		scene = new Scene("scene", 4);
+		rs.setScene(scene);
+		// loading left the program and buffer bound; start from an unknown context like a fresh surface
+		GLState.reset();
+	}
+	@After
+	public void tearDown() {
+		GL.setBackend(saved);
+		GLState.reset();
+		RenderStats.reset();
+	}
+	DrawableGameObject add(String name, Geometry gx, float z, float r, float g, float b) {
+		final DrawableGameObject dgo = new DrawableGameObject(name, false, gx, 0);
+		dgo.set(Constants.Property.MATERIAL, new UniformMaterial(r, g, b, 1f));
+		dgo.set(Constants.Property.TRANSFORM, new Transform(0f, 0f, z, 1f));
+		dgo.load(rl, svc);
+		dgo.setVisible(true);
+		scene.loaded(dgo, null, null, null);
+		return dgo;
+	}
+	@Test
+	public void redundantStateSkipped() {
+		final InterleavedVBOGeometry gx = new InterleavedVBOGeometry(ivg);
+		// opaque: drawn front to back, so both red objects come first
+		add("red1", gx, -5f, 1f, 0f, 0f);
+		add("blue", gx, -7f, 0f, 0f, 1f);
+		add("red2", gx, -6f, 1f, 0f, 0f);
+		rec.clear();
+		rs.render();
+		assertEquals(3, rec.count("glDrawArrays"));
+		assertEquals(1, rec.count("glUseProgram"));
+		assertEquals(1, rec.count("glBindBuffer"));
+		// each object has its own MVP
+		assertEquals(3, rec.count("glUniformMatrix4fv"));
+		// red uploaded once for both red objects, then blue
+		assertEquals(2, rec.count("glUniform4fv"));
+		assertEquals(3, RenderStats.get(RenderStats.DRAWS));
+		assertEquals(1, RenderStats.get(RenderStats.SHADER_SWITCHES));
+		// unchanged frame: program and buffer are still current
+		rec.clear();
+		rs.render();
+		assertEquals(3, rec.count("glDrawArrays"));
+		assertEquals(0, rec.count("glUseProgram"));
+		assertEquals(0, rec.count("glBindBuffer"));
+		// the uniform holds the last object's MVP, so each object uploads again
+		assertEquals(3, rec.count("glUniformMatrix4fv"));
+		// blue -> red, red, red -> blue
+		assertEquals(2, rec.count("glUniform4fv"));
+		assertEquals(3, RenderStats.get(RenderStats.DRAWS));
+	}
+	@Test
+	public void invisibleNotDrawn() {
+		final InterleavedVBOGeometry gx = new InterleavedVBOGeometry(ivg);
+		add("shown", gx, -5f, 1f, 0f, 0f);
+		add("hidden", gx, -6f, 0f, 1f, 0f).setVisible(false);
+		rec.clear();
+		rs.render();
+		assertEquals(1, rec.count("glDrawArrays"));
+		assertEquals(1, rec.count("glUniformMatrix4fv"));
+		assertEquals(1, rec.count("glUniform4fv"));
+		assertEquals(1, RenderStats.get(RenderStats.DRAWS));
+		// single object: its MVP and color are already uploaded
+		rec.clear();
+		rs.render();
+		assertEquals(1, rec.count("glDrawArrays"));
+		assertEquals(0, rec.count("glUniformMatrix4fv"));
+		assertEquals(0, rec.count("glUniform4fv"));
+	}
+	@Test
+	public void transparentSubmeshDrawsBlended() {
+		final IndexedVBOGeometry gx = new IndexedVBOGeometry(ivg, ShortBuffer.wrap(new short[] { 0, 1, 2, 0, 1, 2 }));
+		final Submesh glass = new Submesh("glass", 3, 3);
+		glass.setMaterial(new UniformMaterial(0f, 0f, 1f, 0.5f));
+		gx.setSubmeshes(new Submesh[] { new Submesh("solid", 0, 3), glass });
+		// object MATERIAL is opaque; the submesh decides the pass
+		final DrawableGameObject dgo = add("mixed", gx, -5f, 1f, 1f, 1f);
+		final DrawableGameObject solid = add("solid", new InterleavedVBOGeometry(ivg), -9f, 1f, 0f, 0f);
+		assertTrue(dgo.isTransparent());
+		assertFalse(solid.isTransparent());
+		rec.clear();
+		rs.render();
+		int blendAt = -1, index = 0, draws = 0, blendedDraws = 0;
+		for(RecordingGLES.Call call : rec.calls()) {
+			if(call.name.equals("glEnable") && call.args[0].equals(GLES20.GL_BLEND)) {
+				blendAt = index;
+			}
+			else if(call.name.startsWith("glDraw")) {
+				draws++;
+				if(blendAt >= 0) blendedDraws++;
+			}
+			index++;
+		}
+		// the farther opaque object still draws first, then both submeshes with blending
+		assertTrue(blendAt >= 0);
+		assertEquals(3, draws);
+		assertEquals(2, blendedDraws);
+	}
+}
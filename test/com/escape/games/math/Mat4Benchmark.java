@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.math;
+
+import java.util.Random;
+
+import com.escape.games.Benchmark;
+
+/**
+ * Timings of the general Mat4 operations against their affine/rigid forms, with android.opengl.Matrix (MatrixReference) as baseline.
+ * Each pass runs over a batch of random matrices; a checksum keeps the results live.
+ * @author escape-llc
+ *
+ */
+public class Mat4Benchmark {
+	static final int COUNT = 4096;
+	static final int REPEAT = 16;
+	static float sink;
+	/* sum one element per matrix so no pass is dead code */
+	static void consume(float[] mm) {
+		float sum = 0f;
+		for(int ix = 0; ix < COUNT; ix++) {
+			sum += mm[ix*16 + 12] + mm[ix*16 + 5];
+		}
+		sink += sum;
+	}
+	public static void main(String[] args) throws Exception {
+		final Random rnd = new Random(42);
+		final float[] trs = new float[COUNT*9];
+		final float[] quats = new float[COUNT*4];
+		final float[] affine = new float[COUNT*16];
+		final float[] rigid = new float[COUNT*16];
+		final float[] out = new float[COUNT*16];
+		for(int ix = 0; ix < COUNT; ix++) {
+			for(int jx = 0; jx < 3; jx++) {
+				trs[ix*9 + jx] = (rnd.nextFloat() - .5f)*100f;
+				trs[ix*9 + 3 + jx] = rnd.nextFloat()*360f;
+				trs[ix*9 + 6 + jx] = .5f + rnd.nextFloat()*2f;
+			}
+			Quat.setEuler(quats, ix*4, trs[ix*9 + 3], trs[ix*9 + 4], trs[ix*9 + 5]);
+			Mat4.setTRS(affine, ix*16, trs[ix*9], trs[ix*9 + 1], trs[ix*9 + 2], quats, ix*4, trs[ix*9 + 6], trs[ix*9 + 7], trs[ix*9 + 8]);
+			Mat4.setTRS(rigid, ix*16, trs[ix*9], trs[ix*9 + 1], trs[ix*9 + 2], quats, ix*4, 1f, 1f, 1f);
+		}
+		final double ops = COUNT*REPEAT;
+		Benchmark.run("multiplyMM (reference)", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						MatrixReference.multiplyMM(out, ix*16, affine, ix*16, affine, ((ix + rx) % COUNT)*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("multiply", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						Mat4.multiply(out, ix*16, affine, ix*16, affine, ((ix + rx) % COUNT)*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("multiplyAffine", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						Mat4.multiplyAffine(out, ix*16, affine, ix*16, affine, ((ix + rx) % COUNT)*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("invertM (reference)", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						MatrixReference.invertM(out, ix*16, affine, ix*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("invert", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						Mat4.invert(out, ix*16, affine, ix*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("invertAffine", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						Mat4.invertAffine(out, ix*16, affine, ix*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("invert (rigid input)", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						Mat4.invert(out, ix*16, rigid, ix*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("invertRigid", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						Mat4.invertRigid(out, ix*16, rigid, ix*16);
+					}
+				}
+				consume(out);
+			}
+		});
+		// same matrix both ways: T * Rx * Ry * Rz * S from Euler angles, or setTRS from the equivalent quaternion
+		Benchmark.run("TRS by rotate", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						final int ox = ix*16, tx = ix*9;
+						Mat4.setIdentity(out, ox);
+						Mat4.translate(out, ox, trs[tx], trs[tx + 1], trs[tx + 2]);
+						Mat4.rotate(out, ox, trs[tx + 3], 1f, 0f, 0f);
+						Mat4.rotate(out, ox, trs[tx + 4], 0f, 1f, 0f);
+						Mat4.rotate(out, ox, trs[tx + 5], 0f, 0f, 1f);
+						Mat4.scale(out, ox, trs[tx + 6], trs[tx + 7], trs[tx + 8]);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("TRS by setEuler+setTRS", ops, "ops", new Benchmark.Pass() {
+			final float[] qq = new float[4];
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						final int tx = ix*9;
+						Quat.setEuler(qq, 0, trs[tx + 3], trs[tx + 4], trs[tx + 5]);
+						Mat4.setTRS(out, ix*16, trs[tx], trs[tx + 1], trs[tx + 2], qq, 0, trs[tx + 6], trs[tx + 7], trs[tx + 8]);
+					}
+				}
+				consume(out);
+			}
+		});
+		Benchmark.run("TRS by setTRS", ops, "ops", new Benchmark.Pass() {
+			public void run() {
+				for(int rx = 0; rx < REPEAT; rx++) {
+					for(int ix = 0; ix < COUNT; ix++) {
+						final int tx = ix*9;
+						Mat4.setTRS(out, ix*16, trs[tx], trs[tx + 1], trs[tx + 2], quats, ix*4, trs[tx + 6], trs[tx + 7], trs[tx + 8]);
+					}
+				}
+				consume(out);
+			}
+		});
+		System.out.println(new StringBuilder("checksum ").append(sink).toString());
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.math;
+
+import static com.escape.games.math.MatrixReference.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Mat4 against android.opengl.Matrix.
+ * @author escape-llc
+ *
+ */
+public class Mat4Test {
+	static final float TOL = 1e-4f;
+	final Random rnd = new Random(42);
+	float next(float lo, float hi) {
+		return lo + rnd.nextFloat()*(hi - lo);
+	}
+	/* random translate * rotate * scale, scale away from 0 */
+	float[] affine() {
+		final float[] mm = new float[16];
+		setIdentityM(mm, 0);
+		translateM(mm, 0, next(-50f, 50f), next(-50f, 50f), next(-50f, 50f));
+		rotateM(mm, 0, next(-180f, 180f), next(-1f, 1f), next(-1f, 1f), next(0.1f, 1f));
+		scaleM(mm, 0, next(0.25f, 4f), next(0.25f, 4f), next(0.25f, 4f));
+		return mm;
+	}
+	@Test
+	public void invertMatchesInvertM() {
+		final float[] pp = new float[16], mm = new float[16];
+		final float[] expected = new float[16], actual = new float[20];
+		for(int ix = 0; ix < 200; ix++) {
+			frustumM(pp, 0, next(-2f, -0.5f), next(0.5f, 2f), next(-2f, -0.5f), next(0.5f, 2f), next(0.5f, 2f), next(50f, 500f));
+			multiplyMM(mm, 0, pp, 0, affine(), 0);
+			assertTrue(invertM(expected, 0, mm, 0));
+			assertTrue(Mat4.invert(actual, 4, mm, 0));
+			assertMatrix(expected, actual, 4, TOL);
+		}
+	}
+	@Test
+	public void invertAffineMatchesInvertM() {
+		final float[] expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 200; ix++) {
+			final float[] mm = affine();
+			assertTrue(invertM(expected, 0, mm, 0));
+			assertTrue(Mat4.invertAffine(actual, 0, mm, 0));
+			assertMatrix(expected, actual, 0, TOL);
+			// in place
+			assertTrue(Mat4.invertAffine(mm, 0, mm, 0));
+			assertMatrix(expected, mm, 0, TOL);
+		}
+	}
+	@Test
+	public void invertRigidMatchesInvertM() {
+		final float[] mm = new float[16], expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 100; ix++) {
+			setIdentityM(mm, 0);
+			translateM(mm, 0, next(-50f, 50f), next(-50f, 50f), next(-50f, 50f));
+			rotateM(mm, 0, next(-180f, 180f), next(-1f, 1f), next(0.1f, 1f), next(-1f, 1f));
+			assertTrue(invertM(expected, 0, mm, 0));
+			Mat4.invertRigid(actual, 0, mm, 0);
+			assertMatrix(expected, actual, 0, TOL);
+		}
+	}
+	@Test
+	public void singularNotInverted() {
+		final float[] mm = new float[16], out = new float[16];
+		setIdentityM(mm, 0);
+		mm[5] = 0f;
+		assertFalse(invertM(out, 0, mm, 0));
+		assertFalse(Mat4.invert(out, 0, mm, 0));
+		assertFalse(Mat4.invertAffine(out, 0, mm, 0));
+	}
+	@Test
+	public void lookAtMatchesSetLookAtM() {
+		final float[] expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 100; ix++) {
+			final float ex = next(-20f, 20f), ey = next(-20f, 20f), ez = next(5f, 20f);
+			final float cx = next(-5f, 5f), cy = next(-5f, 5f), cz = next(-5f, 0f);
+			setLookAtM(expected, 0, ex, ey, ez, cx, cy, cz, 0f, 1f, 0f);
+			Mat4.lookAt(actual, 0, ex, ey, ez, cx, cy, cz, 0f, 1f, 0f);
+			assertMatrix(expected, actual, 0, TOL);
+		}
+	}
+	@Test
+	public void frustumMatchesFrustumM() {
+		final float[] expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 100; ix++) {
+			final float l = next(-3f, -0.1f), r = next(0.1f, 3f), b = next(-3f, -0.1f), t = next(0.1f, 3f);
+			final float n = next(0.1f, 5f), f = next(10f, 1000f);
+			frustumM(expected, 0, l, r, b, t, n, f);
+			Mat4.frustum(actual, 0, l, r, b, t, n, f);
+			assertMatrix(expected, actual, 0, TOL);
+		}
+	}
+	@Test
+	public void rotateMatchesRotateM() {
+		final float[] expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 100; ix++) {
+			final float[] mm = affine();
+			System.arraycopy(mm, 0, expected, 0, 16);
+			System.arraycopy(mm, 0, actual, 0, 16);
+			final float deg = next(-360f, 360f), x = next(-1f, 1f), y = next(-1f, 1f), z = next(0.1f, 1f);
+			rotateM(expected, 0, deg, x, y, z);
+			Mat4.rotate(actual, 0, deg, x, y, z);
+			assertMatrix(expected, actual, 0, TOL);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.math;
+
+/**
+ * The android.opengl.Matrix algorithms Mat4 and Quat are checked against.
+ * android.jar only has stubs off device, so the AOSP implementations are reproduced here.
+ * @author escape-llc
+ *
+ */
+final class MatrixReference {
+	private MatrixReference() { }
+	static void setIdentityM(float[] sm, int smOffset) {
+		for(int i = 0; i < 16; i++) {
+			sm[smOffset + i] = 0;
+		}
+		for(int i = 0; i < 16; i += 5) {
+			sm[smOffset + i] = 1.0f;
+		}
+	}
+	static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		final float[] tmp = new float[16];
+		for(int i = 0; i < 4; i++) {
+			for(int j = 0; j < 4; j++) {
+				float sum = 0;
+				for(int k = 0; k < 4; k++) {
+					sum += lhs[lhsOffset + k*4 + j]*rhs[rhsOffset + i*4 + k];
+				}
+				tmp[i*4 + j] = sum;
+			}
+		}
+		System.arraycopy(tmp, 0, result, resultOffset, 16);
+	}
+	static void translateM(float[] m, int mOffset, float x, float y, float z) {
+		for(int i = 0; i < 4; i++) {
+			final int mi = mOffset + i;
+			m[12 + mi] += m[mi]*x + m[4 + mi]*y + m[8 + mi]*z;
+		}
+	}
+	static void scaleM(float[] m, int mOffset, float x, float y, float z) {
+		for(int i = 0; i < 4; i++) {
+			final int mi = mOffset + i;
+			m[mi] *= x;
+			m[4 + mi] *= y;
+			m[8 + mi] *= z;
+		}
+	}
+	static void setRotateM(float[] rm, int rmOffset, float a, float x, float y, float z) {
+		rm[rmOffset + 3] = 0;
+		rm[rmOffset + 7] = 0;
+		rm[rmOffset + 11] = 0;
+		rm[rmOffset + 12] = 0;
+		rm[rmOffset + 13] = 0;
+		rm[rmOffset + 14] = 0;
+		rm[rmOffset + 15] = 1;
+		a *= (float)(Math.PI/180.0f);
+		final float s = (float)Math.sin(a);
+		final float c = (float)Math.cos(a);
+		final float len = (float)Math.sqrt(x*x + y*y + z*z);
+		if(len != 1f) {
+			final float recipLen = 1.0f/len;
+			x *= recipLen;
+			y *= recipLen;
+			z *= recipLen;
+		}
+		final float nc = 1.0f - c;
+		final float xy = x*y;
+		final float yz = y*z;
+		final float zx = z*x;
+		final float xs = x*s;
+		final float ys = y*s;
+		final float zs = z*s;
+		rm[rmOffset + 0] = x*x*nc + c;
+		rm[rmOffset + 4] = xy*nc - zs;
+		rm[rmOffset + 8] = zx*nc + ys;
+		rm[rmOffset + 1] = xy*nc + zs;
+		rm[rmOffset + 5] = y*y*nc + c;
+		rm[rmOffset + 9] = yz*nc - xs;
+		rm[rmOffset + 2] = zx*nc - ys;
+		rm[rmOffset + 6] = yz*nc + xs;
+		rm[rmOffset + 10] = z*z*nc + c;
+	}
+	static void rotateM(float[] m, int mOffset, float a, float x, float y, float z) {
+		final float[] r = new float[16];
+		setRotateM(r, 0, a, x, y, z);
+		multiplyMM(m, mOffset, m, mOffset, r, 0);
+	}
+	static void setLookAtM(float[] rm, int rmOffset,
+			float eyeX, float eyeY, float eyeZ,
+			float centerX, float centerY, float centerZ,
+			float upX, float upY, float upZ) {
+		float fx = centerX - eyeX;
+		float fy = centerY - eyeY;
+		float fz = centerZ - eyeZ;
+		final float rlf = 1.0f/(float)Math.sqrt(fx*fx + fy*fy + fz*fz);
+		fx *= rlf;
+		fy *= rlf;
+		fz *= rlf;
+		float sx = fy*upZ - fz*upY;
+		float sy = fz*upX - fx*upZ;
+		float sz = fx*upY - fy*upX;
+		final float rls = 1.0f/(float)Math.sqrt(sx*sx + sy*sy + sz*sz);
+		sx *= rls;
+		sy *= rls;
+		sz *= rls;
+		final float ux = sy*fz - sz*fy;
+		final float uy = sz*fx - sx*fz;
+		final float uz = sx*fy - sy*fx;
+		rm[rmOffset + 0] = sx;
+		rm[rmOffset + 1] = ux;
+		rm[rmOffset + 2] = -fx;
+		rm[rmOffset + 3] = 0.0f;
+		rm[rmOffset + 4] = sy;
+		rm[rmOffset + 5] = uy;
+		rm[rmOffset + 6] = -fy;
+		rm[rmOffset + 7] = 0.0f;
+		rm[rmOffset + 8] = sz;
+		rm[rmOffset + 9] = uz;
+		rm[rmOffset + 10] = -fz;
+		rm[rmOffset + 11] = 0.0f;
+		rm[rmOffset + 12] = 0.0f;
+		rm[rmOffset + 13] = 0.0f;
+		rm[rmOffset + 14] = 0.0f;
+		rm[rmOffset + 15] = 1.0f;
+		translateM(rm, rmOffset, -eyeX, -eyeY, -eyeZ);
+	}
+	static void frustumM(float[] m, int offset, float left, float right, float bottom, float top, float near, float far) {
+		final float r_width = 1.0f/(right - left);
+		final float r_height = 1.0f/(top - bottom);
+		final float r_depth = 1.0f/(near - far);
+		final float x = 2.0f*(near*r_width);
+		final float y = 2.0f*(near*r_height);
+		final float A = (right + left)*r_width;
+		final float B = (top + bottom)*r_height;
+		final float C = (far + near)*r_depth;
+		final float D = 2.0f*(far*near*r_depth);
+		m[offset + 0] = x;
+		m[offset + 5] = y;
+		m[offset + 8] = A;
+		m[offset + 9] = B;
+		m[offset + 10] = C;
+		m[offset + 14] = D;
+		m[offset + 11] = -1.0f;
+		m[offset + 1] = 0.0f;
+		m[offset + 2] = 0.0f;
+		m[offset + 3] = 0.0f;
+		m[offset + 4] = 0.0f;
+		m[offset + 6] = 0.0f;
+		m[offset + 7] = 0.0f;
+		m[offset + 12] = 0.0f;
+		m[offset + 13] = 0.0f;
+		m[offset + 15] = 0.0f;
+	}
+	static boolean invertM(float[] mInv, int mInvOffset, float[] m, int mOffset) {
+		// Cramer's rule on the transpose
+		final float src0 = m[mOffset + 0];
+		final float src4 = m[mOffset + 1];
+		final float src8 = m[mOffset + 2];
+		final float src12 = m[mOffset + 3];
+		final float src1 = m[mOffset + 4];
+		final float src5 = m[mOffset + 5];
+		final float src9 = m[mOffset + 6];
+		final float src13 = m[mOffset + 7];
+		final float src2 = m[mOffset + 8];
+		final float src6 = m[mOffset + 9];
+		final float src10 = m[mOffset + 10];
+		final float src14 = m[mOffset + 11];
+		final float src3 = m[mOffset + 12];
+		final float src7 = m[mOffset + 13];
+		final float src11 = m[mOffset + 14];
+		final float src15 = m[mOffset + 15];
+		final float atmp0 = src10*src15;
+		final float atmp1 = src11*src14;
+		final float atmp2 = src9*src15;
+		final float atmp3 = src11*src13;
+		final float atmp4 = src9*src14;
+		final float atmp5 = src10*src13;
+		final float atmp6 = src8*src15;
+		final float atmp7 = src11*src12;
+		final float atmp8 = src8*src14;
+		final float atmp9 = src10*src12;
+		final float atmp10 = src8*src13;
+		final float atmp11 = src9*src12;
+		final float dst0 = (atmp0*src5 + atmp3*src6 + atmp4*src7) - (atmp1*src5 + atmp2*src6 + atmp5*src7);
+		final float dst1 = (atmp1*src4 + atmp6*src6 + atmp9*src7) - (atmp0*src4 + atmp7*src6 + atmp8*src7);
+		final float dst2 = (atmp2*src4 + atmp7*src5 + atmp10*src7) - (atmp3*src4 + atmp6*src5 + atmp11*src7);
+		final float dst3 = (atmp5*src4 + atmp8*src5 + atmp11*src6) - (atmp4*src4 + atmp9*src5 + atmp10*src6);
+		final float dst4 = (atmp1*src1 + atmp2*src2 + atmp5*src3) - (atmp0*src1 + atmp3*src2 + atmp4*src3);
+		final float dst5 = (atmp0*src0 + atmp7*src2 + atmp8*src3) - (atmp1*src0 + atmp6*src2 + atmp9*src3);
+		final float dst6 = (atmp3*src0 + atmp6*src1 + atmp11*src3) - (atmp2*src0 + atmp7*src1 + atmp10*src3);
+		final float dst7 = (atmp4*src0 + atmp9*src1 + atmp10*src2) - (atmp5*src0 + atmp8*src1 + atmp11*src2);
+		final float btmp0 = src2*src7;
+		final float btmp1 = src3*src6;
+		final float btmp2 = src1*src7;
+		final float btmp3 = src3*src5;
+		final float btmp4 = src1*src6;
+		final float btmp5 = src2*src5;
+		final float btmp6 = src0*src7;
+		final float btmp7 = src3*src4;
+		final float btmp8 = src0*src6;
+		final float btmp9 = src2*src4;
+		final float btmp10 = src0*src5;
+		final float btmp11 = src1*src4;
+		final float dst8 = (btmp0*src13 + btmp3*src14 + btmp4*src15) - (btmp1*src13 + btmp2*src14 + btmp5*src15);
+		final float dst9 = (btmp1*src12 + btmp6*src14 + btmp9*src15) - (btmp0*src12 + btmp7*src14 + btmp8*src15);
+		final float dst10 = (btmp2*src12 + btmp7*src13 + btmp10*src15) - (btmp3*src12 + btmp6*src13 + btmp11*src15);
+		final float dst11 = (btmp5*src12 + btmp8*src13 + btmp11*src14) - (btmp4*src12 + btmp9*src13 + btmp10*src14);
+		final float dst12 = (btmp2*src10 + btmp5*src11 + btmp1*src9) - (btmp4*src11 + btmp0*src9 + btmp3*src10);
+		final float dst13 = (btmp8*src11 + btmp0*src8 + btmp7*src10) - (btmp6*src10 + btmp9*src11 + btmp1*src8);
+		final float dst14 = (btmp6*src9 + btmp11*src11 + btmp3*src8) - (btmp10*src11 + btmp2*src8 + btmp7*src9);
+		final float dst15 = (btmp10*src10 + btmp4*src8 + btmp9*src9) - (btmp8*src9 + btmp11*src10 + btmp5*src8);
+		final float det = src0*dst0 + src1*dst1 + src2*dst2 + src3*dst3;
+		if(det == 0.0f) return false;
+		final float invdet = 1.0f/det;
+		mInv[mInvOffset] = dst0*invdet;
+		mInv[1 + mInvOffset] = dst1*invdet;
+		mInv[2 + mInvOffset] = dst2*invdet;
+		mInv[3 + mInvOffset] = dst3*invdet;
+		mInv[4 + mInvOffset] = dst4*invdet;
+		mInv[5 + mInvOffset] = dst5*invdet;
+		mInv[6 + mInvOffset] = dst6*invdet;
+		mInv[7 + mInvOffset] = dst7*invdet;
+		mInv[8 + mInvOffset] = dst8*invdet;
+		mInv[9 + mInvOffset] = dst9*invdet;
+		mInv[10 + mInvOffset] = dst10*invdet;
+		mInv[11 + mInvOffset] = dst11*invdet;
+		mInv[12 + mInvOffset] = dst12*invdet;
+		mInv[13 + mInvOffset] = dst13*invdet;
+		mInv[14 + mInvOffset] = dst14*invdet;
+		mInv[15 + mInvOffset] = dst15*invdet;
+		return true;
+	}
+	/**
+	 * Assert two matrices match within a relative tolerance.
+	 * @param expected Reference.
+	 * @param actual Under test.
+	 * @param off Offset into actual.
+	 * @param tol Tolerance relative to max(1, |expected|).
+	 */
+	static void assertMatrix(float[] expected, float[] actual, int off, float tol) {
+		for(int ix = 0; ix < 16; ix++) {
+			final float ex = expected[ix];
+			final float ax = actual[off + ix];
+			if(Math.abs(ex - ax) > tol*Math.max(1f, Math.abs(ex))) {
+				throw new AssertionError(new StringBuilder("element ").append(ix).append(": expected ").append(ex).append(" got ").append(ax).toString());
+			}
+		}
+	}
+}
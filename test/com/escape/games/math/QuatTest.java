@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.math;
+
+import static com.escape.games.math.MatrixReference.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Quat against android.opengl.Matrix rotations.
+ * Euler angles are composed from setRotateM() per axis; setRotateEulerM() is not a reference,
+ * it does not produce RotateX * RotateY * RotateZ.
+ * @author escape-llc
+ *
+ */
+public class QuatTest {
+	static final float TOL = 1e-4f;
+	final Random rnd = new Random(7);
+	float next(float lo, float hi) {
+		return lo + rnd.nextFloat()*(hi - lo);
+	}
+	/* RotateX * RotateY * RotateZ */
+	static void euler(float[] mm, float rx, float ry, float rz) {
+		setRotateM(mm, 0, rx, 1f, 0f, 0f);
+		rotateM(mm, 0, ry, 0f, 1f, 0f);
+		rotateM(mm, 0, rz, 0f, 0f, 1f);
+	}
+	@Test
+	public void setEulerMatchesRotateM() {
+		final float[] qq = new float[4], expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 200; ix++) {
+			final float rx = next(-180f, 180f), ry = next(-180f, 180f), rz = next(-180f, 180f);
+			euler(expected, rx, ry, rz);
+			Quat.setEuler(qq, 0, rx, ry, rz);
+			Quat.toMatrix(actual, 0, qq, 0);
+			assertMatrix(expected, actual, 0, TOL);
+		}
+	}
+	@Test
+	public void setAxisAngleMatchesSetRotateM() {
+		final float[] qq = new float[4], expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 200; ix++) {
+			final float deg = next(-360f, 360f), x = next(-1f, 1f), y = next(-1f, 1f), z = next(0.1f, 1f);
+			setRotateM(expected, 0, deg, x, y, z);
+			Quat.setAxisAngle(qq, 0, deg, x, y, z);
+			Quat.toMatrix(actual, 0, qq, 0);
+			assertMatrix(expected, actual, 0, TOL);
+		}
+	}
+	@Test
+	public void slerpMatchesSetRotateMOnOneAxis() {
+		final float[] q0 = new float[4], q1 = new float[4], qt = new float[4];
+		final float[] expected = new float[16], actual = new float[16];
+		for(int ix = 0; ix < 100; ix++) {
+			final float x = next(-1f, 1f), y = next(-1f, 1f), z = next(0.1f, 1f);
+			final float a0 = next(-90f, 90f), a1 = a0 + next(-170f, 170f);
+			Quat.setAxisAngle(q0, 0, a0, x, y, z);
+			Quat.setAxisAngle(q1, 0, a1, x, y, z);
+			for(int tx = 0; tx <= 10; tx++) {
+				final float tt = tx/10f;
+				setRotateM(expected, 0, a0 + (a1 - a0)*tt, x, y, z);
+				Quat.slerp(qt, 0, q0, 0, q1, 0, tt);
+				Quat.toMatrix(actual, 0, qt, 0);
+				assertMatrix(expected, actual, 0, TOL);
+			}
+		}
+	}
+	@Test
+	public void slerpTakesShorterArc() {
+		final float[] q0 = new float[4], q1 = new float[4], qt = new float[4];
+		final float[] expected = new float[16], actual = new float[16];
+		// 10 to 350 degrees passes through 0, not 180
+		Quat.setAxisAngle(q0, 0, 10f, 0f, 0f, 1f);
+		Quat.setAxisAngle(q1, 0, 350f, 0f, 0f, 1f);
+		Quat.slerp(qt, 0, q0, 0, q1, 0, 0.5f);
+		setRotateM(expected, 0, 0f, 0f, 0f, 1f);
+		Quat.toMatrix(actual, 0, qt, 0);
+		assertMatrix(expected, actual, 0, TOL);
+	}
+	@Test
+	public void slerpNearlyEqualIsUnit() {
+		final float[] q0 = new float[4], q1 = new float[4], qt = new float[4];
+		Quat.setAxisAngle(q0, 0, 30f, 1f, 2f, 3f);
+		Quat.setAxisAngle(q1, 0, 30.01f, 1f, 2f, 3f);
+		Quat.slerp(qt, 0, q0, 0, q1, 0, 0.5f);
+		final float len2 = qt[0]*qt[0] + qt[1]*qt[1] + qt[2]*qt[2] + qt[3]*qt[3];
+		assertEquals(1f, len2, TOL);
+	}
+}
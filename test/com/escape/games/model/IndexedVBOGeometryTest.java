@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.escape.games.resource.GLState;
+
+/**
+ * Index width and memory of indexed geometry over sample OBJ models.
+ * @author escape-llc
+ *
+ */
+public class IndexedVBOGeometryTest {
+	@After
+	public void tearDown() {
+		GLState.reset();
+	}
+	/* smooth grid; each interior vertex is shared by 6 triangles */
+	static String grid(int nn) {
+		final StringBuilder sb = new StringBuilder();
+		for(int iy = 0; iy <= nn; iy++) {
+			for(int ix = 0; ix <= nn; ix++) {
+				sb.append("v ").append(ix).append(' ').append(iy).append(" 0\n");
+				sb.append("vt ").append(ix/(float)nn).append(' ').append(iy/(float)nn).append('\n');
+			}
+		}
+		sb.append("vn 0 0 1\n");
+		for(int iy = 0; iy < nn; iy++) {
+			for(int ix = 0; ix < nn; ix++) {
+				final int a = iy*(nn + 1) + ix + 1, b = a + 1, c = a + nn + 1, d = c + 1;
+				sb.append("f ").append(a).append('/').append(a).append("/1 ").append(b).append('/').append(b).append("/1 ").append(d).append('/').append(d).append("/1 ").append(c).append('/').append(c).append("/1\n");
+			}
+		}
+		return sb.toString();
+	}
+	/* faceted cube; corners are not shared between faces */
+	static String cube() {
+		return "v -1 -1 -1\nv 1 -1 -1\nv 1 1 -1\nv -1 1 -1\nv -1 -1 1\nv 1 -1 1\nv 1 1 1\nv -1 1 1\n"
+			+ "vn 0 0 -1\nvn 0 0 1\nvn 0 -1 0\nvn 0 1 0\nvn -1 0 0\nvn 1 0 0\n"
+			+ "f 1//1 4//1 3//1 2//1\nf 5//2 6//2 7//2 8//2\nf 1//3 2//3 6//3 5//3\n"
+			+ "f 4//4 8//4 7//4 3//4\nf 1//5 5//5 8//5 4//5\nf 2//6 3//6 7//6 6//6\n";
+	}
+	/* UV sphere with smooth normals */
+	static String sphere(int rings, int sectors) {
+		final StringBuilder sb = new StringBuilder();
+		for(int rx = 0; rx <= rings; rx++) {
+			final double phi = Math.PI*rx/rings;
+			for(int sx = 0; sx < sectors; sx++) {
+				final double theta = 2*Math.PI*sx/sectors;
+				final float x = (float)(Math.sin(phi)*Math.cos(theta)), y = (float)Math.cos(phi), z = (float)(Math.sin(phi)*Math.sin(theta));
+				sb.append("v ").append(x).append(' ').append(y).append(' ').append(z).append('\n');
+				sb.append("vn ").append(x).append(' ').append(y).append(' ').append(z).append('\n');
+			}
+		}
+		for(int rx = 0; rx < rings; rx++) {
+			for(int sx = 0; sx < sectors; sx++) {
+				final int a = rx*sectors + sx + 1, b = rx*sectors + (sx + 1)%sectors + 1, c = a + sectors, d = b + sectors;
+				sb.append("f ").append(a).append("//").append(a).append(' ').append(c).append("//").append(c).append(' ').append(d).append("//").append(d).append('\n');
+				sb.append("f ").append(a).append("//").append(a).append(' ').append(d).append("//").append(d).append(' ').append(b).append("//").append(b).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+	static OBJParser parse(String obj) throws Exception {
+		final OBJParser op = new OBJParser(1024, 1024, 0);
+		op.parse(new ByteArrayInputStream(obj.getBytes("US-ASCII")));
+		return op;
+	}
+	/* bytes of indexed vertices plus indices over bytes of one vertex per corner */
+	static float ratio(OBJParser op) {
+		final IndexedVBOGeometry ivg = op.indexedAttributes();
+		final InterleavedVertexGeometry expanded = op.vertexAttributes();
+		assertEquals(ivg.getIndexCount(), expanded.getVertexCount());
+		final int stride = ivg.ivg.stride;
+		final int isize = ivg.getIndexType() == android.opengl.GLES20.GL_UNSIGNED_SHORT ? Geometry.SHORT_BYTES : Geometry.FLOAT_BYTES;
+		final long indexed = (long)ivg.getVertexCount()*stride + (long)ivg.getIndexCount()*isize;
+		final long flat = (long)expanded.getVertexCount()*expanded.stride;
+		return indexed/(float)flat;
+	}
+	@Test
+	public void smoothGridShrinks() throws Exception {
+		// 4 vertices per quad shared; 6 corners per quad expanded
+		assertTrue(ratio(parse(grid(64))) < 0.3f);
+	}
+	@Test
+	public void smoothSphereShrinks() throws Exception {
+		assertTrue(ratio(parse(sphere(32, 48))) < 0.3f);
+	}
+	@Test
+	public void facetedCubeShrinks() throws Exception {
+		// 24 unique of 36 corners
+		final OBJParser op = parse(cube());
+		assertEquals(24, op.getVertexCount());
+		assertTrue(ratio(op) < 0.8f);
+	}
+	@Test
+	public void narrowIndicesUpTo65536() {
+		final int[] src = { 0, 1, 0xffff };
+		assertTrue(IndexedVBOGeometry.makeIndices(src, src.length, 0x10000) instanceof ShortBuffer);
+		assertTrue(IndexedVBOGeometry.makeIndices(src, src.length, 0x10001) instanceof IntBuffer);
+		assertEquals((short)0xffff, ((ShortBuffer)IndexedVBOGeometry.makeIndices(src, src.length, 0x10000)).get(2));
+	}
+	@Test(expected = IllegalStateException.class)
+	public void wideIndicesRejectedWithoutExtension() {
+		final IndexedVBOGeometry ivg = wide();
+		ivg.load(null, null);
+	}
+	static IndexedVBOGeometry wide() {
+		final int vc = 0x10001;
+		final float[] vas = new float[vc*3];
+		final int[] src = { 0, 1, vc - 1 };
+		return new IndexedVBOGeometry(new InterleavedVertexGeometry(vas, new int[] { 3, 0, 0, 0 }), IndexedVBOGeometry.makeIndices(src, src.length, vc));
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.escape.games.gl.GL;
+import com.escape.games.gl.GLES;
+import com.escape.games.gl.RecordingGLES;
+import com.escape.games.resource.GLState;
+import com.escape.games.resource.Shader;
+
+/**
+ * Vertex attribute arrays enabled at each draw, for geometries of different layouts sharing a shader.
+ * @author escape-llc
+ *
+ */
+public class InterleavedVertexGeometryTest {
+	static final String VERTEX = "uniform mat4 uMVPMatrix;\nattribute vec4 aPosition;\nattribute vec4 aColor;\nattribute vec2 aTextureCoord;\n"
+		+ "varying vec4 vColor;\nvoid main() { vColor = aColor; gl_Position = uMVPMatrix * aPosition; }\n";
+	static final String FRAGMENT = "precision mediump float;\nvarying vec4 vColor;\nvoid main() { gl_FragColor = vColor; }\n";
+	RecordingGLES rec;
+	GLES saved;
+	@Before
+	public void setUp() {
+		rec = new RecordingGLES();
+		saved = GL.setBackend(rec);
+		GLState.reset();
+	}
+	@After
+	public void tearDown() {
+		GL.setBackend(saved);
+		GLState.reset();
+	}
+	/* replay the call stream; for each draw, the enabled arrays and the arrays pointed since the previous draw */
+	static void assertEnabledMatchesSet(List<RecordingGLES.Call> calls, int draws) {
+		final List<Integer> enabled = new ArrayList<Integer>(), set = new ArrayList<Integer>();
+		int seen = 0;
+		boolean drawn = false;
+		for(RecordingGLES.Call call : calls) {
+			if(call.name.equals("glEnableVertexAttribArray")) {
+				if(!enabled.contains(call.args[0])) enabled.add((Integer)call.args[0]);
+			}
+			else if(call.name.equals("glDisableVertexAttribArray")) {
+				enabled.remove(call.args[0]);
+			}
+			else if(call.name.equals("glVertexAttribPointer")) {
+				if(drawn) {
+					set.clear();
+					drawn = false;
+				}
+				if(!set.contains(call.args[0])) set.add((Integer)call.args[0]);
+			}
+			else if(call.name.startsWith("glDraw")) {
+				assertEquals("draw " + seen, set.size(), enabled.size());
+				assertTrue("draw " + seen, enabled.containsAll(set));
+				drawn = true;
+				seen++;
+			}
+		}
+		assertEquals(draws, seen);
+	}
+	@Test
+	public void unusedAttributesDisabledPerDraw() {
+		final Shader sx = new Shader(VERTEX, FRAGMENT);
+		sx.load(null);
+		// position, color, texture
+		final InterleavedVertexGeometry full = new InterleavedVertexGeometry(new float[3*9], new int[] { 3, 0, 4, 2 });
+		// position only
+		final InterleavedVertexGeometry bare = new InterleavedVertexGeometry(new float[3*3], new int[] { 3, 0, 0, 0 });
+		full.load(null, null);
+		bare.load(null, null);
+		rec.clear();
+		sx.setup();
+		full.render(sx, null);
+		bare.render(sx, null);
+		full.render(sx, null);
+		bare.render(sx, null);
+		sx.teardown();
+		assertEnabledMatchesSet(rec.calls(), 4);
+		// color and texture arrays go off before each position-only draw
+		assertEquals(4, rec.count("glDisableVertexAttribArray") - countDisablesBeforeFirstDraw(rec.calls()));
+	}
+	static int countDisablesBeforeFirstDraw(List<RecordingGLES.Call> calls) {
+		int count = 0;
+		for(RecordingGLES.Call call : calls) {
+			if(call.name.startsWith("glDraw")) break;
+			if(call.name.equals("glDisableVertexAttribArray")) count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.escape.games.api.Properties;
+import com.escape.games.api.RenderContext;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.math.Mat4;
+import com.escape.games.resource.Shader;
+
+/**
+ * Level selection by distance and screen size, hysteresis, draw counts, and single ownership.
+ * @author escape-llc
+ *
+ */
+public class LODGeometryTest {
+	static final class Level extends Geometry {
+		int loads;
+		int unloads;
+		protected void internalLoad(ResourceLoader rl, Services svc) { loads++; }
+		@Override
+		protected void internalUnload(ResourceLoader rl) { unloads++; }
+		public void render(Shader sx, Properties px) { }
+		public int getVertexCount() { return 0; }
+	}
+	/* camera at the origin; only the position and P[5] are used */
+	static final class Camera implements RenderContext {
+		final float[] eye = new float[3];
+		final float[] matrixP = new float[16];
+		Camera(float pscale) {
+			Mat4.setIdentity(matrixP, 0);
+			matrixP[5] = pscale;
+		}
+		public void activateShader(Shader sx) { }
+		public void usingModel(float[] matrixM) { }
+		public void usingModel(MatrixCache mc) { }
+		public float[] matrixV() { return null; }
+		public float[] matrixVP() { return null; }
+		public float[] matrixP() { return matrixP; }
+		public float[] cameraPosition() { return eye; }
+	}
+	final Camera camera = new Camera(2f);
+	final float[] matrixM = new float[16];
+	static LODGeometry distance() {
+		return new LODGeometry(new Geometry[] { new Level(), new Level(), new Level() }, new float[] { 10f, 20f }, 0.1f);
+	}
+	/* place the object on the Z axis at dist, with uniform scale, and select */
+	int at(LODGeometry lod, float dist, float scale) {
+		Mat4.setIdentity(matrixM, 0);
+		matrixM[0] = matrixM[5] = matrixM[10] = scale;
+		matrixM[14] = -dist;
+		lod.prepare(camera, matrixM);
+		return lod.getLevel();
+	}
+	int at(LODGeometry lod, float dist) {
+		return at(lod, dist, 1f);
+	}
+	@Test
+	public void distanceSelectsLevel() {
+		final LODGeometry lod = distance();
+		assertEquals(0, at(lod, 5f));
+		// past each threshold by more than 10%
+		assertEquals(1, at(lod, 11.5f));
+		assertEquals(2, at(lod, 22.5f));
+		assertEquals(1, at(lod, 17.5f));
+		assertEquals(0, at(lod, 8.5f));
+		// several levels in one frame
+		assertEquals(2, at(lod, 100f));
+		assertEquals(0, at(lod, 1f));
+	}
+	@Test
+	public void hysteresisBothSides() {
+		final LODGeometry lod = distance();
+		// moving out: the band 9..11 keeps level 0
+		assertEquals(0, at(lod, 10.5f));
+		assertEquals(0, at(lod, 10.99f));
+		assertEquals(1, at(lod, 11.01f));
+		// moving in: the same band keeps level 1
+		assertEquals(1, at(lod, 9.5f));
+		assertEquals(1, at(lod, 9.01f));
+		assertEquals(0, at(lod, 8.99f));
+	}
+	@Test
+	public void noFlappingInsideBand() {
+		final LODGeometry lod = distance();
+		for(int ix = 0; ix < 100; ix++) {
+			assertEquals(0, at(lod, ix % 2 == 0 ? 9.5f : 10.5f));
+		}
+		assertEquals(1, at(lod, 12f));
+		for(int ix = 0; ix < 100; ix++) {
+			assertEquals(1, at(lod, ix % 2 == 0 ? 9.5f : 10.5f));
+		}
+	}
+	@Test
+	public void screenSizeSelectsLevel() {
+		// radius 1, P[5] 2: a half-height object at distance 4, a tenth at 20
+		final LODGeometry lod = new LODGeometry(new Geometry[] { new Level(), new Level(), new Level() }, new float[] { 0.5f, 0.1f }, LODGeometry.MODE_SCREEN_SIZE, 0.1f, 1f);
+		assertEquals(0, at(lod, 3f));
+		assertEquals(0, at(lod, 4.2f));
+		assertEquals(1, at(lod, 4.5f));
+		assertEquals(1, at(lod, 21f));
+		assertEquals(2, at(lod, 23f));
+		assertEquals(2, at(lod, 18.5f));
+		assertEquals(1, at(lod, 17.5f));
+		// twice the scale covers the same screen size at twice the distance
+		assertEquals(0, at(lod, 7f, 2f));
+		assertEquals(1, at(lod, 9f, 2f));
+		// narrower field of view (larger P[5]) magnifies
+		camera.matrixP[5] = 4f;
+		assertEquals(0, at(lod, 7f, 1f));
+	}
+	@Test
+	public void drawCountsPerLevel() {
+		final LODGeometry lod = distance();
+		at(lod, 5f);
+		lod.render(null, null);
+		lod.render(null, null);
+		at(lod, 15f);
+		lod.render(null, null);
+		at(lod, 50f);
+		lod.render(null, null);
+		lod.render(null, null);
+		lod.render(null, null);
+		assertEquals(2, lod.getDrawCount(0));
+		assertEquals(1, lod.getDrawCount(1));
+		assertEquals(3, lod.getDrawCount(2));
+		lod.resetDrawCounts();
+		for(int ix = 0; ix < lod.getLevelCount(); ix++) {
+			assertEquals(0, lod.getDrawCount(ix));
+		}
+	}
+	@Test(expected = IllegalStateException.class)
+	public void secondOwnerRejected() {
+		final LODGeometry lod = new LODGeometry(new Geometry[] { new Level(), new Level() }, new float[] { 10f }, 0.1f);
+		lod.load(null, null);
+		lod.load(null, null);
+	}
+	@Test
+	public void levelsMayBeShared() {
+		final Level shared = new Level();
+		final LODGeometry l1 = new LODGeometry(new Geometry[] { shared }, new float[0], 0.1f);
+		final LODGeometry l2 = new LODGeometry(new Geometry[] { shared }, new float[0], 0.1f);
+		l1.load(null, null);
+		l2.load(null, null);
+		assertEquals(1, shared.loads);
+		l1.unload();
+		assertEquals(0, shared.unloads);
+		l2.unload();
+		assertEquals(1, shared.unloads);
+	}
+	@Test
+	public void reloadAfterUnload() {
+		final LODGeometry lod = new LODGeometry(new Geometry[] { new Level() }, new float[0], 0.1f);
+		lod.load(null, null);
+		lod.unload();
+		lod.load(null, null);
+		lod.unload();
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Hierarchy traversal against a brute-force loop over every triangle.
+ * @author escape-llc
+ *
+ */
+public class MeshBVHTest {
+	static final int RAYS = 4000;
+	/* random triangle soup in a 10-unit cube; NULL indices */
+	static float[] soup(Random rx, int count) {
+		final float[] pos = new float[count*9];
+		for(int tx = 0; tx < count; tx++) {
+			final float cx = rx.nextFloat()*10f, cy = rx.nextFloat()*10f, cz = rx.nextFloat()*10f;
+			for(int vx = 0; vx < 9; vx++) {
+				pos[tx*9 + vx] = (vx % 3 == 0 ? cx : vx % 3 == 1 ? cy : cz) + (rx.nextFloat() - .5f);
+			}
+		}
+		return pos;
+	}
+	/* smooth indexed grid over a bumpy height field */
+	static MeshBVH terrain(int nn) {
+		final float[] pos = new float[(nn + 1)*(nn + 1)*3];
+		for(int iy = 0, vx = 0; iy <= nn; iy++) {
+			for(int ix = 0; ix <= nn; ix++, vx += 3) {
+				pos[vx] = ix;
+				pos[vx + 1] = (float)(Math.sin(ix*.7)*Math.cos(iy*.4));
+				pos[vx + 2] = iy;
+			}
+		}
+		final int[] indices = new int[nn*nn*6];
+		for(int iy = 0, ix3 = 0; iy < nn; iy++) {
+			for(int ix = 0; ix < nn; ix++) {
+				final int a = iy*(nn + 1) + ix, b = a + 1, c = a + nn + 1, d = c + 1;
+				indices[ix3++] = a; indices[ix3++] = b; indices[ix3++] = d;
+				indices[ix3++] = a; indices[ix3++] = d; indices[ix3++] = c;
+			}
+		}
+		return new MeshBVH(pos, indices);
+	}
+	/* closest hit over all triangles; hit receives t, u, v */
+	static int brute(MeshBVH mesh, float ox, float oy, float oz, float dx, float dy, float dz, float[] hit) {
+		final float[] scratch = new float[3];
+		float best = Float.POSITIVE_INFINITY;
+		int found = -1;
+		for(int tri = 0; tri < mesh.getTriangleCount(); tri++) {
+			final float tt = mesh.triangle(tri, ox, oy, oz, dx, dy, dz, best, scratch);
+			if(tt < best) {
+				best = tt;
+				found = tri;
+				System.arraycopy(scratch, 0, hit, 0, 3);
+			}
+		}
+		return found;
+	}
+	static void assertSameAsBrute(MeshBVH mesh, Random rx, float lo, float hi) {
+		final int[] stack = new int[MeshBVH.STACK_SIZE];
+		final float[] hb = new float[3], hv = new float[3];
+		int hits = 0;
+		for(int ix = 0; ix < RAYS; ix++) {
+			final float ox = lo + rx.nextFloat()*(hi - lo), oy = lo + rx.nextFloat()*(hi - lo), oz = lo + rx.nextFloat()*(hi - lo);
+			// aim through the volume so most rays hit something
+			final float tx = lo + rx.nextFloat()*(hi - lo), ty = lo + rx.nextFloat()*(hi - lo), tz = lo + rx.nextFloat()*(hi - lo);
+			final float dx = tx - ox, dy = ty - oy, dz = tz - oz;
+			final int expected = brute(mesh, ox, oy, oz, dx, dy, dz, hb);
+			final int actual = mesh.intersect(ox, oy, oz, dx, dy, dz, Float.POSITIVE_INFINITY, stack, hv);
+			if(expected < 0) {
+				assertEquals("ray " + ix, -1, actual);
+				continue;
+			}
+			hits++;
+			assertTrue("ray " + ix, actual >= 0);
+			// a shared edge may report either neighbor; the distance must agree
+			assertEquals("ray " + ix, hb[0], hv[0], 0f);
+			if(actual == expected) {
+				assertEquals(hb[1], hv[1], 0f);
+				assertEquals(hb[2], hv[2], 0f);
+			}
+		}
+		assertTrue(hits > RAYS/10);
+	}
+	@Test
+	public void soupMatchesBruteForce() {
+		final Random rx = new Random(7);
+		final MeshBVH mesh = new MeshBVH(soup(rx, 2000), null);
+		assertTrue(mesh.getNodeCount() > 1);
+		assertSameAsBrute(mesh, rx, -2f, 12f);
+	}
+	@Test
+	public void indexedMatchesBruteForce() {
+		final Random rx = new Random(9);
+		assertSameAsBrute(terrain(48), rx, -1f, 49f);
+	}
+	@Test
+	public void tmaxLimitsHits() {
+		final MeshBVH mesh = terrain(8);
+		final int[] stack = new int[MeshBVH.STACK_SIZE];
+		final float[] hit = new float[3];
+		// straight down from y = 5; heights are within 1 of 0, so the hit is 4 to 6 units away
+		assertTrue(mesh.intersect(2.5f, 5f, .5f, 0f, -1f, 0f, Float.POSITIVE_INFINITY, stack, hit) >= 0);
+		assertTrue(mesh.intersect(2.5f, 5f, .5f, 0f, -1f, 0f, 3f, stack, hit) < 0);
+	}
+	@Test
+	public void barycentricHit() {
+		final MeshBVH mesh = new MeshBVH(new float[] { 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f, 0f }, null);
+		final float[] hit = new float[3];
+		final int tri = mesh.intersect(.25f, .5f, 2f, 0f, 0f, -1f, Float.POSITIVE_INFINITY, new int[MeshBVH.STACK_SIZE], hit);
+		assertEquals(0, tri);
+		assertEquals(2f, hit[0], 1e-6f);
+		assertEquals(.25f, hit[1], 1e-6f);
+		assertEquals(.5f, hit[2], 1e-6f);
+	}
+}
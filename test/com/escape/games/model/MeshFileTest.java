@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.junit.Test;
+
+/**
+ * Mesh file round trip and header validation.
+ * @author escape-llc
+ *
+ */
+public class MeshFileTest {
+	static final int[] ELEMS = { 3, 0, 0, 2 };
+	static byte[] quad(int vc) throws Exception {
+		final float[] vas = new float[vc*5];
+		for(int ix = 0; ix < vas.length; ix++) {
+			vas[ix] = ix;
+		}
+		final int[] indices = { 0, 1, 2, 2, 1, vc - 1 };
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		MeshFile.write(os, vas, ELEMS, vc, indices, indices.length);
+		return os.toByteArray();
+	}
+	@Test
+	public void roundTrip() throws Exception {
+		final MeshFile mf = new MeshFile(ByteBuffer.wrap(quad(4)));
+		assertEquals(4, mf.getVertexCount());
+		assertEquals(6, mf.getIndexCount());
+		assertArrayEquals(ELEMS, mf.getElems());
+		final FloatBuffer fb = mf.getVertices();
+		assertEquals(20, fb.remaining());
+		assertEquals(19f, fb.get(19), 0f);
+		final ShortBuffer sb = (ShortBuffer)mf.getIndices();
+		assertEquals(3, sb.get(5));
+	}
+	@Test
+	public void wideIndices() throws Exception {
+		final MeshFile mf = new MeshFile(ByteBuffer.wrap(quad(0x10001)));
+		final IntBuffer ib = (IntBuffer)mf.getIndices();
+		assertEquals(0x10000, ib.get(5));
+	}
+	@Test
+	public void unsignedShortIndices() throws Exception {
+		// 0xffff reads back as a negative short
+		final MeshFile mf = new MeshFile(ByteBuffer.wrap(quad(0x10000)));
+		assertEquals((short)0xffff, ((ShortBuffer)mf.getIndices()).get(5));
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void writeRejectsIndexOutOfRange() throws Exception {
+		MeshFile.write(new ByteArrayOutputStream(), new float[15], ELEMS, 3, new int[] { 0, 1, 3 }, 3);
+	}
+	@Test
+	public void readRejectsIndexOutOfRange() throws Exception {
+		final byte[] src = quad(4);
+		// last index -> vertex 4 of 4
+		ByteBuffer.wrap(src).order(ByteOrder.LITTLE_ENDIAN).putShort(MeshFile.HEADER_SIZE + 4*5*4 + 5*2, (short)4);
+		try {
+			new MeshFile(ByteBuffer.wrap(src));
+			fail("accepted index out of range");
+		}
+		catch(IllegalArgumentException ex) {
+			assertEquals("indices", ex.getMessage());
+		}
+	}
+	@Test
+	public void readRejectsOverflowingVertexCount() throws Exception {
+		final byte[] src = quad(4);
+		// 214748365 vertices * 20 bytes wraps an int to 4
+		ByteBuffer.wrap(src).order(ByteOrder.LITTLE_ENDIAN).putInt(24, 214748365).putInt(28, 0);
+		try {
+			new MeshFile(ByteBuffer.wrap(src));
+			fail("accepted vertex count beyond the data");
+		}
+		catch(IllegalArgumentException ex) {
+			assertEquals("length", ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.escape.games.Benchmark;
+
+/**
+ * Timings of OBJParser against OBJParserReference, and of parallel parse() by thread count; not part of the test run.
+ * @author escape-llc
+ *
+ */
+public class OBJParserBenchmark {
+	static void report(String name, long nanos, double mb) {
+		Benchmark.report(name, nanos, mb, "MB");
+	}
+	public static void main(String[] args) throws Exception {
+		final byte[] src = OBJParserTest.model(128, 256, false).getBytes("US-ASCII");
+		final double mb = src.length/1e6;
+		System.out.println(String.format(Locale.US, "model %.2f MB", mb));
+		report("reference stream", Benchmark.best(new Benchmark.Pass() {
+			public void run() throws Exception {
+				new OBJParserReference(100, 20, OBJParser.OPTION_NO_OPTIMIZE).parse(new ByteArrayInputStream(src));
+			}
+		}), mb);
+		report("stream", Benchmark.best(new Benchmark.Pass() {
+			public void run() throws Exception {
+				new OBJParser(100, 20, OBJParser.OPTION_NO_OPTIMIZE).parse(new ByteArrayInputStream(src));
+			}
+		}), mb);
+		report("buffer", Benchmark.best(new Benchmark.Pass() {
+			public void run() throws Exception {
+				new OBJParser(100, 20, OBJParser.OPTION_NO_OPTIMIZE).parse(ByteBuffer.wrap(src));
+			}
+		}), mb);
+		// scaling; all threads but the caller come from the pool
+		final ExecutorService exec = Executors.newFixedThreadPool(7);
+		try {
+			for(int threads = 1; threads <= 8; threads++) {
+				final int chunks = threads;
+				report(threads + " thread(s)", Benchmark.best(new Benchmark.Pass() {
+					public void run() throws Exception {
+						new OBJParser(100, 20, OBJParser.OPTION_NO_OPTIMIZE).parse(ByteBuffer.wrap(src), exec, chunks);
+					}
+				}), mb);
+			}
+		}
+		finally {
+			exec.shutdown();
+		}
+		// numbers alone
+		final Random rx = new Random(3);
+		final String[] texts = new String[100000];
+		final StringBuilder sb = new StringBuilder();
+		for(int ix = 0; ix < texts.length; ix++) {
+			texts[ix] = String.format(Locale.US, "%.6f", (rx.nextDouble() - .5)*20);
+			sb.append(texts[ix]).append(' ');
+		}
+		final byte[] numbers = sb.toString().getBytes("US-ASCII");
+		final ByteBuffer bb = ByteBuffer.wrap(numbers);
+		final double nmb = numbers.length/1e6;
+		final float[] sink = new float[1];
+		report("Float.parseFloat", Benchmark.best(new Benchmark.Pass() {
+			public void run() {
+				for(final String text : texts) {
+					sink[0] += Float.parseFloat(text);
+				}
+			}
+		}), nmb);
+		report("OBJParser.parseFloat", Benchmark.best(new Benchmark.Pass() {
+			public void run() {
+				int start = 0;
+				for(final String text : texts) {
+					sink[0] += OBJParser.parseFloat(bb, start, start + text.length());
+					start += text.length() + 1;
+				}
+			}
+		}), nmb);
+		if(sink[0] == 42f) System.out.println();
+	}
+}
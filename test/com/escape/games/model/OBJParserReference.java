@@ -0,0 +1,459 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+/**
+ * Line-at-a-time OBJ parser OBJParser replaced, kept unchanged as the reference its output is checked against.
+ * Parses each line as a String with split() and Float.parseFloat().
+ * @author escape-llc
+ *
+ */
+public class OBJParserReference {
+	static final String TAG = "OBJ2";
+	static final String VERTEX = "v";
+	static final String NORMAL = "vn";
+	static final String TEXTURE = "vt";
+	static final String FACE = "f";
+	/** parse option: ignore vertex normals */
+	public static final int OPTION_IGNORE_NORMAL = (1<<0);
+	/** parse option: ignore texture coords */
+	public static final int OPTION_IGNORE_TEXTURE = (1<<1);
+	/** texture option: invert U (1-u) */
+	public static final int OPTION_TEXTURE_INVERTU = (1<<2);
+	/** texture option: invert V (1-v) */
+	public static final int OPTION_TEXTURE_INVERTV = (1<<3);
+	/** parse option: skip vertex cache optimization */
+	public static final int OPTION_NO_OPTIMIZE = (1<<4);
+	private InterleavedPage mainBuffer;
+	private int[] mainElems;
+	/* triangle list into mainBuffer */
+	private int[] indices;
+	private int indexCount;
+	private final int capacity;
+	private final int expandBy;
+	private final int options;
+	/* unique (position, texture, normal) tuples; 3 per vertex */
+	private int[] keys;
+	/* open-addressed hash of vertex id + 1; 0: empty */
+	private int[] table;
+	private int unique;
+	private final MeshOptimizer optimizer = new MeshOptimizer();
+	/**
+	 * Ctor.
+	 * @param capacity Initial capacity for buffers.
+	 * @param expandBy Expand capacity for buffers.
+	 * @param options Parsing options.
+	 */
+	public OBJParserReference(int capacity, int expandBy, int options) {
+		this.capacity = capacity;
+		this.expandBy = expandBy;
+		this.options = options;
+	}
+	
+	/**
+	 * Return the geometry created by the parse, one vertex per triangle corner.
+	 * Expands the index list; prefer indexedAttributes().
+	 * @return New geometry instance.
+	 * @throws IllegalArgumentException buffer was not created by parse().
+	 */
+	public InterleavedVertexGeometry vertexAttributes() {
+		if(mainBuffer == null) throw new IllegalArgumentException("parse() did not create data");
+		final int stride = mainBuffer.stride;
+		final float[] vas = new float[indexCount*stride];
+		for(int ix = 0; ix < indexCount; ix++) {
+			mainBuffer.copyTo(indices[ix], vas, ix*stride);
+		}
+		return new InterleavedVertexGeometry(vas, mainElems);
+	}
+	/**
+	 * Return the geometry created by the parse, as unique vertices plus an index list.
+	 * @return New geometry instance.
+	 * @throws IllegalArgumentException buffer was not created by parse().
+	 */
+	public IndexedVBOGeometry indexedAttributes() {
+		return indexedAttributes(null);
+	}
+	/**
+	 * Return the geometry created by the parse, as unique vertices plus an index list.
+	 * @param format Vertex encoding in the VBO; NULL: all FLOAT.
+	 * @return New geometry instance.
+	 * @throws IllegalArgumentException buffer was not created by parse().
+	 */
+	public IndexedVBOGeometry indexedAttributes(VertexFormat format) {
+		if(mainBuffer == null) throw new IllegalArgumentException("parse() did not create data");
+		return new IndexedVBOGeometry(mainBuffer.createGeometry(), IndexedVBOGeometry.makeIndices(indices, indexCount, mainBuffer.count()), format);
+	}
+	/**
+	 * Return the number of unique vertices from the last parse.
+	 * @return count.
+	 */
+	public int getVertexCount() { return mainBuffer != null ? mainBuffer.count() : 0; }
+	/**
+	 * Return the number of indices (3 per triangle) from the last parse.
+	 * @return count.
+	 */
+	public int getIndexCount() { return indexCount; }
+	/**
+	 * Return the optimizer; holds ACMR of the last parse unless OPTION_NO_OPTIMIZE.
+	 * @return optimizer.
+	 */
+	public MeshOptimizer getOptimizer() { return optimizer; }
+	public int getElementType() { return GLES20.GL_TRIANGLES; }
+	/**
+	 * Parse the OBJ stream and populate buffers.
+	 * @param is
+	 * @throws Exception
+	 */
+	public void parse(InputStream is) throws Exception {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(is));
+		try {
+			load(in);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException ioe) {
+			}
+		}
+	}
+	/**
+	 * Return the index of whitespace character or one-past end-of-string.
+	 * To repeat the call, add one to the return value of previous call, or zero for initial.
+	 * @param line Source string.
+	 * @param startat Starting index.
+	 * @return Ending index. Points to either whitespace or one-past end-of-string.
+	 */
+	int advance(String line, int startat) {
+		int endat = startat;
+		while(endat < line.length() && !Character.isWhitespace(line.charAt(endat))) {
+			endat++;
+		}
+		return endat;
+	}
+	/**
+	 * Same as advance() but with specific delimiter.
+	 * @param line Source string.
+	 * @param delim Delimiter to search for.
+	 * @param startat Starting index.
+	 * @return Ending index. Points to either DELIM or one-past end-of-string.
+	 */
+	int advance(String line, char delim, int startat) {
+		int endat = startat;
+		while(endat < line.length() && delim != line.charAt(endat)) {
+			endat++;
+		}
+		return endat;
+	}
+	/**
+	 * Parse a float using return and parameters from advance().
+	 * int endat = advance(line, startat);
+	 * final float vx = parse(line, startat, endat);
+	 * if(endat >= line.length()) newlinetime();
+	 * startat = endat + 1;
+	 * endat = advance(line, startat);
+	 * thenextone();
+	 * ...
+	 * @param line Source string.
+	 * @param startat Starting index.
+	 * @param endat Ending index.
+	 * @return
+	 */
+	float parse(String line, int startat, int endat) {
+		return Float.parseFloat(line.substring(startat, endat));
+	}
+	/**
+	 * Parse integer version.
+	 * @param line Source string.
+	 * @param startat Starting index.
+	 * @param endat Ending index.
+	 * @return
+	 */
+	int parseInt(String line, int startat, int endat) {
+		return Integer.parseInt(line.substring(startat, endat));
+	}
+	/**
+	 * Parse 3 floats and do put3d().
+	 * @param fp Target page.
+	 * @param line Source line.
+	 * @param start Source start position (first char of first float).
+	 */
+	void parse3d(FloatPage fp, String line, int start) {
+		int startat = start;
+		int endat = advance(line, startat);
+		final float f0 = parse(line, startat, endat);
+		startat = endat + 1;
+		endat = advance(line, startat);
+		final float f1 = parse(line, startat, endat);
+		startat = endat + 1;
+		endat = advance(line, startat);
+		final float f2 = parse(line, startat, endat);
+		fp.put3d(f0, f1, f2);
+	}
+	/**
+	 * Resolve an OBJ index: 1-based, or negative relative to the end.
+	 * @param value Parsed value.
+	 * @param count Elements defined so far.
+	 * @return 0-based index.
+	 */
+	static int resolve(int value, int count) {
+		return value < 0 ? count + value : value - 1;
+	}
+	/**
+	 * Return the vertex id for a tuple, adding it to the page if new.
+	 * @param ip Target page.
+	 * @param pages Source pages.
+	 * @param corner Position, normal, color, texture indices.
+	 * @return vertex id.
+	 */
+	int vertex(InterleavedPage ip, FloatPage[] pages, int[] corner) {
+		final int pp = corner[InterleavedVertexGeometry.IX_POSITION];
+		final int tt = corner[InterleavedVertexGeometry.IX_TEXTURE];
+		final int nn = corner[InterleavedVertexGeometry.IX_NORMAL];
+		int hash = pp*0x9E3779B1 ^ tt*0x85EBCA77 ^ nn*0xC2B2AE3D;
+		hash ^= hash >>> 15;
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		int id;
+		while((id = table[slot]) != 0) {
+			final int ko = (id - 1)*3;
+			if(keys[ko] == pp && keys[ko + 1] == tt && keys[ko + 2] == nn) return id - 1;
+			slot = (slot + 1) & mask;
+		}
+		id = unique++;
+		if(keys.length < unique*3) {
+			keys = Arrays.copyOf(keys, keys.length*2);
+		}
+		keys[id*3] = pp;
+		keys[id*3 + 1] = tt;
+		keys[id*3 + 2] = nn;
+		table[slot] = id + 1;
+		ip.put(corner, pages);
+		if(unique*2 > table.length) {
+			rehash(table.length*2);
+		}
+		return id;
+	}
+	void rehash(int size) {
+		final int[] nt = new int[size];
+		final int mask = size - 1;
+		for(int id = 0; id < unique; id++) {
+			final int ko = id*3;
+			int hash = keys[ko]*0x9E3779B1 ^ keys[ko + 1]*0x85EBCA77 ^ keys[ko + 2]*0xC2B2AE3D;
+			hash ^= hash >>> 15;
+			int slot = hash & mask;
+			while(nt[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			nt[slot] = id + 1;
+		}
+		table = nt;
+	}
+	/**
+	 * Append a triangle to the index list.
+	 */
+	void triangle(int v0, int v1, int v2) {
+		if(indexCount + 3 > indices.length) {
+			indices = Arrays.copyOf(indices, indices.length*2);
+		}
+		indices[indexCount++] = v0;
+		indices[indexCount++] = v1;
+		indices[indexCount++] = v2;
+	}
+	/**
+	 * Corners sharing the same position, texture and normal indices become one vertex;
+	 * polygons are split into a triangle fan.
+	 * @param in Input source.
+	 * @throws Exception
+	 */
+	void load(BufferedReader in) throws Exception {
+		final FloatPage vertices = new FloatPage(3, capacity, expandBy);
+		final FloatPage normals = (options & OPTION_IGNORE_NORMAL) == 0 ? new FloatPage(3, capacity, expandBy) : null;
+		final FloatPage tcs = (options & OPTION_IGNORE_TEXTURE) == 0 ? new FloatPage(2, capacity, expandBy) : null;
+		final int[] corner = new int[4];
+		keys = new int[Math.max(capacity, 16)*3];
+		table = new int[Integer.highestOneBit(Math.max(capacity, 16)*2 - 1) << 1];
+		unique = 0;
+		indices = new int[Math.max(capacity, 16)*3];
+		indexCount = 0;
+		// these get established on the first face
+		FloatPage[] pages = null;
+		int[] elems = null;
+		InterleavedPage ip = null;
+		String line = in.readLine();
+		while(line != null) {
+			int endat = advance(line, 0);
+			final String type = line.substring(0, endat);
+			if (type.equals(VERTEX)) {
+				parse3d(vertices, line, endat + 1);
+			}
+			else if (type.equals(TEXTURE)) {
+				if(tcs != null) {
+					int startat = endat + 1;
+					endat = advance(line, startat);
+					final float f0 = parse(line, startat, endat);
+					startat = endat + 1;
+					endat = advance(line, startat);
+					final float f1 = parse(line, startat, endat);
+					tcs.put2d((options & OPTION_TEXTURE_INVERTU) == 0 ? f0 : 1f - f0, (options & OPTION_TEXTURE_INVERTV) == 0 ? f1 : 1f - f1);
+				}
+			}
+			else if (type.equals(NORMAL)) {
+				if(normals != null) {
+					parse3d(normals, line, endat + 1);
+				}
+			}
+			else if (type.equals(FACE)) {
+				if(ip == null) {
+					// initialize for final staging
+					pages = new FloatPage[] {
+						vertices,
+						normals != null && normals.count() > 0 ? normals : null,
+						null,
+						tcs != null && tcs.count() > 0 ? tcs : null
+					};
+					elems = new int[] {
+						3,
+						pages[InterleavedVertexGeometry.IX_NORMAL] != null && pages[InterleavedVertexGeometry.IX_NORMAL].count() > 0 ? 3 : 0,
+						pages[InterleavedVertexGeometry.IX_COLOR] != null && pages[InterleavedVertexGeometry.IX_COLOR].count() > 0 ? 4 : 0,
+						pages[InterleavedVertexGeometry.IX_TEXTURE] != null && pages[InterleavedVertexGeometry.IX_TEXTURE].count() > 0 ? 2 : 0
+					};
+					ip = new InterleavedPage(elems, vertices.count(), Math.max(vertices.count()/2, 1));
+				}
+				// Each line: f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3 ...
+				int first = -1, prev = -1, corners = 0;
+				int startat = endat + 1;
+				while(startat < line.length()) {
+					final int fendat = advance(line, startat);
+					if(fendat == startat) {
+						startat++;
+						continue;
+					}
+					corner[InterleavedVertexGeometry.IX_POSITION] = 0;
+					corner[InterleavedVertexGeometry.IX_NORMAL] = 0;
+					corner[InterleavedVertexGeometry.IX_COLOR] = 0;
+					corner[InterleavedVertexGeometry.IX_TEXTURE] = 0;
+					int fstartat = startat;
+					int ixc = 0;
+					while(fstartat < fendat) {
+						final int sendat = Math.min(advance(line, '/', fstartat), fendat);
+						if (fstartat != sendat) {
+							// non-empty string
+							final int value = parseInt(line, fstartat, sendat);
+							switch (ixc) {
+							case 0:
+								corner[InterleavedVertexGeometry.IX_POSITION] = resolve(value, vertices.count());
+								break;
+							case 1:
+								if(elems[InterleavedVertexGeometry.IX_TEXTURE] != 0)
+									corner[InterleavedVertexGeometry.IX_TEXTURE] = resolve(value, tcs.count());
+								break;
+							case 2:
+								if(elems[InterleavedVertexGeometry.IX_NORMAL] != 0)
+									corner[InterleavedVertexGeometry.IX_NORMAL] = resolve(value, normals.count());
+								break;
+							}
+						}
+						ixc++;
+						fstartat = sendat + 1;
+					}
+					final int vx = vertex(ip, pages, corner);
+					// fan (0, i, i+1)
+					if(corners == 0) {
+						first = vx;
+					}
+					else if(corners > 1) {
+						triangle(first, prev, vx);
+					}
+					prev = vx;
+					corners++;
+					startat = fendat + 1;
+				}
+			}
+			// next line
+			line = in.readLine();
+		}
+		// set the output buffer
+		if(ip != null && (options & OPTION_NO_OPTIMIZE) == 0) {
+			ip.current = optimizer.optimize(indices, indexCount, ip.buffer, ip.stride, ip.count());
+		}
+		mainBuffer = ip;
+		mainElems = elems;
+		keys = null;
+		table = null;
+	}
+
+	/**
+	 * Compute face normal of the I'th face.
+	 * 
+	 * @param vertices Source List of vertices.
+	 * @param normals Target List of normals.
+	 * @param ix the index of the face.
+	 * @param firstV first vertex of the triangle.
+	 * @param secondV second vertex of the triangle.
+	 * @param thirdV third vertex of the triangle.
+	 */
+	@SuppressWarnings("unused")
+	private void setFaceNormal(FloatPage vertices, FloatPage normals, int ix, int firstV, int secondV, int thirdV) {
+		// get coordinates of all the vertices
+		final float[] v1v2v3 = new float[9];
+		vertices.copyTo(firstV, v1v2v3, 0);
+		vertices.copyTo(secondV, v1v2v3, 3);
+		vertices.copyTo(thirdV, v1v2v3, 6);
+		
+		// calculate the cross product of v1-v2 and v3-v2
+		final float v1v2[] = { v1v2v3[0] - v1v2v3[3+0], v1v2v3[1] - v1v2v3[3+1], v1v2v3[2] - v1v2v3[3+2] };
+		final float v3v2[] = { v1v2v3[6+0] - v1v2v3[3+0], v1v2v3[6+1] - v1v2v3[3+1], v1v2v3[6+2] - v1v2v3[3+2] };
+
+		// Log.d("V1V2: ", v1v2[0] + "," + v1v2[1] + "," + v1v2[2]);
+		// Log.d("V3V2: ", v3v2[0] + "," + v3v2[1] + "," + v3v2[2]);
+		final float cp[] = new float[3];
+		Geometry.crossProduct(cp, 0, v1v2, 0, v3v2, 0);
+		Geometry.normalize(cp, 0);
+
+		// set the face normal
+		/*
+		_faceNormals[ix * 3] = cp[0];
+		_faceNormals[ix * 3 + 1] = cp[1];
+		_faceNormals[ix * 3 + 2] = cp[2];
+		*/
+		// Log.d("NORMAL:", cp[0] + "," + cp[1] + "," + cp[2]);
+
+		// Setup for vertex normal construction;
+		/*
+		 * _normals[firstV * 3] += _faceNormals[i * 3]; _normals[firstV * 3 + 1]
+		 * += _faceNormals[i * 3 + 1]; _normals[firstV * 3 + 2] +=
+		 * _faceNormals[i * 3 + 2];
+		 * 
+		 * _normals[secondV * 3] += _faceNormals[i * 3]; _normals[secondV * 3 +
+		 * 1] += _faceNormals[i * 3 + 1]; _normals[secondV * 3 + 2] +=
+		 * _faceNormals[i * 3 + 2];
+		 * 
+		 * _normals[thirdV * 3] += _faceNormals[i * 3]; _normals[thirdV * 3 + 1]
+		 * += _faceNormals[i * 3 + 1]; _normals[thirdV * 3 + 2] +=
+		 * _faceNormals[i * 3 + 2];
+		 */
+		normals.update3d(firstV, cp[0], cp[1], cp[2]);
+		normals.update3d(secondV, cp[0], cp[1], cp[2]);
+		normals.update3d(thirdV, cp[0], cp[1], cp[2]);
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * OBJParser output against OBJParserReference, and its number scanning against the JDK.
+ * @author escape-llc
+ *
+ */
+public class OBJParserTest {
+	static final int[] OPTIONS = {
+		OBJParser.OPTION_NO_OPTIMIZE,
+		0,
+		OBJParser.OPTION_IGNORE_NORMAL|OBJParser.OPTION_TEXTURE_INVERTV,
+		OBJParser.OPTION_IGNORE_TEXTURE|OBJParser.OPTION_NO_OPTIMIZE,
+	};
+	/* UV sphere with comments, CRLF lines and mixed index forms; odd: texture coords in exponent and long forms */
+	static String model(int rings, int sectors, boolean odd) {
+		final Random rx = new Random(5);
+		final StringBuilder sb = new StringBuilder("# test\r\nmtllib x.mtl\no sphere\n");
+		for(int ix = 0; ix <= rings; ix++) {
+			for(int jx = 0; jx <= sectors; jx++) {
+				final double th = Math.PI*ix/rings, ph = 2*Math.PI*jx/sectors;
+				sb.append(String.format(Locale.US, "v %.6f %.6f %.6f\n", Math.sin(th)*Math.cos(ph)*3.7, Math.cos(th)*3.7, Math.sin(th)*Math.sin(ph)*3.7));
+				if(odd) {
+					sb.append("vt ").append(rx.nextFloat()*1e-7f).append(' ').append(rx.nextDouble()).append('\n');
+				}
+				else {
+					sb.append(String.format(Locale.US, "vt %.6f %.6f\n", (double)jx/sectors, (double)ix/rings));
+				}
+				sb.append(String.format(Locale.US, "vn %.4f %.4f %.4f\r\n", Math.sin(th)*Math.cos(ph), Math.cos(th), Math.sin(th)*Math.sin(ph)));
+			}
+		}
+		sb.append("s 1\nusemtl m\n");
+		for(int ix = 0; ix < rings; ix++) {
+			for(int jx = 0; jx < sectors; jx++) {
+				final int a0 = ix*(sectors + 1) + jx + 1, a1 = a0 + 1, b0 = a0 + sectors + 1, b1 = b0 + 1;
+				sb.append("f ").append(a0).append('/').append(a0).append('/').append(a0)
+					.append(' ').append(b0).append('/').append(b0).append('/').append(b0)
+					.append(' ').append(b1).append('/').append(b1).append('/').append(b1)
+					.append(' ').append(a1).append('/').append(a1).append('/').append(a1).append('\n');
+			}
+		}
+		// one relative face at the end
+		sb.append("f -1/-1/-1 -2/-2/-2 -3/-3/-3\n");
+		return sb.toString();
+	}
+	static void assertSame(OBJParserReference ref, OBJParser op) {
+		assertEquals(ref.getVertexCount(), op.getVertexCount());
+		assertEquals(ref.getIndexCount(), op.getIndexCount());
+		final InterleavedVertexGeometry rg = ref.vertexAttributes(), og = op.vertexAttributes();
+		assertEquals(rg.stride, og.stride);
+		assertArrayEquals(rg.vas, og.vas, 0f);
+	}
+	@Test
+	public void sameAsReference() throws Exception {
+		for(final int options : OPTIONS) {
+			for(final boolean odd : new boolean[] { false, true }) {
+				final byte[] src = model(32, 64, odd).getBytes("US-ASCII");
+				final OBJParserReference ref = new OBJParserReference(100, 20, options);
+				ref.parse(new ByteArrayInputStream(src));
+				final OBJParser stream = new OBJParser(100, 20, options);
+				stream.parse(new ByteArrayInputStream(src));
+				assertSame(ref, stream);
+				final OBJParser buffer = new OBJParser(100, 20, options);
+				buffer.parse(ByteBuffer.wrap(src));
+				assertSame(ref, buffer);
+			}
+		}
+	}
+	@Test
+	public void parallelSameAsSerial() throws Exception {
+		final byte[] src = model(96, 192, true).getBytes("US-ASCII");
+		// large enough that every chunk count below is honored
+		assertTrue(src.length > OBJParser.MIN_CHUNK_BYTES*8);
+		final ExecutorService exec = Executors.newFixedThreadPool(7);
+		try {
+			for(final int options : new int[] { OBJParser.OPTION_NO_OPTIMIZE, 0 }) {
+				final OBJParser serial = new OBJParser(100, 20, options);
+				serial.parse(ByteBuffer.wrap(src));
+				for(int chunks = 1; chunks <= 8; chunks++) {
+					final OBJParser parallel = new OBJParser(100, 20, options);
+					parallel.parse(ByteBuffer.wrap(src), exec, chunks);
+					assertEquals(serial.getVertexCount(), parallel.getVertexCount());
+					assertEquals(serial.getIndexCount(), parallel.getIndexCount());
+					assertArrayEquals(Arrays.copyOf(serial.indexList(), serial.getIndexCount()), Arrays.copyOf(parallel.indexList(), parallel.getIndexCount()));
+					assertArrayEquals(serial.vertexAttributes().vas, parallel.vertexAttributes().vas, 0f);
+					assertEquals(Arrays.toString(serial.getSubmeshes()), Arrays.toString(parallel.getSubmeshes()));
+					assertEquals(serial.getMaterialLibraries(), parallel.getMaterialLibraries());
+				}
+			}
+		}
+		finally {
+			exec.shutdown();
+		}
+	}
+	static void assertParse(String text) throws Exception {
+		final byte[] src = text.getBytes("US-ASCII");
+		final float expected = Float.parseFloat(text);
+		final float actual = OBJParser.parseFloat(ByteBuffer.wrap(src), 0, src.length);
+		if(Float.floatToIntBits(expected) != Float.floatToIntBits(actual)) {
+			fail(new StringBuilder(text).append(": expected ").append(expected).append(" was ").append(actual).toString());
+		}
+	}
+	@Test
+	public void parseFloatEdges() throws Exception {
+		final String[] edges = {
+			"0", "-0", "+0", "0.0", "-0.0", ".5", "5.", "-.5", "+1.5", "007", "0.000001", "1e10", "1E10", "1e-10", "1.5E-3", "1e+5",
+			"16777215", "16777216", "16777217", "123456789", "0.1", "0.2", "0.3", "3.4028235e38", "1.4e-45", "1e-46", "1e39",
+			"0.99999994", "1.00000005", "123456789012345678901234567890", "0.000000000000000000000000001",
+			"NaN", "-Infinity", "Infinity", "1e", "1e-",
+		};
+		for(final String text : edges) {
+			try {
+				Float.parseFloat(text);
+			}
+			catch(NumberFormatException ex) {
+				try {
+					OBJParser.parseFloat(ByteBuffer.wrap(text.getBytes("US-ASCII")), 0, text.length());
+					fail(text);
+				}
+				catch(NumberFormatException ex2) {
+				}
+				continue;
+			}
+			assertParse(text);
+		}
+	}
+	@Test
+	public void parseFloatRandom() throws Exception {
+		final Random rx = new Random(11);
+		for(int ix = 0; ix < 50000; ix++) {
+			// shortest repr, fixed digits, and arbitrary decimal strings
+			assertParse(Float.toString(Float.intBitsToFloat(rx.nextInt())).replace("Infinity", "1e39").replace("NaN", "0"));
+			assertParse(String.format(Locale.US, "%." + rx.nextInt(9) + "f", (rx.nextDouble() - .5)*Math.pow(10, rx.nextInt(12) - 4)));
+			final StringBuilder sb = new StringBuilder(rx.nextBoolean() ? "-" : "");
+			sb.append(rx.nextInt(100000000)).append('.').append(rx.nextInt(1000000));
+			if(rx.nextBoolean()) sb.append('e').append(rx.nextInt(25) - 12);
+			assertParse(sb.toString());
+		}
+	}
+}
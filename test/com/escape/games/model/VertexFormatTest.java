@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.model;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.After;
+import org.junit.Test;
+
+import android.opengl.GLES20;
+
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.gl.GL;
+import com.escape.games.gl.GLES;
+import com.escape.games.resource.GLState;
+
+/**
+ * Position encodings of VertexFormat, and the HALF fallback without GL_OES_vertex_half_float.
+ * @author escape-llc
+ *
+ */
+public class VertexFormatTest {
+	static final int[] P3N3 = { 3, 3, 0, 0 };
+	static final float[] TRIANGLE = {
+		-2f, 0f, 5f, 0f, 0f, 1f,
+		2f, 0f, 5f, 0f, 0f, 1f,
+		0f, 3f, -5f, 0f, 0f, 1f,
+	};
+	static final VertexFormat HALF = new VertexFormat(VertexFormat.HALF, VertexFormat.HALF, VertexFormat.FLOAT, VertexFormat.FLOAT);
+	@After
+	public void tearDown() {
+		GLState.reset();
+	}
+	@SuppressWarnings("unchecked")
+	static <T> T stub(Class<T> cx, final String extensions) {
+		return (T)Proxy.newProxyInstance(cx.getClassLoader(), new Class<?>[] { cx }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if(method.getName().equals("glGetString")) return extensions;
+				final Class<?> rt = method.getReturnType();
+				if(rt == boolean.class) return false;
+				if(rt.isPrimitive() && rt != void.class) return 0;
+				return null;
+			}
+		});
+	}
+	/* load with a context reporting the given extensions */
+	static VertexFormat.Layout load(String extensions) {
+		final GLES saved = GL.setBackend(stub(GLES.class, extensions));
+		try {
+			GLState.reset();
+			GLState.queryExtensions();
+			final InterleavedVBOGeometry gx = new InterleavedVBOGeometry(new InterleavedVertexGeometry(TRIANGLE, P3N3), HALF);
+			gx.load(stub(ResourceLoader.class, null), null);
+			return gx.getLayout();
+		}
+		finally {
+			GL.setBackend(saved);
+		}
+	}
+	@Test
+	public void halfPacked() {
+		final VertexFormat.Layout lx = HALF.pack(TRIANGLE, P3N3, 3);
+		assertEquals(VertexFormat.GL_HALF_FLOAT_OES, lx.getType(InterleavedVertexGeometry.IX_POSITION));
+		assertEquals(VertexFormat.GL_HALF_FLOAT_OES, lx.getType(InterleavedVertexGeometry.IX_NORMAL));
+		assertEquals(16, lx.getStride());
+	}
+	@Test
+	public void halfStaysFloatWithoutExtension() {
+		final VertexFormat.Layout lx = HALF.pack(TRIANGLE, P3N3, 3, false);
+		assertEquals(GLES20.GL_FLOAT, lx.getType(InterleavedVertexGeometry.IX_POSITION));
+		assertEquals(GLES20.GL_FLOAT, lx.getType(InterleavedVertexGeometry.IX_NORMAL));
+		assertEquals(24, lx.getStride());
+		assertEquals(-5f, lx.getBuffer().getFloat(2*24 + 8), 0f);
+	}
+	@Test
+	public void loadChecksExtension() {
+		assertEquals(GLES20.GL_FLOAT, load("GL_OES_texture_npot").getType(InterleavedVertexGeometry.IX_POSITION));
+		assertEquals(VertexFormat.GL_HALF_FLOAT_OES, load("GL_OES_texture_npot GL_OES_vertex_half_float").getType(InterleavedVertexGeometry.IX_NORMAL));
+	}
+	@Test
+	public void compactKeepsFloatPositions() {
+		final VertexFormat.Layout lx = VertexFormat.COMPACT.pack(TRIANGLE, P3N3, 3);
+		assertFalse(lx.isQuantized());
+		assertEquals(GLES20.GL_FLOAT, lx.getType(InterleavedVertexGeometry.IX_POSITION));
+		assertEquals(GLES20.GL_BYTE, lx.getType(InterleavedVertexGeometry.IX_NORMAL));
+		assertEquals(3f, lx.getBuffer().getFloat(2*lx.getStride() + 4), 0f);
+	}
+	@Test
+	public void quantizedRestores() {
+		final VertexFormat vf = new VertexFormat(VertexFormat.QUANTIZED, VertexFormat.FLOAT, VertexFormat.FLOAT, VertexFormat.FLOAT);
+		final VertexFormat.Layout lx = vf.pack(TRIANGLE, P3N3, 3);
+		assertTrue(lx.isQuantized());
+		for(int vx = 0; vx < 3; vx++) {
+			for(int cx = 0; cx < 3; cx++) {
+				final short qv = lx.getBuffer().getShort(vx*lx.getStride() + cx*2);
+				final float pv = qv*lx.getPositionScale()[cx] + lx.getPositionOffset()[cx];
+				assertEquals(TRIANGLE[vx*6 + cx], pv, 1e-3f);
+			}
+		}
+	}
+	@Test
+	public void quantizedFourComponentsStayFloat() {
+		final float[] src = {
+			-2f, 0f, 5f, 1f,
+			2f, 0f, 5f, 1f,
+			0f, 3f, -5f, 1f,
+		};
+		final VertexFormat vf = new VertexFormat(VertexFormat.QUANTIZED, VertexFormat.FLOAT, VertexFormat.FLOAT, VertexFormat.FLOAT);
+		final VertexFormat.Layout lx = vf.pack(src, new int[] { 4, 0, 0, 0 }, 3);
+		assertFalse(lx.isQuantized());
+		assertEquals(16, lx.getStride());
+		assertEquals(1f, lx.getBuffer().getFloat(2*16 + 12), 0f);
+	}
+}
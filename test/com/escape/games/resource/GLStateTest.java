@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.resource;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.opengl.GLES20;
+
+import com.escape.games.gl.GL;
+import com.escape.games.gl.GLES;
+import com.escape.games.gl.RecordingGLES;
+
+/**
+ * Vertex attribute shadow state against the recording backend.
+ * @author escape-llc
+ *
+ */
+public class GLStateTest {
+	RecordingGLES rec;
+	GLES saved;
+	@Before
+	public void setUp() {
+		rec = new RecordingGLES();
+		saved = GL.setBackend(rec);
+		GLState.reset();
+	}
+	@After
+	public void tearDown() {
+		GL.setBackend(saved);
+		GLState.reset();
+	}
+	@Test
+	public void unknownStateStaysWithinLimit() {
+		// recording backend reports 0, so the ES2 minimum applies
+		GLState.retainAttributes(0x3);
+		assertEquals(GLState.MIN_ATTRIBUTES - 2, rec.count("glDisableVertexAttribArray"));
+		for(RecordingGLES.Call call : rec.calls()) {
+			if(call.name.equals("glDisableVertexAttribArray")) {
+				assertTrue((Integer)call.args[0] < GLState.MIN_ATTRIBUTES);
+			}
+		}
+	}
+	@Test
+	public void limitQueriedOncePerReset() {
+		GLState.retainAttributes(0);
+		GLState.retainAttributes(0);
+		assertEquals(1, rec.count("glGetIntegerv"));
+		GLState.reset();
+		GLState.retainAttributes(0);
+		assertEquals(2, rec.count("glGetIntegerv"));
+	}
+	@Test
+	public void knownStateDisablesOnlyEnabled() {
+		GLState.retainAttributes(0);
+		GLState.enableAttribute(0);
+		GLState.enableAttribute(1);
+		rec.clear();
+		GLState.retainAttributes(0x1);
+		assertEquals(1, rec.count("glDisableVertexAttribArray"));
+		assertEquals(1, rec.calls().get(0).args[0]);
+	}
+	@Test
+	public void blendFuncIssuedOnChange() {
+		GLState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		GLState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+		assertEquals(1, rec.count("glBlendFunc"));
+		GLState.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE);
+		assertEquals(2, rec.count("glBlendFunc"));
+	}
+	@Test
+	public void depthMaskIssuedOnChange() {
+		GLState.depthMask(false);
+		GLState.depthMask(false);
+		GLState.depthMask(true);
+		assertEquals(2, rec.count("glDepthMask"));
+		assertEquals(Boolean.FALSE, rec.calls().get(0).args[0]);
+	}
+	@Test
+	public void extensionMatchesWholeName() {
+		GLState.queryExtensions();
+		assertEquals(1, rec.count("glGetString"));
+		assertFalse(GLState.hasExtension(GLState.OES_ELEMENT_INDEX_UINT));
+		GLState.extensions = " GL_OES_element_index_uint_ext GL_OES_texture_npot ";
+		assertFalse(GLState.hasExtension(GLState.OES_ELEMENT_INDEX_UINT));
+		GLState.extensions = " GL_OES_texture_npot GL_OES_element_index_uint ";
+		assertTrue(GLState.hasExtension(GLState.OES_ELEMENT_INDEX_UINT));
+		GLState.reset();
+		assertFalse(GLState.hasExtension(GLState.OES_ELEMENT_INDEX_UINT));
+	}
+}
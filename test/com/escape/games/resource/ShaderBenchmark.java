@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.resource;
+
+import com.escape.games.Benchmark;
+import com.escape.games.gl.GL;
+import com.escape.games.gl.NullGLES;
+
+/**
+ * Per-draw uniform binding cost of the String API against the slot API, over NullGLES.
+ * Each draw sets the uniforms a lit, textured object sets; "changing" values defeat the shadow copies so every set uploads.
+ * @author escape-llc
+ *
+ */
+public class ShaderBenchmark {
+	static final int DRAWS = 100000;
+	static final String VERTEX = "uniform mat4 uMVPMatrix;\nuniform mat4 uMVMatrix;\nuniform vec3 uLightPos;\nattribute vec4 aPosition;\nattribute vec3 aNormal;\nattribute vec2 aTextureCoord;\nvoid main() { gl_Position = uMVPMatrix * aPosition; }\n";
+	static final String FRAGMENT = "precision mediump float;\nuniform sampler2D uTexture;\nuniform vec4 uColor;\nuniform float uRatio;\nvoid main() { gl_FragColor = uColor * uRatio; }\n";
+	static final float[] mv = new float[16];
+	static final float[] mvp = new float[16];
+	static final float[] light = { 1f, 2f, 3f };
+	static final float[] color = { 1f, 1f, 1f, 1f };
+	static void byName(Shader sx, boolean changing) {
+		for(int ix = 0; ix < DRAWS; ix++) {
+			if(changing) {
+				mv[12] = ix;
+				mvp[12] = ix;
+			}
+			if(sx.query(Shader.SV_MATRIX_MV)) sx.matrix4(Shader.SV_MATRIX_MV, mv);
+			sx.matrix4(Shader.SV_MATRIX_MVP, mvp);
+			sx.uniform3d(Shader.SV_ULIGHTPOSITION, light);
+			sx.uniform(Shader.SV_URATIO, changing ? ix : 1f);
+			sx.texture(Shader.SV_UTEXTURE, 0);
+		}
+	}
+	static void bySlot(Shader sx, boolean changing) {
+		for(int ix = 0; ix < DRAWS; ix++) {
+			if(changing) {
+				mv[12] = ix;
+				mvp[12] = ix;
+			}
+			if(sx.query(Shader.SLOT_MATRIX_MV)) sx.matrix4(Shader.SLOT_MATRIX_MV, mv);
+			sx.matrix4(Shader.SLOT_MATRIX_MVP, mvp);
+			sx.uniform3d(Shader.SLOT_ULIGHTPOSITION, light);
+			sx.uniform(Shader.SLOT_URATIO, changing ? ix : 1f);
+			sx.texture(Shader.SLOT_UTEXTURE, 0);
+		}
+	}
+	public static void main(String[] args) throws Exception {
+		GL.setBackend(new NullGLES());
+		GLState.reset();
+		final Shader sx = new Shader(VERTEX, FRAGMENT);
+		sx.load(null);
+		sx.setup();
+		for(final boolean changing : new boolean[] { true, false }) {
+			final String suffix = changing ? " changing" : " same";
+			Benchmark.run("String" + suffix, DRAWS, "draws", new Benchmark.Pass() {
+				public void run() {
+					byName(sx, changing);
+				}
+			});
+			Benchmark.run("slot" + suffix, DRAWS, "draws", new Benchmark.Pass() {
+				public void run() {
+					bySlot(sx, changing);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.resource;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.escape.games.gl.GL;
+import com.escape.games.gl.GLES;
+import com.escape.games.gl.RecordingGLES;
+
+/**
+ * Uniform shadow copies against the recording backend.
+ * @author escape-llc
+ *
+ */
+public class ShaderTest {
+	static final String VERTEX = "uniform mat4 uMVPMatrix;\nattribute vec4 aPosition;\nvoid main() { gl_Position = uMVPMatrix * aPosition; }\n";
+	static final String FRAGMENT = "precision mediump float;\nuniform vec4 uColor;\nuniform float uRatio;\nvoid main() { gl_FragColor = uColor * uRatio; }\n";
+	static final float[] RED = { 1f, 0f, 0f, 1f };
+	static final float[] GREEN = { 0f, 1f, 0f, 1f };
+	RecordingGLES rec;
+	GLES saved;
+	Shader sx;
+	@Before
+	public void setUp() {
+		rec = new RecordingGLES();
+		saved = GL.setBackend(rec);
+		GLState.reset();
+		sx = new Shader(VERTEX, FRAGMENT);
+		sx.load(null);
+		sx.setup();
+		rec.clear();
+	}
+	@After
+	public void tearDown() {
+		GL.setBackend(saved);
+		GLState.reset();
+	}
+	@Test
+	public void sameValueIsSkipped() {
+		assertTrue(sx.color4d(RED));
+		assertTrue(sx.color4d(RED));
+		assertTrue(sx.uniform(Shader.SLOT_URATIO, 0.5f));
+		assertTrue(sx.uniform(Shader.SLOT_URATIO, 0.5f));
+		assertEquals(1, rec.count("glUniform4fv"));
+		assertEquals(1, rec.count("glUniform1f"));
+		assertEquals(2, sx.getUploadCount());
+		assertEquals(2, sx.getSkippedCount());
+	}
+	@Test
+	public void changedValueIsUploaded() {
+		sx.color4d(RED);
+		sx.color4d(GREEN);
+		sx.color4d(GREEN);
+		sx.color4d(RED);
+		assertEquals(3, rec.count("glUniform4fv"));
+		// the caller's array is compared by value, not identity
+		final float[] copy = RED.clone();
+		sx.color4d(copy);
+		copy[3] = 0.5f;
+		sx.color4d(copy);
+		assertEquals(4, rec.count("glUniform4fv"));
+	}
+	@Test
+	public void invalidateForcesUpload() {
+		sx.color4d(RED);
+		sx.uniform(Shader.SLOT_URATIO, 0.5f);
+		sx.invalidateUniforms();
+		sx.color4d(RED);
+		sx.uniform(Shader.SLOT_URATIO, 0.5f);
+		assertEquals(2, rec.count("glUniform4fv"));
+		assertEquals(2, rec.count("glUniform1f"));
+	}
+	@Test
+	public void relinkForcesUpload() {
+		sx.color4d(RED);
+		sx.unload(null);
+		assertFalse(sx.color4d(RED));
+		sx.load(null);
+		sx.setup();
+		assertTrue(sx.color4d(RED));
+		assertEquals(2, rec.count("glUniform4fv"));
+		// context loss: release() then load() also starts without shadow copies
+		sx.release();
+		sx.load(null);
+		sx.setup();
+		sx.color4d(RED);
+		assertEquals(3, rec.count("glUniform4fv"));
+	}
+	@Test
+	public void missingUniformIsNotSet() {
+		assertFalse(sx.matrix4(Shader.SLOT_MATRIX_MV, new float[16]));
+		assertEquals(0, rec.count("glUniformMatrix4fv"));
+	}
+}
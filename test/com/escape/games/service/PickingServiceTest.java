@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.escape.games.api.RequirePicking;
+import com.escape.games.core.GameObject;
+import com.escape.games.math.Mat4;
+import com.escape.games.model.MeshBVH;
+
+/**
+ * Closest-object picking through the camera, on a plain JVM.
+ * @author escape-llc
+ *
+ */
+public class PickingServiceTest {
+	/* 2x2 quad in the XY plane, facing +Z */
+	static final MeshBVH QUAD = new MeshBVH(new float[] { -1f, -1f, 0f, 1f, -1f, 0f, 1f, 1f, 0f, -1f, 1f, 0f }, new int[] { 0, 1, 2, 0, 2, 3 });
+	static final class Target extends GameObject implements RequirePicking {
+		final float[] matrix = new float[16];
+		boolean pickable = true;
+		Target(String name, float x, float y, float z, float scale) {
+			super(name, false);
+			Mat4.setIdentity(matrix, 0);
+			matrix[0] = matrix[5] = matrix[10] = scale;
+			matrix[12] = x;
+			matrix[13] = y;
+			matrix[14] = z;
+		}
+		public boolean isPickable() { return pickable; }
+		public MeshBVH getPickMesh() { return QUAD; }
+		public float[] getPickMatrix() { return matrix; }
+	}
+	RenderService rs;
+	PickingService ps;
+	Target near;
+	Target far;
+	final PickingService.Hit hit = new PickingService.Hit();
+	@Before
+	public void setUp() {
+		rs = new RenderService(new Object());
+		rs.setProjection(200, 100, 1f, 100f);
+		rs.setCamera(0f, 0f, 0f, 0f, 0f, -1f);
+		ps = new PickingService(rs);
+		near = new Target("near", 0f, 0f, -5f, 1f);
+		far = new Target("far", 0.5f, 0f, -10f, 4f);
+		// registration order must not matter
+		ps.add(far);
+		ps.add(near);
+	}
+	@Test
+	public void closestWins() {
+		assertSame(near, ps.pick(100f, 50f, hit));
+		assertEquals(0f, hit.point[0], 1e-3f);
+		assertEquals(0f, hit.point[1], 1e-3f);
+		assertEquals(-5f, hit.point[2], 1e-3f);
+		assertEquals(0f, hit.local[2], 1e-3f);
+		// local point from the barycentric weights of the hit triangle
+		final int a = QUAD.vertex(hit.triangle, 0), b = QUAD.vertex(hit.triangle, 1), c = QUAD.vertex(hit.triangle, 2);
+		final float[] qp = { -1f, -1f, 1f, -1f, 1f, 1f, -1f, 1f };
+		final float lx = qp[a*2] + hit.u*(qp[b*2] - qp[a*2]) + hit.v*(qp[c*2] - qp[a*2]);
+		final float ly = qp[a*2 + 1] + hit.u*(qp[b*2 + 1] - qp[a*2 + 1]) + hit.v*(qp[c*2 + 1] - qp[a*2 + 1]);
+		assertEquals(hit.local[0], lx, 1e-4f);
+		assertEquals(hit.local[1], ly, 1e-4f);
+	}
+	@Test
+	public void fartherObjectOutsideNearBounds() {
+		// right of the near quad's edge; the ray reaches x = 3 at the scaled far quad
+		final float[] win = new float[3];
+		rs.project(1.5f, 0f, -5f, win, true);
+		assertSame(far, ps.pick(win[0], win[1], hit));
+		assertEquals(-10f, hit.point[2], 1e-3f);
+		// local coordinates are unscaled
+		assertTrue(Math.abs(hit.local[0]) <= 1f);
+	}
+	@Test
+	public void unpickableSkipped() {
+		near.pickable = false;
+		assertSame(far, ps.pick(100f, 50f, hit));
+		ps.remove(far);
+		assertNull(ps.pick(100f, 50f, hit));
+		assertNull(hit.target);
+	}
+	@Test
+	public void missReturnsNull() {
+		assertNull(ps.pick(2f, 2f, hit));
+	}
+	@Test
+	public void worldRay() {
+		assertSame(far, ps.pick(2f, 0f, 0f, 0f, 0f, -1f, hit));
+		assertEquals(10f, hit.distance, 1e-4f);
+		assertSame(near, ps.pick(0f, 0f, 0f, 0f, 0f, -1f, hit));
+		assertEquals(5f, hit.distance, 1e-4f);
+	}
+}
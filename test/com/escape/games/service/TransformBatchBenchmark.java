@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import com.escape.games.Benchmark;
+import com.escape.games.api.Properties;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.core.DrawableGameObject;
+import com.escape.games.message.Constants;
+import com.escape.games.model.Geometry;
+import com.escape.games.model.Transform;
+import com.escape.games.resource.Shader;
+
+/**
+ * Scaling of TransformBatch.flush() over 1-8 threads, recomposing every object's model matrix each pass.
+ * Figures past the machine's core count only measure dispatch overhead.
+ * @author escape-llc
+ *
+ */
+public class TransformBatchBenchmark {
+	static final int OBJECTS = 20000;
+	static final class Empty extends Geometry {
+		protected void internalLoad(ResourceLoader rl, Services svc) { }
+		public void render(Shader sx, Properties px) { }
+		public int getVertexCount() { return 0; }
+	}
+	public static void main(String[] args) throws Exception {
+		System.out.println(new StringBuilder("processors ").append(Runtime.getRuntime().availableProcessors()).toString());
+		final Geometry gx = new Empty();
+		final DrawableGameObject[] objects = new DrawableGameObject[OBJECTS];
+		final Transform[] transforms = new Transform[OBJECTS];
+		for(int ix = 0; ix < OBJECTS; ix++) {
+			objects[ix] = new DrawableGameObject("go" + ix, false, gx, 0);
+			transforms[ix] = new Transform(ix, 0f, -ix, 1f);
+			objects[ix].set(Constants.Property.TRANSFORM, transforms[ix]);
+		}
+		for(int threads = 1; threads <= 8; threads++) {
+			final TransformBatch tb = new TransformBatch(threads);
+			// parallel whenever there is more than one thread
+			tb.setThreshold(1);
+			try {
+				Benchmark.run(threads + " thread(s)", OBJECTS, "objects", new Benchmark.Pass() {
+					public void run() {
+						for(int ix = 0; ix < OBJECTS; ix++) {
+							// a changed transform is recomposed, not skipped
+							transforms[ix].ry += 1f;
+							tb.add(objects[ix]);
+						}
+						tb.flush();
+					}
+				});
+			}
+			finally {
+				tb.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.escape.games.api.RequireTransform;
+
+/**
+ * Batch completion and failure reporting, serial and parallel.
+ * @author escape-llc
+ *
+ */
+public class TransformBatchTest {
+	static final class Item implements RequireTransform {
+		final boolean fail;
+		volatile int updates;
+		Item(boolean fail) {
+			this.fail = fail;
+		}
+		public void updateTransform() {
+			try {
+				// long enough that an early return would be seen
+				Thread.sleep(1);
+			}
+			catch(InterruptedException ex) {
+			}
+			updates++;
+			if(fail) throw new IllegalStateException("item");
+		}
+	}
+	TransformBatch tb;
+	@After
+	public void tearDown() {
+		if(tb != null) tb.shutdown();
+	}
+	static Item[] items(TransformBatch tb, int count, int failAt) {
+		final Item[] items = new Item[count];
+		for(int ix = 0; ix < count; ix++) {
+			items[ix] = new Item(ix == failAt);
+			tb.add(items[ix]);
+		}
+		return items;
+	}
+	static void assertAllUpdated(Item[] items) {
+		for(int ix = 0; ix < items.length; ix++) {
+			assertEquals("item " + ix, 1, items[ix].updates);
+		}
+	}
+	void flushFailing(int threads, int count, int failAt) {
+		tb = new TransformBatch(threads);
+		tb.setThreshold(1);
+		final Item[] items = items(tb, count, failAt);
+		try {
+			tb.flush();
+			fail("failure not reported");
+		}
+		catch(IllegalStateException ex) {
+			assertEquals("item", ex.getMessage());
+		}
+		assertEquals(threads > 1, tb.wasParallel());
+		assertAllUpdated(items);
+		assertEquals(0, tb.size());
+	}
+	@Test
+	public void parallelCompletes() {
+		tb = new TransformBatch(4);
+		tb.setThreshold(1);
+		final Item[] items = items(tb, 40, -1);
+		tb.flush();
+		assertTrue(tb.wasParallel());
+		assertAllUpdated(items);
+	}
+	@Test
+	public void workerFailureRethrownAfterAllChunks() {
+		flushFailing(4, 40, 35);
+	}
+	@Test
+	public void callerFailureWaitsForWorkers() {
+		flushFailing(4, 40, 0);
+	}
+	@Test
+	public void serialFailureUpdatesRest() {
+		flushFailing(1, 10, 3);
+	}
+	@Test
+	public void usableAfterFailure() {
+		flushFailing(4, 40, 20);
+		final Item[] items = items(tb, 40, -1);
+		tb.flush();
+		assertAllUpdated(items);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import com.escape.games.Benchmark;
+import com.escape.games.api.Properties;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.core.DrawableGameObject;
+import com.escape.games.message.Constants;
+import com.escape.games.model.Geometry;
+import com.escape.games.model.Transform;
+import com.escape.games.model.TransformNode;
+import com.escape.games.resource.Shader;
+
+/**
+ * TransformStore against the per-object Transform path, moving every object by its velocity each pass.
+ * Per-object: update the Transform, then DrawableGameObject.updateTransform() composes and publishes it.
+ * Store: integrate() then update() over the arrays, or per-handle writes with invalidate().
+ * @author escape-llc
+ *
+ */
+public class TransformStoreBenchmark {
+	static final int OBJECTS = 20000;
+	static final float DT = 1f/60f;
+	static final class Empty extends Geometry {
+		protected void internalLoad(ResourceLoader rl, Services svc) { }
+		public void render(Shader sx, Properties px) { }
+		public int getVertexCount() { return 0; }
+	}
+	public static void main(String[] args) throws Exception {
+		final Geometry gx = new Empty();
+		final DrawableGameObject[] objects = new DrawableGameObject[OBJECTS];
+		final Transform[] transforms = new Transform[OBJECTS];
+		final float[] velocity = new float[OBJECTS*3];
+		final TransformStore ts = new TransformStore(OBJECTS, null);
+		for(int ix = 0; ix < OBJECTS; ix++) {
+			final Transform tf = new Transform(ix, 0f, -ix, 1f);
+			tf.ry = ix % 360;
+			objects[ix] = new DrawableGameObject("go" + ix, false, gx, 0);
+			objects[ix].set(Constants.Property.TRANSFORM, tf);
+			transforms[ix] = tf;
+			velocity[ix*3] = 1f;
+			velocity[ix*3 + 1] = 0.5f;
+			velocity[ix*3 + 2] = -1f;
+			final int hx = ts.allocate(new TransformNode());
+			ts.set(hx, tf);
+			ts.vx[hx] = 1f;
+			ts.vy[hx] = 0.5f;
+			ts.vz[hx] = -1f;
+		}
+		ts.update();
+		Benchmark.run("per-object", OBJECTS, "objects", new Benchmark.Pass() {
+			public void run() {
+				for(int ix = 0; ix < OBJECTS; ix++) {
+					final Transform tf = transforms[ix];
+					tf.tx += velocity[ix*3]*DT;
+					tf.ty += velocity[ix*3 + 1]*DT;
+					tf.tz += velocity[ix*3 + 2]*DT;
+					objects[ix].updateTransform();
+				}
+			}
+		});
+		Benchmark.run("store integrate", OBJECTS, "objects", new Benchmark.Pass() {
+			public void run() {
+				ts.integrate(DT);
+				ts.update();
+			}
+		});
+		Benchmark.run("store per-handle", OBJECTS, "objects", new Benchmark.Pass() {
+			public void run() {
+				for(int ix = 0; ix < OBJECTS; ix++) {
+					ts.tx[ix] += ts.vx[ix]*DT;
+					ts.ty[ix] += ts.vy[ix]*DT;
+					ts.tz[ix] += ts.vz[ix]*DT;
+					ts.invalidate(ix);
+				}
+				ts.update();
+			}
+		});
+	}
+}
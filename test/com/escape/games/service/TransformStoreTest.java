@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.escape.games.model.Transform;
+import com.escape.games.model.TransformNode;
+
+/**
+ * Handle free list, dirty tracking, and publishing into TransformNode.local.
+ * @author escape-llc
+ *
+ */
+public class TransformStoreTest {
+	static void assertMatrix(float[] expected, float[] actual, int offset) {
+		for(int ix = 0; ix < 16; ix++) {
+			assertEquals("element " + ix, expected[ix], actual[offset + ix], 1e-5f);
+		}
+	}
+	static float[] compose(Transform tf) {
+		final float[] mx = new float[16];
+		tf.compose(mx, 0);
+		return mx;
+	}
+	static Transform transform(float x, float y, float z, float rx, float ry, float rz, float scale) {
+		final Transform tf = new Transform(x, y, z, scale);
+		tf.rx = rx;
+		tf.ry = ry;
+		tf.rz = rz;
+		return tf;
+	}
+	@Test
+	public void allocateUntilFull() {
+		final TransformStore ts = new TransformStore(3, null);
+		assertEquals(0, ts.allocate(null));
+		assertEquals(1, ts.allocate(null));
+		assertEquals(2, ts.allocate(null));
+		assertEquals(-1, ts.allocate(null));
+		assertEquals(3, ts.size());
+		assertEquals(3, ts.getHigh());
+	}
+	@Test
+	public void releasedHandlesReusedFirst() {
+		final TransformStore ts = new TransformStore(4, null);
+		for(int ix = 0; ix < 3; ix++) ts.allocate(null);
+		ts.release(0);
+		ts.release(2);
+		assertEquals(1, ts.size());
+		// most recently released first, before growing high
+		assertEquals(2, ts.allocate(null));
+		assertEquals(0, ts.allocate(null));
+		assertEquals(3, ts.getHigh());
+		assertEquals(3, ts.allocate(null));
+		assertEquals(4, ts.getHigh());
+		assertEquals(-1, ts.allocate(null));
+	}
+	@Test
+	public void releaseRejectsBadHandles() {
+		final TransformStore ts = new TransformStore(4, null);
+		final int hx = ts.allocate(null);
+		ts.release(hx);
+		try {
+			ts.release(hx);
+			fail("double release");
+		}
+		catch(IllegalArgumentException ex) {
+		}
+		try {
+			ts.release(2);
+			fail("never allocated");
+		}
+		catch(IllegalArgumentException ex) {
+		}
+		try {
+			ts.release(-1);
+			fail("negative");
+		}
+		catch(IllegalArgumentException ex) {
+		}
+		assertEquals(0, ts.size());
+	}
+	@Test
+	public void reusedHandleStartsAtIdentity() {
+		final TransformStore ts = new TransformStore(2, null);
+		final int hx = ts.allocate(null);
+		ts.set(hx, transform(1f, 2f, 3f, 10f, 20f, 30f, 2f));
+		ts.vx[hx] = 5f;
+		ts.update();
+		ts.release(hx);
+		final TransformNode tn = new TransformNode();
+		assertEquals(hx, ts.allocate(tn));
+		assertEquals(0f, ts.vx[hx], 0f);
+		ts.update();
+		assertMatrix(compose(new Transform()), tn.local, 0);
+	}
+	@Test
+	public void updatePublishesComposedMatrix() {
+		final TransformStore ts = new TransformStore(4, null);
+		final TransformNode tn = new TransformNode();
+		final int hx = ts.allocate(tn);
+		final Transform tf = transform(1f, -2f, 3f, 30f, 45f, 60f, 0.5f);
+		ts.set(hx, tf);
+		ts.update();
+		final float[] expected = compose(tf);
+		assertMatrix(expected, ts.matrix, hx*16);
+		assertMatrix(expected, tn.local, 0);
+		// outside a hierarchy, invalidate() copies local to world
+		assertMatrix(expected, tn.world, 0);
+		final Transform back = new Transform();
+		ts.get(hx, back);
+		assertTrue(back.sameAs(tf));
+	}
+	@Test
+	public void onlyInvalidatedHandlesPublished() {
+		final TransformStore ts = new TransformStore(4, null);
+		final TransformNode n0 = new TransformNode(), n1 = new TransformNode();
+		final int h0 = ts.allocate(n0), h1 = ts.allocate(n1);
+		ts.update();
+		// direct writes without invalidate() are not picked up
+		ts.tx[h0] = 7f;
+		ts.set(h1, transform(0f, 4f, 0f, 0f, 90f, 0f, 1f));
+		ts.update();
+		assertEquals(0f, n0.local[12], 0f);
+		assertEquals(4f, n1.local[13], 0f);
+		ts.invalidate(h0);
+		ts.invalidate(h0);
+		assertEquals(1, ts.pendingCount);
+		ts.update();
+		assertEquals(7f, n0.local[12], 0f);
+		assertEquals(0, ts.pendingCount);
+	}
+	@Test
+	public void invalidateAllPublishesEveryHandle() {
+		final TransformStore ts = new TransformStore(4, null);
+		final TransformNode[] nodes = new TransformNode[3];
+		for(int ix = 0; ix < nodes.length; ix++) {
+			nodes[ix] = new TransformNode();
+			ts.allocate(nodes[ix]);
+			ts.vx[ix] = ix + 1f;
+			ts.vz[ix] = -2f;
+		}
+		// released slot inside [0, high) has no node and is skipped
+		ts.release(1);
+		ts.update();
+		ts.integrate(0.5f);
+		assertTrue(ts.allDirty);
+		ts.update();
+		assertFalse(ts.allDirty);
+		assertEquals(0.5f, nodes[0].local[12], 1e-6f);
+		assertEquals(-1f, nodes[0].local[14], 1e-6f);
+		assertEquals(1.5f, nodes[2].local[12], 1e-6f);
+		assertEquals(0f, nodes[1].local[12], 0f);
+		// a pending handle folded into the full pass is cleared, so it queues again
+		ts.set(0, transform(9f, 0f, 0f, 0f, 0f, 0f, 1f));
+		ts.invalidateAll();
+		ts.update();
+		assertEquals(0, ts.pendingCount);
+		assertFalse(ts.dirty[0]);
+		ts.tx[0] = 3f;
+		ts.invalidate(0);
+		assertEquals(1, ts.pendingCount);
+		ts.update();
+		assertEquals(3f, nodes[0].local[12], 0f);
+	}
+	@Test
+	public void queuedOncePerFlush() {
+		final TransformBatch tb = new TransformBatch(1);
+		try {
+			final TransformStore ts = new TransformStore(4, tb);
+			final TransformNode tn = new TransformNode();
+			final int hx = ts.allocate(tn);
+			ts.set(hx, transform(2f, 0f, 0f, 0f, 0f, 0f, 1f));
+			ts.integrate(1f);
+			assertEquals(1, tb.size());
+			tb.flush();
+			assertEquals(2f, tn.local[12], 0f);
+			ts.invalidate(hx);
+			assertEquals(1, tb.size());
+		}
+		finally {
+			tb.shutdown();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 eScape Technology LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.escape.games.task;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.escape.games.api.GameHost;
+import com.escape.games.api.Properties;
+import com.escape.games.api.ResourceLoader;
+import com.escape.games.api.Services;
+import com.escape.games.api.ViewHost;
+import com.escape.games.core.DrawableGameObject;
+import com.escape.games.core.GameObject;
+import com.escape.games.core.TaskMessage;
+import com.escape.games.message.Constants;
+import com.escape.games.message.LoadGameObject;
+import com.escape.games.message.UnloadGameObject;
+import com.escape.games.model.Geometry;
+import com.escape.games.model.Transform;
+import com.escape.games.model.UniformMaterial;
+import com.escape.games.resource.Shader;
+import com.escape.games.service.TransformStore;
+
+/**
+ * Install/Uninstall pipeline release of loader and store resources.
+ * Messages are delivered inline instead of through the Loader and Game Cycle threads.
+ * @author escape-llc
+ *
+ */
+public class GameCycleTest {
+	static final class Counting extends Geometry {
+		int loads;
+		int unloads;
+		protected void internalLoad(ResourceLoader rl, Services svc) { loads++; }
+		@Override
+		protected void internalUnload(ResourceLoader rl) { unloads++; }
+		public void render(Shader sx, Properties px) { }
+		public int getVertexCount() { return 3; }
+	}
+	static final class Cycle extends GameCycle {
+		Cycle(GameHost host, ResourceLoader rl, ViewHost vh) {
+			super("test", 30, 10, null, host, rl, vh);
+		}
+		protected void startLoading(boolean isreload) { }
+		protected void objectLoadedPre(GameObject go, Exception ex) { }
+		protected void objectLoadedPost(GameObject go, Exception ex) { }
+		protected void objectUnloadedPre(GameObject go, Exception ex) { }
+		protected void objectUnloadedPost(GameObject go, Exception ex) { }
+		protected void objectEventPre(GameObject go) { }
+		protected void objectEventPost(GameObject go) { }
+		protected void gameStarting() { }
+		protected void gameOver() { }
+	}
+	@SuppressWarnings("unchecked")
+	static <T> T stub(Class<T> cx, final Object result) {
+		return (T)Proxy.newProxyInstance(cx.getClassLoader(), new Class<?>[] { cx }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				final Class<?> rt = method.getReturnType();
+				if(rt == boolean.class) return false;
+				if(rt.isPrimitive() && rt != void.class) return 0;
+				return rt.isInstance(result) ? result : null;
+			}
+		});
+	}
+	Cycle gc;
+	ResourceLoader rl;
+	TransformStore ts;
+	@Before
+	public void setUp() {
+		rl = stub(ResourceLoader.class, new Shader("void main() { }", "void main() { }"));
+		gc = new Cycle(stub(GameHost.class, null), rl, stub(ViewHost.class, null));
+		ts = new TransformStore(4, null);
+		gc.addService(Constants.Service.TRANSFORM_STORE, ts);
+	}
+	DrawableGameObject create(String name, Geometry gx) {
+		final DrawableGameObject dgo = new DrawableGameObject(name, true, gx, 0);
+		dgo.set(Constants.Property.MATERIAL, new UniformMaterial(1f, 1f, 1f, 1f));
+		dgo.set(Constants.Property.TRANSFORM, new Transform());
+		dgo.setUseStore(true);
+		return dgo;
+	}
+	void install(DrawableGameObject dgo) {
+		// Loader thread part, then reply on the Game Cycle
+		final LoadGameObject lgo = new LoadGameObject(dgo, gc, gc);
+		try {
+			dgo.load(rl, gc);
+		}
+		catch(Exception ex) {
+			lgo.error = ex;
+		}
+		deliver(lgo);
+	}
+	void deliver(TaskMessage msg) {
+		gc.process(msg);
+	}
+	@Test
+	public void uninstallReleasesModelAndHandle() {
+		final Counting gx = new Counting();
+		final DrawableGameObject dgo = create("dgo", gx);
+		install(dgo);
+		assertEquals(1, gx.loads);
+		assertEquals(1, ts.size());
+		assertSame(ts, dgo.getTransformStore());
+		deliver(new UnloadGameObject("dgo", gc, gc));
+		assertEquals(1, gx.unloads);
+		assertEquals(0, ts.size());
+		assertNull(dgo.getTransformStore());
+		assertNull(gc.locate("dgo"));
+	}
+	@Test
+	public void sharedModelReleasedByLastUser() {
+		final Counting gx = new Counting();
+		final DrawableGameObject d1 = create("d1", gx);
+		final DrawableGameObject d2 = create("d2", gx);
+		install(d1);
+		install(d2);
+		assertEquals(1, gx.loads);
+		assertEquals(2, ts.size());
+		deliver(new UnloadGameObject("d1", gc, gc));
+		assertEquals(0, gx.unloads);
+		assertEquals(1, ts.size());
+		deliver(new UnloadGameObject("d2", gc, gc));
+		assertEquals(1, gx.unloads);
+		assertEquals(0, ts.size());
+		// reinstall loads again
+		install(d1);
+		assertEquals(2, gx.loads);
+		assertEquals(1, ts.size());
+	}
+	@Test
+	public void failedLoadReleasesModel() {
+		final Counting gx = new Counting();
+		final DrawableGameObject dgo = new DrawableGameObject("bad", true, gx, 0);
+		// no MATERIAL: load fails after the model is loaded
+		install(dgo);
+		assertEquals(1, gx.loads);
+		assertEquals(1, gx.unloads);
+		assertNull(gc.locate("bad"));
+	}
+}